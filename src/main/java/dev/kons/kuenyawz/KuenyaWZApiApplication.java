@@ -6,12 +6,14 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @OpenAPIDefinition
 @EnableJpaAuditing
 @EnableConfigurationProperties
 @EnableCaching
+@EnableScheduling
 public class KuenyaWZApiApplication {
 
 	public static void main(String[] args) {
@@ -76,6 +76,11 @@ public class CustomExceptionsHandler {
 		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ErrorResponse.of(ex.getMessage()));
 	}
 
+	@ExceptionHandler(GatewayUnavailableException.class)
+	public ResponseEntity<Object> handleGatewayUnavailableException(GatewayUnavailableException ex) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ErrorResponse.of(ex.getMessage()));
+	}
+
 	@ExceptionHandler(MidtransTransactionException.class)
 	public ResponseEntity<Object> handleMidtransTransactionException(MidtransTransactionException ex) {
 		Map<String, Object> body = Map.of(
@@ -4,6 +4,7 @@ import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.entities.Account;
 import dev.kons.kuenyawz.repositories.AccountRepository;
 import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
 import dev.kons.kuenyawz.services.logic.AccountCsvService;
 import dev.kons.kuenyawz.services.logic.ProductCsvService;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,7 @@ public class DatabaseBootstrapper implements CommandLineRunner {
 	private final ProductRepository productRepository;
 	private final AccountCsvService accountCsvService;
 	private final AccountRepository accountRepository;
+	private final PurchaseRepository purchaseRepository;
 
 	private static final String PATH_TO_PRODUCT_SEEDER = "seeders/Products.csv";
 	private static final String PATH_TO_ACCOUNT_SEEDER = "seeders/Accounts.csv";
@@ -62,6 +64,13 @@ public class DatabaseBootstrapper implements CommandLineRunner {
 		}
 	}
 
+	public void backfillPurchaseTotals() {
+		int updated = purchaseRepository.backfillTotals();
+		if (updated > 0) {
+			log.info("Filled the totals of {} purchases", updated);
+		}
+	}
+
 	@Override
 	public void run(String... args) throws Exception {
 		start();
@@ -76,5 +85,6 @@ public class DatabaseBootstrapper implements CommandLineRunner {
 			log.info("Injecting products...");
 			injectProducts();
 		}
+		backfillPurchaseTotals();
 	}
 }
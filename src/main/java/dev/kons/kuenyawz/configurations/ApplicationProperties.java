@@ -1,6 +1,7 @@
 package dev.kons.kuenyawz.configurations;
 
 import dev.kons.kuenyawz.services.entity.OTPService;
+import dev.kons.kuenyawz.utils.stub.GatewayStubServer;
 import io.github.cdimascio.dotenv.Dotenv;
 import lombok.Getter;
 import lombok.Setter;
@@ -11,6 +12,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -51,6 +53,17 @@ public class ApplicationProperties {
 	private Database database = new Database();
 	private Security security = new Security();
 	private Midtrans midtrans = new Midtrans();
+	private Recommender recommender = new Recommender();
+	private Notification notification = new Notification();
+	private Idempotency idempotency = new Idempotency();
+	private Dashboard dashboard = new Dashboard();
+	private Export export = new Export();
+	private Expiry expiry = new Expiry();
+	private Reconciler reconciler = new Reconciler();
+	private Transition transition = new Transition();
+	private Webhook webhook = new Webhook();
+	private Gateway gateway = new Gateway();
+	private Stub stub = new Stub();
 
 	// Initializing through dotenv
 	@Autowired
@@ -75,6 +88,7 @@ public class ApplicationProperties {
 		this.vendor.longitude = Double.parseDouble(getEnv("VENDOR_LONGITUDE", "0", dotenv));
 		this.vendor.paymentFee = Double.parseDouble(getEnv("VENDOR_PAYMENT_FEE", "4000", dotenv));
 		this.vendor.feePerKm = Double.parseDouble(getEnv("VENDOR_FEE_PER_KM", "3500", dotenv));
+		this.vendor.ordersPerDay = Integer.parseInt(getEnv("VENDOR_ORDERS_PER_DAY", "1", dotenv));
 
 		this.database.url = readDbUrl(dotenv);
 		this.database.username = getEnv("DB_USERNAME", "kuenyawz", dotenv);
@@ -85,6 +99,7 @@ public class ApplicationProperties {
 		this.security.jwtRefreshDays = Long.parseLong(getEnv("REFRESH_TOKEN_EXP_DAYS", "7", dotenv));
 		this.security.otpPhoneNumber = getEnv("OTP_PHONE_NUMBER", null, dotenv);
 		this.security.fonnteApiToken = getEnv("FONNTE_API_TOKEN", null, dotenv);
+		this.security.fonnteBaseUrl = getEnv("FONNTE_BASE_URL", "https://api.fonnte.com", dotenv);
 		this.security.otpExpireSeconds = Long.parseLong(getEnv("OTP_EXPIRE_SECONDS", "300", dotenv));
 		this.security.otpLength = Integer.parseInt(getEnv("OTP_LENGTH", "6", dotenv));
 
@@ -161,6 +176,50 @@ public class ApplicationProperties {
 		return midtrans;
 	}
 
+	public Recommender recommender() {
+		return recommender;
+	}
+
+	public Notification notification() {
+		return notification;
+	}
+
+	public Idempotency idempotency() {
+		return idempotency;
+	}
+
+	public Dashboard dashboard() {
+		return dashboard;
+	}
+
+	public Export export() {
+		return export;
+	}
+
+	public Expiry expiry() {
+		return expiry;
+	}
+
+	public Reconciler reconciler() {
+		return reconciler;
+	}
+
+	public Transition transition() {
+		return transition;
+	}
+
+	public Webhook webhook() {
+		return webhook;
+	}
+
+	public Gateway gateway() {
+		return gateway;
+	}
+
+	public Stub stub() {
+		return stub;
+	}
+
 	@Getter
 	@Setter
 	public static class Frontend {
@@ -185,6 +244,8 @@ public class ApplicationProperties {
 		private Double longitude;
 		private Double paymentFee;
 		private Double feePerKm;
+		/// Orders the vendor can prepare or deliver on the same day
+		private Integer ordersPerDay;
 	}
 
 	@Getter
@@ -203,6 +264,7 @@ public class ApplicationProperties {
 		private long jwtRefreshDays;
 		private String otpPhoneNumber;
 		private String fonnteApiToken;
+		private String fonnteBaseUrl = "https://api.fonnte.com";
 		private long otpExpireSeconds;
 		private int otpLength;
 	}
@@ -222,6 +284,190 @@ public class ApplicationProperties {
 		private String errorUrl;
 	}
 
+	@Getter
+	@Setter
+	public static class Recommender {
+		/// Cron of the scheduled regeneration, runs nightly by default
+		private String cron = "0 0 2 * * *";
+		/// Whether the weight of a basket decays with its age, otherwise every basket counts equally
+		private boolean timeDecay = true;
+		/// Age in days after which a basket weighs half
+		private int halfLifeDays = 90;
+		/// Number of weekly buckets kept, older purchases are no longer mined
+		private int windowWeeks = 52;
+		/// Minutes a regeneration holds the lock shared by the instances, taken over afterward if it died
+		private long lockLeaseMinutes = 60;
+		/// Milliseconds between two checks for a generation written by another instance
+		private long reloadDelayMillis = 60000;
+	}
+
+	@Getter
+	@Setter
+	public static class Notification {
+		/// Milliseconds between two drains of the outbox
+		private long dispatchDelayMillis = 1000;
+		/// Maximum notifications read from the outbox per drain
+		private int batchSize = 20;
+		/// Messages sent per second to the WhatsApp API on average, by each instance. The account
+		/// limit of the API is shared, so it is divided by the number of instances running
+		private double ratePerSecond = 1;
+		/// Messages that can be sent at once after being idle, by each instance
+		private int burst = 5;
+		/// Attempts before a notification is dead-lettered
+		private int maxAttempts = 6;
+		/// Delay before the first retry, doubled on every further attempt
+		private long initialBackoffSeconds = 30;
+		private long maxBackoffSeconds = 3600;
+		/// Seconds a digested notification waits for others of its group before being sent
+		private long digestWindowSeconds = 60;
+		/// Days sent and dead notifications are kept
+		private int retentionDays = 14;
+	}
+
+	@Getter
+	@Setter
+	public static class Idempotency {
+		/// Minutes the first response of an idempotency key is replayed
+		private long ttlMinutes = 60;
+		/// Seconds a duplicate request waits for the in-flight one to finish
+		private long waitSeconds = 30;
+		/// Seconds a key is held by its execution, another instance takes it over afterward
+		private long leaseSeconds = 120;
+		/// Responses kept in memory, the others are read from the database
+		private long maxEntries = 10000;
+	}
+
+	@Getter
+	@Setter
+	public static class Dashboard {
+		/// Milliseconds between two checkpoints of the pending rollup changes to the database
+		private long checkpointDelayMillis = 10000;
+		/// Longest date range a dashboard can be requested for
+		private int maxRangeDays = 366;
+	}
+
+	@Getter
+	@Setter
+	public static class Export {
+		/// Rows fetched from the database per round trip while streaming an export
+		private int fetchSize = 500;
+		/// Rows written between two flushes of the response
+		private int flushRows = 1000;
+	}
+
+	@Getter
+	@Setter
+	public static class Expiry {
+		/// Milliseconds between two sweeps of the expired transactions
+		private long sweepDelayMillis = 60000;
+		/// Transactions expired per database transaction
+		private int batchSize = 100;
+		/// Batches processed per sweep, the rest waits for the next one
+		private int maxBatches = 50;
+		/// Time past its expiry a transaction is still left open, for the payments Midtrans settles at the last moment
+		private Duration grace = Duration.ofMinutes(15);
+	}
+
+	@Getter
+	@Setter
+	public static class Reconciler {
+		/// Milliseconds between two reconciliations of the stale payments
+		private long delayMillis = 300000;
+		/// Minutes a payment stays unpaid before its status is fetched from the payment gateway
+		private int staleAfterMinutes = 15;
+		/// Maximum payments reconciled per run
+		private int batchSize = 200;
+		/// Maximum status requests in flight at once
+		private int maxConcurrency = 64;
+		/// Maximum status requests started per second
+		private double ratePerSecond = 10;
+	}
+
+	@Getter
+	@Setter
+	public static class Transition {
+		/// Attempts of an order status transition losing its optimistic lock
+		private int maxAttempts = 4;
+		/// Longest wait before the first retry, doubled on every retry
+		private long initialBackoffMillis = 25;
+		/// Longest wait before any retry
+		private long maxBackoffMillis = 500;
+		/// Locks shared by the purchases, rounded up to a power of two
+		private int stripes = 64;
+	}
+
+	@Getter
+	@Setter
+	public static class Webhook {
+		/// Milliseconds between two drains of the webhook inbox
+		private long drainDelayMillis = 250;
+		/// Maximum notifications read from the inbox per drain
+		private int batchSize = 200;
+		/// Orders whose notifications are processed at the same time
+		private int workers = 8;
+		/// Attempts before a notification is dead-lettered
+		private int maxAttempts = 8;
+		/// Delay before the first retry, doubled on every further attempt
+		private long initialBackoffSeconds = 5;
+		private long maxBackoffSeconds = 600;
+		/// Days processed and dead notifications are kept
+		private int retentionDays = 14;
+		/// Minutes a received notification is recognized as a duplicate from memory
+		private long dedupWindowMinutes = 60;
+		private long dedupMaxEntries = 10000;
+	}
+
+	@Getter
+	@Setter
+	public static class Gateway {
+		private int connectTimeoutMillis = 2000;
+		/// Milliseconds waited for the response of a single attempt
+		private long responseTimeoutMillis = 5000;
+		/// Connections of the shared outbound pool
+		private int maxConnections = 200;
+		/// Requests waiting for a pooled connection before new ones are rejected
+		private int pendingAcquireMaxCount = 100;
+		private long pendingAcquireTimeoutMillis = 2000;
+		private long maxIdleTimeSeconds = 30;
+		/// Retries of an idempotent call after a connection error or a server error
+		private int maxRetries = 2;
+		/// Delay before the first retry, doubled on every further retry, with jitter
+		private long retryBackoffMillis = 200;
+		private long maxRetryBackoffMillis = 2000;
+		/// Consecutive failed calls opening the circuit
+		private int failureThreshold = 5;
+		/// Milliseconds calls are rejected once the circuit opened
+		private long openMillis = 30000;
+		/// Gateway calls in flight at once, further calls are rejected right away
+		private int maxConcurrentCalls = 200;
+	}
+
+	/**
+	 * Stand-in for the payment gateway and the WhatsApp API, started by the {@code loadtest} profile.
+	 */
+	@Getter
+	@Setter
+	public static class Stub {
+		/// Port the stub listens on, 0 picks a free one
+		private int port = 8089;
+		private GatewayStubServer.LatencyDistribution latencyDistribution = GatewayStubServer.LatencyDistribution.LOG_NORMAL;
+		/// Mean latency of a response, the median for the log-normal distribution
+		private long latencyMillis = 150;
+		/// Shape of the log-normal distribution, higher values lengthen its tail
+		private double latencySigma = 0.5;
+		private long maxLatencyMillis = 5000;
+		/// Fraction of the requests answered with a server error
+		private double errorRate = 0;
+		/// Where payment notifications are posted, none are sent if empty
+		private String webhookUrl;
+		/// Milliseconds after its creation a payment is notified
+		private long webhookDelayMillis = 2000;
+		/// Status a notified payment ends in
+		private String webhookStatus = "settlement";
+		/// Fraction of the notifications delivered twice
+		private double webhookDuplicateRate = 0;
+	}
+
 	private void printAllProperties() {
 		System.out.println("Properties:");
 		System.out.println(" - version: " + version);
@@ -252,6 +498,7 @@ public class ApplicationProperties {
 		System.out.println(" - longitude: " + vendor.longitude);
 		System.out.println(" - paymentFee: " + vendor.paymentFee);
 		System.out.println(" - feePerKm: " + vendor.feePerKm);
+		System.out.println(" - ordersPerDay: " + vendor.ordersPerDay);
 
 		System.out.println("Database:");
 		System.out.println(" - url: " + database.url);
@@ -264,6 +511,7 @@ public class ApplicationProperties {
 		System.out.println(" - jwtRefreshDays: " + security.jwtRefreshDays);
 		System.out.println(" - otpPhoneNumber: " + security.otpPhoneNumber);
 		System.out.println(" - fonnteApiToken: " + security.fonnteApiToken);
+		System.out.println(" - fonnteBaseUrl: " + security.fonnteBaseUrl);
 		System.out.println(" - otpExpireSeconds: " + security.otpExpireSeconds);
 		System.out.println(" - otpLength: " + security.otpLength);
 
@@ -274,5 +522,86 @@ public class ApplicationProperties {
 		System.out.println(" - baseUrlApi: " + midtrans.baseUrlApi);
 		System.out.println(" - notificationUrl: " + midtrans.notificationUrl);
 		System.out.println(" - finishUrl: " + midtrans.finishUrl);
+
+		System.out.println("Recommender:");
+		System.out.println(" - cron: " + recommender.cron);
+		System.out.println(" - timeDecay: " + recommender.timeDecay);
+		System.out.println(" - halfLifeDays: " + recommender.halfLifeDays);
+		System.out.println(" - windowWeeks: " + recommender.windowWeeks);
+		System.out.println("Notification:");
+		System.out.println(" - dispatchDelayMillis: " + notification.dispatchDelayMillis);
+		System.out.println(" - batchSize: " + notification.batchSize);
+		System.out.println(" - ratePerSecond: " + notification.ratePerSecond);
+		System.out.println(" - burst: " + notification.burst);
+		System.out.println(" - maxAttempts: " + notification.maxAttempts);
+		System.out.println(" - digestWindowSeconds: " + notification.digestWindowSeconds);
+
+		System.out.println("Idempotency:");
+		System.out.println(" - ttlMinutes: " + idempotency.ttlMinutes);
+		System.out.println(" - waitSeconds: " + idempotency.waitSeconds);
+		System.out.println(" - maxEntries: " + idempotency.maxEntries);
+
+		System.out.println("Dashboard:");
+		System.out.println(" - checkpointDelayMillis: " + dashboard.checkpointDelayMillis);
+		System.out.println(" - maxRangeDays: " + dashboard.maxRangeDays);
+
+		System.out.println("Export:");
+		System.out.println(" - fetchSize: " + export.fetchSize);
+		System.out.println(" - flushRows: " + export.flushRows);
+
+		System.out.println("Expiry:");
+		System.out.println(" - sweepDelayMillis: " + expiry.sweepDelayMillis);
+		System.out.println(" - batchSize: " + expiry.batchSize);
+		System.out.println(" - maxBatches: " + expiry.maxBatches);
+
+		System.out.println("Reconciler:");
+		System.out.println(" - delayMillis: " + reconciler.delayMillis);
+		System.out.println(" - staleAfterMinutes: " + reconciler.staleAfterMinutes);
+		System.out.println(" - batchSize: " + reconciler.batchSize);
+		System.out.println(" - maxConcurrency: " + reconciler.maxConcurrency);
+		System.out.println(" - ratePerSecond: " + reconciler.ratePerSecond);
+
+		System.out.println("Transition:");
+		System.out.println(" - maxAttempts: " + transition.maxAttempts);
+		System.out.println(" - initialBackoffMillis: " + transition.initialBackoffMillis);
+		System.out.println(" - maxBackoffMillis: " + transition.maxBackoffMillis);
+		System.out.println(" - stripes: " + transition.stripes);
+
+		System.out.println("Webhook:");
+		System.out.println(" - drainDelayMillis: " + webhook.drainDelayMillis);
+		System.out.println(" - batchSize: " + webhook.batchSize);
+		System.out.println(" - workers: " + webhook.workers);
+		System.out.println(" - maxAttempts: " + webhook.maxAttempts);
+		System.out.println(" - initialBackoffSeconds: " + webhook.initialBackoffSeconds);
+		System.out.println(" - maxBackoffSeconds: " + webhook.maxBackoffSeconds);
+		System.out.println(" - retentionDays: " + webhook.retentionDays);
+		System.out.println(" - dedupWindowMinutes: " + webhook.dedupWindowMinutes);
+		System.out.println(" - dedupMaxEntries: " + webhook.dedupMaxEntries);
+
+		System.out.println("Gateway:");
+		System.out.println(" - connectTimeoutMillis: " + gateway.connectTimeoutMillis);
+		System.out.println(" - responseTimeoutMillis: " + gateway.responseTimeoutMillis);
+		System.out.println(" - maxConnections: " + gateway.maxConnections);
+		System.out.println(" - pendingAcquireMaxCount: " + gateway.pendingAcquireMaxCount);
+		System.out.println(" - pendingAcquireTimeoutMillis: " + gateway.pendingAcquireTimeoutMillis);
+		System.out.println(" - maxIdleTimeSeconds: " + gateway.maxIdleTimeSeconds);
+		System.out.println(" - maxRetries: " + gateway.maxRetries);
+		System.out.println(" - retryBackoffMillis: " + gateway.retryBackoffMillis);
+		System.out.println(" - maxRetryBackoffMillis: " + gateway.maxRetryBackoffMillis);
+		System.out.println(" - failureThreshold: " + gateway.failureThreshold);
+		System.out.println(" - openMillis: " + gateway.openMillis);
+		System.out.println(" - maxConcurrentCalls: " + gateway.maxConcurrentCalls);
+
+		System.out.println("Stub:");
+		System.out.println(" - port: " + stub.port);
+		System.out.println(" - latencyDistribution: " + stub.latencyDistribution);
+		System.out.println(" - latencyMillis: " + stub.latencyMillis);
+		System.out.println(" - latencySigma: " + stub.latencySigma);
+		System.out.println(" - maxLatencyMillis: " + stub.maxLatencyMillis);
+		System.out.println(" - errorRate: " + stub.errorRate);
+		System.out.println(" - webhookUrl: " + stub.webhookUrl);
+		System.out.println(" - webhookDelayMillis: " + stub.webhookDelayMillis);
+		System.out.println(" - webhookStatus: " + stub.webhookStatus);
+		System.out.println(" - webhookDuplicateRate: " + stub.webhookDuplicateRate);
 	}
 }
@@ -17,6 +17,12 @@ public class CacheConfig {
 		cacheManager.setCaffeine(Caffeine.newBuilder()
 			.expireAfterWrite(3, TimeUnit.MINUTES)
 			.maximumSize(300));
+
+		// Personalized results change with every cart edit, so they are only kept briefly
+		cacheManager.registerCustomCache("accountRecommendationsCache", Caffeine.newBuilder()
+			.expireAfterWrite(1, TimeUnit.MINUTES)
+			.maximumSize(1000)
+			.build());
 		return cacheManager;
 	}
 }
@@ -0,0 +1,41 @@
+package dev.kons.kuenyawz.configurations;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and timeouts of the outbound HTTP calls. The connector replaces the default one
+ * of every {@code WebClient.Builder}, so the payment gateway and WhatsApp clients share the pool.
+ */
+@Configuration
+public class GatewayClientConfig {
+
+	@Bean(destroyMethod = "dispose")
+	public ConnectionProvider gatewayConnectionProvider(ApplicationProperties properties) {
+		ApplicationProperties.Gateway config = properties.gateway();
+		return ConnectionProvider.builder("gateway")
+			.maxConnections(config.getMaxConnections())
+			.pendingAcquireMaxCount(config.getPendingAcquireMaxCount())
+			.pendingAcquireTimeout(Duration.ofMillis(config.getPendingAcquireTimeoutMillis()))
+			.maxIdleTime(Duration.ofSeconds(config.getMaxIdleTimeSeconds()))
+			.metrics(true)
+			.build();
+	}
+
+	@Bean
+	public ReactorClientHttpConnector gatewayClientHttpConnector(ConnectionProvider gatewayConnectionProvider, ApplicationProperties properties) {
+		ApplicationProperties.Gateway config = properties.gateway();
+		HttpClient httpClient = HttpClient.create(gatewayConnectionProvider)
+			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis())
+			.responseTimeout(Duration.ofMillis(config.getResponseTimeoutMillis()))
+			// Order ids are left out of the metric tags
+			.metrics(true, uri -> uri.replaceAll("/v2/[^/]+/", "/v2/{order_id}/"));
+		return new ReactorClientHttpConnector(httpClient);
+	}
+}
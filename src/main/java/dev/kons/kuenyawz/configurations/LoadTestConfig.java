@@ -0,0 +1,24 @@
+package dev.kons.kuenyawz.configurations;
+
+import dev.kons.kuenyawz.utils.stub.GatewayStubServer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Configuration for load testing. Starts the gateway stub, which the payment gateway and
+ * WhatsApp clients are pointed at by {@code application-loadtest.yaml}, so no real gateway
+ * is called.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+	@Bean(initMethod = "start", destroyMethod = "close")
+	public GatewayStubServer gatewayStubServer(ApplicationProperties properties) {
+		return new GatewayStubServer(
+			properties.stub(),
+			properties.midtrans().getMerchantId(),
+			properties.midtrans().getServerKey());
+	}
+}
@@ -2,6 +2,7 @@ package dev.kons.kuenyawz.configurations.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
@@ -64,6 +65,9 @@ public class SecurityConfig {
 			.cors(cors -> cors.configurationSource(corsConfigurationSource()))
 			.csrf(csrf -> csrf.ignoringRequestMatchers("/h2-console/**", "/api/**"))
 			.authorizeHttpRequests(auth -> auth
+					// Streamed responses finish on an async dispatch of an already authorized request
+					.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
 					// Docs/Swagger access
 					.requestMatchers(
 						"/api/docs/**",
@@ -81,6 +85,9 @@ public class SecurityConfig {
 					// Allow preflight requests
 					.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
 
+					// Personalized recommendations, matched before the public recommender endpoints
+					.requestMatchers(HttpMethod.GET, "/api/recommender/me").hasAnyRole("ADMIN", "USER")
+
 					// Public endpoints
 					.requestMatchers(HttpMethod.GET,
 						"/static/**",
@@ -136,6 +143,9 @@ public class SecurityConfig {
 					.requestMatchers(HttpMethod.POST, "/api/orders/{purchaseId:\\d+}/status/next").hasAnyRole("ADMIN")
 					.requestMatchers(HttpMethod.GET, "/api/orders/{purchaseId:\\d+}/transaction").hasAnyRole("ADMIN", "USER")
 
+					// Dashboard and export endpoints
+					.requestMatchers("/api/dashboard/**", "/api/exports/**").hasRole("ADMIN")
+
 					// Transaction endpoints
 					.requestMatchers(HttpMethod.GET, "/api/transactions").hasAnyRole("ADMIN", "USER")
 					.requestMatchers(HttpMethod.GET, "/api/transactions/{transactionId:\\d+}").hasAnyRole("ADMIN", "USER")
@@ -202,7 +212,7 @@ public class SecurityConfig {
 			"http://localhost:62080",
 			"http://localhost:62081" // H2/Swagger UI
 		));
-		configuration.setAllowedHeaders(List.of("Content-Type", "Authorization", "X-Requested-With", "Ngrok-Skip-Browser-Warning"));
+		configuration.setAllowedHeaders(List.of("Content-Type", "Authorization", "X-Requested-With", "Ngrok-Skip-Browser-Warning", "Idempotency-Key"));
 		configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
 		configuration.setAllowCredentials(true);
 
@@ -0,0 +1,96 @@
+package dev.kons.kuenyawz.controllers;
+
+import dev.kons.kuenyawz.dtos.dashboard.OrderDashboardDto;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanDto;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.services.entity.PurchaseService;
+import dev.kons.kuenyawz.services.logic.OrderRollupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+@Tag(name = "Dashboard", description = "Admin dashboard endpoints")
+@RequestMapping("/dashboard")
+@RestController
+@RequiredArgsConstructor
+public class DashboardController {
+
+	private final OrderRollupService orderRollupService;
+	private final PurchaseService purchaseService;
+
+	/// Days shown when no range is requested
+	private static final int DEFAULT_RANGE_DAYS = 30;
+	/// Upcoming event dates planned when no range is requested
+	private static final int DEFAULT_PLAN_DAYS = 14;
+
+	@Operation(summary = "Get orders, revenue and average order value per day, status, payment type and category")
+	@ApiResponses({
+		@ApiResponse(responseCode = "200", description = "Successfully retrieved the order dashboard"),
+		@ApiResponse(responseCode = "400", description = "Invalid status"),
+		@ApiResponse(responseCode = "403", description = "Invalid range")
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"ADMIN"})
+	@GetMapping("/orders")
+	public ResponseEntity<Object> getOrderDashboard(
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+		@RequestParam(required = false) @Schema(description = "counted statuses, separated by commas") String statuses
+	) {
+		to = to != null ? to : LocalDate.now();
+		from = from != null ? from : to.minusDays(DEFAULT_RANGE_DAYS - 1);
+		OrderDashboardDto dashboard = orderRollupService.getDashboard(from, to, parseStatuses(statuses));
+		return ResponseEntity.status(HttpStatus.OK).body(dashboard);
+	}
+
+	@Operation(summary = "Get the quantity of every variant to prepare per event date")
+	@ApiResponses({
+		@ApiResponse(responseCode = "200", description = "Successfully retrieved the production plan"),
+		@ApiResponse(responseCode = "400", description = "Invalid status"),
+		@ApiResponse(responseCode = "403", description = "Invalid range")
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"ADMIN"})
+	@GetMapping("/production-plan")
+	public ResponseEntity<Object> getProductionPlan(
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+		@RequestParam(required = false) @Schema(description = "planned statuses, separated by commas") String statuses
+	) {
+		from = from != null ? from : LocalDate.now();
+		to = to != null ? to : from.plusDays(DEFAULT_PLAN_DAYS - 1);
+		ProductionPlanDto plan = purchaseService.getProductionPlan(from, to, parseStatuses(statuses));
+		return ResponseEntity.status(HttpStatus.OK).body(plan);
+	}
+
+	@Operation(summary = "Rebuild the order dashboard from every purchase")
+	@ApiResponses({
+		@ApiResponse(responseCode = "204", description = "Successfully rebuilt the order dashboard")
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"ADMIN"})
+	@PostMapping("/orders/rebuild")
+	public ResponseEntity<Object> rebuildOrderDashboard() {
+		orderRollupService.rebuild();
+		return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+	}
+
+	private static List<Purchase.PurchaseStatus> parseStatuses(String statuses) {
+		if (statuses == null || statuses.isBlank()) {
+			return List.of();
+		}
+		return Arrays.stream(statuses.split(","))
+			.map(String::trim)
+			.map(Purchase.PurchaseStatus::fromString)
+			.toList();
+	}
+}
@@ -0,0 +1,93 @@
+package dev.kons.kuenyawz.controllers;
+
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.services.logic.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@Tag(name = "Exports", description = "Admin endpoints streaming orders and transactions for accounting")
+@RequestMapping("/exports")
+@RestController
+@RequiredArgsConstructor
+public class ExportController {
+
+	private final ExportService exportService;
+
+	@Operation(summary = "Stream every item of the matching orders as NDJSON or CSV")
+	@ApiResponses({
+		@ApiResponse(responseCode = "200", description = "Export is being streamed"),
+		@ApiResponse(responseCode = "400", description = "Invalid format or status")
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"ADMIN"})
+	@GetMapping("/orders")
+	public ResponseEntity<StreamingResponseBody> exportOrders(
+		@RequestParam(required = false, defaultValue = "csv") @Schema(description = "csv or ndjson") String format,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+		@RequestParam(required = false) @Schema(description = "purchase statuses, separated by commas") String statuses
+	) {
+		final ExportService.Format exportFormat = ExportService.Format.fromString(format);
+		final List<Purchase.PurchaseStatus> purchaseStatuses = parse(statuses, Purchase.PurchaseStatus::fromString);
+		return stream("orders", exportFormat,
+			out -> exportService.exportOrders(from, to, purchaseStatuses, exportFormat, out));
+	}
+
+	@Operation(summary = "Stream every matching transaction as NDJSON or CSV")
+	@ApiResponses({
+		@ApiResponse(responseCode = "200", description = "Export is being streamed"),
+		@ApiResponse(responseCode = "400", description = "Invalid format or status")
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"ADMIN"})
+	@GetMapping("/transactions")
+	public ResponseEntity<StreamingResponseBody> exportTransactions(
+		@RequestParam(required = false, defaultValue = "csv") @Schema(description = "csv or ndjson") String format,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+		@RequestParam(required = false) @Schema(description = "transaction statuses, separated by commas") String statuses
+	) {
+		final ExportService.Format exportFormat = ExportService.Format.fromString(format);
+		final List<Transaction.TransactionStatus> transactionStatuses = parse(statuses, Transaction.TransactionStatus::fromString);
+		return stream("transactions", exportFormat,
+			out -> exportService.exportTransactions(from, to, transactionStatuses, exportFormat, out));
+	}
+
+	/// The body is written on an async thread once the headers are sent
+	private static ResponseEntity<StreamingResponseBody> stream(String name, ExportService.Format format, StreamingResponseBody body) {
+		String filename = name + "-" + LocalDate.now() + "." + format.getExtension();
+		return ResponseEntity.ok()
+			.contentType(MediaType.parseMediaType(format.getContentType()))
+			.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+			.body(body);
+	}
+
+	private static <T> List<T> parse(String values, Function<String, T> parser) {
+		if (values == null || values.isBlank()) {
+			return List.of();
+		}
+		return Arrays.stream(values.split(","))
+			.map(String::trim)
+			.map(parser)
+			.toList();
+	}
+}
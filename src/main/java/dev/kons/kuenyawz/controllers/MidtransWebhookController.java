@@ -27,12 +27,13 @@ public class MidtransWebhookController {
 		description = "Used by midtrans to notify the server of payment state changes")
 	@ApiResponses({
 		@ApiResponse(responseCode = "200", description = "Notification has been received"),
+		@ApiResponse(responseCode = "401", description = "Invalid signature key"),
 	})
 	@PostMapping("/notify")
 	public ResponseEntity<?> midtransNotifier(
 		@RequestBody MidtransNotification notification
 	) {
-		midtransWebhookService.processNotification(notification);
+		midtransWebhookService.receiveNotification(notification);
 		return ResponseEntity.ok().build();
 	}
 
@@ -6,6 +6,7 @@ import dev.kons.kuenyawz.dtos.purchase.TransactionDto;
 import dev.kons.kuenyawz.entities.Account;
 import dev.kons.kuenyawz.services.entity.PurchaseService;
 import dev.kons.kuenyawz.services.logic.AuthService;
+import dev.kons.kuenyawz.services.logic.IdempotencyService;
 import dev.kons.kuenyawz.services.logic.OrderingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -21,6 +22,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Map;
 
@@ -33,6 +35,7 @@ public class OrderingController {
 
 	private final OrderingService orderingService;
 	private final PurchaseService purchaseService;
+	private final IdempotencyService idempotencyService;
 
 	@Operation(summary = "Get purchases/orders")
 	@ApiResponses({
@@ -48,7 +51,9 @@ public class OrderingController {
 		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
 		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
 		@RequestParam(required = false) Long accountId,
-		@RequestParam(required = false) String orderBy,
+		@RequestParam(required = false) @Schema(description = "minimum grand total") BigDecimal minTotal,
+		@RequestParam(required = false) @Schema(description = "maximum grand total") BigDecimal maxTotal,
+		@RequestParam(required = false) @Schema(description = "sort field, e.g. createdAt or grandTotal") String orderBy,
 		@RequestParam(required = false) Integer page,
 		@RequestParam(required = false) Integer pageSize
 	) {
@@ -59,6 +64,8 @@ public class OrderingController {
 			from,
 			to,
 			accountId,
+			minTotal,
+			maxTotal,
 			orderBy,
 			page,
 			pageSize
@@ -95,12 +102,14 @@ public class OrderingController {
 	@SecurityRequirement(name = "cookieAuth")
 	@PostMapping
 	public ResponseEntity<?> processOrder(
-		@Valid @RequestBody PurchasePostDto purchasePostDto
+		@Valid @RequestBody PurchasePostDto purchasePostDto,
+		@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
 	) {
 		if (!AuthService.isAuthenticatedUser()) {
 			return ResponseEntity.badRequest().body("Must be logged in to process order");
 		}
-		PurchaseDto purchaseDto = orderingService.processOrder(purchasePostDto);
+		PurchaseDto purchaseDto = idempotencyService.execute(AuthService.getAuthenticatedAccount().getAccountId(),
+			"order", idempotencyKey, purchasePostDto, PurchaseDto.class, () -> orderingService.processOrder(purchasePostDto));
 		return ResponseEntity.ok(purchaseDto);
 	}
 
@@ -112,9 +121,11 @@ public class OrderingController {
 	@SecurityRequirement(name = "cookieAuth")
 	@PostMapping("/{purchaseId}/cancel")
 	public ResponseEntity<?> cancelOrder(
-		@PathVariable Long purchaseId
+		@PathVariable Long purchaseId,
+		@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
 	) {
-		PurchaseDto purchaseDto = orderingService.cancelOrder(purchaseId);
+		PurchaseDto purchaseDto = idempotencyService.execute(AuthService.getAuthenticatedAccount().getAccountId(),
+			"cancel:" + purchaseId, idempotencyKey, null, PurchaseDto.class, () -> orderingService.cancelOrder(purchaseId));
 		return ResponseEntity.ok(purchaseDto);
 	}
 
@@ -142,9 +153,11 @@ public class OrderingController {
 	@SecurityRequirement(name = "cookieAuth")
 	@PostMapping("/{purchaseId}/refund")
 	public ResponseEntity<?> refundOrder(
-		@PathVariable Long purchaseId
+		@PathVariable Long purchaseId,
+		@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
 	) {
-		PurchaseDto purchaseDto = orderingService.refundOrder(purchaseId);
+		PurchaseDto purchaseDto = idempotencyService.execute(AuthService.getAuthenticatedAccount().getAccountId(),
+			"refund:" + purchaseId, idempotencyKey, null, PurchaseDto.class, () -> orderingService.refundOrder(purchaseId));
 		return ResponseEntity.ok(purchaseDto);
 	}
 
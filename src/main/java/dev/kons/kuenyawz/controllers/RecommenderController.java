@@ -2,6 +2,7 @@ package dev.kons.kuenyawz.controllers;
 
 import dev.kons.kuenyawz.dtos.product.ListOfProductDto;
 import dev.kons.kuenyawz.dtos.product.ProductDto;
+import dev.kons.kuenyawz.entities.Account;
 import dev.kons.kuenyawz.services.logic.AuthService;
 import dev.kons.kuenyawz.services.logic.RecommenderService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -24,6 +25,24 @@ public class RecommenderController {
 
 	private final RecommenderService recommenderService;
 
+	@Operation(summary = "Get recommended products of the current account by its cart and order history")
+	@ApiResponses({
+		@ApiResponse(responseCode = "200", description = "Successfully retrieved recommended products"),
+		@ApiResponse(responseCode = "401", description = "Not authenticated"),
+	})
+	@SecurityRequirement(name = "cookieAuth", scopes = {"USER", "ADMIN"})
+	@GetMapping("/me")
+	public ResponseEntity<Object> getRecommendsOfAccount(
+		@RequestParam(required = false) Integer limit
+	) {
+		limit = (limit == null || limit < 1) ? RecommenderService.MAX_LIMIT : Math.min(limit, RecommenderService.MAX_LIMIT);
+		Account account = AuthService.getAuthenticatedAccount();
+		List<ProductDto> productDtos = recommenderService.getRecommendsOfAccount(account.getAccountId()).stream()
+			.limit(limit)
+			.toList();
+		return ResponseEntity.status(HttpStatus.OK).body(new ListOfProductDto(productDtos));
+	}
+
 	@Operation(summary = "Get recommended products of a product by transaction history")
 	@ApiResponses({
 		@ApiResponse(responseCode = "200", description = "Successfully retrieved recommended products"),
@@ -34,9 +53,10 @@ public class RecommenderController {
 	@GetMapping("/{productId}")
 	public ResponseEntity<Object> getRecommendsOfProduct(
 		@PathVariable Long productId,
-		@RequestParam(required = false) Boolean addRandom
+		@RequestParam(required = false) Boolean addRandom,
+		@RequestParam(required = false) Integer limit
 	) {
-		List<ProductDto> productDtos = recommenderService.getRecommendsOfProduct(productId, addRandom);
+		List<ProductDto> productDtos = recommenderService.getRecommendsOfProduct(productId, addRandom, limit);
 		return ResponseEntity.status(HttpStatus.OK).body(new ListOfProductDto(productDtos));
 	}
 
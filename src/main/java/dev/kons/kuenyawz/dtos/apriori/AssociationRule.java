@@ -0,0 +1,13 @@
+package dev.kons.kuenyawz.dtos.apriori;
+
+/**
+ * Association rule mined from the purchase baskets.
+ *
+ * @param antecedent {@code long} product id of the item already chosen
+ * @param consequent {@code long} product id of the recommended item
+ * @param support    fraction of baskets containing both items
+ * @param confidence fraction of baskets containing the antecedent that also contain the consequent
+ * @param lift       confidence divided by the support of the consequent alone
+ */
+public record AssociationRule(long antecedent, long consequent, double support, double confidence, double lift) {
+}
@@ -0,0 +1,80 @@
+package dev.kons.kuenyawz.dtos.apriori;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weighted item and pair counts of a set of baskets, the only input the pairwise rule mining needs.
+ * Counts of different periods can be merged with a weight, which lets old periods be expired or
+ * decayed without reading their baskets again. It is not thread safe.
+ */
+public class BasketCounts {
+
+	private double baskets;
+	private final Map<Long, Double> items = new HashMap<>();
+	/// Pairs are keyed by their lower product id first
+	private final Map<Long, Map<Long, Double>> pairs = new HashMap<>();
+
+	/**
+	 * Counts one basket with the given weight.
+	 *
+	 * @param basket product ids bought together
+	 * @param weight weight of the basket, 1 for a plain count
+	 */
+	public void add(Iterable<Long> basket, double weight) {
+		long[] products = toSortedArray(basket);
+		baskets += weight;
+		for (int i = 0; i < products.length; i++) {
+			items.merge(products[i], weight, Double::sum);
+			Map<Long, Double> partners = pairs.computeIfAbsent(products[i], k -> new HashMap<>());
+			for (int j = i + 1; j < products.length; j++) {
+				partners.merge(products[j], weight, Double::sum);
+			}
+		}
+	}
+
+	/**
+	 * Adds the counts of another period scaled by the given weight.
+	 */
+	public void merge(BasketCounts other, double weight) {
+		baskets += other.baskets * weight;
+		other.items.forEach((product, count) -> items.merge(product, count * weight, Double::sum));
+		other.pairs.forEach((first, otherPartners) -> {
+			Map<Long, Double> partners = pairs.computeIfAbsent(first, k -> new HashMap<>());
+			otherPartners.forEach((second, count) -> partners.merge(second, count * weight, Double::sum));
+		});
+	}
+
+	/// Total weight of the counted baskets
+	public double baskets() {
+		return baskets;
+	}
+
+	public double itemCount(long productId) {
+		return items.getOrDefault(productId, 0.0);
+	}
+
+	/// Counts of every pair, keyed by the lower product id then the higher one
+	public Map<Long, Map<Long, Double>> pairs() {
+		return pairs;
+	}
+
+	public boolean isEmpty() {
+		return baskets == 0;
+	}
+
+	private static long[] toSortedArray(Iterable<Long> basket) {
+		long[] products = new long[8];
+		int size = 0;
+		for (Long product : basket) {
+			if (size == products.length) {
+				products = Arrays.copyOf(products, size << 1);
+			}
+			products[size++] = product;
+		}
+		products = Arrays.copyOf(products, size);
+		Arrays.sort(products);
+		return products;
+	}
+}
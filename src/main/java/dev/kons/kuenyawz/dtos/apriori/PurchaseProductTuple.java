@@ -0,0 +1,13 @@
+package dev.kons.kuenyawz.dtos.apriori;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single (purchase, product) pair used as mining input, read without hydrating entities.
+ *
+ * @param purchaseId {@link Long} the purchase (basket) id
+ * @param productId  {@link Long} the product bought in the purchase
+ * @param createdAt  {@link LocalDateTime} when the purchase was made
+ */
+public record PurchaseProductTuple(Long purchaseId, Long productId, LocalDateTime createdAt) {
+}
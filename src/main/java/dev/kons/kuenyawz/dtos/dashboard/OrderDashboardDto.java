@@ -0,0 +1,63 @@
+package dev.kons.kuenyawz.dtos.dashboard;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Schema(name = "OrderDashboard", description = "Orders, revenue and average order value of a date range")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderDashboardDto {
+
+	@Schema(description = "First day of the range, inclusive", example = "2024-04-01")
+	private LocalDate from;
+
+	@Schema(description = "Last day of the range, inclusive", example = "2024-04-30")
+	private LocalDate to;
+
+	@Schema(description = "Statuses counted in every breakdown except the one by status", example = "[\"CONFIRMED\", \"DELIVERED\"]")
+	private List<String> statuses;
+
+	@Schema(description = "Totals of the whole range")
+	private Bucket total;
+
+	@Schema(description = "Totals of every day of the range, including the days without orders")
+	private List<Bucket> byDay;
+
+	@Schema(description = "Totals per status, regardless of the requested statuses")
+	private List<Bucket> byStatus;
+
+	@Schema(description = "Totals per payment type")
+	private List<Bucket> byPaymentType;
+
+	@Schema(description = "Totals per product category, an order counts once in each of its categories with the subtotal of those items")
+	private List<Bucket> byCategory;
+
+	@Schema(name = "DashboardBucket", description = "Orders and revenue of one group")
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	@Builder
+	public static class Bucket {
+
+		@Schema(description = "Group key, a date, status, payment type or category", example = "2024-04-21")
+		private String key;
+
+		@Schema(description = "Number of orders", example = "12")
+		private Long orders;
+
+		@Schema(description = "Revenue of the orders", example = "3150000.00")
+		private BigDecimal revenue;
+
+		@Schema(description = "Revenue divided by the number of orders", example = "262500.00")
+		private BigDecimal averageOrderValue;
+	}
+}
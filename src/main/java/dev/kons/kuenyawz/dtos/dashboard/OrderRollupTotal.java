@@ -0,0 +1,33 @@
+package dev.kons.kuenyawz.dtos.dashboard;
+
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.entities.Purchase;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Orders and revenue of one rollup group, computed by the database when rebuilding the rollups.
+ *
+ * @param day         {@link LocalDate} the day the orders were made
+ * @param status      {@link Purchase.PurchaseStatus} current status of the orders
+ * @param paymentType {@link PaymentType} payment type of the orders
+ * @param category    {@link Product.Category} category of the items, null for whole orders
+ * @param orders      {@link Long} number of orders
+ * @param revenue     {@link BigDecimal} grand total of the orders, or subtotal of the category items
+ */
+public record OrderRollupTotal(
+	LocalDate day,
+	Purchase.PurchaseStatus status,
+	PaymentType paymentType,
+	Product.Category category,
+	Long orders,
+	BigDecimal revenue
+) {
+
+	/// Group of whole orders
+	public OrderRollupTotal(LocalDate day, Purchase.PurchaseStatus status, PaymentType paymentType, Long orders, BigDecimal revenue) {
+		this(day, status, paymentType, null, orders, revenue);
+	}
+}
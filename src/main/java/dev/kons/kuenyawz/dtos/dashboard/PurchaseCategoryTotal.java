@@ -0,0 +1,15 @@
+package dev.kons.kuenyawz.dtos.dashboard;
+
+import dev.kons.kuenyawz.entities.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * Subtotal of the items of one category in a purchase.
+ *
+ * @param purchaseId {@link Long} the purchase id
+ * @param category   {@link Product.Category} category of the products bought
+ * @param subtotal   {@link BigDecimal} sum of the bought price of those items
+ */
+public record PurchaseCategoryTotal(Long purchaseId, Product.Category category, BigDecimal subtotal) {
+}
@@ -0,0 +1,23 @@
+package dev.kons.kuenyawz.dtos.fonnte;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply of the Fonnte send endpoint. Fonnte answers rejected messages with HTTP 200 as well, only
+ * the {@link #status} tells them apart and the {@link #reason} explains the rejection.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SendMessageResponse {
+
+	private Boolean status;
+	private String reason;
+	private String detail;
+}
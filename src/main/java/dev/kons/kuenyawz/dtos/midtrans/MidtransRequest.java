@@ -101,8 +101,7 @@ public class MidtransRequest {
 		public static TransactionDetails of(Purchase purchase, ApplicationProperties properties) {
 			return TransactionDetails.builder()
 				.orderId(purchase.getPurchaseId().toString())
-				.grossAmount(purchase.getTotalPrice()
-					.add(purchase.getDeliveryFee())
+				.grossAmount(purchase.getGrandTotal()
 					.add(BigDecimal.valueOf(properties.vendor().getPaymentFee())))
 				.build();
 		}
@@ -110,8 +109,7 @@ public class MidtransRequest {
 		public static TransactionDetails of(Purchase purchase, Long transactionId, ApplicationProperties properties) {
 			return TransactionDetails.builder()
 				.orderId(transactionId.toString())
-				.grossAmount(purchase.getTotalPrice()
-					.add(purchase.getDeliveryFee())
+				.grossAmount(purchase.getGrandTotal()
 					.add(BigDecimal.valueOf(properties.vendor().getPaymentFee())))
 				.build();
 		}
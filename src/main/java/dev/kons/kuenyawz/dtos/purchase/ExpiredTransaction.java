@@ -0,0 +1,10 @@
+package dev.kons.kuenyawz.dtos.purchase;
+
+/**
+ * A transaction past its expiry time that was never paid, read without hydrating entities.
+ *
+ * @param transactionId {@link Long} the transaction id
+ * @param purchaseId    {@link Long} the purchase paid by the transaction
+ */
+public record ExpiredTransaction(Long transactionId, Long purchaseId) {
+}
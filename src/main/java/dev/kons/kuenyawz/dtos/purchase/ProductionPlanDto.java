@@ -0,0 +1,44 @@
+package dev.kons.kuenyawz.dtos.purchase;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Schema(name = "ProductionPlan", description = "Quantity of every variant to prepare per event date")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductionPlanDto {
+
+	@Schema(description = "First event date of the range, inclusive", example = "2024-04-01")
+	private LocalDate from;
+
+	@Schema(description = "Last event date of the range, inclusive", example = "2024-04-30")
+	private LocalDate to;
+
+	@Schema(description = "Statuses of the planned purchases", example = "[\"CONFIRMED\", \"PROCESSING\"]")
+	private List<String> statuses;
+
+	@Schema(description = "Event dates having something to prepare, in order")
+	private List<Day> days;
+
+	@Schema(name = "ProductionPlanDay", description = "Everything to prepare for one event date")
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	@Builder
+	public static class Day {
+
+		@Schema(description = "Event date", example = "2024-04-21")
+		private LocalDate eventDate;
+
+		@Schema(description = "Variants to prepare, ordered by product name and variant type")
+		private List<ProductionPlanLine> items;
+	}
+}
@@ -0,0 +1,25 @@
+package dev.kons.kuenyawz.dtos.purchase;
+
+import java.time.LocalDate;
+
+/**
+ * Quantity of one variant needed on one event date, aggregated by the database.
+ *
+ * @param eventDate   {@link LocalDate} the event date of the purchases
+ * @param productId   {@link Long} the product id
+ * @param productName {@link String} name of the product
+ * @param variantId   {@link Long} the variant id
+ * @param variantType {@link String} type of the variant
+ * @param quantity    {@link Long} total quantity bought
+ * @param orders      {@link Long} number of purchases having the variant
+ */
+public record ProductionPlanLine(
+	LocalDate eventDate,
+	Long productId,
+	String productName,
+	Long variantId,
+	String variantType,
+	Long quantity,
+	Long orders
+) {
+}
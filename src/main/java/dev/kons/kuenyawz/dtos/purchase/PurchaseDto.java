@@ -42,6 +42,12 @@ public class PurchaseDto {
 	@Schema(description = "Delivery fee of the purchase", example = "10000.00")
 	private BigDecimal deliveryFee;
 
+	@Schema(description = "Sum of the item prices", example = "150000.00")
+	private BigDecimal subtotal;
+
+	@Schema(description = "Subtotal with the delivery fee", example = "160000.00")
+	private BigDecimal grandTotal;
+
 	@Schema(description = "Purchase status", example = "PENDING")
 	private Purchase.PurchaseStatus status;
 
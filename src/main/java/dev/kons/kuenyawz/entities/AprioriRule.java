@@ -0,0 +1,47 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * An association rule of "customers buying {@link #antecedent} also buy {@link #consequent}".
+ * Rules are written per generation. A generation is only served once it has been fully written,
+ * older generations are deleted afterward.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(indexes = {
+	@Index(name = "idx_apriori_rule_antecedent", columnList = "antecedent, generation"),
+})
+public class AprioriRule {
+
+	@Id
+	@SnowFlakeIdValue(name = "apriori_rule_id")
+	@Column(name = "apriori_rule_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long aprioriRuleId;
+
+	@Column(nullable = false)
+	private Long generation;
+
+	/// Product id of the item already chosen
+	@Column(nullable = false)
+	private Long antecedent;
+
+	/// Product id of the recommended item
+	@Column(nullable = false)
+	private Long consequent;
+
+	@Column(nullable = false)
+	private Double support;
+
+	@Column(nullable = false)
+	private Double confidence;
+
+	@Column(nullable = false)
+	private Double lift;
+}
@@ -0,0 +1,48 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDate;
+
+/**
+ * One slot of the daily order capacity held by a purchase. A purchase holds a slot on each of its
+ * preparation days and on its event date, and the unique date and slot pair keeps two purchases
+ * from holding the same slot even across instances.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Table(
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uk_date_reservation_slot", columnNames = {"date", "slot"}),
+	},
+	indexes = {
+		@Index(name = "idx_date_reservation_purchase", columnList = "purchase_id"),
+	}
+)
+public class DateReservation extends Auditables {
+
+	@Id
+	@SnowFlakeIdValue(name = "reservation_id")
+	@Column(name = "reservation_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long reservationId;
+
+	@Column(nullable = false)
+	private LocalDate date;
+
+	@Column(nullable = false)
+	private Integer slot;
+
+	@Column(nullable = false)
+	@Enumerated(EnumType.STRING)
+	private ClosedDate.ClosureType closureType;
+
+	@Column(name = "purchase_id", nullable = false)
+	private Long purchaseId;
+}
@@ -0,0 +1,44 @@
+package dev.kons.kuenyawz.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An idempotency key sent with a request, along with the response of its first execution. The key
+ * is unique across every instance, so of several instances receiving the same request only one
+ * runs it and the others replay its response.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(indexes = {
+	@Index(name = "idx_idempotency_key_expires", columnList = "expires_at"),
+})
+public class IdempotencyKey {
+
+	/// Account, scope and key sent by the client
+	@Id
+	@Column(name = "idempotency_key", length = 512, updatable = false, nullable = false)
+	private String idempotencyKey;
+
+	/// Hash of the request body, a key reused with another body is rejected
+	@Column(length = 64)
+	private String fingerprint;
+
+	/// Response of the first execution as JSON, null while it is running
+	@Column(columnDefinition = "text")
+	private String response;
+
+	/// Execution running the request, null once its response is stored
+	@Column(name = "claim_token", length = 36)
+	private String claimToken;
+
+	/// End of the execution lease while running, end of the replay once the response is stored
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+}
@@ -0,0 +1,30 @@
+package dev.kons.kuenyawz.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease on a scheduled job, so that of several instances running the same schedule only one runs
+ * the job at a time. The lease expires by itself when its holder dies before releasing it.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class JobLock {
+
+	@Id
+	@Column(name = "job_name", length = 64, updatable = false, nullable = false)
+	private String jobName;
+
+	/// Instance holding the lease, null once released
+	@Column(name = "locked_by", length = 36)
+	private String lockedBy;
+
+	@Column(name = "locked_until", nullable = false)
+	private LocalDateTime lockedUntil;
+}
@@ -0,0 +1,90 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * A WhatsApp message waiting to be sent. It is written in the same transaction as the change it
+ * notifies about and sent afterward by the dispatcher, so requests never wait on the WhatsApp API.
+ * Notifications with a {@link #digestGroup} are held for a window and merged into one message.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Table(indexes = {
+	@Index(name = "idx_notification_outbox_status", columnList = "status, next_attempt_at"),
+	@Index(name = "idx_notification_outbox_digest", columnList = "digest_group, status"),
+})
+public class NotificationOutbox extends Auditables {
+
+	@Id
+	@SnowFlakeIdValue(name = "notification_id")
+	@Column(name = "notification_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long notificationId;
+
+	@Column(nullable = false)
+	private String target;
+
+	@Column(nullable = false, length = 2048)
+	private String message;
+
+	@Column
+	private String countryCode;
+
+	@Column(nullable = false)
+	@Enumerated(EnumType.STRING)
+	private Status status;
+
+	@Column(nullable = false)
+	private Integer attempts;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	@Column
+	private LocalDateTime sentAt;
+
+	@Column(length = 1024)
+	private String lastError;
+
+	/// Message holds a secret such as a one-time password, it is blanked once no longer pending
+	@Column(nullable = false)
+	@ColumnDefault("false")
+	@Builder.Default
+	private Boolean sensitive = false;
+
+	/// Identifies the event notified about, a second notification of the same event is not queued
+	@Column(name = "dedup_key", unique = true)
+	private String dedupKey;
+
+	/// Pending notifications of the same group and target are sent together as one digest
+	@Column(name = "digest_group")
+	private String digestGroup;
+
+	/// Part of this notification listed in the digest
+	@Column
+	private String digestItem;
+
+	/// Drain that is sending this notification, other nodes skip it until the claim expires
+	@Column(name = "claim_token", length = 36)
+	private String claimToken;
+
+	@Column(name = "claimed_until")
+	private LocalDateTime claimedUntil;
+
+	public enum Status {
+		/// Waiting for its first or next attempt
+		PENDING,
+		SENT,
+		/// Gave up after the maximum attempts
+		DEAD
+	}
+}
@@ -0,0 +1,66 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Number of orders and their revenue of one day, status and payment type, kept up to date from
+ * every status and total change of a purchase. The row without a category counts whole orders with their
+ * grand total, the rows with a category count the orders having items of that category with the
+ * subtotal of those items. The rows are upserted on their day and {@link #rollupKey}, so two
+ * instances adding to the same new row add up instead of inserting it twice. The constraint
+ * also serves the reads of a range of days.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uk_order_rollup_day_key", columnNames = {"rollup_day", "rollup_key"}),
+	}
+)
+public class OrderRollup {
+
+	@Id
+	@SnowFlakeIdValue(name = "rollup_id")
+	@Column(name = "rollup_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long rollupId;
+
+	@Column(name = "rollup_day", nullable = false)
+	private LocalDate day;
+
+	/// Status, payment type and category in one column, a unique constraint over the nullable columns would not match null
+	@Column(name = "rollup_key", nullable = false, length = 64)
+	private String rollupKey;
+
+	@Column(nullable = false)
+	@Enumerated(EnumType.STRING)
+	private Purchase.PurchaseStatus status;
+
+	@Column
+	@Enumerated(EnumType.STRING)
+	private PaymentType paymentType;
+
+	/// Null on the row of whole orders
+	@Column
+	@Enumerated(EnumType.STRING)
+	private Product.Category category;
+
+	@Column(nullable = false)
+	private Long orders;
+
+	@Column(nullable = false)
+	private BigDecimal revenue;
+
+	public static String keyOf(Purchase.PurchaseStatus status, PaymentType paymentType, Product.Category category) {
+		return status + "/" + (paymentType != null ? paymentType : "-") + "/" + (category != null ? category : "-");
+	}
+}
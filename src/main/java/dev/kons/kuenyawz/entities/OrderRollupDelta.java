@@ -0,0 +1,56 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.constants.PaymentType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A change of a purchase not yet written to the {@link OrderRollup} rows. It is inserted in the
+ * same transaction as the change, so a change is never lost to a crash between the commit and
+ * the next checkpoint, and deleted by the checkpoint that applies it.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = OrderRollupDelta.TABLE)
+public class OrderRollupDelta {
+
+	/// Inserted with plain JDBC from the entity listener, the names must match the columns below
+	public static final String TABLE = "order_rollup_delta";
+
+	@Id
+	@Column(name = "delta_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long deltaId;
+
+	@Column(name = "purchase_id", nullable = false)
+	private Long purchaseId;
+
+	@Column(name = "rollup_day", nullable = false)
+	private LocalDate day;
+
+	@Column(name = "payment_type")
+	@Enumerated(EnumType.STRING)
+	private PaymentType paymentType;
+
+	/// Null for a new purchase
+	@Column(name = "from_status")
+	@Enumerated(EnumType.STRING)
+	private Purchase.PurchaseStatus fromStatus;
+
+	@Column(name = "from_total")
+	private BigDecimal fromTotal;
+
+	/// Null for a removed purchase
+	@Column(name = "to_status")
+	@Enumerated(EnumType.STRING)
+	private Purchase.PurchaseStatus toStatus;
+
+	@Column(name = "to_total")
+	private BigDecimal toTotal;
+}
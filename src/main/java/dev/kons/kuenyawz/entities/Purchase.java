@@ -8,11 +8,13 @@ import dev.kons.kuenyawz.constants.PaymentType;
 import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.Hibernate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -25,10 +27,26 @@ import java.util.Optional;
 @AllArgsConstructor
 @NoArgsConstructor
 @SuperBuilder
+@EntityListeners(PurchaseStatusListener.class)
+@NamedEntityGraph(
+	name = Purchase.DETAIL_GRAPH,
+	attributeNodes = @NamedAttributeNode(value = "purchaseItems", subgraph = "items"),
+	subgraphs = {
+		@NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode(value = "variant", subgraph = "variant")),
+		@NamedSubgraph(name = "variant", attributeNodes = @NamedAttributeNode("product"))
+	}
+)
 @Table(indexes = {
 	@Index(name = "idx_purchase_status", columnList = "status"),
+	@Index(name = "idx_purchase_grand_total", columnList = "grand_total"),
+	@Index(name = "idx_purchase_event_date_status", columnList = "event_date, status"),
 })
 public class Purchase extends Auditables {
+
+	/// Items with their variant and product, for a single purchase. Transactions are batch fetched
+	/// separately since two lists can not be fetched in one query
+	public static final String DETAIL_GRAPH = "Purchase.detail";
+
 	@Id
 	@SnowFlakeIdValue(name = "purchase_id")
 	@Column(name = "purchase_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
@@ -50,9 +68,19 @@ public class Purchase extends Auditables {
 	@Enumerated(EnumType.STRING)
 	private DeliveryOption deliveryOption;
 
+	/// Only changed through {@link #changeDeliveryFee(BigDecimal)}, which keeps the grand total in sync
 	@Column
+	@Setter(AccessLevel.NONE)
 	private BigDecimal deliveryFee;
 
+	/// Sum of the bought price of every item, kept in sync by {@link #recalculateTotals()}
+	@Column
+	private BigDecimal subtotal;
+
+	/// Subtotal with the delivery fee, without the payment fee of the transactions
+	@Column(name = "grand_total")
+	private BigDecimal grandTotal;
+
 	@Column(nullable = false)
 	@Enumerated(EnumType.STRING)
 	private PurchaseStatus status;
@@ -60,22 +88,75 @@ public class Purchase extends Auditables {
 	@Version
 	private Long version;
 
-	@OneToMany(mappedBy = "purchase", fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+	/// Status as last read from or written to the database, see {@link PurchaseStatusListener}
+	@Transient
+	private PurchaseStatus persistedStatus;
+
+	/// Grand total as last read from or written to the database, see {@link PurchaseStatusListener}
+	@Transient
+	private BigDecimal persistedGrandTotal;
+
+	@OneToMany(mappedBy = "purchase", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
 	private List<PurchaseItem> purchaseItems;
 
-	@OneToMany(mappedBy = "purchase", fetch = FetchType.EAGER)
+	@OneToMany(mappedBy = "purchase", fetch = FetchType.LAZY)
 	private List<Transaction> transactions;
 
+	/**
+	 * Stores the subtotal and grand total from the items and the delivery fee. Called whenever
+	 * one of them changes so the totals can be sorted and summed in SQL.
+	 */
+	public void recalculateTotals() {
+		this.subtotal = purchaseItems == null
+			? BigDecimal.ZERO
+			: purchaseItems.stream()
+			.map(pi -> pi.getBoughtPrice().multiply(BigDecimal.valueOf(pi.getQuantity())))
+			.reduce(BigDecimal.ZERO, BigDecimal::add);
+		this.grandTotal = subtotal.add(deliveryFee != null ? deliveryFee : BigDecimal.ZERO);
+	}
+
+	/**
+	 * Recalculates the totals before they are written, but only from items already loaded. A
+	 * purchase changing its status alone never loads its items in the middle of a flush.
+	 */
+	@PrePersist
+	@PreUpdate
+	void recalculateLoadedTotals() {
+		if (Hibernate.isInitialized(purchaseItems))
+			recalculateTotals();
+	}
+
+	/**
+	 * Changes the delivery fee and the grand total with it.
+	 *
+	 * @param deliveryFee {@link BigDecimal} the new delivery fee
+	 */
+	public void changeDeliveryFee(BigDecimal deliveryFee) {
+		this.deliveryFee = deliveryFee;
+		recalculateTotals();
+	}
+
+	public BigDecimal getSubtotal() {
+		if (subtotal == null)
+			recalculateTotals();
+		return subtotal;
+	}
+
+	public BigDecimal getGrandTotal() {
+		if (grandTotal == null)
+			recalculateTotals();
+		return grandTotal;
+	}
+
+	/// Grand total as stored, without loading the items to compute a missing one
+	BigDecimal storedGrandTotal() {
+		return grandTotal;
+	}
+
 	// Helper methods to see payment status:
 
 	public BigDecimal getTotalPrice() {
-		return purchaseItems.stream()
-			.map(pi -> {
-				BigDecimal price = pi.getBoughtPrice();
-				int quantity = pi.getQuantity();
-				return price.multiply(BigDecimal.valueOf(quantity));
-			})
-			.reduce(BigDecimal.ZERO, BigDecimal::add);
+		return getSubtotal();
 	}
 
 	/**
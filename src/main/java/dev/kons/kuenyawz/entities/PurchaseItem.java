@@ -13,6 +13,9 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Table(indexes = {
+	@Index(name = "idx_purchase_item_purchase", columnList = "purchase_id"),
+})
 public class PurchaseItem {
     @Id
     @SnowFlakeIdValue(name = "purchase_item_id")
@@ -32,7 +35,7 @@ public class PurchaseItem {
 	@Version
 	private Long version;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "variant_id", nullable = false)
     private Variant variant;
 
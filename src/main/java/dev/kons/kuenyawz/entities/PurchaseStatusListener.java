@@ -0,0 +1,56 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.services.logic.OrderRollupService;
+import jakarta.persistence.*;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.math.BigDecimal;
+
+/**
+ * Reports every status and grand total change of a purchase to the {@link OrderRollupService}.
+ * The status and grand total read from the database are remembered on load so that an update only
+ * counts when one of them actually moved. Bulk updates bypass this listener and must report their
+ * changes themselves.
+ */
+public class PurchaseStatusListener {
+
+	/// Resolved on use, the listener is created while the entity manager factory is still being built
+	private final ObjectProvider<OrderRollupService> orderRollupService;
+
+	public PurchaseStatusListener(ObjectProvider<OrderRollupService> orderRollupService) {
+		this.orderRollupService = orderRollupService;
+	}
+
+	@PostLoad
+	public void onLoad(Purchase purchase) {
+		remember(purchase);
+	}
+
+	@PostPersist
+	@PostUpdate
+	public void onWrite(Purchase purchase) {
+		Purchase.PurchaseStatus previous = purchase.getPersistedStatus();
+		BigDecimal previousTotal = purchase.getPersistedGrandTotal();
+		if (previous != purchase.getStatus() || !isSameAmount(previousTotal, purchase.storedGrandTotal())) {
+			orderRollupService.ifAvailable(service -> service.record(purchase, previous, previousTotal, purchase.getStatus()));
+		}
+		remember(purchase);
+	}
+
+	@PostRemove
+	public void onRemove(Purchase purchase) {
+		if (purchase.getPersistedStatus() != null) {
+			orderRollupService.ifAvailable(service -> service.record(
+				purchase, purchase.getPersistedStatus(), purchase.getPersistedGrandTotal(), null));
+		}
+	}
+
+	private static void remember(Purchase purchase) {
+		purchase.setPersistedStatus(purchase.getStatus());
+		purchase.setPersistedGrandTotal(purchase.storedGrandTotal());
+	}
+
+	private static boolean isSameAmount(BigDecimal a, BigDecimal b) {
+		return a == null ? b == null : b != null && a.compareTo(b) == 0;
+	}
+}
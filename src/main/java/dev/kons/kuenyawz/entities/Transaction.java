@@ -25,10 +25,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @SuperBuilder
+@NamedEntityGraph(name = Transaction.WEBHOOK_GRAPH, attributeNodes = @NamedAttributeNode("purchase"))
 @Table(indexes = {
-    @Index(name = "idx_transaction_status", columnList = "status")
+    @Index(name = "idx_transaction_status", columnList = "status"),
+    @Index(name = "idx_transaction_account_status", columnList = "account_id, status"),
+    @Index(name = "idx_transaction_status_expires_at", columnList = "status, expires_at")
 })
 public class Transaction extends Auditables {
+
+	/// Transaction with its purchase, for the payment status updates
+	public static final String WEBHOOK_GRAPH = "Transaction.webhook";
+
 	@Id
 //	@SnowFlakeIdValue(name = "transaction_id")
 	@Column(name = "transaction_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
@@ -67,7 +74,7 @@ public class Transaction extends Auditables {
 	@JoinColumn(name = "account_id", nullable = false)
 	private Account account;
 
-	@ManyToOne(fetch = FetchType.EAGER)
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "purchase_id", nullable = false)
 	private Purchase purchase;
 
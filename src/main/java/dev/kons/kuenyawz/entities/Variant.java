@@ -36,7 +36,7 @@ public class Variant extends Auditables {
 	@Version
 	private Long version;
 
-	@ManyToOne(fetch = FetchType.EAGER)
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "product_id", nullable = false)
 	private Product product;
 
@@ -0,0 +1,76 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdValue;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+/**
+ * A payment notification received from Midtrans and not processed yet. The webhook only checks
+ * the signature and stores the raw notification, the inbox worker applies it afterward in the
+ * order received for each order id. Processed notifications are kept for the retention period, so
+ * their duplicates are still recognized.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Table(indexes = {
+	@Index(name = "idx_webhook_inbox_status", columnList = "status, next_attempt_at"),
+	@Index(name = "idx_webhook_inbox_order", columnList = "order_id, inbox_id"),
+})
+public class WebhookInbox extends Auditables {
+
+	/// Increases with the arrival time, so it also orders the notifications
+	@Id
+	@SnowFlakeIdValue(name = "inbox_id")
+	@Column(name = "inbox_id", columnDefinition = "BIGINT", updatable = false, nullable = false)
+	private Long inboxId;
+
+	/// Order id of the notification, the transaction id for Midtrans
+	@Column(name = "order_id", nullable = false)
+	private String orderId;
+
+	/// Identifies the delivery, a duplicate delivered by Midtrans is not stored again
+	@Column(name = "dedup_key", nullable = false, unique = true, length = 64)
+	private String dedupKey;
+
+	/// Plain text, a large object would be stored apart on Postgres
+	@Column(nullable = false, columnDefinition = "text")
+	private String payload;
+
+	@Column(nullable = false)
+	@Enumerated(EnumType.STRING)
+	private Status status;
+
+	@Column(nullable = false)
+	private Integer attempts;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	@Column
+	private LocalDateTime processedAt;
+
+	@Column(length = 1024)
+	private String lastError;
+
+	/// Drain that is processing this notification, other nodes skip it until the claim expires
+	@Column(name = "claim_token", length = 36)
+	private String claimToken;
+
+	@Column(name = "claimed_until")
+	private LocalDateTime claimedUntil;
+
+	public enum Status {
+		/// Waiting for its first or next attempt
+		PENDING,
+		PROCESSED,
+		/// Rejected, or gave up after the maximum attempts
+		DEAD
+	}
+}
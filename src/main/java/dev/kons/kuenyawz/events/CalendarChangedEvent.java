@@ -0,0 +1,7 @@
+package dev.kons.kuenyawz.events;
+
+/**
+ * Published whenever closed dates are created, changed or deleted outside of an order.
+ */
+public record CalendarChangedEvent() {
+}
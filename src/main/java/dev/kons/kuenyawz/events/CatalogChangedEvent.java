@@ -0,0 +1,9 @@
+package dev.kons.kuenyawz.events;
+
+/**
+ * Published whenever a product or one of its variants is created, changed or deleted.
+ *
+ * @param productId the changed product, or {@code null} when the whole catalog changed
+ */
+public record CatalogChangedEvent(Long productId) {
+}
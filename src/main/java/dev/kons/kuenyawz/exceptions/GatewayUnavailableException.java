@@ -0,0 +1,12 @@
+package dev.kons.kuenyawz.exceptions;
+
+public class GatewayUnavailableException extends RuntimeException {
+
+	public GatewayUnavailableException() {
+		super("Payment gateway is unavailable, please try again later");
+	}
+
+	public GatewayUnavailableException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,14 @@
+package dev.kons.kuenyawz.exceptions;
+
+public class WhatsappMessageException extends RuntimeException {
+
+	public static final String DEFAULT_MESSAGE = "The WhatsApp message was rejected";
+
+	public WhatsappMessageException(String reason) {
+		super(reason != null ? DEFAULT_MESSAGE + ": " + reason : DEFAULT_MESSAGE);
+	}
+
+	public WhatsappMessageException(String reason, Throwable cause) {
+		super(reason != null ? DEFAULT_MESSAGE + ": " + reason : DEFAULT_MESSAGE, cause);
+	}
+}
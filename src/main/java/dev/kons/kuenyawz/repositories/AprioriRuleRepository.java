@@ -0,0 +1,41 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.AprioriRule;
+import dev.kons.kuenyawz.entities.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface AprioriRuleRepository extends JpaRepository<AprioriRule, Long> {
+
+	List<AprioriRule> findAllByGeneration(Long generation);
+
+	@Query("SELECT MAX(r.generation) FROM AprioriRule r")
+	Optional<Long> findLatestGeneration();
+
+	/**
+	 * Finds the best ranked consequents of a product that are still available, ordered by
+	 * confidence then lift. Limit the result with the pageable.
+	 */
+	@Query("SELECT p FROM AprioriRule r JOIN Product p ON p.productId = r.consequent " +
+		"WHERE r.antecedent = :antecedent AND r.generation = :generation " +
+		"AND p.available = true AND p.deleted = false " +
+		"ORDER BY r.confidence DESC, r.lift DESC")
+	List<Product> findTopAvailableConsequents(
+		@Param("antecedent") Long antecedent,
+		@Param("generation") Long generation,
+		Pageable pageable
+	);
+
+	/// Removes the generations older than the given one, leaving it to the instances not yet switched to the latest
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM AprioriRule r WHERE r.generation < :generation")
+	int deleteAllByGenerationLessThan(@Param("generation") Long generation);
+}
@@ -5,6 +5,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -19,4 +21,7 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long>, JpaSp
     int deleteByAccount_AccountId(Long accountId);
 
     int deleteByCartItemIdAndAccount_AccountId(Long cartItemId, Long accountId);
+
+    @Query("SELECT DISTINCT c.variant.product.productId FROM CartItem c WHERE c.account.accountId = :accountId")
+    List<Long> findProductIdsByAccountId(@Param("accountId") Long accountId);
 }
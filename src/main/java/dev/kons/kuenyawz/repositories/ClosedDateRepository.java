@@ -4,8 +4,12 @@ import dev.kons.kuenyawz.entities.ClosedDate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,4 +26,16 @@ public interface ClosedDateRepository extends JpaRepository<ClosedDate, Long> {
 	int deleteAllByDateBetween(LocalDate from, LocalDate to);
 
 	boolean existsByDate(LocalDate date);
+
+	List<ClosedDate> findAllByDateGreaterThanEqual(LocalDate from);
+
+	List<ClosedDate> findAllByDateIn(Collection<LocalDate> dates);
+
+	/// Deletes in one statement instead of loading and removing every closed date
+	@Modifying
+	@Query("DELETE FROM ClosedDate c WHERE c.date IN :dates AND c.closureType IN :closureTypes")
+	int deleteAllByDateInAndClosureTypeIn(
+		@Param("dates") Collection<LocalDate> dates,
+		@Param("closureTypes") Collection<ClosedDate.ClosureType> closureTypes
+	);
 }
@@ -0,0 +1,28 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.DateReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DateReservationRepository extends JpaRepository<DateReservation, Long> {
+
+	List<DateReservation> findAllByDateGreaterThanEqual(LocalDate from);
+
+	List<DateReservation> findAllByDateIn(Collection<LocalDate> dates);
+
+	List<DateReservation> findAllByPurchaseId(Long purchaseId);
+
+	List<DateReservation> findAllByPurchaseIdIn(Collection<Long> purchaseIds);
+
+	@Modifying
+	@Query("DELETE FROM DateReservation r WHERE r.purchaseId IN :purchaseIds")
+	int deleteAllByPurchaseIdIn(@Param("purchaseIds") Collection<Long> purchaseIds);
+
+	boolean existsByDateIn(Collection<LocalDate> dates);
+}
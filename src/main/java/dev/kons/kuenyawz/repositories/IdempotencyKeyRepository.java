@@ -0,0 +1,58 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+	/**
+	 * Takes over a key whose execution lease or replay has expired. The update is atomic, so of
+	 * several instances taking over the same key only one gets it.
+	 *
+	 * @return 1 if the key was taken over, 0 otherwise
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE IdempotencyKey k SET k.fingerprint = :fingerprint, k.response = NULL, " +
+		"k.claimToken = :claimToken, k.expiresAt = :expiresAt " +
+		"WHERE k.idempotencyKey = :idempotencyKey AND k.expiresAt <= :now")
+	int takeOver(
+		@Param("idempotencyKey") String idempotencyKey,
+		@Param("fingerprint") String fingerprint,
+		@Param("claimToken") String claimToken,
+		@Param("expiresAt") LocalDateTime expiresAt,
+		@Param("now") LocalDateTime now
+	);
+
+	/// Stores the response of the execution, only if the key is still held by it
+	@Transactional
+	@Modifying
+	@Query("UPDATE IdempotencyKey k SET k.response = :response, k.claimToken = NULL, k.expiresAt = :expiresAt " +
+		"WHERE k.idempotencyKey = :idempotencyKey AND k.claimToken = :claimToken")
+	int complete(
+		@Param("idempotencyKey") String idempotencyKey,
+		@Param("claimToken") String claimToken,
+		@Param("response") String response,
+		@Param("expiresAt") LocalDateTime expiresAt
+	);
+
+	/// Gives up the key after a failed execution, only if it is still held by it
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM IdempotencyKey k WHERE k.idempotencyKey = :idempotencyKey AND k.claimToken = :claimToken")
+	int release(
+		@Param("idempotencyKey") String idempotencyKey,
+		@Param("claimToken") String claimToken
+	);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :before")
+	int deleteAllByExpiresAtBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,38 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+	/**
+	 * Takes the lease of the job when no other instance holds it. The update is atomic, so of
+	 * several instances starting the job at once only one takes it.
+	 *
+	 * @return 1 if the lease was taken, 0 otherwise
+	 */
+	@Modifying
+	@Query("UPDATE JobLock l SET l.lockedBy = :lockedBy, l.lockedUntil = :lockedUntil " +
+		"WHERE l.jobName = :jobName AND l.lockedUntil <= :now")
+	int acquire(
+		@Param("jobName") String jobName,
+		@Param("lockedBy") String lockedBy,
+		@Param("lockedUntil") LocalDateTime lockedUntil,
+		@Param("now") LocalDateTime now
+	);
+
+	/// Ends the lease early, only if it is still held by the instance
+	@Modifying
+	@Query("UPDATE JobLock l SET l.lockedBy = NULL, l.lockedUntil = :now " +
+		"WHERE l.jobName = :jobName AND l.lockedBy = :lockedBy")
+	int release(
+		@Param("jobName") String jobName,
+		@Param("lockedBy") String lockedBy,
+		@Param("now") LocalDateTime now
+	);
+}
@@ -0,0 +1,70 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.NotificationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+	/// Due pending notifications that no drain holds a claim on
+	@Query("SELECT n FROM NotificationOutbox n WHERE n.status = :status AND n.nextAttemptAt <= :now " +
+		"AND (n.claimedUntil IS NULL OR n.claimedUntil <= :now) ORDER BY n.nextAttemptAt")
+	List<NotificationOutbox> findAllUnclaimedDue(
+		@Param("status") NotificationOutbox.Status status,
+		@Param("now") LocalDateTime now,
+		Pageable pageable
+	);
+
+	long countByStatus(NotificationOutbox.Status status);
+
+	long countByDedupKey(String dedupKey);
+
+	/// Pending notifications of a digest that no drain holds a claim on, due or not
+	@Query("SELECT n FROM NotificationOutbox n WHERE n.digestGroup = :digestGroup AND n.target = :target " +
+		"AND n.status = :status AND (n.claimedUntil IS NULL OR n.claimedUntil <= :now) ORDER BY n.createdAt")
+	List<NotificationOutbox> findAllUnclaimedOfDigest(
+		@Param("digestGroup") String digestGroup,
+		@Param("target") String target,
+		@Param("status") NotificationOutbox.Status status,
+		@Param("now") LocalDateTime now,
+		Pageable pageable
+	);
+
+	/**
+	 * Claims the notifications of the status that no other drain holds a claim on. The update is atomic,
+	 * so of several nodes draining at once only one claims a notification.
+	 *
+	 * @return number of claimed notifications
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE NotificationOutbox n SET n.claimToken = :claimToken, n.claimedUntil = :claimedUntil " +
+		"WHERE n.notificationId IN :notificationIds AND n.status = :status " +
+		"AND (n.claimedUntil IS NULL OR n.claimedUntil <= :now)")
+	int claim(
+		@Param("notificationIds") Collection<Long> notificationIds,
+		@Param("status") NotificationOutbox.Status status,
+		@Param("claimToken") String claimToken,
+		@Param("claimedUntil") LocalDateTime claimedUntil,
+		@Param("now") LocalDateTime now
+	);
+
+	@Query("SELECT n.notificationId FROM NotificationOutbox n WHERE n.claimToken = :claimToken")
+	List<Long> findIdsByClaimToken(@Param("claimToken") String claimToken);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM NotificationOutbox n WHERE n.status = :status AND n.updatedAt < :before")
+	int deleteAllByStatusAndUpdatedAtBefore(
+		@Param("status") NotificationOutbox.Status status,
+		@Param("before") LocalDateTime before
+	);
+}
@@ -0,0 +1,40 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.OrderRollupDelta;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.jpa.SpecHints.HINT_SPEC_LOCK_TIMEOUT;
+
+public interface OrderRollupDeltaRepository extends JpaRepository<OrderRollupDelta, Long> {
+
+	/**
+	 * Finds and locks the oldest deltas. The lock timeout of -2, {@link org.hibernate.LockOptions#SKIP_LOCKED},
+	 * skips the deltas locked by the checkpoint of another instance where the database supports it,
+	 * they are waited for otherwise.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+	@Query("SELECT d FROM OrderRollupDelta d ORDER BY d.deltaId")
+	List<OrderRollupDelta> findOldestForUpdate(Limit limit);
+
+	List<OrderRollupDelta> findAllByDayBetween(LocalDate from, LocalDate to);
+
+	@Query("SELECT MAX(d.deltaId) FROM OrderRollupDelta d")
+	Optional<Long> findLastDeltaId();
+
+	@Modifying
+	@Query("DELETE FROM OrderRollupDelta d WHERE d.deltaId <= :deltaId")
+	int deleteAllByDeltaIdLessThanEqual(@Param("deltaId") Long deltaId);
+}
@@ -0,0 +1,15 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.OrderRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderRollupRepository extends JpaRepository<OrderRollup, Long> {
+
+	List<OrderRollup> findAllByDayBetween(LocalDate from, LocalDate to);
+
+	List<OrderRollup> findAllByDayIn(Collection<LocalDate> days);
+}
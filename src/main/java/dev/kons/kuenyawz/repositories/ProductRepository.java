@@ -4,7 +4,9 @@ import dev.kons.kuenyawz.entities.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
@@ -17,4 +19,10 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
 
 	@Query("SELECT p.productId FROM Product p")
 	List<Long> findAllIds();
+
+	/**
+	 * Finds the products of the given ids that are still available, in no particular order.
+	 */
+	@Query("SELECT p FROM Product p WHERE p.productId IN :productIds AND p.available = true AND p.deleted = false")
+	List<Product> findAllAvailableByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.dtos.apriori.PurchaseProductTuple;
+import dev.kons.kuenyawz.dtos.dashboard.OrderRollupTotal;
+import dev.kons.kuenyawz.dtos.dashboard.PurchaseCategoryTotal;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanLine;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.PurchaseItem;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+public interface PurchaseItemRepository extends JpaRepository<PurchaseItem, Long> {
+
+	/**
+	 * Streams distinct (purchase id, product id) tuples of purchases with the given statuses made
+	 * since the given time, ordered by purchase id so that every basket arrives contiguously. Must
+	 * be consumed inside a transaction and closed afterward.
+	 */
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+		@QueryHint(name = HINT_READ_ONLY, value = "true")
+	})
+	@Query("SELECT DISTINCT new dev.kons.kuenyawz.dtos.apriori.PurchaseProductTuple(p.purchaseId, v.product.productId, p.createdAt) " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN pi.variant v " +
+		"WHERE p.status IN :statuses AND p.createdAt >= :since " +
+		"ORDER BY p.purchaseId")
+	Stream<PurchaseProductTuple> streamPurchaseProducts(
+		@Param("statuses") Collection<Purchase.PurchaseStatus> statuses,
+		@Param("since") LocalDateTime since
+	);
+
+	/**
+	 * Returns the ids of products bought in purchases with the given statuses, ordered from the
+	 * most bought quantity.
+	 */
+	@Query("SELECT v.product.productId " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN pi.variant v " +
+		"WHERE p.status IN :statuses " +
+		"GROUP BY v.product.productId " +
+		"ORDER BY SUM(pi.quantity) DESC")
+	List<Long> findPopularProductIds(@Param("statuses") Collection<Purchase.PurchaseStatus> statuses);
+
+	/**
+	 * Returns the ids of products the account bought in purchases with the given statuses.
+	 */
+	@Query("SELECT DISTINCT v.product.productId " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN p.transactions t JOIN pi.variant v " +
+		"WHERE t.account.accountId = :accountId AND p.status IN :statuses")
+	List<Long> findPurchasedProductIdsOfAccount(
+		@Param("accountId") Long accountId,
+		@Param("statuses") Collection<Purchase.PurchaseStatus> statuses
+	);
+
+	/**
+	 * Sums the items of the given purchases per purchase and product category.
+	 */
+	@Query("SELECT new dev.kons.kuenyawz.dtos.dashboard.PurchaseCategoryTotal(p.purchaseId, pr.category, SUM(pi.boughtPrice * pi.quantity)) " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN pi.variant v JOIN v.product pr " +
+		"WHERE p.purchaseId IN :purchaseIds " +
+		"GROUP BY p.purchaseId, pr.category")
+	List<PurchaseCategoryTotal> sumCategoryTotalsOfPurchases(@Param("purchaseIds") Collection<Long> purchaseIds);
+
+	/**
+	 * Counts the orders having items of each category and sums those items per day, status,
+	 * payment type and category, used to rebuild the dashboard rollups from scratch.
+	 */
+	@Query("SELECT new dev.kons.kuenyawz.dtos.dashboard.OrderRollupTotal(" +
+		"CAST(p.createdAt AS LocalDate), p.status, p.paymentType, pr.category, COUNT(DISTINCT p.purchaseId), SUM(pi.boughtPrice * pi.quantity)) " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN pi.variant v JOIN v.product pr " +
+		"WHERE p.createdAt IS NOT NULL " +
+		"GROUP BY CAST(p.createdAt AS LocalDate), p.status, p.paymentType, pr.category")
+	List<OrderRollupTotal> sumCategoryTotals();
+
+	/**
+	 * Sums the quantity of every variant bought in purchases with the given statuses per event
+	 * date of the range, ordered by event date, product name and variant type. The purchases are
+	 * found through the event date and status index.
+	 */
+	@Query("SELECT new dev.kons.kuenyawz.dtos.purchase.ProductionPlanLine(" +
+		"p.eventDate, pr.productId, pr.name, v.variantId, v.type, SUM(pi.quantity), COUNT(DISTINCT p.purchaseId)) " +
+		"FROM PurchaseItem pi JOIN pi.purchase p JOIN pi.variant v JOIN v.product pr " +
+		"WHERE p.eventDate BETWEEN :from AND :to AND p.status IN :statuses " +
+		"GROUP BY p.eventDate, pr.productId, pr.name, v.variantId, v.type " +
+		"ORDER BY p.eventDate, pr.name, v.type")
+	List<ProductionPlanLine> sumProductionPlan(
+		@Param("from") LocalDate from,
+		@Param("to") LocalDate to,
+		@Param("statuses") Collection<Purchase.PurchaseStatus> statuses
+	);
+}
@@ -1,8 +1,75 @@
 package dev.kons.kuenyawz.repositories;
 
+import dev.kons.kuenyawz.dtos.dashboard.OrderRollupTotal;
 import dev.kons.kuenyawz.entities.Purchase;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface PurchaseRepository extends JpaRepository<Purchase, Long>, JpaSpecificationExecutor<Purchase> {
+
+	@EntityGraph(Purchase.DETAIL_GRAPH)
+	Optional<Purchase> findDetailedByPurchaseId(Long purchaseId);
+
+	/**
+	 * Finds and locks the given purchases that still have the given status, so that a following
+	 * bulk update changes exactly these.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	List<Purchase> findAllByPurchaseIdInAndStatus(Collection<Long> purchaseIds, Purchase.PurchaseStatus status);
+
+	/**
+	 * Moves the given purchases to a new status in one statement. The entity listeners are not
+	 * called, the caller reports the changes.
+	 *
+	 * @return number of updated purchases
+	 */
+	@Modifying
+	@Query("UPDATE Purchase p SET p.status = :status, p.updatedAt = :now, p.version = p.version + 1 " +
+		"WHERE p.purchaseId IN :purchaseIds")
+	int updateStatus(
+		@Param("purchaseIds") Collection<Long> purchaseIds,
+		@Param("status") Purchase.PurchaseStatus status,
+		@Param("now") LocalDateTime now
+	);
+
+	/**
+	 * Fills the totals of purchases made before they were stored.
+	 *
+	 * @return number of updated purchases
+	 */
+	@Transactional
+	@Modifying
+	@Query("""
+		UPDATE Purchase p SET
+			p.subtotal = COALESCE((SELECT SUM(pi.boughtPrice * pi.quantity) FROM PurchaseItem pi WHERE pi.purchase = p), 0),
+			p.grandTotal = COALESCE((SELECT SUM(pi.boughtPrice * pi.quantity) FROM PurchaseItem pi WHERE pi.purchase = p), 0)
+				+ COALESCE(p.deliveryFee, 0)
+		WHERE p.subtotal IS NULL OR p.grandTotal IS NULL
+		""")
+	int backfillTotals();
+
+	/**
+	 * Counts the orders and sums their grand total per day, status and payment type, used to
+	 * rebuild the dashboard rollups from scratch.
+	 */
+	@Query("""
+		SELECT new dev.kons.kuenyawz.dtos.dashboard.OrderRollupTotal(
+			CAST(p.createdAt AS LocalDate), p.status, p.paymentType, COUNT(p), COALESCE(SUM(p.grandTotal), 0))
+		FROM Purchase p
+		WHERE p.createdAt IS NOT NULL
+		GROUP BY CAST(p.createdAt AS LocalDate), p.status, p.paymentType
+		""")
+	List<OrderRollupTotal> sumOrderTotals();
 }
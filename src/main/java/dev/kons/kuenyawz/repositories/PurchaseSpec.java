@@ -12,6 +12,7 @@ import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -19,10 +20,12 @@ import java.util.List;
 public class PurchaseSpec {
 	/**
 	 * Joins table Purchase with its Transaction table to get the related account id.\
+	 * A purchase with several transactions is returned once per transaction, prefer {@link #withAccountId2(Long)}.
 	 *
 	 * @param accountId {@link Long} Account id to be queried.
 	 * @return Specification of Purchase.
 	 */
+	@Deprecated
 	public static Specification<Purchase> withAccountId1(Long accountId) {
 		return (root, query, cb) -> {
 			if (accountId == null)
@@ -36,7 +39,8 @@ public class PurchaseSpec {
 	}
 
 	/**
-	 * Uses subquery to get the related account id from the Transaction table.
+	 * Uses a subquery correlated to each purchase to check whether one of its transactions belongs
+	 * to the account, so every purchase is returned once and paging stays correct.
 	 *
 	 * @param accountId {@link Long} Account id to be queried.
 	 * @return Specification of Purchase.
@@ -51,7 +55,10 @@ public class PurchaseSpec {
 			Subquery<Long> subquery = query.subquery(Long.class);
 			Root<Transaction> transactionRoot = subquery.from(Transaction.class);
 			subquery.select(transactionRoot.get("purchase").get("purchaseId"))
-				.where(cb.equal(transactionRoot.get("account").get("accountId"), accountId));
+				.where(
+					cb.equal(transactionRoot.get("purchase"), root),
+					cb.equal(transactionRoot.get("account").get("accountId"), accountId)
+				);
 
 			return cb.exists(subquery);
 		};
@@ -84,6 +91,19 @@ public class PurchaseSpec {
 		};
 	}
 
+	public static Specification<Purchase> withGrandTotalBetween(BigDecimal min, BigDecimal max) {
+		return (root, query, cb) -> {
+			if (min == null && max == null)
+				return null;
+			if (max == null)
+				return cb.greaterThanOrEqualTo(root.get("grandTotal"), min);
+			if (min == null)
+				return cb.lessThanOrEqualTo(root.get("grandTotal"), max);
+
+			return cb.between(root.get("grandTotal"), min, max);
+		};
+	}
+
 	public static Specification<Purchase> withDateAfter(LocalDate after) {
 		return (root, query, cb) -> {
 			if (after == null)
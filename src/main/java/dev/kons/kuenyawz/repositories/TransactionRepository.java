@@ -1,11 +1,19 @@
 package dev.kons.kuenyawz.repositories;
 
+import dev.kons.kuenyawz.dtos.purchase.ExpiredTransaction;
 import dev.kons.kuenyawz.entities.Transaction;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,9 +21,68 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>,
 
 	Optional<Transaction> findByReferenceId(String referenceId);
 
+	@EntityGraph(Transaction.WEBHOOK_GRAPH)
+	Optional<Transaction> findWithPurchaseByTransactionId(Long transactionId);
+
+	@Query("SELECT t.purchase.purchaseId FROM Transaction t WHERE t.transactionId = :transactionId")
+	Optional<Long> findPurchaseIdByTransactionId(@Param("transactionId") Long transactionId);
+
 	Page<Transaction> findByPurchase_PurchaseId(Long purchaseId, Pageable pageable);
 
 	List<Transaction> findByPurchase_PurchaseIdAndAccount_AccountId(Long purchaseId, Long accountId);
 
 	Optional<Transaction> findFirstByPurchase_PurchaseIdOrderByCreatedAtDesc(Long purchaseId);
+
+	boolean existsByAccount_AccountIdAndStatusIn(Long accountId, Collection<Transaction.TransactionStatus> statuses);
+
+	/**
+	 * Finds the transactions with the given statuses that expired before the given time, the
+	 * longest expired first, through the status and expiry index.
+	 */
+	@Query("SELECT new dev.kons.kuenyawz.dtos.purchase.ExpiredTransaction(t.transactionId, t.purchase.purchaseId) " +
+		"FROM Transaction t " +
+		"WHERE t.status IN :statuses AND t.expiresAt < :now " +
+		"ORDER BY t.expiresAt")
+	List<ExpiredTransaction> findExpired(
+		@Param("statuses") Collection<Transaction.TransactionStatus> statuses,
+		@Param("now") LocalDateTime now,
+		Limit limit
+	);
+
+	/// Purchases of the given transactions that have the given status
+	@Query("SELECT DISTINCT t.purchase.purchaseId FROM Transaction t " +
+		"WHERE t.transactionId IN :transactionIds AND t.status = :status")
+	List<Long> findPurchaseIdsByTransactionIdInAndStatus(
+		@Param("transactionIds") Collection<Long> transactionIds,
+		@Param("status") Transaction.TransactionStatus status
+	);
+
+	/**
+	 * Finds the ids of the transactions with the given statuses created before the given time,
+	 * the oldest first.
+	 */
+	@Query("SELECT t.transactionId FROM Transaction t " +
+		"WHERE t.status IN :statuses AND t.createdAt < :before " +
+		"ORDER BY t.createdAt")
+	List<Long> findStaleIds(
+		@Param("statuses") Collection<Transaction.TransactionStatus> statuses,
+		@Param("before") LocalDateTime before,
+		Limit limit
+	);
+
+	/**
+	 * Moves the given transactions to a new status in one statement, skipping those whose status
+	 * changed in the meantime.
+	 *
+	 * @return number of updated transactions
+	 */
+	@Modifying
+	@Query("UPDATE Transaction t SET t.status = :status, t.updatedAt = :now, t.version = t.version + 1 " +
+		"WHERE t.transactionId IN :transactionIds AND t.status IN :statuses")
+	int updateStatus(
+		@Param("transactionIds") Collection<Long> transactionIds,
+		@Param("statuses") Collection<Transaction.TransactionStatus> statuses,
+		@Param("status") Transaction.TransactionStatus status,
+		@Param("now") LocalDateTime now
+	);
 }
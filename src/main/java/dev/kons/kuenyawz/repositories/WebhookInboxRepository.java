@@ -0,0 +1,73 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.entities.WebhookInbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface WebhookInboxRepository extends JpaRepository<WebhookInbox, Long> {
+
+	/**
+	 * Finds the due notifications of the status that no drain holds a claim on, by order then
+	 * arrival. A notification is held back while an earlier one of its order waits for a retry or
+	 * is claimed by another drain.
+	 */
+	@Query("SELECT w FROM WebhookInbox w WHERE w.status = :status AND w.nextAttemptAt <= :now " +
+		"AND (w.claimedUntil IS NULL OR w.claimedUntil <= :now) " +
+		"AND NOT EXISTS (SELECT e.inboxId FROM WebhookInbox e WHERE e.orderId = w.orderId AND e.status = :status " +
+		"AND e.inboxId < w.inboxId AND (e.nextAttemptAt > :now OR e.claimedUntil > :now)) " +
+		"ORDER BY w.orderId, w.inboxId")
+	List<WebhookInbox> findAllUnclaimedDue(
+		@Param("status") WebhookInbox.Status status,
+		@Param("now") LocalDateTime now,
+		Pageable pageable
+	);
+
+	boolean existsByDedupKey(String dedupKey);
+
+	/**
+	 * Claims the notifications of the status that no other drain holds a claim on. The update is atomic,
+	 * so of several nodes draining at once only one claims a notification.
+	 *
+	 * @return number of claimed notifications
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE WebhookInbox w SET w.claimToken = :claimToken, w.claimedUntil = :claimedUntil " +
+		"WHERE w.inboxId IN :inboxIds AND w.status = :status " +
+		"AND (w.claimedUntil IS NULL OR w.claimedUntil <= :now)")
+	int claim(
+		@Param("inboxIds") Collection<Long> inboxIds,
+		@Param("status") WebhookInbox.Status status,
+		@Param("claimToken") String claimToken,
+		@Param("claimedUntil") LocalDateTime claimedUntil,
+		@Param("now") LocalDateTime now
+	);
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE WebhookInbox w SET w.claimToken = NULL, w.claimedUntil = NULL " +
+		"WHERE w.inboxId IN :inboxIds AND w.claimToken = :claimToken")
+	int release(
+		@Param("inboxIds") Collection<Long> inboxIds,
+		@Param("claimToken") String claimToken
+	);
+
+	@Query("SELECT w.inboxId FROM WebhookInbox w WHERE w.claimToken = :claimToken")
+	List<Long> findIdsByClaimToken(@Param("claimToken") String claimToken);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM WebhookInbox w WHERE w.status = :status AND w.updatedAt < :before")
+	int deleteAllByStatusAndUpdatedAtBefore(
+		@Param("status") WebhookInbox.Status status,
+		@Param("before") LocalDateTime before
+	);
+}
@@ -17,6 +17,7 @@ import dev.kons.kuenyawz.repositories.VariantRepository;
 import dev.kons.kuenyawz.services.logic.ImageStorageService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -73,6 +74,7 @@ public class CartItemServiceImpl implements CartItemService {
 	}
 
 	@Override
+	@CacheEvict(value = "accountRecommendationsCache", key = "#accountId")
 	public CartItemDto createCartItem(Long accountId, CartItemPostDto cartItemPostDto) {
 		validateVariantExists(cartItemPostDto.getVariantId());
 		validateNoSameProductInAccountCart(cartItemPostDto.getVariantId());
@@ -86,6 +88,7 @@ public class CartItemServiceImpl implements CartItemService {
 	}
 
 	@Override
+	@CacheEvict(value = "accountRecommendationsCache", key = "#accountId")
 	public CartItemDto patchCartItem(Long cartItemId, CartItemPatchDto cartItemPatchDto, Long accountId) {
 		CartItem cartItem = cartItemRepository.findById(cartItemId)
 			.orElseThrow(() -> new EntityNotFoundException("CartItem not found for ID: " + cartItemId));
@@ -117,6 +120,7 @@ public class CartItemServiceImpl implements CartItemService {
 	}
 
 	@Override
+	@CacheEvict(value = "accountRecommendationsCache", allEntries = true)
 	public void deleteCartItem(Long cartItemId) {
 		CartItem cartItem = cartItemRepository.findById(cartItemId)
 			.orElseThrow(() -> new EntityNotFoundException("CartItem not found for ID: " + cartItemId));
@@ -125,12 +129,14 @@ public class CartItemServiceImpl implements CartItemService {
 	}
 
 	@Override
+	@CacheEvict(value = "accountRecommendationsCache", key = "#accountId")
 	public boolean deleteCartItemsOfAccount(Long accountId) {
 		int affected = cartItemRepository.deleteByAccount_AccountId(accountId);
 		return affected > 0;
 	}
 
 	@Override
+	@CacheEvict(value = "accountRecommendationsCache", key = "#accountId")
 	public boolean deleteCartItemOfAccount(Long cartItemId, Long accountId) {
 		int affected = cartItemRepository.deleteByCartItemIdAndAccount_AccountId(cartItemId, accountId);
 		return affected > 0;
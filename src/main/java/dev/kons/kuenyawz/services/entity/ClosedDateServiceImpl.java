@@ -5,6 +5,7 @@ import dev.kons.kuenyawz.dtos.closeddate.ClosedDateDto;
 import dev.kons.kuenyawz.dtos.closeddate.ClosedDatePatchDto;
 import dev.kons.kuenyawz.dtos.closeddate.ClosedDatePostDto;
 import dev.kons.kuenyawz.entities.ClosedDate;
+import dev.kons.kuenyawz.events.CalendarChangedEvent;
 import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
 import dev.kons.kuenyawz.mapper.ClosedDateMapper;
 import dev.kons.kuenyawz.repositories.ClosedDateRepository;
@@ -12,6 +13,7 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -34,6 +36,7 @@ public class ClosedDateServiceImpl implements ClosedDateService {
 	private final ClosedDateMapper closedDateMapper;
 	private final ClosedDateRepository closedDateRepository;
 	private final ApplicationProperties properties;
+	private final ApplicationEventPublisher eventPublisher;
 	private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
 	@Override
@@ -151,6 +154,7 @@ public class ClosedDateServiceImpl implements ClosedDateService {
 			ClosedDate savedClosedDate = closedDateRepository.save(closedDate);
 			closedDates.add(savedClosedDate);
 		}
+		eventPublisher.publishEvent(new CalendarChangedEvent());
 		return closedDates.stream()
 			.map(this::toDto)
 			.toList();
@@ -173,17 +177,20 @@ public class ClosedDateServiceImpl implements ClosedDateService {
 			.orElseThrow(() -> new EntityNotFoundException("Closed Date Not Found By Id: " + closedDateId));
 		closedDate = patchFromDto(closedDate, closedDatePatchDto);
 		ClosedDate savedClosedDate = closedDateRepository.save(closedDate);
+		eventPublisher.publishEvent(new CalendarChangedEvent());
 		return toDto(savedClosedDate);
 	}
 
 	@Override
 	public void deleteById(Long closedDateId) {
 		closedDateRepository.deleteById(closedDateId);
+		eventPublisher.publishEvent(new CalendarChangedEvent());
 	}
 
 	@Override
 	public void deleteBetween(LocalDate from, LocalDate to) {
 		closedDateRepository.deleteAllByDateBetween(from, to);
+		eventPublisher.publishEvent(new CalendarChangedEvent());
 	}
 
 	@Override
@@ -0,0 +1,69 @@
+package dev.kons.kuenyawz.services.entity;
+
+import dev.kons.kuenyawz.entities.DateReservation;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public interface DateReservationService {
+
+	/// Days before the event date spent preparing the order
+	int PREP_DAYS = 2;
+
+	/**
+	 * Checks from memory whether a date still has a free slot and is not closed by the vendor.
+	 *
+	 * @param date date to check
+	 * @return {@code true} if an order can still be placed on the date
+	 */
+	boolean isAvailable(LocalDate date);
+
+	/**
+	 * Checks from memory whether an order on the event date would fit, including its preparation days.
+	 * Dates that look full are read again from the database first, another instance may have freed them.
+	 *
+	 * @param eventDate event date of the order
+	 * @return {@code true} if every date of the order has a free slot
+	 */
+	boolean isOrderable(LocalDate eventDate);
+
+	/**
+	 * Holds one slot on each preparation day and on the event date for a purchase, all of them
+	 * or none. Dates that become fully booked are also closed in the calendar.
+	 *
+	 * @param purchaseId {@link Long} the purchase holding the slots
+	 * @param eventDate  event date of the purchase
+	 * @return {@link List} of the held {@link DateReservation}
+	 * @throws IllegalOperationException if one of the dates is closed or fully booked
+	 */
+	@Transactional
+	List<DateReservation> claim(Long purchaseId, LocalDate eventDate);
+
+	/**
+	 * Frees every slot held by a purchase and reopens its dates in the calendar. Purchases made
+	 * before the reservations existed only have their closed dates removed.
+	 *
+	 * @param purchaseId {@link Long} the purchase holding the slots
+	 * @param eventDate  event date of the purchase
+	 */
+	@Transactional
+	void release(Long purchaseId, LocalDate eventDate);
+
+	/**
+	 * Frees the slots held by several purchases at once, deleting their reservations and closed
+	 * dates in set-based statements.
+	 *
+	 * @param eventDates {@link Map} of the purchase ids to their event dates
+	 */
+	@Transactional
+	void releaseAll(Map<Long, LocalDate> eventDates);
+
+	/**
+	 * Rebuilds the in-memory availability from the reservations and the closed dates.
+	 */
+	@Transactional(readOnly = true)
+	void reload();
+}
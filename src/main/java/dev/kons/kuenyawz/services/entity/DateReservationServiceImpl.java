@@ -0,0 +1,291 @@
+package dev.kons.kuenyawz.services.entity;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.ClosedDate;
+import dev.kons.kuenyawz.entities.DateReservation;
+import dev.kons.kuenyawz.events.CalendarChangedEvent;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.ClosedDateRepository;
+import dev.kons.kuenyawz.repositories.DateReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DateReservationServiceImpl implements DateReservationService {
+
+	private static final List<ClosedDate.ClosureType> ORDER_CLOSURES = List.of(
+		ClosedDate.ClosureType.PREP,
+		ClosedDate.ClosureType.RESERVED
+	);
+
+	private final DateReservationRepository dateReservationRepository;
+	private final ClosedDateRepository closedDateRepository;
+	private final ApplicationProperties properties;
+
+	/// Held slots of each date from today onward, guarded by this
+	private final Map<LocalDate, BitSet> slots = new HashMap<>();
+	/// Dates closed by the vendor or by orders placed before the reservations existed, guarded by this
+	private final Set<LocalDate> closed = new HashSet<>();
+	/// Dates whose slots were taken by another instance, reloaded on their next check, guarded by this
+	private final Set<LocalDate> stale = new HashSet<>();
+
+	@Override
+	public synchronized boolean isAvailable(LocalDate date) {
+		return !closed.contains(date) && heldOn(date) < capacity();
+	}
+
+	@Override
+	public boolean isOrderable(LocalDate eventDate) {
+		final Set<LocalDate> dates = datesOf(eventDate).keySet();
+		reloadIfStale(dates);
+		synchronized (this) {
+			return dates.stream().allMatch(this::isAvailable);
+		}
+	}
+
+	@Override
+	public List<DateReservation> claim(Long purchaseId, LocalDate eventDate) {
+		final List<DateReservation> reservations = new ArrayList<>(PREP_DAYS + 1);
+		reloadIfStale(datesOf(eventDate).keySet());
+
+		// Every date is checked then held under the same lock, so concurrent orders never both pass
+		synchronized (this) {
+			datesOf(eventDate).forEach((date, closureType) -> {
+				if (!isAvailable(date)) {
+					throw new IllegalOperationException(String.format("Date %s is closed or fully booked", date));
+				}
+			});
+			datesOf(eventDate).forEach((date, closureType) -> {
+				BitSet held = slots.computeIfAbsent(date, k -> new BitSet());
+				int slot = held.nextClearBit(0);
+				held.set(slot);
+				reservations.add(DateReservation.builder()
+					.date(date)
+					.slot(slot)
+					.closureType(closureType)
+					.purchaseId(purchaseId)
+					.build());
+			});
+		}
+		afterRollback(() -> free(reservations));
+
+		try {
+			dateReservationRepository.saveAllAndFlush(reservations);
+		} catch (DataIntegrityViolationException e) {
+			// Another instance held the same slot first, the slots of these dates are read again on the next claim
+			log.warn("Slots of purchase {} on {} were taken concurrently", purchaseId, eventDate);
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				afterRollback(() -> markStale(reservations));
+			} else {
+				free(reservations);
+				markStale(reservations);
+			}
+			throw new IllegalOperationException(String.format("Dates around %s were just booked, please choose another date", eventDate));
+		}
+
+		// The public calendar only shows the dates that can no longer take an order
+		for (DateReservation reservation : reservations) {
+			if (!isAvailable(reservation.getDate()) && !closedDateRepository.existsByDate(reservation.getDate())) {
+				closedDateRepository.save(ClosedDate.builder()
+					.date(reservation.getDate())
+					.closureType(reservation.getClosureType())
+					.build());
+			}
+		}
+		log.info("Purchase {} holds slots on {}", purchaseId, reservations.stream().map(DateReservation::getDate).toList());
+		return reservations;
+	}
+
+	@Override
+	public void release(Long purchaseId, LocalDate eventDate) {
+		final List<DateReservation> reservations = dateReservationRepository.findAllByPurchaseId(purchaseId);
+		final Set<LocalDate> dates = datesOf(eventDate).keySet();
+
+		if (reservations.isEmpty()) {
+			// Orders placed before the reservations existed only closed their dates
+			if (!dateReservationRepository.existsByDateIn(dates)) {
+				closedDateRepository.deleteAllByDateInAndClosureTypeIn(dates, ORDER_CLOSURES);
+				afterCommit(this::reload);
+			}
+			return;
+		}
+
+		dateReservationRepository.deleteAllInBatch(reservations);
+		closedDateRepository.deleteAllByDateInAndClosureTypeIn(
+			reservations.stream().map(DateReservation::getDate).toList(), ORDER_CLOSURES);
+		afterCommit(() -> free(reservations));
+		log.info("Purchase {} released its slots on {}", purchaseId, dates);
+	}
+
+	@Override
+	public void releaseAll(Map<Long, LocalDate> eventDates) {
+		if (eventDates.isEmpty()) {
+			return;
+		}
+
+		final List<DateReservation> reservations = dateReservationRepository.findAllByPurchaseIdIn(eventDates.keySet());
+		final Set<Long> reserving = new HashSet<>();
+		final Set<LocalDate> dates = new HashSet<>();
+		reservations.forEach(reservation -> {
+			reserving.add(reservation.getPurchaseId());
+			dates.add(reservation.getDate());
+		});
+
+		// Orders placed before the reservations existed only closed their dates
+		boolean legacy = false;
+		for (Map.Entry<Long, LocalDate> entry : eventDates.entrySet()) {
+			Set<LocalDate> legacyDates = datesOf(entry.getValue()).keySet();
+			if (!reserving.contains(entry.getKey()) && !dateReservationRepository.existsByDateIn(legacyDates)) {
+				dates.addAll(legacyDates);
+				legacy = true;
+			}
+		}
+
+		if (!reservations.isEmpty()) {
+			dateReservationRepository.deleteAllByPurchaseIdIn(reserving);
+		}
+		if (!dates.isEmpty()) {
+			closedDateRepository.deleteAllByDateInAndClosureTypeIn(dates, ORDER_CLOSURES);
+		}
+		afterCommit(legacy ? this::reload : () -> free(reservations));
+		log.info("Purchases {} released their slots on {} dates", eventDates.keySet(), dates.size());
+	}
+
+	@Override
+	@EventListener({ApplicationReadyEvent.class, CalendarChangedEvent.class})
+	@Scheduled(cron = "0 5 0 * * *", zone = "${application.timezone:Asia/Jakarta}")
+	public void reload() {
+		final LocalDate today = LocalDate.now();
+		final Map<LocalDate, BitSet> loadedSlots = new HashMap<>();
+		final Set<LocalDate> loadedClosed = new HashSet<>();
+
+		for (DateReservation reservation : dateReservationRepository.findAllByDateGreaterThanEqual(today)) {
+			loadedSlots.computeIfAbsent(reservation.getDate(), k -> new BitSet()).set(reservation.getSlot());
+		}
+		for (ClosedDate closedDate : closedDateRepository.findAllByDateGreaterThanEqual(today)) {
+			// A fully booked date is already known from its slots
+			if (closedDate.getClosureType() == ClosedDate.ClosureType.CLOSED || !loadedSlots.containsKey(closedDate.getDate())) {
+				loadedClosed.add(closedDate.getDate());
+			}
+		}
+
+		synchronized (this) {
+			slots.clear();
+			slots.putAll(loadedSlots);
+			closed.clear();
+			closed.addAll(loadedClosed);
+			stale.clear();
+		}
+		log.info("Loaded {} reserved and {} closed dates", loadedSlots.size(), loadedClosed.size());
+	}
+
+	/**
+	 * Replaces the slots of the stale dates among the given ones with the reservations stored in
+	 * the database, which include the ones made by other instances. Dates that look full are read
+	 * again too before an order is rejected, another instance may have released them meanwhile.
+	 */
+	private void reloadIfStale(Set<LocalDate> dates) {
+		final Set<LocalDate> reloading = new HashSet<>();
+		synchronized (this) {
+			dates.forEach(date -> {
+				if (stale.contains(date) || !isAvailable(date))
+					reloading.add(date);
+			});
+		}
+		if (reloading.isEmpty()) {
+			return;
+		}
+
+		final List<DateReservation> reservations = dateReservationRepository.findAllByDateIn(reloading);
+		final List<ClosedDate> closedDates = closedDateRepository.findAllByDateIn(reloading);
+		synchronized (this) {
+			reloading.forEach(date -> {
+				slots.remove(date);
+				closed.remove(date);
+				stale.remove(date);
+			});
+			for (DateReservation reservation : reservations) {
+				slots.computeIfAbsent(reservation.getDate(), k -> new BitSet()).set(reservation.getSlot());
+			}
+			for (ClosedDate closedDate : closedDates) {
+				if (closedDate.getClosureType() == ClosedDate.ClosureType.CLOSED || !slots.containsKey(closedDate.getDate())) {
+					closed.add(closedDate.getDate());
+				}
+			}
+		}
+		log.debug("Reloaded the slots of {}", reloading);
+	}
+
+	private synchronized void markStale(List<DateReservation> reservations) {
+		reservations.forEach(reservation -> stale.add(reservation.getDate()));
+	}
+
+	private synchronized void free(List<DateReservation> reservations) {
+		for (DateReservation reservation : reservations) {
+			BitSet held = slots.get(reservation.getDate());
+			if (held != null) {
+				held.clear(reservation.getSlot());
+			}
+		}
+	}
+
+	private int heldOn(LocalDate date) {
+		BitSet held = slots.get(date);
+		return held == null ? 0 : held.cardinality();
+	}
+
+	private int capacity() {
+		Integer ordersPerDay = properties.vendor().getOrdersPerDay();
+		return ordersPerDay == null || ordersPerDay < 1 ? 1 : ordersPerDay;
+	}
+
+	/**
+	 * Dates taken by an order, from the first preparation day to the event date.
+	 */
+	private static Map<LocalDate, ClosedDate.ClosureType> datesOf(LocalDate eventDate) {
+		Map<LocalDate, ClosedDate.ClosureType> dates = new LinkedHashMap<>();
+		for (int i = PREP_DAYS; i > 0; i--) {
+			dates.put(eventDate.minusDays(i), ClosedDate.ClosureType.PREP);
+		}
+		dates.put(eventDate, ClosedDate.ClosureType.RESERVED);
+		return dates;
+	}
+
+	private static void afterRollback(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						action.run();
+					}
+				}
+			});
+		}
+	}
+
+	private static void afterCommit(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+}
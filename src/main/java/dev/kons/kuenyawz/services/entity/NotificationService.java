@@ -0,0 +1,49 @@
+package dev.kons.kuenyawz.services.entity;
+
+import dev.kons.kuenyawz.entities.NotificationOutbox;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface NotificationService {
+
+	/**
+	 * Queues a WhatsApp message in the outbox. It joins the current transaction, so the message is
+	 * only sent if the change it notifies about is committed. Sending is done afterward by the
+	 * dispatcher.
+	 *
+	 * @param target  {@link String} phone number of the recipient
+	 * @param message {@link String} the message
+	 */
+	@Transactional
+	void enqueue(String target, String message);
+
+	/**
+	 * Queues a WhatsApp message holding a secret, such as a one-time password. The message is
+	 * blanked in the outbox once it is sent or given up on.
+	 *
+	 * @param target  {@link String} phone number of the recipient
+	 * @param message {@link String} the message
+	 * @see #enqueue(String, String)
+	 */
+	@Transactional
+	void enqueueSensitive(String target, String message);
+
+	/**
+	 * Queues the "new order" alert of a paid purchase to the vendor. An alert already queued for
+	 * the purchase is not queued again, and the alerts of the configured window are sent together
+	 * as one digest message.
+	 *
+	 * @param purchaseId {@link Long} the paid purchase
+	 */
+	@Transactional
+	void enqueueVendorNewOrder(Long purchaseId);
+
+	/**
+	 * Composes the message of pending notifications of the same digest group.
+	 *
+	 * @param notifications {@link List} of {@link NotificationOutbox} of one digest group, oldest first
+	 * @return {@link String} the message to send
+	 */
+	String composeDigest(List<NotificationOutbox> notifications);
+}
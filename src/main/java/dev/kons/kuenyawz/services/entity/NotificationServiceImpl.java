@@ -0,0 +1,95 @@
+package dev.kons.kuenyawz.services.entity;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.NotificationOutbox;
+import dev.kons.kuenyawz.repositories.NotificationOutboxRepository;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationServiceImpl implements NotificationService {
+
+	private final NotificationOutboxRepository notificationOutboxRepository;
+	private final ApplicationProperties properties;
+	private final EntityManager entityManager;
+	private final SnowFlakeIdGenerator snowFlakeIdGenerator;
+
+	private static final String COUNTRY_CODE = "62";
+	private static final String VENDOR_NEW_ORDER = "vendor-new-order";
+	/// Skips the insert when the dedup key exists, in one statement, instead of failing the caller's transaction
+	private static final String INSERT_IF_ABSENT = "INSERT INTO NotificationOutbox " +
+		"(notificationId, target, message, countryCode, status, attempts, nextAttemptAt, sensitive, dedupKey, digestGroup, digestItem, createdAt, updatedAt) " +
+		"VALUES (:notificationId, :target, :message, :countryCode, :status, 0, :nextAttemptAt, false, :dedupKey, :digestGroup, :digestItem, :now, :now) " +
+		"ON CONFLICT (dedupKey) DO NOTHING";
+
+	@Override
+	public void enqueue(String target, String message) {
+		save(target, message, false);
+	}
+
+	@Override
+	public void enqueueSensitive(String target, String message) {
+		save(target, message, true);
+	}
+
+	@Override
+	public void enqueueVendorNewOrder(Long purchaseId) {
+		final String dedupKey = VENDOR_NEW_ORDER + ":" + purchaseId;
+		final LocalDateTime now = LocalDateTime.now();
+		String message = String.format("Ada pesanan baru dengan kode *%s*, segera cek aplikasi! %n%n%s",
+			purchaseId, properties.frontend().getBaseUrl()
+		);
+
+		// Two nodes confirming the same payment at once both get here, the second insert does nothing
+		int inserted = entityManager.createQuery(INSERT_IF_ABSENT)
+			.setParameter("notificationId", snowFlakeIdGenerator.generateId())
+			.setParameter("target", properties.vendor().getPhone())
+			.setParameter("message", message)
+			.setParameter("countryCode", COUNTRY_CODE)
+			.setParameter("status", NotificationOutbox.Status.PENDING)
+			.setParameter("nextAttemptAt", now.plusSeconds(properties.notification().getDigestWindowSeconds()))
+			.setParameter("dedupKey", dedupKey)
+			.setParameter("digestGroup", VENDOR_NEW_ORDER)
+			.setParameter("digestItem", String.valueOf(purchaseId))
+			.setParameter("now", now)
+			.executeUpdate();
+		if (inserted == 0) {
+			log.debug("New order alert of purchase {} is already queued", purchaseId);
+		}
+	}
+
+	private void save(String target, String message, boolean sensitive) {
+		NotificationOutbox notification = notificationOutboxRepository.save(NotificationOutbox.builder()
+			.target(target)
+			.message(message)
+			.countryCode(COUNTRY_CODE)
+			.status(NotificationOutbox.Status.PENDING)
+			.attempts(0)
+			.nextAttemptAt(LocalDateTime.now())
+			.sensitive(sensitive)
+			.build());
+		log.debug("Queued notification {} to {}", notification.getNotificationId(), target);
+	}
+
+	@Override
+	public String composeDigest(List<NotificationOutbox> notifications) {
+		if (notifications.size() == 1) {
+			return notifications.getFirst().getMessage();
+		}
+		String items = notifications.stream()
+			.map(notification -> "*" + notification.getDigestItem() + "*")
+			.collect(Collectors.joining(", "));
+		return String.format("Ada %d pesanan baru dengan kode %s, segera cek aplikasi! %n%n%s",
+			notifications.size(), items, properties.frontend().getBaseUrl()
+		);
+	}
+}
@@ -6,7 +6,6 @@ import dev.kons.kuenyawz.dtos.auth.OtpVerifyDto;
 import dev.kons.kuenyawz.entities.OTP;
 import dev.kons.kuenyawz.exceptions.InvalidCredentialsException;
 import dev.kons.kuenyawz.repositories.OTPRepository;
-import dev.kons.kuenyawz.services.logic.WhatsappApiService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,7 +22,7 @@ public class OTPServiceImpl implements OTPService {
 
 	private final ApplicationProperties properties;
 	private final OTPRepository otpRepository;
-	private final WhatsappApiService whatsappApiService;
+	private final NotificationService notificationService;
 
 	private final AccountService accountService;
 
@@ -49,8 +48,8 @@ public class OTPServiceImpl implements OTPService {
 			properties.getSecurity().getOtpExpireSeconds() / 60
 		);
 
-		log.info("OTP {} sent to {}", newOtp, otpRequestDto.getPhone());
-		whatsappApiService.send(otpRequestDto.getPhone(), otpMessage, "62");
+		log.info("OTP sent to {}", otpRequestDto.getPhone());
+		notificationService.enqueueSensitive(otpRequestDto.getPhone(), otpMessage);
 	}
 
 	@Override
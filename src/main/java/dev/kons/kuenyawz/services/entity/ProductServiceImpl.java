@@ -6,6 +6,7 @@ import dev.kons.kuenyawz.dtos.product.ProductPostDto;
 import dev.kons.kuenyawz.dtos.product.VariantDto;
 import dev.kons.kuenyawz.entities.Product;
 import dev.kons.kuenyawz.entities.Variant;
+import dev.kons.kuenyawz.events.CatalogChangedEvent;
 import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
 import dev.kons.kuenyawz.exceptions.ResourceExistsException;
 import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
@@ -19,6 +20,7 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -44,6 +46,7 @@ public class ProductServiceImpl implements ProductService {
 	private final ProductRepository productRepository;
 	private final ProductMapper productMapper;
 	private final ImageStorageService imageStorageService;
+	private final ApplicationEventPublisher eventPublisher;
 
 	private final static int DEFAULT_PAGE = 0;
 	private final static int DEFAULT_PAGE_SIZE = 10;
@@ -133,6 +136,7 @@ public class ProductServiceImpl implements ProductService {
 
 		// Convert and return
 		Product savedProduct = productRepository.save(product);
+		eventPublisher.publishEvent(new CatalogChangedEvent(savedProduct.getProductId()));
 		ProductDto productDto = productMapper.fromEntity(savedProduct);
 		return productDto;
 	}
@@ -160,6 +164,7 @@ public class ProductServiceImpl implements ProductService {
 
 		imageStorageService.deleteAllOfProductId(product.getProductId());
 		productRepository.deleteById(productId);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 	}
 
 	@Override
@@ -170,6 +175,7 @@ public class ProductServiceImpl implements ProductService {
 	public void hardDeleteAllProducts() {
 		imageStorageService.deleteAll();
 		productRepository.deleteAll();
+		eventPublisher.publishEvent(new CatalogChangedEvent(null));
 	}
 
 	@Override
@@ -183,6 +189,7 @@ public class ProductServiceImpl implements ProductService {
 
 		product.setDeleted(true);
 		productRepository.save(product);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 	}
 
 	@Override
@@ -196,6 +203,7 @@ public class ProductServiceImpl implements ProductService {
 			product.setDeleted(true);
 			productRepository.save(product);
 		});
+		eventPublisher.publishEvent(new CatalogChangedEvent(null));
 	}
 
 	@Override
@@ -218,6 +226,7 @@ public class ProductServiceImpl implements ProductService {
 
 		Product updatedProduct = productMapper.updateProductFromPatch(productPatchDto, product);
 		Product savedProduct = productRepository.save(updatedProduct);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 
 		// Convert and return
 		ProductDto productDto = productMapper.fromEntity(savedProduct);
@@ -233,6 +242,7 @@ public class ProductServiceImpl implements ProductService {
 
 		product.setAvailable(available);
 		Product savedProduct = productRepository.save(product);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 
 		// Convert and return
 		ProductDto productDto = productMapper.fromEntity(savedProduct);
@@ -1,10 +1,13 @@
 package dev.kons.kuenyawz.services.entity;
 
 import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchaseDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchasePatchDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchasePostDto;
 import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.Variant;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,8 +19,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface PurchaseService {
 	/**
@@ -40,10 +47,27 @@ public interface PurchaseService {
 	Page<PurchaseDto> findAll(Long accountId, PurchaseSearchCriteria criteria);
 
 	/**
-	 * Gets all purchases without pagination.
+	 * Passes the product ids bought in each confirmed or delivered purchase made since the given
+	 * time, one basket at a time, streamed from a projection without loading the purchase entities.
+	 *
+	 * @param since  {@link LocalDateTime} the earliest purchase creation time
+	 * @param action receives the creation time of the purchase and the set of product ids bought in it
+	 */
+	@Transactional(readOnly = true)
+	void forEachAprioriBasket(LocalDateTime since, BiConsumer<LocalDateTime, Set<Long>> action);
+
+	/**
+	 * Returns the quantity of every variant to prepare on each event date of the range, summed by
+	 * a single grouped query over the purchase items without loading any purchase.
+	 *
+	 * @param from     {@link LocalDate} first event date, inclusive
+	 * @param to       {@link LocalDate} last event date, inclusive
+	 * @param statuses {@link Collection} of planned statuses, confirmed and processing if empty
+	 * @return {@link ProductionPlanDto}
+	 * @throws IllegalOperationException if the range is reversed or too long
 	 */
 	@Transactional(readOnly = true)
-	List<Purchase> getAprioriNeeds();
+	ProductionPlanDto getProductionPlan(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses);
 
 	/**
 	 * Finds a purchase by its purchase id.
@@ -90,6 +114,16 @@ public interface PurchaseService {
 	@Transactional
 	Purchase create(PurchasePostDto purchasePostDto);
 
+	/**
+	 * Creates a new purchase from variants that were already loaded.
+	 *
+	 * @param purchasePostDto {@link PurchasePostDto}
+	 * @param variants        {@link Map} of every variant of the items keyed by their ID
+	 * @return {@link Purchase}
+	 */
+	@Transactional
+	Purchase create(PurchasePostDto purchasePostDto, Map<Long, Variant> variants);
+
 	/**
 	 * Patches a purchase.
 	 *
@@ -180,11 +214,13 @@ public interface PurchaseService {
 		private LocalDate from;
 		private LocalDate to;
 		private Long accountId;
+		private BigDecimal minTotal;
+		private BigDecimal maxTotal;
 		private String orderBy;
 		private Integer page;
 		private Integer pageSize;
 
-		public static PurchaseSearchCriteria of(Boolean isAscending, String rawStatuses, String paymentType, LocalDate from, LocalDate to, Long accountId, String sortBy, Integer page, Integer pageSize) {
+		public static PurchaseSearchCriteria of(Boolean isAscending, String rawStatuses, String paymentType, LocalDate from, LocalDate to, Long accountId, BigDecimal minTotal, BigDecimal maxTotal, String sortBy, Integer page, Integer pageSize) {
 			isAscending = (isAscending != null && isAscending);
 			List<String> statuses = (rawStatuses == null) ? null : List.of(rawStatuses.trim().split(","));
 			List<Purchase.PurchaseStatus> statusEnums = (statuses != null)
@@ -202,6 +238,8 @@ public interface PurchaseService {
 				.from(from)
 				.to(to)
 				.accountId(accountId)
+				.minTotal(minTotal)
+				.maxTotal(maxTotal)
 				.orderBy(sortBy)
 				.page(page)
 				.pageSize(pageSize)
@@ -2,7 +2,11 @@ package dev.kons.kuenyawz.services.entity;
 
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.dtos.apriori.PurchaseProductTuple;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanDto;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanLine;
 import dev.kons.kuenyawz.dtos.purchase.PurchaseDto;
+import dev.kons.kuenyawz.dtos.purchase.PurchaseItemPostDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchasePatchDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchasePostDto;
 import dev.kons.kuenyawz.entities.Coordinate;
@@ -12,6 +16,7 @@ import dev.kons.kuenyawz.entities.Variant;
 import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import dev.kons.kuenyawz.exceptions.UnauthorizedException;
 import dev.kons.kuenyawz.mapper.PurchaseMapper;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
 import dev.kons.kuenyawz.repositories.PurchaseRepository;
 import dev.kons.kuenyawz.repositories.PurchaseSpec;
 import dev.kons.kuenyawz.services.logic.AuthService;
@@ -27,10 +32,12 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +45,7 @@ import java.util.Map;
 public class PurchaseServiceImpl implements PurchaseService {
 
 	private final PurchaseRepository purchaseRepository;
+	private final PurchaseItemRepository purchaseItemRepository;
 	private final PurchaseMapper purchaseMapper;
 	private final TransactionService transactionService;
 	private final ApplicationProperties properties;
@@ -56,7 +64,9 @@ public class PurchaseServiceImpl implements PurchaseService {
 			"    #criteria.orderBy, " +
 			"    #criteria.page, " +
 			"    #criteria.pageSize, " +
-			"    #criteria.isAscending" +
+			"    #criteria.isAscending, " +
+			"    #criteria.minTotal, " +
+			"    #criteria.maxTotal" +
 			")",
 		condition = "#criteria.page != null && #criteria.pageSize != null"
 	)
@@ -92,9 +102,10 @@ public class PurchaseServiceImpl implements PurchaseService {
 	}
 
 	private Page<PurchaseDto> findAllHelper(PurchaseSearchCriteria criteria) {
-		Specification<Purchase> spec = PurchaseSpec.withAccountId1(criteria.getAccountId())
+		Specification<Purchase> spec = PurchaseSpec.withAccountId2(criteria.getAccountId())
 			.and(PurchaseSpec.withStatuses(criteria.getStatuses()))
-			.and(PurchaseSpec.withPaymentType(criteria.getPaymentType()));
+			.and(PurchaseSpec.withPaymentType(criteria.getPaymentType()))
+			.and(PurchaseSpec.withGrandTotalBetween(criteria.getMinTotal(), criteria.getMaxTotal()));
 
 		if (criteria.getFrom() != null && criteria.getTo() != null) {
 			spec = spec.and(PurchaseSpec.withDateBetween(criteria.getFrom(), criteria.getTo()));
@@ -113,12 +124,64 @@ public class PurchaseServiceImpl implements PurchaseService {
 	}
 
 	@Override
-	public List<Purchase> getAprioriNeeds() {
-		Specification<Purchase> spec = PurchaseSpec
-			.withStatus(Purchase.PurchaseStatus.CONFIRMED)
-			.or(PurchaseSpec.withStatus(Purchase.PurchaseStatus.DELIVERED));
+	public void forEachAprioriBasket(LocalDateTime since, BiConsumer<LocalDateTime, Set<Long>> action) {
+		final List<Purchase.PurchaseStatus> statuses = List.of(
+			Purchase.PurchaseStatus.CONFIRMED,
+			Purchase.PurchaseStatus.DELIVERED
+		);
 
-		return purchaseRepository.findAll(spec);
+		// Tuples arrive ordered by purchase id, so a basket is complete once the id changes
+		try (Stream<PurchaseProductTuple> tuples = purchaseItemRepository.streamPurchaseProducts(statuses, since)) {
+			Iterator<PurchaseProductTuple> iterator = tuples.iterator();
+			PurchaseProductTuple first = null;
+			Set<Long> basket = new HashSet<>();
+			while (iterator.hasNext()) {
+				PurchaseProductTuple tuple = iterator.next();
+				if (first != null && !first.purchaseId().equals(tuple.purchaseId())) {
+					action.accept(first.createdAt(), basket);
+					basket = new HashSet<>();
+				}
+				if (basket.isEmpty()) {
+					first = tuple;
+				}
+				basket.add(tuple.productId());
+			}
+			if (first != null) {
+				action.accept(first.createdAt(), basket);
+			}
+		}
+	}
+
+	@Override
+	public ProductionPlanDto getProductionPlan(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses) {
+		if (from.isAfter(to)) {
+			throw new IllegalOperationException("The range must not end before it starts");
+		}
+		final int maxRangeDays = properties.dashboard().getMaxRangeDays();
+		if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+			throw new IllegalOperationException("The range must not be longer than " + maxRangeDays + " days");
+		}
+		final List<Purchase.PurchaseStatus> planned = (statuses == null || statuses.isEmpty())
+			? List.of(Purchase.PurchaseStatus.CONFIRMED, Purchase.PurchaseStatus.PROCESSING)
+			: List.copyOf(statuses);
+
+		// Lines arrive ordered by event date, so a day is complete once the date changes
+		List<ProductionPlanDto.Day> days = new ArrayList<>();
+		ProductionPlanDto.Day day = null;
+		for (ProductionPlanLine line : purchaseItemRepository.sumProductionPlan(from, to, planned)) {
+			if (day == null || !day.getEventDate().equals(line.eventDate())) {
+				day = new ProductionPlanDto.Day(line.eventDate(), new ArrayList<>());
+				days.add(day);
+			}
+			day.getItems().add(line);
+		}
+
+		return ProductionPlanDto.builder()
+			.from(from)
+			.to(to)
+			.statuses(planned.stream().map(Enum::name).toList())
+			.days(days)
+			.build();
 	}
 
 	@Override
@@ -131,7 +194,7 @@ public class PurchaseServiceImpl implements PurchaseService {
 
 	@Override
 	public Purchase getById(Long purchaseId) {
-		return purchaseRepository.findById(purchaseId)
+		return purchaseRepository.findDetailedByPurchaseId(purchaseId)
 			.orElseThrow(() -> new EntityNotFoundException("Purchase not found"));
 	}
 
@@ -152,6 +215,14 @@ public class PurchaseServiceImpl implements PurchaseService {
 
 	@Override
 	public Purchase create(PurchasePostDto purchasePostDto) {
+		List<Long> variantIds = purchasePostDto.getPurchaseItems().stream()
+			.map(PurchaseItemPostDto::getVariantId)
+			.toList();
+		return create(purchasePostDto, variantService.getVariantsById(variantIds));
+	}
+
+	@Override
+	public Purchase create(PurchasePostDto purchasePostDto, Map<Long, Variant> variants) {
 		if (!AuthService.isAuthenticatedUser())
 			throw new UnauthorizedException("You are not authorized to perform this action");
 		double distance = Coordinate.of(purchasePostDto.getLatitude(), purchasePostDto.getLongitude())
@@ -160,7 +231,7 @@ public class PurchaseServiceImpl implements PurchaseService {
 			throw new IllegalArgumentException("Coordinate should not exceed 30 km from the vendor: " + distance);
 		}
 
-		Purchase purchase = buildPurchaseFromDto(purchasePostDto);
+		Purchase purchase = buildPurchaseFromDto(purchasePostDto, variants, distance);
 		Purchase savedPurchase = purchaseRepository.save(purchase);
 
 		// Create transactions for the purchase
@@ -168,7 +239,7 @@ public class PurchaseServiceImpl implements PurchaseService {
 		return savedPurchase;
 	}
 
-	private Purchase buildPurchaseFromDto(PurchasePostDto purchasePostDto) {
+	private Purchase buildPurchaseFromDto(PurchasePostDto purchasePostDto, Map<Long, Variant> variants, double distance) {
 		Purchase purchase = Purchase.builder()
 			.fullAddress(purchasePostDto.getFullAddress())
 			.paymentType(PaymentType.fromString(purchasePostDto.getPaymentType()))
@@ -181,17 +252,17 @@ public class PurchaseServiceImpl implements PurchaseService {
 
 		// Calculate delivery fee if not provided
 		if (purchasePostDto.getDeliveryFee() != null) {
-			purchase.setDeliveryFee(BigDecimal.valueOf(purchasePostDto.getDeliveryFee()));
+			purchase.changeDeliveryFee(BigDecimal.valueOf(purchasePostDto.getDeliveryFee()));
 		} else {
 			BigDecimal deliveryFee = purchase.getDeliveryOption() == Purchase.DeliveryOption.DELIVERY
-				? calcDeliveryFee(purchase)
+				? calcDeliveryFee(distance)
 				: BigDecimal.ZERO;
-			purchase.setDeliveryFee(deliveryFee);
+			purchase.changeDeliveryFee(deliveryFee);
 		}
 
 		List<PurchaseItem> purchaseItems = purchasePostDto.getPurchaseItems().stream()
 			.map(dto -> {
-					Variant variant = variantService.getVariantById(dto.getVariantId());
+					Variant variant = variants.get(dto.getVariantId());
 					VariantService.validateQuantityConsistent(variant, dto.getQuantity());
 
 					PurchaseItem purchaseItem = PurchaseItem.builder()
@@ -207,18 +278,23 @@ public class PurchaseServiceImpl implements PurchaseService {
 			).toList();
 
 		purchase.setPurchaseItems(purchaseItems);
+		purchase.recalculateTotals();
 		return purchase;
 	}
 
 	public BigDecimal getTotalPriceWIthFee(Purchase purchase) {
-		return purchase.getTotalPrice().add(calcDeliveryFee(purchase));
+		return purchase.getSubtotal().add(calcDeliveryFee(purchase));
 	}
 
 	public BigDecimal calcDeliveryFee(Purchase purchase) {
 		final var vendorLat = properties.vendor().getLatitude();
 		final var vendorLong = properties.vendor().getLongitude();
 
-		int distanceInKm = (int) Math.floor(purchase.getCoordinate().calculateDistance(vendorLat, vendorLong));
+		return calcDeliveryFee(purchase.getCoordinate().calculateDistance(vendorLat, vendorLong));
+	}
+
+	private BigDecimal calcDeliveryFee(double distance) {
+		int distanceInKm = (int) Math.floor(distance);
 
 		return BigDecimal.valueOf(distanceInKm)
 			.multiply(BigDecimal.valueOf(properties.vendor().getFeePerKm()));
@@ -242,6 +318,7 @@ public class PurchaseServiceImpl implements PurchaseService {
 			.orElseThrow(() -> new EntityNotFoundException("Purchase not found"));
 
 		// Cancels transactions of the purchase
+		transactionService.cancelAllAtGateway(purchaseId);
 		transactionService.cancelAllOf(purchaseId);
 
 		purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
@@ -268,7 +345,7 @@ public class PurchaseServiceImpl implements PurchaseService {
 			throw new IllegalOperationException("Purchase has already been confirmed");
 		if (fee.compareTo(BigDecimal.ZERO) < 0)
 			throw new IllegalArgumentException("Fee cannot be negative");
-		purchase.setDeliveryFee(fee);
+		purchase.changeDeliveryFee(fee);
 		Purchase saved = purchaseRepository.save(purchase);
 		return convertToDto(saved);
 	}
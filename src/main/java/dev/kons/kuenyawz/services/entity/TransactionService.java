@@ -6,6 +6,7 @@ import dev.kons.kuenyawz.dtos.purchase.TransactionPatchDto;
 import dev.kons.kuenyawz.entities.Account;
 import dev.kons.kuenyawz.entities.Purchase;
 import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Getter;
@@ -17,6 +18,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TransactionService {
@@ -139,7 +141,18 @@ public interface TransactionService {
 	TransactionDto patch(Long transactionId, TransactionPatchDto transactionPatchDto);
 
 	/**
-	 * Calls the payment gateway to cancel all transactions of a purchase.
+	 * Calls the payment gateway to cancel all transactions of a purchase not cancelled yet, without
+	 * changing them. Called once before the transition of the purchase, which then records the
+	 * cancellation with {@link #cancelAllOf(Long)}, so a retried transition never calls the gateway.
+	 *
+	 * @param purchaseId {@link Long} purchase id
+	 * @throws IllegalOperationException if the gateway no longer allows cancelling a transaction
+	 */
+	void cancelAllAtGateway(Long purchaseId);
+
+	/**
+	 * Marks all transactions of a purchase cancelled, once they were cancelled at the payment
+	 * gateway with {@link #cancelAllAtGateway(Long)}.
 	 *
 	 * @param purchaseId {@link Long} purchase id
 	 */
@@ -162,6 +175,17 @@ public interface TransactionService {
 	@Transactional
 	void cancelOne(Transaction transaction);
 
+	/**
+	 * Expires a batch of unpaid transactions whose expiry time has passed, cancels their pending
+	 * purchases and gives the dates of those purchases back to the calendar.
+	 *
+	 * @param expiredBefore time the expiry of the transactions is compared against
+	 * @param limit         maximum number of transactions to expire
+	 * @return number of transactions expired, without those paid or cancelled since they were found
+	 */
+	@Transactional
+	int expireOverdue(LocalDateTime expiredBefore, int limit);
+
 	/**
 	 * Converts a transaction entity to DTO.
 	 *
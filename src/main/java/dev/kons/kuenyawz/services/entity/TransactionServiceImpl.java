@@ -2,6 +2,7 @@ package dev.kons.kuenyawz.services.entity;
 
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.dtos.purchase.ExpiredTransaction;
 import dev.kons.kuenyawz.dtos.purchase.TransactionDto;
 import dev.kons.kuenyawz.dtos.purchase.TransactionPatchDto;
 import dev.kons.kuenyawz.entities.Account;
@@ -14,12 +15,14 @@ import dev.kons.kuenyawz.repositories.TransactionRepository;
 import dev.kons.kuenyawz.repositories.TransactionSpec;
 import dev.kons.kuenyawz.services.logic.AuthService;
 import dev.kons.kuenyawz.services.logic.MidtransApiService;
-import dev.kons.kuenyawz.services.logic.WhatsappApiService;
+import dev.kons.kuenyawz.services.logic.OrderRollupService;
+import dev.kons.kuenyawz.services.logic.OrderTransitionService;
 import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -27,20 +30,29 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionServiceImpl implements TransactionService {
 
+	/// Statuses of a transaction that was never paid nor closed by the payment gateway
+	private static final List<Transaction.TransactionStatus> UNPAID = List.of(
+		Transaction.TransactionStatus.CREATED,
+		Transaction.TransactionStatus.PENDING
+	);
+
 	private final TransactionRepository transactionRepository;
 	private final SnowFlakeIdGenerator snowFlakeIdGenerator;
 	private final MidtransApiService midtransApiService;
 	private final PurchaseRepository purchaseRepository;
-	private final WhatsappApiService whatsappApiService;
+	private final NotificationService notificationService;
+	private final DateReservationService dateReservationService;
+	private final OrderRollupService orderRollupService;
+	private final OrderTransitionService orderTransitionService;
 	private final ApplicationProperties properties;
 
 	@Override
@@ -125,17 +137,28 @@ public class TransactionServiceImpl implements TransactionService {
 
 	@Override
 	public TransactionDto fetchTransaction(Long transactionId) {
-		Transaction transaction = transactionRepository.findById(transactionId)
+		Long purchaseId = transactionRepository.findPurchaseIdByTransactionId(transactionId)
 			.orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
 		MidtransResponse res = midtransApiService.fetchTransactionStatus(String.valueOf(transactionId));
 
-		return fetchTransactionHelper(transaction, res);
+		return orderTransitionService.execute(purchaseId, () -> fetchTransactionHelper(transactionId, res));
 	}
 
 	@Override
 	public TransactionDto fetchTransaction(Transaction transaction) {
 		MidtransResponse res = midtransApiService.fetchTransactionStatus(String.valueOf(transaction.getTransactionId()));
 
+		return orderTransitionService.execute(transaction.getPurchase().getPurchaseId(),
+			() -> fetchTransactionHelper(transaction.getTransactionId(), res));
+	}
+
+	/**
+	 * Applies the fetched status to a freshly read transaction, so a retried transition never
+	 * works on a stale version.
+	 */
+	private TransactionDto fetchTransactionHelper(Long transactionId, MidtransResponse res) {
+		Transaction transaction = transactionRepository.findWithPurchaseByTransactionId(transactionId)
+			.orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
 		return fetchTransactionHelper(transaction, res);
 	}
 
@@ -146,7 +169,7 @@ public class TransactionServiceImpl implements TransactionService {
 		// Check for fraud status of the transaction, this is for card payments
 		if (res.getFraudStatus() != null && !res.getFraudStatus().equalsIgnoreCase("accept")) {
 			transaction.setStatus(Transaction.TransactionStatus.CANCEL);
-			purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+			cancelPurchase(purchase);
 			transactionRepository.save(transaction);
 			purchaseRepository.save(purchase);
 			return convertToDto(transaction);
@@ -157,13 +180,10 @@ public class TransactionServiceImpl implements TransactionService {
 		// Update purchase status based on transaction status
 		if (purchase.getStatus() == Purchase.PurchaseStatus.PENDING) {
 			if (status == Transaction.TransactionStatus.CAPTURE || status == Transaction.TransactionStatus.SETTLEMENT) {
-				String message = String.format("Ada pesanan baru dengan kode *%s*, segera cek aplikasi! %n%n%s",
-					purchase.getPurchaseId(), properties.frontend().getBaseUrl()
-				);
-				whatsappApiService.send(properties.vendor().getPhone(), message, "62");
+				notificationService.enqueueVendorNewOrder(purchase.getPurchaseId());
 				purchase.setStatus(Purchase.PurchaseStatus.CONFIRMING);
 			} else if (status == Transaction.TransactionStatus.CANCEL || status == Transaction.TransactionStatus.EXPIRE) {
-				purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+				cancelPurchase(purchase);
 			}
 			purchaseRepository.save(purchase);
 		}
@@ -172,6 +192,16 @@ public class TransactionServiceImpl implements TransactionService {
 		return convertToDto(transaction);
 	}
 
+	/**
+	 * Cancels a purchase whose payment failed and gives its dates back to the calendar.
+	 */
+	private void cancelPurchase(Purchase purchase) {
+		if (purchase.getStatus() != Purchase.PurchaseStatus.CANCELLED) {
+			dateReservationService.release(purchase.getPurchaseId(), purchase.getEventDate());
+		}
+		purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+	}
+
 	@Override
 	public Transaction build(Purchase purchase, Account account) {
 		AuthService.validateMatchesId(account.getAccountId());
@@ -182,7 +212,7 @@ public class TransactionServiceImpl implements TransactionService {
 		return Transaction.builder()
 			.transactionId(transactionId)
 			.referenceId(null)
-			.amount(purchase.getTotalPrice().add(purchase.getDeliveryFee()).add(paymentFee))
+			.amount(purchase.getGrandTotal().add(paymentFee))
 			.paymentUrl(null)
 			.status(Transaction.TransactionStatus.CREATED)
 			.paymentType(purchase.getPaymentType())
@@ -217,16 +247,30 @@ public class TransactionServiceImpl implements TransactionService {
 		return convertToDto(savedTransaction);
 	}
 
+	@Override
+	public void cancelAllAtGateway(Long purchaseId) {
+		transactionsOf(purchaseId).forEach(t -> {
+			validateCanCancel(t);
+			if (t.getStatus() != Transaction.TransactionStatus.CANCEL) {
+				log.warn("Cancelling transaction id {} of purchase {}", t.getTransactionId(), purchaseId);
+				cancelAtGateway(t);
+			}
+		});
+	}
+
 	@Override
 	public void cancelAllOf(Long purchaseId) {
+		transactionsOf(purchaseId).forEach(t -> {
+			validateCanCancel(t);
+			markCancelled(t);
+		});
+	}
+
+	private Page<Transaction> transactionsOf(Long purchaseId) {
 		Pageable pageable = Pageable.unpaged(
 			Sort.by(Sort.Order.desc("createdAt"))
 		);
-		Page<Transaction> transactions = transactionRepository.findByPurchase_PurchaseId(purchaseId, pageable);
-		transactions.forEach(t -> {
-			log.warn("Cancelling transaction id {} of purchase {}", t.getTransactionId(), purchaseId);
-			cancelOneProcess(t);
-		});
+		return transactionRepository.findByPurchase_PurchaseId(purchaseId, pageable);
 	}
 
 	@Override
@@ -243,32 +287,85 @@ public class TransactionServiceImpl implements TransactionService {
 	}
 
 	private void cancelOneProcess(Transaction transaction) {
+		validateCanCancel(transaction);
+
+		if (transaction.getStatus() == Transaction.TransactionStatus.CANCEL) {
+			log.warn("Transaction {} has already been cancelled", transaction.getTransactionId());
+			return;
+		}
+
+		cancelAtGateway(transaction);
+		markCancelled(transaction);
+	}
+
+	private void validateCanCancel(Transaction transaction) {
 		Account account = AuthService.getAuthenticatedAccount();
 		if (!(AuthService.isAuthenticatedAdmin() || Objects.equals(transaction.getAccount().getAccountId(), account.getAccountId()))) {
 			throw new UnauthorizedException("You are not authorized to cancel this transaction");
 		}
+	}
 
+	private void cancelAtGateway(Transaction transaction) {
 		if (transaction.getStatus() == Transaction.TransactionStatus.CREATED) {
 			log.warn("Transaction {} has not been continued yet, cancelling", transaction.getTransactionId());
 		}
 
-		if (transaction.getStatus() == Transaction.TransactionStatus.CANCEL) {
-			log.warn("Transaction {} has already been cancelled", transaction.getTransactionId());
-			return;
-		}
-
 		// Call Midtrans API to cancel the transaction
-		MidtransResponse response = midtransApiService.cancelTransaction(String.valueOf(transaction.getTransactionId()));
+		final String orderId = String.valueOf(transaction.getTransactionId());
+		MidtransResponse response = midtransApiService.cancelTransaction(orderId);
 		if (Objects.equals(response.getStatusCode(), "404")) {
 			log.info("Transaction {} not found in Midtrans, cancelling locally", transaction.getTransactionId());
-		} else if (Objects.equals(response.getStatusCode(), "412")) {
+		} else if (Objects.equals(response.getStatusCode(), "412") && !isClosedAtGateway(orderId)) {
 			throw new IllegalOperationException("Modification is not allowed on the transaction");
 		}
+	}
 
+	/// A transaction cancelled by an earlier attempt or expired meanwhile refuses another cancel, but is closed all the same
+	private boolean isClosedAtGateway(String orderId) {
+		String status = midtransApiService.fetchTransactionStatus(orderId).getTransactionStatus();
+		return "cancel".equalsIgnoreCase(status) || "expire".equalsIgnoreCase(status);
+	}
+
+	private void markCancelled(Transaction transaction) {
 		transaction.setStatus(Transaction.TransactionStatus.CANCEL);
 		transactionRepository.save(transaction);
 	}
 
+	@Override
+	public int expireOverdue(LocalDateTime expiredBefore, int limit) {
+		List<ExpiredTransaction> expired = transactionRepository.findExpired(UNPAID, expiredBefore, Limit.of(limit));
+		if (expired.isEmpty()) {
+			return 0;
+		}
+
+		final LocalDateTime now = LocalDateTime.now();
+		List<Long> transactionIds = expired.stream().map(ExpiredTransaction::transactionId).toList();
+		int expiredCount = transactionRepository.updateStatus(transactionIds, UNPAID, Transaction.TransactionStatus.EXPIRE, now);
+		if (expiredCount == 0) {
+			return 0;
+		}
+
+		// Only the transactions actually expired cancel their purchase, the others were paid or cancelled meanwhile
+		Set<Long> purchaseIds = new HashSet<>(transactionRepository.findPurchaseIdsByTransactionIdInAndStatus(
+			transactionIds, Transaction.TransactionStatus.EXPIRE));
+
+		// Purchases already paid in part keep their status, only the late payment expires
+		List<Purchase> pending = purchaseRepository.findAllByPurchaseIdInAndStatus(purchaseIds, Purchase.PurchaseStatus.PENDING);
+		if (!pending.isEmpty()) {
+			Map<Long, LocalDate> eventDates = new HashMap<>();
+			pending.forEach(purchase -> eventDates.put(purchase.getPurchaseId(), purchase.getEventDate()));
+			purchaseRepository.updateStatus(eventDates.keySet(), Purchase.PurchaseStatus.CANCELLED, now);
+			dateReservationService.releaseAll(eventDates);
+
+			// The bulk update skips the entity listeners
+			pending.forEach(purchase -> orderRollupService.record(
+				purchase, Purchase.PurchaseStatus.PENDING, Purchase.PurchaseStatus.CANCELLED));
+		}
+
+		log.info("Expired {} transactions and cancelled {} purchases", expiredCount, pending.size());
+		return expiredCount;
+	}
+
 	@Override
 	public TransactionDto convertToDto(Transaction transaction) {
 		return TransactionDto.fromEntity(transaction);
@@ -8,7 +8,9 @@ import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface VariantService {
 
@@ -60,6 +62,16 @@ public interface VariantService {
 	@Transactional(readOnly = true)
 	Variant getVariantById(long variantId);
 
+	/**
+	 * Gets several variants by their IDs in a single query.
+	 *
+	 * @param variantIds {@link Collection} of variant IDs
+	 * @return {@link Map} of the variants keyed by their ID
+	 * @throws ResourceNotFoundException if one of the variants does not exist
+	 */
+	@Transactional(readOnly = true)
+	Map<Long, Variant> getVariantsById(Collection<Long> variantIds);
+
 	/**
 	 * Gets all variants of a product by its ID.
 	 *
@@ -5,6 +5,7 @@ import dev.kons.kuenyawz.dtos.product.VariantPatchDto;
 import dev.kons.kuenyawz.dtos.product.VariantPostDto;
 import dev.kons.kuenyawz.entities.Product;
 import dev.kons.kuenyawz.entities.Variant;
+import dev.kons.kuenyawz.events.CatalogChangedEvent;
 import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
 import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
@@ -13,12 +14,11 @@ import dev.kons.kuenyawz.repositories.ProductRepository;
 import dev.kons.kuenyawz.repositories.VariantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 @Service
 @Primary
@@ -29,6 +29,7 @@ public class VariantServiceImpl implements VariantService {
 	private final ProductRepository productRepository;
 	private final VariantRepository variantRepository;
 	private final VariantMapper variantMapper;
+	private final ApplicationEventPublisher eventPublisher;
 
 	@Override
 	public List<VariantDto> getAllVariants() {
@@ -59,6 +60,7 @@ public class VariantServiceImpl implements VariantService {
 		product.getVariants().add(variant);
 
 		Variant savedVariant = variantRepository.save(variant);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 
 		// Convert and return
 		VariantDto variantDto = variantMapper.fromEntity(savedVariant);
@@ -90,6 +92,7 @@ public class VariantServiceImpl implements VariantService {
 		product.getVariants().addAll(variants);
 
 		List<Variant> savedVariants = variantRepository.saveAll(variants);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 		log.info("CREATED MULTIPLE: {}", savedVariants);
 
 		// Convert and return
@@ -113,6 +116,18 @@ public class VariantServiceImpl implements VariantService {
 			.orElseThrow(() -> new ResourceNotFoundException("Variant with ID '" + variantId + "' not found"));
 	}
 
+	@Override
+	public Map<Long, Variant> getVariantsById(Collection<Long> variantIds) {
+		Map<Long, Variant> variants = new HashMap<>();
+		variantRepository.findAllById(new HashSet<>(variantIds))
+			.forEach(variant -> variants.put(variant.getVariantId(), variant));
+		for (Long variantId : variantIds) {
+			if (!variants.containsKey(variantId))
+				throw new ResourceNotFoundException("Variant with ID '" + variantId + "' not found");
+		}
+		return variants;
+	}
+
 	@Override
 	public List<VariantDto> getVariantsOfProductId(Long productId) {
 		List<Variant> variants = variantRepository.findAllByProduct_ProductId(productId);
@@ -133,6 +148,7 @@ public class VariantServiceImpl implements VariantService {
 
 		Variant updatedVariant = variantMapper.updateVariantFromPatch(variantPatchDto, variant);
 		Variant savedVariant = variantRepository.save(updatedVariant);
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 		log.info("UPDATED: {}", savedVariant);
 
 		// Convert and return
@@ -151,6 +167,7 @@ public class VariantServiceImpl implements VariantService {
 		if (deleted == 0) {
 			throw new ResourceNotFoundException("Variant with ID '" + variantId + "' not found in Product with ID '" + productId + "'");
 		}
+		eventPublisher.publishEvent(new CatalogChangedEvent(productId));
 		log.info("DELETED: {}", variantId);
 	}
 
@@ -1,17 +1,31 @@
 package dev.kons.kuenyawz.services.logic;
 
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public interface AprioriService {
 
     /**
-     * Find frequent of each item(Product)
+     * Mine pairwise association rules of every product, scored by support, confidence and lift.
+     * Only rules passing the minimum support and confidence are returned.
+     *
+     * @param orders Map of order (purchase) id to the set of product ids bought in it
+     * @return {@link List} of {@link AssociationRule}
+     */
+    List<AssociationRule> findAllRules(Map<Long, Set<Long>> orders);
+
+    /**
+     * Mine pairwise association rules out of weighted counts, where support is relative to the
+     * total weight of the baskets. Only rules passing the minimum support and confidence are returned.
      *
-     * @return Set<Map < Long ( ProductId ), Set < Long ( ProductId )>>>
-     * @input Set<Map < Long ( OrderId ), Set < Long ( ProductId )>>>
+     * @param counts {@link BasketCounts} of the mined baskets
+     * @return {@link List} of {@link AssociationRule}
      */
-    Map<Long, Set<Long>> findAllFrequentSetOfItems(Map<Long, Set<Long>> orders);
+    List<AssociationRule> findAllRules(BasketCounts counts);
 
     /**
      * Find frequent of one item(Product), to find the match frequent item with the selected item
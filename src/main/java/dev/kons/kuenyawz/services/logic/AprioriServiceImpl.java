@@ -1,32 +1,57 @@
 package dev.kons.kuenyawz.services.logic;
 
-import dev.kons.kuenyawz.repositories.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class AprioriServiceImpl implements AprioriService {
 
     private final double MIN_SUPPORT = 0.05;
     private final double MIN_CONFIDENCE = 0.6;
-    private final ProductRepository productRepository;
 
     @Override
-    public Map<Long, Set<Long>> findAllFrequentSetOfItems(Map<Long, Set<Long>> orders) {
-        int targetSetSize = 3;
-        Map<Long, Set<Long>> result = new HashMap<>();
-        List<Long> productIds = productRepository.findAllIds();
-
-        for (Long productId : productIds) {
-            Set<Long> currentFrequentSets = findFrequentSetItemWith(orders, productId, targetSetSize);
-            result.put(productId, currentFrequentSets);
+    public List<AssociationRule> findAllRules(Map<Long, Set<Long>> orders) {
+        BasketCounts counts = new BasketCounts();
+        orders.values().forEach(basket -> counts.add(basket, 1));
+        return findAllRules(counts);
+    }
+
+    @Override
+    public List<AssociationRule> findAllRules(BasketCounts counts) {
+        final double totalBaskets = counts.baskets();
+        if (totalBaskets <= 0) {
+            return List.of();
         }
 
-        return result;
+        List<AssociationRule> rules = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, Double>> entry : counts.pairs().entrySet()) {
+            final long first = entry.getKey();
+            for (Map.Entry<Long, Double> partner : entry.getValue().entrySet()) {
+                final long second = partner.getKey();
+                final double together = partner.getValue();
+                final double support = together / totalBaskets;
+                if (support < MIN_SUPPORT) {
+                    continue;
+                }
+                addRule(rules, first, second, together, support, counts);
+                addRule(rules, second, first, together, support, counts);
+            }
+        }
+        return rules;
+    }
+
+    private void addRule(List<AssociationRule> rules, long antecedent, long consequent, double together,
+                         double support, BasketCounts counts) {
+        final double confidence = together / counts.itemCount(antecedent);
+        if (confidence < MIN_CONFIDENCE) {
+            return;
+        }
+        final double consequentSupport = counts.itemCount(consequent) / counts.baskets();
+        rules.add(new AssociationRule(antecedent, consequent, support, confidence, confidence / consequentSupport));
     }
 
     @Override
@@ -0,0 +1,24 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+
+import java.time.LocalDate;
+
+public interface BasketWindowService {
+
+	/**
+	 * Brings the weekly buckets of purchase counts up to date and merges them into the counts to
+	 * mine. Buckets falling out of the window are dropped and, with time decay enabled, each bucket
+	 * is weighted by the configured half-life of its age. Only the most recent buckets are read
+	 * again from the database, older ones are kept as they are.
+	 *
+	 * @param today {@link LocalDate} the reference date of the window
+	 * @return {@link BasketCounts} merged counts of the window
+	 */
+	BasketCounts collect(LocalDate today);
+
+	/**
+	 * Drops every bucket, the next collection reads the whole window again.
+	 */
+	void clear();
+}
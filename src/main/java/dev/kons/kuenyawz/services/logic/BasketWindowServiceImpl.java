@@ -0,0 +1,75 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+import dev.kons.kuenyawz.services.entity.PurchaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BasketWindowServiceImpl implements BasketWindowService {
+
+	private final PurchaseService purchaseService;
+	private final ApplicationProperties properties;
+
+	/// Purchases are usually confirmed within this many weeks, older buckets no longer change
+	private static final int REFRESHED_WEEKS = 4;
+
+	/// Weekly buckets keyed by the monday starting the week
+	private final NavigableMap<LocalDate, BasketCounts> buckets = new TreeMap<>();
+	private boolean loaded = false;
+
+	@Override
+	public synchronized BasketCounts collect(LocalDate today) {
+		final ApplicationProperties.Recommender config = properties.recommender();
+		final LocalDate currentWeek = weekOf(today);
+		final LocalDate oldestWeek = currentWeek.minusWeeks(Math.max(config.getWindowWeeks(), 1) - 1L);
+
+		// Expire the buckets out of the window, then read again only the ones still changing
+		buckets.headMap(oldestWeek, false).clear();
+		LocalDate reloadFrom = oldestWeek;
+		if (loaded) {
+			LocalDate recent = currentWeek.minusWeeks(REFRESHED_WEEKS - 1L);
+			reloadFrom = recent.isAfter(oldestWeek) ? recent : oldestWeek;
+		}
+		buckets.tailMap(reloadFrom, true).clear();
+		purchaseService.forEachAprioriBasket(reloadFrom.atStartOfDay(), (createdAt, basket) -> buckets
+			.computeIfAbsent(weekOf(createdAt.toLocalDate()), week -> new BasketCounts())
+			.add(basket, 1));
+		loaded = true;
+
+		BasketCounts merged = new BasketCounts();
+		buckets.forEach((week, counts) -> merged.merge(counts, weightOf(week, currentWeek, config)));
+		log.info("Collected {} weekly buckets since {}, reloaded since {}", buckets.size(), oldestWeek, reloadFrom);
+		return merged;
+	}
+
+	@Override
+	public synchronized void clear() {
+		buckets.clear();
+		loaded = false;
+	}
+
+	private static LocalDate weekOf(LocalDate date) {
+		return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+	}
+
+	/// Halves the weight of a bucket every half-life, the current week weighs 1
+	private static double weightOf(LocalDate week, LocalDate currentWeek, ApplicationProperties.Recommender config) {
+		if (!config.isTimeDecay() || config.getHalfLifeDays() <= 0) {
+			return 1;
+		}
+		long ageDays = ChronoUnit.DAYS.between(week, currentWeek);
+		return Math.pow(0.5, (double) ageDays / config.getHalfLifeDays());
+	}
+}
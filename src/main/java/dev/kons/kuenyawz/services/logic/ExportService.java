@@ -0,0 +1,68 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.Transaction;
+import lombok.Getter;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface ExportService {
+
+	/**
+	 * Writes every item of the matching purchases, one row per item with the columns of its
+	 * purchase, ordered by purchase. Rows are read through a forward-only cursor and written as
+	 * they arrive, so the memory used does not grow with the export.
+	 *
+	 * @param from     {@link LocalDate} earliest creation date, inclusive, or null
+	 * @param to       {@link LocalDate} latest creation date, inclusive, or null
+	 * @param statuses {@link Collection} of purchase statuses, every status if empty
+	 * @param format   {@link Format} of the output
+	 * @param out      {@link OutputStream} receiving the export, left open
+	 * @throws IOException if the output can not be written, such as when the client disconnects
+	 */
+	@Transactional(readOnly = true)
+	void exportOrders(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses, Format format, OutputStream out) throws IOException;
+
+	/**
+	 * Writes every matching transaction, ordered by transaction id. Streamed the same way as
+	 * {@link #exportOrders}.
+	 *
+	 * @param from     {@link LocalDate} earliest creation date, inclusive, or null
+	 * @param to       {@link LocalDate} latest creation date, inclusive, or null
+	 * @param statuses {@link Collection} of transaction statuses, every status if empty
+	 * @param format   {@link Format} of the output
+	 * @param out      {@link OutputStream} receiving the export, left open
+	 * @throws IOException if the output can not be written, such as when the client disconnects
+	 */
+	@Transactional(readOnly = true)
+	void exportTransactions(LocalDate from, LocalDate to, Collection<Transaction.TransactionStatus> statuses, Format format, OutputStream out) throws IOException;
+
+	@Getter
+	enum Format {
+		/// One JSON object per line
+		NDJSON("application/x-ndjson", "ndjson"),
+		/// Semicolon separated values with a header row, like the imported CSV files
+		CSV("text/csv", "csv");
+
+		private final String contentType;
+		private final String extension;
+
+		Format(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		public static Format fromString(String value) {
+			for (Format format : values()) {
+				if (format.name().equalsIgnoreCase(value)) {
+					return format;
+				}
+			}
+			throw new IllegalArgumentException("Invalid export format: " + value);
+		}
+	}
+}
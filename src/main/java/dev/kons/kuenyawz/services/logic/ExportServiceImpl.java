@@ -0,0 +1,273 @@
+package dev.kons.kuenyawz.services.logic;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportServiceImpl implements ExportService {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ObjectMapper objectMapper;
+	private final ApplicationProperties properties;
+
+	private static final String ORDERS_SQL = """
+		SELECT p.purchase_id, p.created_at, p.event_date, p.status, p.payment_type, p.delivery_option,
+			p.delivery_fee, p.subtotal, p.grand_total, p.full_address,
+			pi.purchase_item_id, pr.product_id, pr.name AS product_name, v.variant_id, v.type AS variant_type,
+			pi.quantity, pi.bought_price, pi.note
+		FROM purchase p
+			JOIN purchase_item pi ON pi.purchase_id = p.purchase_id
+			JOIN variant v ON v.variant_id = pi.variant_id
+			JOIN product pr ON pr.product_id = v.product_id
+		""";
+	private static final String ORDERS_ORDER_BY = " ORDER BY p.purchase_id, pi.purchase_item_id";
+
+	/// Enums of the purchase are stored by ordinal
+	private static final List<Column> ORDER_COLUMNS = List.of(
+		new Column("purchaseId", rs -> number(rs, "purchase_id")),
+		new Column("createdAt", rs -> dateTime(rs, "created_at")),
+		new Column("eventDate", rs -> date(rs, "event_date")),
+		new Column("status", rs -> rs.getString("status")),
+		new Column("paymentType", rs -> ordinal(rs, "payment_type", PaymentType.values())),
+		new Column("deliveryOption", rs -> rs.getString("delivery_option")),
+		new Column("deliveryFee", rs -> rs.getBigDecimal("delivery_fee")),
+		new Column("subtotal", rs -> rs.getBigDecimal("subtotal")),
+		new Column("grandTotal", rs -> rs.getBigDecimal("grand_total")),
+		new Column("fullAddress", rs -> rs.getString("full_address")),
+		new Column("purchaseItemId", rs -> number(rs, "purchase_item_id")),
+		new Column("productId", rs -> number(rs, "product_id")),
+		new Column("productName", rs -> rs.getString("product_name")),
+		new Column("variantId", rs -> number(rs, "variant_id")),
+		new Column("variantType", rs -> rs.getString("variant_type")),
+		new Column("quantity", rs -> number(rs, "quantity")),
+		new Column("boughtPrice", rs -> rs.getBigDecimal("bought_price")),
+		new Column("note", rs -> rs.getString("note"))
+	);
+
+	private static final String TRANSACTIONS_SQL = """
+		SELECT t.transaction_id, t.purchase_id, t.account_id, t.reference_id, t.payment_type, t.status,
+			t.amount, t.created_at, t.expires_at, t.finalized_at
+		FROM transaction t
+		""";
+	private static final String TRANSACTIONS_ORDER_BY = " ORDER BY t.transaction_id";
+
+	private static final List<Column> TRANSACTION_COLUMNS = List.of(
+		new Column("transactionId", rs -> number(rs, "transaction_id")),
+		new Column("purchaseId", rs -> number(rs, "purchase_id")),
+		new Column("accountId", rs -> number(rs, "account_id")),
+		new Column("referenceId", rs -> rs.getString("reference_id")),
+		new Column("paymentType", rs -> rs.getString("payment_type")),
+		new Column("status", rs -> rs.getString("status")),
+		new Column("amount", rs -> rs.getBigDecimal("amount")),
+		new Column("createdAt", rs -> dateTime(rs, "created_at")),
+		new Column("expiresAt", rs -> dateTime(rs, "expires_at")),
+		new Column("finalizedAt", rs -> dateTime(rs, "finalized_at"))
+	);
+
+	@Override
+	public void exportOrders(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses, Format format, OutputStream out) throws IOException {
+		List<Object> params = new ArrayList<>();
+		String sql = ORDERS_SQL + where("p", from, to, statuses, params) + ORDERS_ORDER_BY;
+		long rows = export(sql, params, ORDER_COLUMNS, format, out);
+		log.info("Exported {} order items as {}", rows, format);
+	}
+
+	@Override
+	public void exportTransactions(LocalDate from, LocalDate to, Collection<Transaction.TransactionStatus> statuses, Format format, OutputStream out) throws IOException {
+		List<Object> params = new ArrayList<>();
+		String sql = TRANSACTIONS_SQL + where("t", from, to, statuses, params) + TRANSACTIONS_ORDER_BY;
+		long rows = export(sql, params, TRANSACTION_COLUMNS, format, out);
+		log.info("Exported {} transactions as {}", rows, format);
+	}
+
+	/**
+	 * Runs the query through a forward-only, read-only cursor fetching a bounded number of rows
+	 * per round trip, and writes every row as soon as it is read.
+	 *
+	 * @return number of rows written
+	 */
+	private long export(String sql, List<Object> params, List<Column> columns, Format format, OutputStream out) throws IOException {
+		final int fetchSize = properties.export().getFetchSize();
+		final int flushRows = properties.export().getFlushRows();
+		final RowWriter writer = format == Format.CSV
+			? new CsvRowWriter(out)
+			: new NdjsonRowWriter(objectMapper, out);
+		final long[] rows = {0};
+
+		writer.header(columns);
+		try {
+			jdbcTemplate.query(connection -> {
+				PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				statement.setFetchSize(fetchSize);
+				for (int i = 0; i < params.size(); i++) {
+					statement.setObject(i + 1, params.get(i));
+				}
+				return statement;
+			}, (RowCallbackHandler) rs -> {
+				Object[] values = new Object[columns.size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = columns.get(i).reader().read(rs);
+				}
+				try {
+					writer.row(columns, values);
+					if (++rows[0] % flushRows == 0) {
+						writer.flush();
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.flush();
+		return rows[0];
+	}
+
+	/// Filters on the creation date and the status, adding the bound values to the parameters
+	private static String where(String alias, LocalDate from, LocalDate to, Collection<? extends Enum<?>> statuses, List<Object> params) {
+		List<String> conditions = new ArrayList<>();
+		if (from != null) {
+			conditions.add(alias + ".created_at >= ?");
+			params.add(from.atStartOfDay());
+		}
+		if (to != null) {
+			conditions.add(alias + ".created_at < ?");
+			params.add(to.plusDays(1).atStartOfDay());
+		}
+		if (statuses != null && !statuses.isEmpty()) {
+			conditions.add(alias + ".status IN (" + String.join(", ", statuses.stream().map(s -> "?").toList()) + ")");
+			statuses.forEach(status -> params.add(status.name()));
+		}
+		return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+	}
+
+	private static Long number(ResultSet rs, String column) throws SQLException {
+		long value = rs.getLong(column);
+		return rs.wasNull() ? null : value;
+	}
+
+	private static String dateTime(ResultSet rs, String column) throws SQLException {
+		Timestamp value = rs.getTimestamp(column);
+		return value != null ? value.toLocalDateTime().toString() : null;
+	}
+
+	private static String date(ResultSet rs, String column) throws SQLException {
+		Date value = rs.getDate(column);
+		return value != null ? value.toLocalDate().toString() : null;
+	}
+
+	private static String ordinal(ResultSet rs, String column, Enum<?>[] values) throws SQLException {
+		int value = rs.getInt(column);
+		return rs.wasNull() || value < 0 || value >= values.length ? null : values[value].name();
+	}
+
+	@FunctionalInterface
+	private interface ColumnReader {
+		Object read(ResultSet rs) throws SQLException;
+	}
+
+	private record Column(String name, ColumnReader reader) {
+	}
+
+	private interface RowWriter {
+		void header(List<Column> columns) throws IOException;
+
+		void row(List<Column> columns, Object[] values) throws IOException;
+
+		void flush() throws IOException;
+	}
+
+	private static final class CsvRowWriter implements RowWriter {
+		private final CSVWriter csv;
+
+		CsvRowWriter(OutputStream out) {
+			this.csv = new CSVWriter(
+				new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)),
+				';',
+				ICSVWriter.DEFAULT_QUOTE_CHARACTER,
+				ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
+				ICSVWriter.DEFAULT_LINE_END
+			);
+		}
+
+		@Override
+		public void header(List<Column> columns) {
+			csv.writeNext(columns.stream().map(Column::name).toArray(String[]::new), false);
+		}
+
+		@Override
+		public void row(List<Column> columns, Object[] values) throws IOException {
+			String[] line = new String[values.length];
+			for (int i = 0; i < values.length; i++) {
+				line[i] = values[i] != null ? values[i].toString() : "";
+			}
+			csv.writeNext(line, false);
+			if (csv.checkError()) {
+				throw new IOException("Failed to write the export", csv.getException());
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			csv.flush();
+		}
+	}
+
+	private static final class NdjsonRowWriter implements RowWriter {
+		private final JsonGenerator generator;
+
+		NdjsonRowWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+			this.generator = objectMapper.getFactory()
+				.createGenerator(out)
+				.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			// Lines are ended explicitly instead of separated by the default space
+			this.generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void header(List<Column> columns) {
+			// Every line names its own fields
+		}
+
+		@Override
+		public void row(List<Column> columns, Object[] values) throws IOException {
+			generator.writeStartObject();
+			for (int i = 0; i < values.length; i++) {
+				generator.writeObjectField(columns.get(i).name(), values[i]);
+			}
+			generator.writeEndObject();
+			generator.writeRaw('\n');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			generator.flush();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+	/// Name of the request header carrying the idempotency key
+	String HEADER = "Idempotency-Key";
+
+	/**
+	 * Runs an action at most once per account, scope and idempotency key, across every instance.
+	 * The first successful result is stored for the configured time and returned to every retry
+	 * with the same key, while a duplicate arriving during the first execution waits for its
+	 * result instead of running the action again. A failed action is not kept, so it can be
+	 * retried with the same key. Without a key the action simply runs.
+	 *
+	 * @param accountId    {@link Long} the account sending the request
+	 * @param scope        {@link String} the operation, including the path variables it targets
+	 * @param key          {@link String} the idempotency key sent by the client, may be {@code null}
+	 * @param fingerprint  the request body, a key reused with another body is rejected
+	 * @param responseType {@link Class} of the result, read back from the stored response
+	 * @param action       the operation to run
+	 * @return the result of the first execution
+	 * @throws IllegalOperationException if the key is reused with another request body or if
+	 *                                   the in-flight request does not finish in time
+	 */
+	<T> T execute(Long accountId, String scope, String key, Object fingerprint, Class<T> responseType, Supplier<T> action);
+
+	/**
+	 * Deletes the keys whose replay has ended.
+	 *
+	 * @return number of keys deleted
+	 */
+	int purge();
+}
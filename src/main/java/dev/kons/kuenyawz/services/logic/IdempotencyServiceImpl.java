@@ -0,0 +1,246 @@
+package dev.kons.kuenyawz.services.logic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.IdempotencyKey;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.IdempotencyKeyRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+	/// Keys longer than this are rejected rather than stored
+	private static final int MAX_KEY_LENGTH = 255;
+	/// Interval a duplicate polls the key stored by another instance at
+	private static final long POLL_MILLIS = 100;
+	/// Claims a new key in one statement, without failing when another instance claims it too
+	private static final String INSERT_IF_ABSENT = "INSERT INTO IdempotencyKey " +
+		"(idempotencyKey, fingerprint, claimToken, expiresAt) " +
+		"VALUES (:idempotencyKey, :fingerprint, :claimToken, :expiresAt) " +
+		"ON CONFLICT (idempotencyKey) DO NOTHING";
+
+	private final IdempotencyKeyRepository idempotencyKeyRepository;
+	private final EntityManager entityManager;
+	private final ObjectMapper objectMapper;
+	private final ApplicationProperties properties;
+	private final TransactionTemplate transactionTemplate;
+	/// Read-through cache of the stored responses, the table stays the source of truth
+	private final Cache<String, Entry> completed;
+	/// Executions running on this instance, the duplicates received here wait on them
+	private final ConcurrentMap<String, Entry> running = new ConcurrentHashMap<>();
+
+	public IdempotencyServiceImpl(
+		IdempotencyKeyRepository idempotencyKeyRepository,
+		EntityManager entityManager,
+		ObjectMapper objectMapper,
+		ApplicationProperties properties,
+		PlatformTransactionManager transactionManager
+	) {
+		this.idempotencyKeyRepository = idempotencyKeyRepository;
+		this.entityManager = entityManager;
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		ApplicationProperties.Idempotency config = properties.idempotency();
+		this.completed = Caffeine.newBuilder()
+			.expireAfterWrite(Duration.ofMinutes(config.getTtlMinutes()))
+			.maximumSize(config.getMaxEntries())
+			.build();
+	}
+
+	@Override
+	public <T> T execute(Long accountId, String scope, String key, Object fingerprint, Class<T> responseType, Supplier<T> action) {
+		if (key == null || key.isBlank()) {
+			return action.get();
+		}
+		if (key.length() > MAX_KEY_LENGTH) {
+			throw new IllegalOperationException("Idempotency key must not be longer than " + MAX_KEY_LENGTH + " characters");
+		}
+
+		final String idempotencyKey = accountId + ":" + scope + ":" + key;
+		final String fingerprintHash = fingerprintOf(fingerprint);
+		final Entry cached = completed.getIfPresent(idempotencyKey);
+		if (cached != null) {
+			checkFingerprint(cached.fingerprint(), fingerprintHash);
+			log.debug("Replaying {} of account {} for idempotency key {}", scope, accountId, key);
+			return responseType.cast(cached.result().join());
+		}
+
+		final Entry entry = new Entry(fingerprintHash, new CompletableFuture<>());
+		final Entry existing = running.putIfAbsent(idempotencyKey, entry);
+		if (existing != null) {
+			checkFingerprint(existing.fingerprint(), fingerprintHash);
+			log.debug("Waiting for {} of account {} with idempotency key {}", scope, accountId, key);
+			return responseType.cast(await(existing.result()));
+		}
+
+		try {
+			T result = executeOnce(idempotencyKey, fingerprintHash, responseType, action);
+			completed.put(idempotencyKey, new Entry(fingerprintHash, CompletableFuture.completedFuture(result)));
+			entry.result().complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			// Only successful responses are replayed, the waiting duplicates receive the same error
+			entry.result().completeExceptionally(e);
+			throw e;
+		} finally {
+			running.remove(idempotencyKey, entry);
+		}
+	}
+
+	@Scheduled(cron = "0 50 3 * * *", zone = "${application.timezone:Asia/Jakarta}")
+	public void scheduledPurge() {
+		purge();
+	}
+
+	@Override
+	public int purge() {
+		int deleted = idempotencyKeyRepository.deleteAllByExpiresAtBefore(LocalDateTime.now());
+		if (deleted > 0) {
+			log.info("Purged {} expired idempotency keys", deleted);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Runs the action if this instance claims the key, otherwise waits for the response stored by
+	 * the instance running it. A key given up or left past its lease by the other instance is
+	 * claimed again on the next poll.
+	 */
+	private <T> T executeOnce(String idempotencyKey, String fingerprint, Class<T> responseType, Supplier<T> action) {
+		final ApplicationProperties.Idempotency config = properties.idempotency();
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getWaitSeconds());
+		final String claimToken = UUID.randomUUID().toString();
+
+		while (true) {
+			if (claim(idempotencyKey, fingerprint, claimToken, LocalDateTime.now().plusSeconds(config.getLeaseSeconds()))) {
+				return run(idempotencyKey, claimToken, action);
+			}
+
+			IdempotencyKey stored = idempotencyKeyRepository.findById(idempotencyKey).orElse(null);
+			if (stored != null) {
+				checkFingerprint(stored.getFingerprint(), fingerprint);
+				if (stored.getResponse() != null) {
+					log.debug("Replaying the response of idempotency key {} stored by another instance", idempotencyKey);
+					return read(stored.getResponse(), responseType);
+				}
+			}
+
+			if (System.nanoTime() - deadline >= 0) {
+				throw new IllegalOperationException("A request with the same idempotency key is still being processed");
+			}
+			try {
+				Thread.sleep(POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalOperationException("Interrupted while waiting for the request with the same idempotency key");
+			}
+		}
+	}
+
+	private boolean claim(String idempotencyKey, String fingerprint, String claimToken, LocalDateTime leaseUntil) {
+		final LocalDateTime now = LocalDateTime.now();
+		Integer inserted = transactionTemplate.execute(status -> entityManager.createQuery(INSERT_IF_ABSENT)
+			.setParameter("idempotencyKey", idempotencyKey)
+			.setParameter("fingerprint", fingerprint)
+			.setParameter("claimToken", claimToken)
+			.setParameter("expiresAt", leaseUntil)
+			.executeUpdate());
+		return (inserted != null && inserted == 1)
+			|| idempotencyKeyRepository.takeOver(idempotencyKey, fingerprint, claimToken, leaseUntil, now) == 1;
+	}
+
+	private <T> T run(String idempotencyKey, String claimToken, Supplier<T> action) {
+		T result;
+		try {
+			result = action.get();
+		} catch (RuntimeException e) {
+			idempotencyKeyRepository.release(idempotencyKey, claimToken);
+			throw e;
+		}
+		final LocalDateTime replayUntil = LocalDateTime.now().plusMinutes(properties.idempotency().getTtlMinutes());
+		if (idempotencyKeyRepository.complete(idempotencyKey, claimToken, write(result), replayUntil) == 0) {
+			log.warn("Idempotency key {} outlived its lease, its response is not stored", idempotencyKey);
+		}
+		return result;
+	}
+
+	private Object await(CompletableFuture<Object> result) {
+		try {
+			return result.get(properties.idempotency().getWaitSeconds(), TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new IllegalOperationException("A request with the same idempotency key is still being processed");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalOperationException("Interrupted while waiting for the request with the same idempotency key");
+		}
+	}
+
+	private static void checkFingerprint(String stored, String fingerprint) {
+		if (!Objects.equals(stored, fingerprint)) {
+			throw new IllegalOperationException("Idempotency key was already used for a different request");
+		}
+	}
+
+	/// Hash of the request body as JSON, so bodies are compared the same on every instance
+	private String fingerprintOf(Object fingerprint) {
+		if (fingerprint == null) {
+			return null;
+		}
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(md.digest(objectMapper.writeValueAsBytes(fingerprint)));
+		} catch (NoSuchAlgorithmException | JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String write(Object result) {
+		try {
+			return objectMapper.writeValueAsString(result);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private <T> T read(String response, Class<T> responseType) {
+		try {
+			return objectMapper.readValue(response, responseType);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Result of an execution of a key, along with the hash of its body to detect a reused key.
+	 */
+	private record Entry(String fingerprint, CompletableFuture<Object> result) {
+	}
+}
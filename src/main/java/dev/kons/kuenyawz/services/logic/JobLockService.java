@@ -0,0 +1,30 @@
+package dev.kons.kuenyawz.services.logic;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+public interface JobLockService {
+
+	/**
+	 * Takes the lease of a job shared by all instances. Only the instance holding it runs the job,
+	 * the others skip their run. The lease is committed right away, so the others see it while the
+	 * job runs.
+	 *
+	 * @param jobName {@link String} name of the job
+	 * @param lease   {@link Duration} after which the lease expires if it is not released
+	 * @return true if this instance took the lease
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	boolean tryAcquire(String jobName, Duration lease);
+
+	/**
+	 * Releases the lease of a job held by this instance, so the next run does not wait for it to
+	 * expire.
+	 *
+	 * @param jobName {@link String} name of the job
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	void release(String jobName);
+}
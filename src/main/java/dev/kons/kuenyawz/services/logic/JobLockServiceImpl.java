@@ -0,0 +1,46 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.repositories.JobLockRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLockServiceImpl implements JobLockService {
+
+	private final JobLockRepository jobLockRepository;
+	private final EntityManager entityManager;
+
+	/// Creates the lock of a job on its first run, already expired, without failing when another instance does too
+	private static final String INSERT_IF_ABSENT = "INSERT INTO JobLock (jobName, lockedUntil) " +
+		"VALUES (:jobName, :now) ON CONFLICT (jobName) DO NOTHING";
+
+	/// Identifies this instance as the holder of its leases
+	private final String instanceId = UUID.randomUUID().toString();
+
+	@Override
+	public boolean tryAcquire(String jobName, Duration lease) {
+		final LocalDateTime now = LocalDateTime.now();
+		entityManager.createQuery(INSERT_IF_ABSENT)
+			.setParameter("jobName", jobName)
+			.setParameter("now", now)
+			.executeUpdate();
+		boolean acquired = jobLockRepository.acquire(jobName, instanceId, now.plus(lease), now) == 1;
+		if (!acquired) {
+			log.debug("Job {} is held by another instance", jobName);
+		}
+		return acquired;
+	}
+
+	@Override
+	public void release(String jobName) {
+		jobLockRepository.release(jobName, instanceId, LocalDateTime.now());
+	}
+}
@@ -2,6 +2,7 @@ package dev.kons.kuenyawz.services.logic;
 
 import dev.kons.kuenyawz.dtos.midtrans.MidtransRequest;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import reactor.core.publisher.Mono;
 
 public interface MidtransApiService {
 	/**
@@ -43,4 +44,28 @@ public interface MidtransApiService {
 	 * @return {@link MidtransResponse} transaction response
 	 */
 	MidtransResponse refundTransaction(String orderId);
+
+	/**
+	 * Non-blocking variant of {@link #createTransaction(MidtransRequest)}, nothing is sent until
+	 * the result is subscribed to.
+	 */
+	Mono<MidtransResponse> createTransactionAsync(MidtransRequest request);
+
+	/**
+	 * Non-blocking variant of {@link #fetchTransactionStatus(String)}, nothing is sent until the
+	 * result is subscribed to.
+	 */
+	Mono<MidtransResponse> fetchTransactionStatusAsync(String orderId);
+
+	/**
+	 * Non-blocking variant of {@link #cancelTransaction(String)}, nothing is sent until the result
+	 * is subscribed to.
+	 */
+	Mono<MidtransResponse> cancelTransactionAsync(String orderId);
+
+	/**
+	 * Non-blocking variant of {@link #refundTransaction(String)}, nothing is sent until the result
+	 * is subscribed to.
+	 */
+	Mono<MidtransResponse> refundTransactionAsync(String orderId);
 }
@@ -4,7 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransRequest;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.exceptions.GatewayUnavailableException;
 import dev.kons.kuenyawz.exceptions.MidtransTransactionException;
+import dev.kons.kuenyawz.utils.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -13,94 +19,206 @@ import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class MidtransApiServiceImpl implements MidtransApiService {
 
-	private final WebClient webClient;
+	/// Snap API, creating the payment pages
+	private final WebClient appClient;
+	/// Core API, reading and changing the transactions
+	private final WebClient apiClient;
 	private final ApplicationProperties properties;
 	private final ObjectMapper objectMapper;
+	private final MeterRegistry meterRegistry;
+	private final CircuitBreaker circuitBreaker;
+	/// Caps the calls in flight, so a slow gateway holds a bounded number of connections and callers
+	private final Semaphore bulkhead;
 
-	public MidtransApiServiceImpl(WebClient.Builder webClientBuilder, ApplicationProperties properties, ObjectMapper objectMapper) {
+	public MidtransApiServiceImpl(WebClient.Builder webClientBuilder, ApplicationProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
 		final String authorization = properties.midtrans().getServerKey() + ":";
 		final String encodedAuth = Base64.getEncoder().encodeToString(authorization.getBytes());
+		final ApplicationProperties.Gateway config = properties.gateway();
 
-		this.webClient = webClientBuilder
-			.baseUrl(properties.midtrans().getBaseUrlApp())
+		webClientBuilder = webClientBuilder
 			.defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-			.defaultHeader(HttpHeaders.AUTHORIZATION, "Basic " + encodedAuth)
+			.defaultHeader(HttpHeaders.AUTHORIZATION, "Basic " + encodedAuth);
+		this.appClient = webClientBuilder.clone()
+			.baseUrl(properties.midtrans().getBaseUrlApp())
+			.build();
+		this.apiClient = webClientBuilder.clone()
+			.baseUrl(properties.midtrans().getBaseUrlApi())
 			.build();
 		this.properties = properties;
 		this.objectMapper = objectMapper;
+		this.meterRegistry = meterRegistry;
+		this.circuitBreaker = new CircuitBreaker(config.getFailureThreshold(), config.getOpenMillis());
+		this.bulkhead = new Semaphore(Math.max(config.getMaxConcurrentCalls(), 1));
+
+		Gauge.builder("gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+			.description("State of the payment gateway circuit: 0 closed, 1 open, 2 half-open")
+			.tag("gateway", "midtrans")
+			.register(meterRegistry);
+		Gauge.builder("gateway.bulkhead.available", bulkhead, Semaphore::availablePermits)
+			.description("Payment gateway calls that can still start at once")
+			.tag("gateway", "midtrans")
+			.register(meterRegistry);
 	}
 
 	@Override
 	public MidtransResponse createTransaction(MidtransRequest request) {
-		try {
-			return webClient.post()
-				.uri("/snap/v1/transactions")
-				.bodyValue(request)
-				.retrieve()
-				.bodyToMono(MidtransResponse.class)
-				.block();
-		} catch (WebClientResponseException e) {
-			log.error("WebClientResponseError: {}", e.getResponseBodyAsString());
-			return handleException(e);
-		} catch (WebClientRequestException e) {
-			log.error("WebClientRequestError", e);
-			throw new MidtransTransactionException("Error processing request to Midtrans");
-		}
+		return createTransactionAsync(request).block();
 	}
 
 	@Override
 	public MidtransResponse fetchTransactionStatus(String orderId) {
-		try {
-			var wc = ofBaseUrl(properties.midtrans().getBaseUrlApi());
-			return wc.get()
-				.uri("/v2/{order_id}/status", orderId)
-				.retrieve()
-				.onStatus(status -> status.value() == 404, ClientResponse::createException)
-				.bodyToMono(MidtransResponse.class)
-				.block();
-		} catch (WebClientResponseException e) {
-			return handleException(e);
-		}
+		return fetchTransactionStatusAsync(orderId).block();
 	}
 
 	@Override
 	public MidtransResponse cancelTransaction(String orderId) {
-		try {
-			var wc = ofBaseUrl(properties.midtrans().getBaseUrlApi());
-			return wc.post()
-				.uri("/v2/{order_id}/cancel", orderId)
-				.retrieve()
-				.bodyToMono(MidtransResponse.class)
-				.block();
-		} catch (WebClientResponseException e) {
-			return handleException(e);
-		}
+		return cancelTransactionAsync(orderId).block();
 	}
 
 	@Override
 	public MidtransResponse refundTransaction(String orderId) {
-		try {
-			var wc = ofBaseUrl(properties.midtrans().getBaseUrlApi());
-			return wc.post()
-				.uri("/v2/{order_id}/refund", orderId)
-				.retrieve()
-				.bodyToMono(MidtransResponse.class)
-				.block();
-		} catch (WebClientResponseException e) {
-			return handleException(e);
+		return refundTransactionAsync(orderId).block();
+	}
+
+	@Override
+	public Mono<MidtransResponse> createTransactionAsync(MidtransRequest request) {
+		return call("create", false, () -> appClient.post()
+			.uri("/snap/v1/transactions")
+			.bodyValue(request)
+			.retrieve()
+			.bodyToMono(MidtransResponse.class));
+	}
+
+	@Override
+	public Mono<MidtransResponse> fetchTransactionStatusAsync(String orderId) {
+		return call("status", true, () -> apiClient.get()
+			.uri("/v2/{order_id}/status", orderId)
+			.retrieve()
+			.onStatus(status -> status.value() == 404, ClientResponse::createException)
+			.bodyToMono(MidtransResponse.class));
+	}
+
+	@Override
+	public Mono<MidtransResponse> cancelTransactionAsync(String orderId) {
+		return call("cancel", false, () -> apiClient.post()
+			.uri("/v2/{order_id}/cancel", orderId)
+			.retrieve()
+			.bodyToMono(MidtransResponse.class));
+	}
+
+	@Override
+	public Mono<MidtransResponse> refundTransactionAsync(String orderId) {
+		return call("refund", false, () -> apiClient.post()
+			.uri("/v2/{order_id}/refund", orderId)
+			.retrieve()
+			.bodyToMono(MidtransResponse.class));
+	}
+
+	/**
+	 * Makes a gateway call through the bulkhead and the circuit breaker on subscription, retrying
+	 * idempotent calls after transient failures, records its outcome and maps its errors.
+	 * The returned mono fails with {@link GatewayUnavailableException} if the bulkhead is full or
+	 * the circuit is open.
+	 */
+	private Mono<MidtransResponse> call(String operation, boolean idempotent, Supplier<Mono<MidtransResponse>> request) {
+		return Mono.defer(() -> {
+				final ApplicationProperties.Gateway config = properties.gateway();
+
+				if (!bulkhead.tryAcquire()) {
+					record(operation, "bulkhead_full", 0);
+					return Mono.error(new GatewayUnavailableException());
+				}
+				if (!circuitBreaker.tryAcquire()) {
+					bulkhead.release();
+					record(operation, "circuit_open", 0);
+					return Mono.error(new GatewayUnavailableException());
+				}
+
+				final long start = System.nanoTime();
+				Mono<MidtransResponse> response = request.get();
+				if (idempotent) {
+					response = response.retryWhen(retryOf(operation, config));
+				}
+				return response
+					.doOnSuccess(result -> {
+						circuitBreaker.onSuccess();
+						record(operation, "success", System.nanoTime() - start);
+					})
+					.doOnError(e -> record(operation, onFailure(e), System.nanoTime() - start))
+					.doOnCancel(() -> {
+						circuitBreaker.onIgnored();
+						record(operation, "cancelled", System.nanoTime() - start);
+					})
+					.doFinally(signal -> bulkhead.release());
+			})
+			.onErrorResume(WebClientResponseException.class, e -> Mono.fromCallable(() -> handleException(e)))
+			.onErrorMap(WebClientRequestException.class, e -> {
+				log.error("WebClientRequestError", e);
+				return new MidtransTransactionException("Error processing request to Midtrans");
+			});
+	}
+
+	/**
+	 * Reports a failed call to the circuit breaker.
+	 *
+	 * @return outcome of the call
+	 */
+	private String onFailure(Throwable e) {
+		// A client error still proves the gateway is answering
+		if (e instanceof WebClientResponseException response && !response.getStatusCode().is5xxServerError()) {
+			circuitBreaker.onSuccess();
+			return "client_error";
 		}
+		circuitBreaker.onFailure();
+		return "failure";
+	}
+
+	private Retry retryOf(String operation, ApplicationProperties.Gateway config) {
+		return Retry.backoff(config.getMaxRetries(), Duration.ofMillis(config.getRetryBackoffMillis()))
+			.maxBackoff(Duration.ofMillis(config.getMaxRetryBackoffMillis()))
+			.jitter(0.5)
+			.filter(MidtransApiServiceImpl::isTransient)
+			.doBeforeRetry(signal -> {
+				log.warn("Retrying Midtrans {} call (retry {}): {}", operation, signal.totalRetries() + 1, signal.failure().getMessage());
+				Counter.builder("gateway.retries")
+					.description("Payment gateway calls retried after a transient failure")
+					.tag("gateway", "midtrans")
+					.tag("operation", operation)
+					.register(meterRegistry)
+					.increment();
+			})
+			.onRetryExhaustedThrow((spec, signal) -> signal.failure());
+	}
+
+	/// Connection errors, timeouts and server errors may pass on another attempt
+	private static boolean isTransient(Throwable e) {
+		return e instanceof WebClientRequestException
+			|| (e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError());
 	}
 
-	private WebClient ofBaseUrl(String baseUrl) {
-		return webClient.mutate().baseUrl(baseUrl).build();
+	private void record(String operation, String outcome, long nanos) {
+		Timer.builder("gateway.calls")
+			.description("Payment gateway calls, including their retries")
+			.tag("gateway", "midtrans")
+			.tag("operation", operation)
+			.tag("outcome", outcome)
+			.publishPercentiles(0.5, 0.95, 0.99)
+			.register(meterRegistry)
+			.record(nanos, TimeUnit.NANOSECONDS);
 	}
 
 	private WebClient withAppendedNotification(WebClient wc) {
@@ -1,6 +1,7 @@
 package dev.kons.kuenyawz.services.logic;
 
 import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
 import dev.kons.kuenyawz.exceptions.MidtransTransactionException;
 import dev.kons.kuenyawz.exceptions.UnauthorizedException;
 import jakarta.validation.constraints.NotNull;
@@ -11,12 +12,35 @@ import java.security.NoSuchAlgorithmException;
 public interface MidtransWebhookService {
 
 	/**
-	 * Process notification from Midtrans. This method also does authenticity check.
+	 * Receives a notification from Midtrans. Only the signature is checked before the raw
+	 * notification is appended to the webhook inbox, so Midtrans gets its answer right away and
+	 * the inbox worker processes the notification afterward. A notification already received is
+	 * acknowledged without being stored again.
+	 *
+	 * @param notification Notification from Midtrans
+	 */
+	void receiveNotification(MidtransNotification notification);
+
+	/**
+	 * Process notification from Midtrans. This method also does authenticity check. The status
+	 * change and the notification to the vendor are committed together, as an order transition
+	 * retried when the purchase changed concurrently.
 	 *
 	 * @param notification Notification from Midtrans
 	 */
 	void processNotification(MidtransNotification notification);
 
+	/**
+	 * Applies a status fetched from Midtrans to a transaction whose notification may have been
+	 * lost, through the same transitions as {@link #processNotification(MidtransNotification)}.
+	 * Statuses that would not move the transaction forward are ignored.
+	 *
+	 * @param transactionId {@link Long} the transaction id
+	 * @param response      {@link MidtransResponse} the fetched status
+	 * @return {@code true} if the transaction changed
+	 */
+	boolean reconcile(Long transactionId, MidtransResponse response);
+
 	/**
 	 * Very unsafe, test-only method to create a signature key.
 	 *
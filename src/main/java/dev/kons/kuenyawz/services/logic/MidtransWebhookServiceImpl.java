@@ -2,53 +2,181 @@ package dev.kons.kuenyawz.services.logic;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
 import dev.kons.kuenyawz.entities.Purchase;
 import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.entities.WebhookInbox;
 import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
+import dev.kons.kuenyawz.exceptions.MidtransTransactionException;
 import dev.kons.kuenyawz.repositories.PurchaseRepository;
 import dev.kons.kuenyawz.repositories.TransactionRepository;
-import dev.kons.kuenyawz.services.entity.TransactionService;
-import lombok.RequiredArgsConstructor;
+import dev.kons.kuenyawz.repositories.WebhookInboxRepository;
+import dev.kons.kuenyawz.services.entity.DateReservationService;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MidtransWebhookServiceImpl implements MidtransWebhookService {
 
 	private final ApplicationProperties properties;
-	private final TransactionService transactionService;
 	private final PurchaseRepository purchaseRepository;
 	private final TransactionRepository transactionRepository;
 	private final ObjectMapper mapper;
-	private final WhatsappApiService whatsappApiService;
+	private final NotificationService notificationService;
+	private final DateReservationService dateReservationService;
 	private final ObjectMapper objectMapper;
+	private final OrderTransitionService orderTransitionService;
+	private final WebhookInboxRepository webhookInboxRepository;
+	/// Dedup keys of the notifications recently stored, acknowledged again without a query
+	private final Cache<String, Boolean> received;
+
+	public MidtransWebhookServiceImpl(
+		ApplicationProperties properties,
+		PurchaseRepository purchaseRepository,
+		TransactionRepository transactionRepository,
+		ObjectMapper mapper,
+		NotificationService notificationService,
+		DateReservationService dateReservationService,
+		ObjectMapper objectMapper,
+		OrderTransitionService orderTransitionService,
+		WebhookInboxRepository webhookInboxRepository
+	) {
+		this.properties = properties;
+		this.purchaseRepository = purchaseRepository;
+		this.transactionRepository = transactionRepository;
+		this.mapper = mapper;
+		this.notificationService = notificationService;
+		this.dateReservationService = dateReservationService;
+		this.objectMapper = objectMapper;
+		this.orderTransitionService = orderTransitionService;
+		this.webhookInboxRepository = webhookInboxRepository;
+		this.received = Caffeine.newBuilder()
+			.expireAfterWrite(Duration.ofMinutes(properties.webhook().getDedupWindowMinutes()))
+			.maximumSize(properties.webhook().getDedupMaxEntries())
+			.build();
+	}
+
+	/// Statuses of a payment that was made
+	private static final Set<Transaction.TransactionStatus> PAID = EnumSet.of(
+		Transaction.TransactionStatus.CAPTURE,
+		Transaction.TransactionStatus.SETTLEMENT,
+		Transaction.TransactionStatus.SUCCESS
+	);
+	/// Statuses of a payment that is still being made
+	private static final Set<Transaction.TransactionStatus> IN_PROGRESS = EnumSet.of(
+		Transaction.TransactionStatus.CREATED,
+		Transaction.TransactionStatus.AUTHORIZE,
+		Transaction.TransactionStatus.PENDING
+	);
+	/// Statuses that close a payment still being made, paid or not
+	private static final Set<Transaction.TransactionStatus> CLOSING = EnumSet.of(
+		Transaction.TransactionStatus.CAPTURE,
+		Transaction.TransactionStatus.SETTLEMENT,
+		Transaction.TransactionStatus.SUCCESS,
+		Transaction.TransactionStatus.FAILURE,
+		Transaction.TransactionStatus.DENY,
+		Transaction.TransactionStatus.CANCEL,
+		Transaction.TransactionStatus.EXPIRE
+	);
+	/// Statuses a transaction may move to from each status, a status missing here is final
+	private static final Map<Transaction.TransactionStatus, Set<Transaction.TransactionStatus>> TRANSITIONS = Map.of(
+		Transaction.TransactionStatus.CREATED, union(EnumSet.of(Transaction.TransactionStatus.AUTHORIZE, Transaction.TransactionStatus.PENDING), CLOSING),
+		Transaction.TransactionStatus.AUTHORIZE, union(EnumSet.of(Transaction.TransactionStatus.PENDING), CLOSING),
+		Transaction.TransactionStatus.PENDING, CLOSING,
+		// A captured card payment still settles, or is cancelled or denied after review
+		Transaction.TransactionStatus.CAPTURE, EnumSet.of(
+			Transaction.TransactionStatus.SETTLEMENT,
+			Transaction.TransactionStatus.SUCCESS,
+			Transaction.TransactionStatus.DENY,
+			Transaction.TransactionStatus.CANCEL
+		),
+		Transaction.TransactionStatus.SUCCESS, EnumSet.of(Transaction.TransactionStatus.SETTLEMENT)
+	);
+
+	@Override
+	public void receiveNotification(MidtransNotification notification) {
+		if (isTestNotification(notification)) {
+			log.info("Test notification received!");
+			return;
+		}
+
+		final String dedupKey = dedupKeyOf(notification);
+		if (received.getIfPresent(dedupKey) != null) {
+			log.debug("Duplicate notification of order {} acknowledged from memory", notification.getOrderId());
+			return;
+		}
+
+		// Only authentic notifications enter the window, so a forged one never hides the real one
+		MidtransWebhookService.validateSignatureKey(notification, properties.midtrans().getServerKey());
+
+		if (webhookInboxRepository.existsByDedupKey(dedupKey)) {
+			log.debug("Duplicate notification of order {} acknowledged", notification.getOrderId());
+			received.put(dedupKey, Boolean.TRUE);
+			return;
+		}
+
+		try {
+			webhookInboxRepository.saveAndFlush(WebhookInbox.builder()
+				.orderId(notification.getOrderId())
+				.dedupKey(dedupKey)
+				.payload(mapper.writeValueAsString(notification))
+				.status(WebhookInbox.Status.PENDING)
+				.attempts(0)
+				.nextAttemptAt(LocalDateTime.now())
+				.build());
+		} catch (DataIntegrityViolationException e) {
+			// The same notification was stored concurrently, by this node or another
+			log.debug("Duplicate notification of order {} stored concurrently", notification.getOrderId());
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+		received.put(dedupKey, Boolean.TRUE);
+	}
 
 	@Override
 	@CacheEvict(value = "purchasesCache", allEntries = true)
 	public void processNotification(MidtransNotification notification) {
 		printNotification(notification); // TODO: remove in production
 
-		if (notification.getOrderId().startsWith("payment_notif_test_" + properties.midtrans().getMerchantId())) {
+		if (isTestNotification(notification)) {
 			log.info("Test notification received!");
 			return;
 		}
 
 		MidtransWebhookService.validateSignatureKey(notification, properties.midtrans().getServerKey());
 
-		Transaction transaction = transactionService.getById(Long.valueOf(notification.getOrderId()));
-		Purchase purchase = transaction.getPurchase();
+		final Long transactionId = Long.valueOf(notification.getOrderId());
+		orderTransitionService.run(purchaseIdOf(transactionId), () -> applyNotification(transactionId, notification));
+	}
 
-		// Validate status ordinal to prevent status downgrade
+	private void applyNotification(Long transactionId, MidtransNotification notification) {
+		Transaction transaction = transactionRepository.findWithPurchaseByTransactionId(transactionId)
+			.orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
+
+		// A repeated status is applied again, a stale or downgrading one is rejected
 		Transaction.TransactionStatus newStatus = Transaction.TransactionStatus.fromString(notification.getTransactionStatus());
-		if (newStatus.ordinal() < transaction.getStatus().ordinal()) {
+		if (newStatus != transaction.getStatus() && !canMove(transaction.getStatus(), newStatus)) {
 			log.warn("Transaction status can't be downgraded, current status: {}, requested status: {}", transaction.getStatus(), newStatus);
 			throw new InvalidRequestBodyValue("Transaction status can't be downgraded");
 		}
@@ -65,33 +193,89 @@ public class MidtransWebhookServiceImpl implements MidtransWebhookService {
 			throw new InvalidRequestBodyValue("Gross amount is invalid");
 		}
 
-		// Update the status of the transaction and purchase
-		if (notFraud(notification)
-			&& (notification.getTransactionStatus().equalsIgnoreCase("capture")
-			|| notification.getTransactionStatus().equalsIgnoreCase("settlement")
-			|| notification.getTransactionStatus().equalsIgnoreCase("success"))
-		) {
+		applyStatus(transaction, newStatus, notFraud(notification.getFraudStatus()));
+	}
+
+	@Override
+	@CacheEvict(value = "purchasesCache", allEntries = true)
+	public boolean reconcile(Long transactionId, MidtransResponse response) {
+		// Payments never continued are unknown to Midtrans
+		if (response == null || response.getTransactionStatus() == null) {
+			return false;
+		}
+
+		return orderTransitionService.execute(purchaseIdOf(transactionId), () -> applyResponse(transactionId, response));
+	}
+
+	private boolean applyResponse(Long transactionId, MidtransResponse response) {
+		Transaction transaction = transactionRepository.findWithPurchaseByTransactionId(transactionId)
+			.orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
+		Transaction.TransactionStatus newStatus = Transaction.TransactionStatus.fromString(response.getTransactionStatus());
+		if (!canMove(transaction.getStatus(), newStatus)) {
+			return false;
+		}
+
+		if (response.getGrossAmount() == null || new BigDecimal(response.getGrossAmount()).compareTo(transaction.getAmount()) != 0) {
+			log.warn("Gross amount of transaction {} is not valid, expected: {}, actual: {}", transactionId, transaction.getAmount(), response.getGrossAmount());
+			return false;
+		}
+
+		log.info("Reconciling transaction {} from {} to {}", transactionId, transaction.getStatus(), newStatus);
+		return applyStatus(transaction, newStatus, notFraud(response.getFraudStatus()));
+	}
+
+	private static boolean canMove(Transaction.TransactionStatus from, Transaction.TransactionStatus to) {
+		return TRANSITIONS.getOrDefault(from, Set.of()).contains(to);
+	}
+
+	private static Set<Transaction.TransactionStatus> union(
+		Set<Transaction.TransactionStatus> statuses,
+		Set<Transaction.TransactionStatus> others
+	) {
+		Set<Transaction.TransactionStatus> union = EnumSet.copyOf(statuses);
+		union.addAll(others);
+		return union;
+	}
+
+	private Long purchaseIdOf(Long transactionId) {
+		return transactionRepository.findPurchaseIdByTransactionId(transactionId)
+			.orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
+	}
+
+	/**
+	 * Moves a transaction to its new status and its purchase along. A payment made confirms a
+	 * pending purchase, a payment still being made leaves it pending, any other payment cancels it.
+	 *
+	 * @return {@code true} if the transaction changed
+	 */
+	private boolean applyStatus(Transaction transaction, Transaction.TransactionStatus newStatus, boolean notFraud) {
+		Purchase purchase = transaction.getPurchase();
+
+		if (notFraud && PAID.contains(newStatus)) {
 			if (purchase.getStatus().ordinal() >= Purchase.PurchaseStatus.CONFIRMING.ordinal()) {
 				log.warn("Purchase [{}] status is not updated, current status: {}, requested status: {}", purchase.getPurchaseId(), purchase.getStatus(), Purchase.PurchaseStatus.CONFIRMING);
-				return;
+				return false;
 			}
 			transaction.setStatus(newStatus);
 
 			// Send WhatsApp notification to vendor
 			if (purchase.getStatus() == Purchase.PurchaseStatus.PENDING) {
-				String message = String.format("Ada pesanan baru dengan kode *%s*, segera cek aplikasi! %n%n%s",
-					purchase.getPurchaseId(), properties.frontend().getBaseUrl()
-				);
-				whatsappApiService.send(properties.vendor().getPhone(), message, "62");
+				notificationService.enqueueVendorNewOrder(purchase.getPurchaseId());
 				purchase.setStatus(Purchase.PurchaseStatus.CONFIRMING);
 			}
+		} else if (notFraud && IN_PROGRESS.contains(newStatus)) {
+			transaction.setStatus(newStatus);
 		} else {
 			transaction.setStatus(newStatus);
+			if (purchase.getStatus() != Purchase.PurchaseStatus.CANCELLED) {
+				dateReservationService.release(purchase.getPurchaseId(), purchase.getEventDate());
+			}
 			purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
 		}
 
 		transactionRepository.save(transaction);
 		purchaseRepository.save(purchase);
+		return true;
 	}
 
 	@Override
@@ -120,8 +304,7 @@ public class MidtransWebhookServiceImpl implements MidtransWebhookService {
 			.getContent().getFirst();
 
 		String statusCode = "200";
-		BigDecimal totalGrossAmount = purchase.getTotalPrice()
-			.add(purchase.getDeliveryFee())
+		BigDecimal totalGrossAmount = purchase.getGrandTotal()
 			.add(BigDecimal.valueOf(properties.vendor().getPaymentFee()));
 		log.info("Total gross amount: {}", totalGrossAmount);
 		transactionStatus = transactionStatus != null ? transactionStatus : "capture";
@@ -164,11 +347,33 @@ public class MidtransWebhookServiceImpl implements MidtransWebhookService {
 			simpleNotification.getOrderId(), simpleNotification.getStatusCode(), simpleNotification.getGrossAmount());
 	}
 
-	private boolean notFraud(MidtransNotification notification) {
-		if (notification.getFraudStatus() == null) {
+	/**
+	 * Identifies a delivery of a notification. The signature already covers the order id, the
+	 * status code and the gross amount, the status tells apart the notifications of one order.
+	 */
+	private static String dedupKeyOf(MidtransNotification notification) {
+		final String raw = String.join("|",
+			notification.getOrderId(),
+			String.valueOf(notification.getTransactionStatus()),
+			String.valueOf(notification.getStatusCode()),
+			String.valueOf(notification.getSignatureKey()));
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(md.digest(raw.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new MidtransTransactionException(e.getMessage());
+		}
+	}
+
+	private boolean isTestNotification(MidtransNotification notification) {
+		return notification.getOrderId().startsWith("payment_notif_test_" + properties.midtrans().getMerchantId());
+	}
+
+	private static boolean notFraud(String fraudStatus) {
+		if (fraudStatus == null) {
 			return true;
 		}
-		return notification.getFraudStatus().equalsIgnoreCase("accept");
+		return fraudStatus.equalsIgnoreCase("accept");
 	}
 
 	private void printNotification(MidtransNotification notification) {
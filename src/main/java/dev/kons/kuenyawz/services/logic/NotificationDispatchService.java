@@ -0,0 +1,21 @@
+package dev.kons.kuenyawz.services.logic;
+
+public interface NotificationDispatchService {
+
+	/**
+	 * Sends a batch of the due notifications of the outbox, as long as the rate limit allows.
+	 * Failed notifications are retried later with an exponential backoff and dead-lettered after
+	 * the maximum attempts. Notifications are claimed before they are sent, so nodes draining at
+	 * the same time never send the same one twice.
+	 *
+	 * @return number of notifications sent
+	 */
+	int dispatch();
+
+	/**
+	 * Deletes the sent and dead notifications older than the retention.
+	 *
+	 * @return number of notifications deleted
+	 */
+	int purge();
+}
@@ -0,0 +1,238 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.NotificationOutbox;
+import dev.kons.kuenyawz.repositories.NotificationOutboxRepository;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import dev.kons.kuenyawz.utils.ratelimit.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+@Slf4j
+public class NotificationDispatchServiceImpl implements NotificationDispatchService {
+
+	private final NotificationOutboxRepository notificationOutboxRepository;
+	private final NotificationService notificationService;
+	private final WhatsappApiService whatsappApiService;
+	private final ApplicationProperties properties;
+	private final TokenBucket tokenBucket;
+
+	/// Maximum notifications merged into one digest message
+	private static final int MAX_DIGEST_SIZE = 50;
+	/// Claims outlive any send, a node that died mid-drain leaves its notifications to the others afterward
+	private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+
+	public NotificationDispatchServiceImpl(
+		NotificationOutboxRepository notificationOutboxRepository,
+		NotificationService notificationService,
+		WhatsappApiService whatsappApiService,
+		ApplicationProperties properties
+	) {
+		this.notificationOutboxRepository = notificationOutboxRepository;
+		this.notificationService = notificationService;
+		this.whatsappApiService = whatsappApiService;
+		this.properties = properties;
+		this.tokenBucket = new TokenBucket(
+			properties.notification().getBurst(),
+			properties.notification().getRatePerSecond());
+	}
+
+	/**
+	 * Drains the outbox on a fixed delay, so drains never overlap.
+	 */
+	@Scheduled(fixedDelayString = "${application.notification.dispatch-delay-millis:1000}")
+	public void scheduledDispatch() {
+		dispatch();
+	}
+
+	@Scheduled(cron = "0 40 3 * * *", zone = "${application.timezone:Asia/Jakarta}")
+	public void scheduledPurge() {
+		purge();
+	}
+
+	@Override
+	public int dispatch() {
+		final ApplicationProperties.Notification config = properties.notification();
+		final LocalDateTime now = LocalDateTime.now();
+		final List<NotificationOutbox> due = notificationOutboxRepository
+			.findAllUnclaimedDue(NotificationOutbox.Status.PENDING, now, PageRequest.of(0, config.getBatchSize()));
+
+		List<Message> messages = new ArrayList<>();
+		Set<Long> handled = new HashSet<>();
+		for (NotificationOutbox notification : due) {
+			if (handled.contains(notification.getNotificationId())) {
+				continue;
+			}
+			// The rest of the batch waits for the next drain
+			if (!tokenBucket.tryAcquire()) {
+				log.debug("Notification rate limit reached, {} notifications left in the batch", due.size() - handled.size());
+				break;
+			}
+
+			// A due digest takes every pending notification of its group along, even the ones still in their window
+			List<NotificationOutbox> message = messageOf(notification, now);
+			message.forEach(member -> handled.add(member.getNotificationId()));
+			messages.add(new Message(notification, message));
+		}
+		messages = claim(messages, now);
+		if (messages.isEmpty()) {
+			return 0;
+		}
+		messages.forEach(message -> message.members()
+			.forEach(member -> member.setAttempts(member.getAttempts() + 1)));
+
+		// The messages of a drain are sent at once, their outcomes are applied on this thread
+		List<Outcome> outcomes = Flux.fromIterable(messages)
+			.flatMap(message -> send(message)
+				.then(Mono.just(new Outcome(message, null)))
+				.onErrorResume(e -> Mono.just(new Outcome(message, e))))
+			.collectList()
+			.block();
+
+		int sent = 0;
+		for (Outcome outcome : outcomes) {
+			List<NotificationOutbox> members = outcome.message().members();
+			members.forEach(member -> {
+				member.setClaimToken(null);
+				member.setClaimedUntil(null);
+			});
+			if (outcome.error() == null) {
+				members.forEach(member -> {
+					member.setStatus(NotificationOutbox.Status.SENT);
+					member.setSentAt(LocalDateTime.now());
+					member.setLastError(null);
+					blankIfSensitive(member);
+				});
+				sent += members.size();
+			} else {
+				members.forEach(member -> onFailure(member, outcome.error(), config));
+			}
+			notificationOutboxRepository.saveAll(members);
+		}
+		return sent;
+	}
+
+	@Override
+	public int purge() {
+		final LocalDateTime before = LocalDateTime.now().minusDays(properties.notification().getRetentionDays());
+		int deleted = notificationOutboxRepository.deleteAllByStatusAndUpdatedAtBefore(NotificationOutbox.Status.SENT, before)
+			+ notificationOutboxRepository.deleteAllByStatusAndUpdatedAtBefore(NotificationOutbox.Status.DEAD, before);
+		if (deleted > 0) {
+			log.info("Purged {} notifications from the outbox", deleted);
+		}
+		return deleted;
+	}
+
+	private Mono<String> send(Message message) {
+		NotificationOutbox head = message.head();
+		return Mono.defer(() -> {
+			String text = head.getDigestGroup() == null
+				? head.getMessage()
+				: notificationService.composeDigest(message.members());
+			return whatsappApiService.sendAsync(head.getTarget(), text, head.getCountryCode());
+		});
+	}
+
+	/**
+	 * Claims the notifications of the messages for this drain and leaves out the ones another node
+	 * claimed first, a digest is sent with the members that were claimed.
+	 */
+	private List<Message> claim(List<Message> messages, LocalDateTime now) {
+		if (messages.isEmpty()) {
+			return messages;
+		}
+		final String claimToken = UUID.randomUUID().toString();
+		final List<Long> ids = messages.stream()
+			.flatMap(message -> message.members().stream())
+			.map(NotificationOutbox::getNotificationId)
+			.toList();
+		int claimed = notificationOutboxRepository.claim(ids, NotificationOutbox.Status.PENDING,
+			claimToken, now.plus(CLAIM_LEASE), now);
+		if (claimed == ids.size()) {
+			return messages;
+		}
+		log.debug("Claimed {} of {} notifications, the rest is sent by another node", claimed, ids.size());
+		if (claimed == 0) {
+			return List.of();
+		}
+
+		final Set<Long> ours = new HashSet<>(notificationOutboxRepository.findIdsByClaimToken(claimToken));
+		List<Message> result = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			List<NotificationOutbox> members = message.members().stream()
+				.filter(member -> ours.contains(member.getNotificationId()))
+				.toList();
+			if (!members.isEmpty()) {
+				NotificationOutbox head = ours.contains(message.head().getNotificationId()) ? message.head() : members.getFirst();
+				result.add(new Message(head, members));
+			}
+		}
+		return result;
+	}
+
+	private List<NotificationOutbox> messageOf(NotificationOutbox notification, LocalDateTime now) {
+		if (notification.getDigestGroup() == null) {
+			return List.of(notification);
+		}
+		List<NotificationOutbox> members = new ArrayList<>(notificationOutboxRepository
+			.findAllUnclaimedOfDigest(notification.getDigestGroup(), notification.getTarget(),
+				NotificationOutbox.Status.PENDING, now, PageRequest.of(0, MAX_DIGEST_SIZE)));
+		if (members.stream().noneMatch(member -> member.getNotificationId().equals(notification.getNotificationId()))) {
+			members.addFirst(notification);
+		}
+		return members;
+	}
+
+	private void onFailure(NotificationOutbox notification, Throwable e, ApplicationProperties.Notification config) {
+		String error = String.valueOf(e.getMessage());
+		notification.setLastError(error.length() > 1024 ? error.substring(0, 1024) : error);
+
+		if (notification.getAttempts() >= config.getMaxAttempts()) {
+			notification.setStatus(NotificationOutbox.Status.DEAD);
+			blankIfSensitive(notification);
+			log.error("Notification {} to {} is dead after {} attempts, error: {}",
+				notification.getNotificationId(), notification.getTarget(), notification.getAttempts(), error);
+			return;
+		}
+
+		Duration backoff = backoffOf(notification.getAttempts(), config);
+		notification.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+		log.warn("Failed to send notification {} to {}, retrying in {}s, error: {}",
+			notification.getNotificationId(), notification.getTarget(), backoff.toSeconds(), error);
+	}
+
+	/// A secret is of no use once sent or expired, so it does not stay in the outbox until the purge
+	private static void blankIfSensitive(NotificationOutbox notification) {
+		if (Boolean.TRUE.equals(notification.getSensitive()))
+			notification.setMessage("");
+	}
+
+	/// Doubles from the initial backoff on every attempt up to the maximum, with up to 20% jitter
+	static Duration backoffOf(int attempts, ApplicationProperties.Notification config) {
+		long seconds = config.getInitialBackoffSeconds() << Math.min(attempts - 1, 20);
+		seconds = Math.min(seconds, config.getMaxBackoffSeconds());
+		long jitter = (long) (seconds * 0.2 * ThreadLocalRandom.current().nextDouble());
+		return Duration.ofSeconds(seconds + jitter);
+	}
+
+	/// Notifications sent as one message, led by the one that became due
+	private record Message(NotificationOutbox head, List<NotificationOutbox> members) {
+	}
+
+	private record Outcome(Message message, Throwable error) {
+	}
+}
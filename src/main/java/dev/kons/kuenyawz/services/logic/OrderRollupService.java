@@ -0,0 +1,73 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.dtos.dashboard.OrderDashboardDto;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface OrderRollupService {
+
+	/**
+	 * Records a status change of a purchase whose grand total did not change.
+	 *
+	 * @param purchase {@link Purchase} the changed purchase
+	 * @param from     {@link Purchase.PurchaseStatus} previous status, null for a new purchase
+	 * @param to       {@link Purchase.PurchaseStatus} new status, null for a removed purchase
+	 * @see #record(Purchase, Purchase.PurchaseStatus, BigDecimal, Purchase.PurchaseStatus)
+	 */
+	default void record(Purchase purchase, Purchase.PurchaseStatus from, Purchase.PurchaseStatus to) {
+		record(purchase, from, purchase.getGrandTotal(), to);
+	}
+
+	/**
+	 * Records a status or grand total change of a purchase. The change is inserted in the current
+	 * transaction, so it commits or rolls back with the purchase, and is written to the rollups on
+	 * the next checkpoint.
+	 *
+	 * @param purchase  {@link Purchase} the changed purchase, with its new grand total
+	 * @param from      {@link Purchase.PurchaseStatus} previous status, null for a new purchase
+	 * @param fromTotal {@link BigDecimal} previous grand total
+	 * @param to        {@link Purchase.PurchaseStatus} new status, null for a removed purchase
+	 */
+	void record(Purchase purchase, Purchase.PurchaseStatus from, BigDecimal fromTotal, Purchase.PurchaseStatus to);
+
+	/**
+	 * Writes the recorded changes to the rollups and deletes them.
+	 */
+	@Transactional
+	void checkpoint();
+
+	/**
+	 * Returns the orders, revenue and average order value of a date range, broken down per day,
+	 * status, payment type and product category. Only the rollup rows of the range are read, with
+	 * the changes not yet checkpointed added in memory. Both are read from the same snapshot, so a
+	 * checkpoint committing meanwhile is counted exactly once.
+	 *
+	 * @param from     {@link LocalDate} first day, inclusive
+	 * @param to       {@link LocalDate} last day, inclusive
+	 * @param statuses {@link Collection} of counted statuses, every status but cancelled and refunded if empty
+	 * @return {@link OrderDashboardDto}
+	 * @throws IllegalOperationException if the range is reversed or too long
+	 */
+	@Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+	OrderDashboardDto getDashboard(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses);
+
+	/**
+	 * Recomputes every rollup from the purchases, discarding the recorded changes already counted.
+	 * The purchases and the changes are read from one snapshot, so a change committed during the
+	 * rebuild is left for the next checkpoint instead of being counted twice.
+	 */
+	@Transactional(isolation = Isolation.REPEATABLE_READ)
+	void rebuild();
+
+	/**
+	 * Builds the rollups when there are purchases but no rollup yet, such as on the first start.
+	 */
+	@Transactional(isolation = Isolation.REPEATABLE_READ)
+	void rebuildIfEmpty();
+}
@@ -0,0 +1,335 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.dtos.dashboard.OrderDashboardDto;
+import dev.kons.kuenyawz.dtos.dashboard.OrderRollupTotal;
+import dev.kons.kuenyawz.dtos.dashboard.PurchaseCategoryTotal;
+import dev.kons.kuenyawz.entities.OrderRollup;
+import dev.kons.kuenyawz.entities.OrderRollupDelta;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.OrderRollupDeltaRepository;
+import dev.kons.kuenyawz.repositories.OrderRollupRepository;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderRollupServiceImpl implements OrderRollupService {
+
+	private final OrderRollupRepository orderRollupRepository;
+	private final OrderRollupDeltaRepository orderRollupDeltaRepository;
+	private final PurchaseRepository purchaseRepository;
+	private final PurchaseItemRepository purchaseItemRepository;
+	private final ApplicationProperties properties;
+	private final JdbcTemplate jdbcTemplate;
+	private final EntityManager entityManager;
+	private final SnowFlakeIdGenerator snowFlakeIdGenerator;
+
+	/// Purchases whose item categories are read in one query
+	private static final int CATEGORY_BATCH_SIZE = 500;
+	/// Deltas applied and deleted per round of a checkpoint
+	private static final int DELTA_BATCH_SIZE = 1000;
+	/// Plain JDBC, the entity manager must not be used while it flushes the purchase that called the listener
+	private static final String INSERT_DELTA = "INSERT INTO " + OrderRollupDelta.TABLE +
+		" (delta_id, purchase_id, rollup_day, payment_type, from_status, from_total, to_status, to_total)" +
+		" VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	/// Adds to the row of the day and key, creating it if absent, in one statement
+	private static final String UPSERT_ROLLUP = "INSERT INTO OrderRollup AS r " +
+		"(rollupId, day, rollupKey, status, paymentType, category, orders, revenue) " +
+		"VALUES (:rollupId, :day, :rollupKey, :status, :paymentType, :category, :orders, :revenue) " +
+		"ON CONFLICT (day, rollupKey) DO UPDATE SET orders = r.orders + excluded.orders, revenue = r.revenue + excluded.revenue";
+	private static final Set<Purchase.PurchaseStatus> UNCOUNTED_STATUSES = EnumSet.of(
+		Purchase.PurchaseStatus.CANCELLED,
+		Purchase.PurchaseStatus.REFUNDED
+	);
+
+	private final ReentrantLock checkpointLock = new ReentrantLock();
+
+	@Override
+	public void record(Purchase purchase, Purchase.PurchaseStatus from, BigDecimal fromTotal, Purchase.PurchaseStatus to) {
+		jdbcTemplate.update(INSERT_DELTA,
+			snowFlakeIdGenerator.generateId(),
+			purchase.getPurchaseId(),
+			purchase.getCreatedAt() != null ? purchase.getCreatedAt().toLocalDate() : LocalDate.now(),
+			nameOf(purchase.getPaymentType()),
+			nameOf(from),
+			from != null ? fromTotal : null,
+			nameOf(to),
+			to != null ? purchase.getGrandTotal() : null
+		);
+	}
+
+	@Override
+	@Scheduled(
+		fixedDelayString = "${application.dashboard.checkpoint-delay-millis:10000}",
+		initialDelayString = "${application.dashboard.checkpoint-delay-millis:10000}"
+	)
+	public void checkpoint() {
+		if (!checkpointLock.tryLock()) {
+			return;
+		}
+		try {
+			flushDeltas();
+		} finally {
+			checkpointLock.unlock();
+		}
+	}
+
+	@Override
+	public OrderDashboardDto getDashboard(LocalDate from, LocalDate to, Collection<Purchase.PurchaseStatus> statuses) {
+		if (from.isAfter(to)) {
+			throw new IllegalOperationException("The range must not end before it starts");
+		}
+		final int maxRangeDays = properties.dashboard().getMaxRangeDays();
+		if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+			throw new IllegalOperationException("The range must not be longer than " + maxRangeDays + " days");
+		}
+		final Set<Purchase.PurchaseStatus> counted = (statuses == null || statuses.isEmpty())
+			? EnumSet.complementOf(EnumSet.copyOf(UNCOUNTED_STATUSES))
+			: EnumSet.copyOf(statuses);
+
+		// Changes not yet checkpointed are added in memory, so the dashboard is never behind and never waits on a checkpoint
+		Map<RollupKey, Totals> rows = new HashMap<>();
+		for (OrderRollup row : orderRollupRepository.findAllByDayBetween(from, to)) {
+			rows.computeIfAbsent(new RollupKey(row.getDay(), row.getStatus(), row.getPaymentType(), row.getCategory()), k -> new Totals())
+				.add(row.getOrders(), row.getRevenue());
+		}
+		List<OrderRollupDelta> pending = orderRollupDeltaRepository.findAllByDayBetween(from, to);
+		if (!pending.isEmpty()) {
+			changesOf(pending).forEach((key, change) -> {
+				if (!change.isEmpty())
+					rows.computeIfAbsent(key, k -> new Totals()).add(change.orders, change.revenue);
+			});
+		}
+
+		Totals total = new Totals();
+		Map<LocalDate, Totals> byDay = new TreeMap<>();
+		for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+			byDay.put(day, new Totals());
+		}
+		Map<Purchase.PurchaseStatus, Totals> byStatus = new EnumMap<>(Purchase.PurchaseStatus.class);
+		Map<PaymentType, Totals> byPaymentType = new EnumMap<>(PaymentType.class);
+		Map<Product.Category, Totals> byCategory = new EnumMap<>(Product.Category.class);
+
+		rows.forEach((key, row) -> {
+			final boolean isCounted = counted.contains(key.status());
+			if (key.category() != null) {
+				if (isCounted)
+					byCategory.computeIfAbsent(key.category(), k -> new Totals()).add(row.orders, row.revenue);
+				return;
+			}
+			byStatus.computeIfAbsent(key.status(), k -> new Totals()).add(row.orders, row.revenue);
+			if (!isCounted)
+				return;
+			total.add(row.orders, row.revenue);
+			byDay.get(key.day()).add(row.orders, row.revenue);
+			if (key.paymentType() != null)
+				byPaymentType.computeIfAbsent(key.paymentType(), k -> new Totals()).add(row.orders, row.revenue);
+		});
+
+		return OrderDashboardDto.builder()
+			.from(from)
+			.to(to)
+			.statuses(counted.stream().map(Enum::name).toList())
+			.total(total.toBucket("TOTAL"))
+			.byDay(buckets(byDay, LocalDate::toString))
+			.byStatus(buckets(byStatus, Enum::name))
+			.byPaymentType(buckets(byPaymentType, Enum::name))
+			.byCategory(buckets(byCategory, Enum::name))
+			.build();
+	}
+
+	@Override
+	public void rebuild() {
+		checkpointLock.lock();
+		try {
+			// The snapshot of the transaction starts here, the sums below count exactly the changes up to this delta
+			final Long lastDeltaId = orderRollupDeltaRepository.findLastDeltaId().orElse(null);
+			orderRollupRepository.deleteAllInBatch();
+			List<OrderRollup> rows = Stream.concat(
+					purchaseRepository.sumOrderTotals().stream(),
+					purchaseItemRepository.sumCategoryTotals().stream())
+				.map(OrderRollupServiceImpl::toRollup)
+				.toList();
+			orderRollupRepository.saveAll(rows);
+
+			// Changes committed since are neither summed nor deleted, the next checkpoint applies them
+			int discarded = lastDeltaId == null ? 0 : orderRollupDeltaRepository.deleteAllByDeltaIdLessThanEqual(lastDeltaId);
+			log.info("Rebuilt {} order rollups, discarded {} counted changes", rows.size(), discarded);
+		} finally {
+			checkpointLock.unlock();
+		}
+	}
+
+	@Override
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildIfEmpty() {
+		if (orderRollupRepository.count() == 0 && purchaseRepository.count() > 0) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Adds the recorded deltas to the rollup rows of their days and deletes them, a batch at a
+	 * time. The deltas are locked while they are applied, so the checkpoints of two instances
+	 * never apply the same delta, and stay in place if the transaction does not commit.
+	 */
+	private void flushDeltas() {
+		List<OrderRollupDelta> deltas;
+		do {
+			deltas = orderRollupDeltaRepository.findOldestForUpdate(Limit.of(DELTA_BATCH_SIZE));
+			if (deltas.isEmpty()) {
+				return;
+			}
+
+			Map<RollupKey, Totals> changes = changesOf(deltas);
+
+			int changed = 0;
+			for (Map.Entry<RollupKey, Totals> entry : changes.entrySet()) {
+				Totals change = entry.getValue();
+				if (change.isEmpty())
+					continue;
+				upsert(entry.getKey(), change);
+				changed++;
+			}
+			orderRollupDeltaRepository.deleteAllInBatch(deltas);
+			log.debug("Checkpointed {} order changes into {} rollups", deltas.size(), changed);
+		} while (deltas.size() == DELTA_BATCH_SIZE);
+	}
+
+	private void upsert(RollupKey key, Totals change) {
+		entityManager.createQuery(UPSERT_ROLLUP)
+			.setParameter("rollupId", snowFlakeIdGenerator.generateId())
+			.setParameter("day", key.day())
+			.setParameter("rollupKey", OrderRollup.keyOf(key.status(), key.paymentType(), key.category()))
+			.setParameter("status", key.status())
+			.setParameter("paymentType", key.paymentType())
+			.setParameter("category", key.category())
+			.setParameter("orders", change.orders)
+			.setParameter("revenue", change.revenue)
+			.executeUpdate();
+	}
+
+	/// Signed changes of the deltas per rollup row, a purchase leaving a status within the deltas cancels out
+	private Map<RollupKey, Totals> changesOf(List<OrderRollupDelta> deltas) {
+		Map<Long, List<PurchaseCategoryTotal>> categories = categoriesOf(deltas);
+		Map<RollupKey, Totals> changes = new HashMap<>();
+		for (OrderRollupDelta delta : deltas) {
+			List<PurchaseCategoryTotal> purchaseCategories = categories.getOrDefault(delta.getPurchaseId(), List.of());
+			if (delta.getFromStatus() != null)
+				apply(changes, delta, delta.getFromStatus(), delta.getFromTotal(), purchaseCategories, -1);
+			if (delta.getToStatus() != null)
+				apply(changes, delta, delta.getToStatus(), delta.getToTotal(), purchaseCategories, 1);
+		}
+		return changes;
+	}
+
+	private Map<Long, List<PurchaseCategoryTotal>> categoriesOf(List<OrderRollupDelta> deltas) {
+		List<Long> purchaseIds = deltas.stream().map(OrderRollupDelta::getPurchaseId).distinct().toList();
+		Map<Long, List<PurchaseCategoryTotal>> categories = new HashMap<>();
+		for (int i = 0; i < purchaseIds.size(); i += CATEGORY_BATCH_SIZE) {
+			List<Long> batch = purchaseIds.subList(i, Math.min(i + CATEGORY_BATCH_SIZE, purchaseIds.size()));
+			for (PurchaseCategoryTotal total : purchaseItemRepository.sumCategoryTotalsOfPurchases(batch)) {
+				categories.computeIfAbsent(total.purchaseId(), k -> new ArrayList<>()).add(total);
+			}
+		}
+		return categories;
+	}
+
+	/// Counts the purchase in or out of its whole order row and each of its category rows
+	private static void apply(
+		Map<RollupKey, Totals> changes,
+		OrderRollupDelta delta,
+		Purchase.PurchaseStatus status,
+		BigDecimal grandTotal,
+		List<PurchaseCategoryTotal> categories,
+		int sign
+	) {
+		changes.computeIfAbsent(new RollupKey(delta.getDay(), status, delta.getPaymentType(), null), k -> new Totals())
+			.add(sign, grandTotal);
+		for (PurchaseCategoryTotal category : categories) {
+			changes.computeIfAbsent(new RollupKey(delta.getDay(), status, delta.getPaymentType(), category.category()), k -> new Totals())
+				.add(sign, category.subtotal());
+		}
+	}
+
+	private static OrderRollup toRollup(OrderRollupTotal total) {
+		return OrderRollup.builder()
+			.day(total.day())
+			.rollupKey(OrderRollup.keyOf(total.status(), total.paymentType(), total.category()))
+			.status(total.status())
+			.paymentType(total.paymentType())
+			.category(total.category())
+			.orders(total.orders())
+			.revenue(total.revenue() != null ? total.revenue() : BigDecimal.ZERO)
+			.build();
+	}
+
+	private static <K> List<OrderDashboardDto.Bucket> buckets(Map<K, Totals> totals, Function<K, String> keyOf) {
+		return totals.entrySet().stream()
+			.map(entry -> entry.getValue().toBucket(keyOf.apply(entry.getKey())))
+			.toList();
+	}
+
+	private static String nameOf(Enum<?> value) {
+		return value != null ? value.name() : null;
+	}
+
+	private record RollupKey(LocalDate day, Purchase.PurchaseStatus status, PaymentType paymentType, Product.Category category) {
+	}
+
+	/// Running orders and revenue, also used for the signed changes of a checkpoint
+	private static final class Totals {
+		private long orders;
+		private BigDecimal revenue = BigDecimal.ZERO;
+
+		void add(int sign, BigDecimal amount) {
+			orders += sign;
+			if (amount != null)
+				revenue = sign < 0 ? revenue.subtract(amount) : revenue.add(amount);
+		}
+
+		void add(long orders, BigDecimal revenue) {
+			this.orders += orders;
+			this.revenue = this.revenue.add(revenue);
+		}
+
+		boolean isEmpty() {
+			return orders == 0 && revenue.signum() == 0;
+		}
+
+		OrderDashboardDto.Bucket toBucket(String key) {
+			return OrderDashboardDto.Bucket.builder()
+				.key(key)
+				.orders(orders)
+				.revenue(revenue)
+				.averageOrderValue(orders > 0
+					? revenue.divide(BigDecimal.valueOf(orders), 2, RoundingMode.HALF_UP)
+					: BigDecimal.ZERO)
+				.build();
+		}
+	}
+}
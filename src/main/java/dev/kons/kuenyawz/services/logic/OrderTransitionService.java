@@ -0,0 +1,34 @@
+package dev.kons.kuenyawz.services.logic;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.function.Supplier;
+
+public interface OrderTransitionService {
+
+	/**
+	 * Runs a status transition of a purchase and its transactions in its own database
+	 * transaction. Transitions of the same purchase are serialized within this instance, and a
+	 * transition losing an optimistic lock against another instance is re-read and reapplied
+	 * after a bounded backoff. A transition started inside an ongoing database transaction joins
+	 * it and is left to the outer caller to retry.
+	 *
+	 * @param purchaseId {@link Long} the purchase whose rows are changed
+	 * @param transition the change, reading every entity it modifies again
+	 * @return result of the transition
+	 * @throws OptimisticLockingFailureException if every attempt lost its optimistic lock
+	 */
+	<T> T execute(Long purchaseId, Supplier<T> transition);
+
+	/**
+	 * Runs a status transition without a result.
+	 *
+	 * @see #execute(Long, Supplier)
+	 */
+	default void run(Long purchaseId, Runnable transition) {
+		execute(purchaseId, () -> {
+			transition.run();
+			return null;
+		});
+	}
+}
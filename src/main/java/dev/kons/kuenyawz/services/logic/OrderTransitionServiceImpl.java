@@ -0,0 +1,87 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.utils.concurrent.StripedLock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class OrderTransitionServiceImpl implements OrderTransitionService {
+
+	private final EntityManager entityManager;
+	private final ApplicationProperties properties;
+	private final TransactionTemplate transactionTemplate;
+	private final StripedLock locks;
+
+	public OrderTransitionServiceImpl(
+		PlatformTransactionManager transactionManager,
+		EntityManager entityManager,
+		ApplicationProperties properties
+	) {
+		this.entityManager = entityManager;
+		this.properties = properties;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.locks = new StripedLock(properties.transition().getStripes());
+	}
+
+	@Override
+	public <T> T execute(Long purchaseId, Supplier<T> transition) {
+		final Lock lock = locks.get(purchaseId);
+		lock.lock();
+		try {
+			if (TransactionSynchronizationManager.isActualTransactionActive()) {
+				return transition.get();
+			}
+			return executeWithRetry(purchaseId, transition);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private <T> T executeWithRetry(Long purchaseId, Supplier<T> transition) {
+		final ApplicationProperties.Transition config = properties.transition();
+		final int maxAttempts = Math.max(config.getMaxAttempts(), 1);
+
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionTemplate.execute(status -> transition.get());
+			} catch (OptimisticLockingFailureException | OptimisticLockException e) {
+				if (attempt >= maxAttempts) {
+					log.warn("Purchase {} kept changing concurrently, giving up after {} attempts", purchaseId, attempt);
+					throw e instanceof OptimisticLockingFailureException failure
+						? failure
+						: new OptimisticLockingFailureException(e.getMessage(), e);
+				}
+				log.info("Purchase {} changed concurrently, retrying the transition (attempt {})", purchaseId, attempt + 1);
+
+				// The request-wide persistence context still holds the stale versions
+				entityManager.clear();
+				backoff(attempt, config);
+			}
+		}
+	}
+
+	private static void backoff(int attempt, ApplicationProperties.Transition config) {
+		long ceiling = Math.min(config.getMaxBackoffMillis(), config.getInitialBackoffMillis() << Math.min(attempt - 1, 20));
+		try {
+			// Full jitter keeps the colliding callers from retrying in lockstep
+			Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OptimisticLockingFailureException("Interrupted while retrying the transition", e);
+		}
+	}
+}
@@ -5,37 +5,44 @@ import dev.kons.kuenyawz.dtos.midtrans.MidtransRequest;
 import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
 import dev.kons.kuenyawz.dtos.midtrans.PurchaseCallbacksPostDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchaseDto;
+import dev.kons.kuenyawz.dtos.purchase.PurchaseItemPostDto;
 import dev.kons.kuenyawz.dtos.purchase.PurchasePostDto;
 import dev.kons.kuenyawz.dtos.purchase.TransactionDto;
 import dev.kons.kuenyawz.entities.Account;
-import dev.kons.kuenyawz.entities.ClosedDate;
 import dev.kons.kuenyawz.entities.Purchase;
 import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.entities.Variant;
 import dev.kons.kuenyawz.exceptions.IllegalOperationException;
 import dev.kons.kuenyawz.mapper.PurchaseMapper;
 import dev.kons.kuenyawz.repositories.PurchaseRepository;
 import dev.kons.kuenyawz.repositories.TransactionRepository;
-import dev.kons.kuenyawz.repositories.TransactionSpec;
 import dev.kons.kuenyawz.services.entity.CartItemService;
-import dev.kons.kuenyawz.services.entity.ClosedDateService;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import dev.kons.kuenyawz.services.entity.DateReservationService;
 import dev.kons.kuenyawz.services.entity.PurchaseService;
 import dev.kons.kuenyawz.services.entity.TransactionService;
+import dev.kons.kuenyawz.services.entity.VariantService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 @RequiredArgsConstructor
@@ -49,44 +56,68 @@ public class OrderingServiceImpl implements OrderingService {
 	private final PurchaseRepository purchaseRepository;
 	private final PurchaseMapper purchaseMapper;
 	private final ApplicationProperties properties;
-	private final ClosedDateService closedDateService;
-	private final WhatsappApiService whatsappApiService;
+	private final DateReservationService dateReservationService;
+	private final NotificationService notificationService;
 	private final CartItemService cartItemService;
+	private final VariantService variantService;
+	private final MeterRegistry meterRegistry;
+	private final OrderTransitionService orderTransitionService;
+
+	private static final List<Transaction.TransactionStatus> ONGOING_STATUSES = List.of(
+		Transaction.TransactionStatus.CREATED,
+		Transaction.TransactionStatus.PENDING
+	);
 
 	@Override
-	@CacheEvict(value = "purchasesCache", allEntries = true)
+	@Caching(evict = {
+		@CacheEvict(value = "purchasesCache", allEntries = true),
+		@CacheEvict(value = "accountRecommendationsCache",
+			key = "T(dev.kons.kuenyawz.services.logic.AuthService).getAuthenticatedAccount().accountId")
+	})
 	public PurchaseDto processOrder(PurchasePostDto purchasePostDto) {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "failure";
+		try {
+			PurchaseDto purchaseDto = placeOrder(purchasePostDto);
+			outcome = "success";
+			return purchaseDto;
+		} finally {
+			sample.stop(Timer.builder("orders.placement")
+				.description("Time to place an order, up to the payment link")
+				.tag("outcome", outcome)
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry));
+		}
+	}
+
+	private PurchaseDto placeOrder(PurchasePostDto purchasePostDto) {
 		// Initialize required entities
 		Account account = AuthService.getAuthenticatedAccount();
 
-		// Checks for ongoing transaction
-		Specification<Transaction> spec = TransactionSpec.withAccountId(account.getAccountId());
-		Pageable pageable = Pageable.unpaged();
-		Page<Transaction> transactions = transactionRepository.findAll(spec, pageable);
-		transactions.stream()
-			.filter(t ->
-				t.getStatus() == Transaction.TransactionStatus.CREATED
-					|| t.getStatus() == Transaction.TransactionStatus.PENDING)
-			.findAny()
-			.ifPresent(t -> {
-				throw new IllegalOperationException("There's already an ongoing transaction");
-			});
-
 		// Checks for date overlap
 		LocalDate eventDate = LocalDate.parse(purchasePostDto.getEventDate());
-		LocalDate prepDate2 = eventDate.minusDays(1);
-		LocalDate prepDate1 = eventDate.minusDays(2);
+		LocalDate prepDate1 = eventDate.minusDays(DateReservationService.PREP_DAYS);
 
 		if (LocalDate.now().isAfter(prepDate1.minusDays(1))) {
 			throw new IllegalOperationException("Cannot create within 2 days before event date");
 		}
 
-		if (!closedDateService.getAllBetween(prepDate1, eventDate).isEmpty()) {
+		if (!dateReservationService.isOrderable(eventDate)) {
 			throw new IllegalOperationException(String.format("Cannot create purchase on a closed date: %s ~ %s",
 				prepDate1, eventDate));
 		}
 
-		Purchase purchase = purchaseService.create(purchasePostDto);
+		Map<Long, Variant> variants = admit(account, purchasePostDto);
+		Purchase purchase = purchaseService.create(purchasePostDto, variants);
+
+		// Hold the dates before the payment link exists, so a losing concurrent order fails early
+		try {
+			dateReservationService.claim(purchase.getPurchaseId(), eventDate);
+		} catch (RuntimeException e) {
+			purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+			purchaseRepository.save(purchase);
+			throw e;
+		}
 
 		// Build transaction (not saved yet)
 		Transaction transaction = transactionService.build(purchase, account);
@@ -120,8 +151,17 @@ public class OrderingServiceImpl implements OrderingService {
 			.expiry(MidtransRequest.Expiry.defaultExpiry())
 			.build();
 
-		// Send the request to payment gateway
-		MidtransResponse response = midtransApiService.createTransaction(request);
+		// Send the request to payment gateway, the dates are given back if no payment link was made
+		MidtransResponse response;
+		try {
+			response = midtransApiService.createTransaction(request);
+		} catch (RuntimeException e) {
+			log.warn("[P{}] Payment creation failed, releasing the held dates", purchase.getPurchaseId());
+			dateReservationService.release(purchase.getPurchaseId(), eventDate);
+			purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+			purchaseRepository.save(purchase);
+			throw e;
+		}
 		log.info("[P{}] Midtrans response: {}", purchase.getPurchaseId(), response);
 
 		// Save the transaction
@@ -133,21 +173,11 @@ public class OrderingServiceImpl implements OrderingService {
 		PurchaseDto purchaseDto = purchaseMapper.toDto(purchase);
 		purchaseDto.setTransactions(List.of(transactionService.convertToDto(savedTransaction, account, purchase)));
 
-		closedDateService.save(Set.of(
-			ClosedDate.builder().date(prepDate1).closureType(ClosedDate.ClosureType.PREP).build(),
-			ClosedDate.builder().date(prepDate2).closureType(ClosedDate.ClosureType.PREP).build(),
-			ClosedDate.builder().date(eventDate).closureType(ClosedDate.ClosureType.RESERVED).build()
-		));
-
 		cartItemService.deleteCartItemsOfAccount(account.getAccountId());
 
-		try {
-			final String message = String.format("Pesanan dengan kode pemesanan *%s* sudah dibuat. Harap menyelesaikan pembayaran anda untuk mengkonfirmasi jadwal: %n%n%s",
-				purchase.getPurchaseId(), response.getRedirectUrl());
-			whatsappApiService.send(account.getPhone(), message, "62");
-		} catch (Exception e) {
-			log.error("Failed to send order creation notification to {}, error: ", account.getPhone(), e);
-		}
+		final String message = String.format("Pesanan dengan kode pemesanan *%s* sudah dibuat. Harap menyelesaikan pembayaran anda untuk mengkonfirmasi jadwal: %n%n%s",
+			purchase.getPurchaseId(), response.getRedirectUrl());
+		notificationService.enqueue(account.getPhone(), message);
 
 		return purchaseDto;
 	}
@@ -156,8 +186,36 @@ public class OrderingServiceImpl implements OrderingService {
 	@CachePut(value = "purchaseCache", key = "#purchaseId")
 	@CacheEvict(value = "purchasesCache", allEntries = true)
 	public PurchaseDto cancelOrder(Long purchaseId) {
+		validateCancellable(purchaseService.getById(purchaseId));
+
+		// The gateway is called once before the transition, a retried transition only writes the database
+		transactionService.cancelAllAtGateway(purchaseId);
+		return orderTransitionService.execute(purchaseId, () -> cancel(purchaseId));
+	}
+
+	private PurchaseDto cancel(Long purchaseId) {
 		Purchase purchase = purchaseService.getById(purchaseId);
+		validateCancellable(purchase);
+
+		transactionService.cancelAllOf(purchaseId);
+
+		purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
+		Purchase savedPurchase = purchaseRepository.save(purchase);
+
+		dateReservationService.release(purchaseId, purchase.getEventDate());
 
+		// Send notification if owner cancels it
+		if (AuthService.isAuthenticatedAdmin()) {
+			Account account = purchase.getTransactions().getLast().getAccount();
+			final String message = String.format("Pesanan dengan kode *%s* telah dibatalkan oleh admin. Cek di sini: %n%n%s",
+				purchase.getPurchaseId(), properties.frontend().getBaseUrl());
+			notificationService.enqueue(account.getPhone(), message);
+		}
+
+		return purchaseMapper.toDto(savedPurchase);
+	}
+
+	private void validateCancellable(Purchase purchase) {
 		if (purchase.getStatus() == Purchase.PurchaseStatus.CANCELLED) {
 			throw new IllegalOperationException("Purchase is already cancelled");
 		} else if (purchase.getStatus() == Purchase.PurchaseStatus.DELIVERED) {
@@ -165,7 +223,7 @@ public class OrderingServiceImpl implements OrderingService {
 		}
 
 		if (!AuthService.isAuthenticatedAdmin())
-			transactionService.validateOwnership(purchaseId, AuthService.getAuthenticatedAccount().getAccountId());
+			transactionService.validateOwnership(purchase.getPurchaseId(), AuthService.getAuthenticatedAccount().getAccountId());
 
 		LocalDate currentDate = LocalDate.now();
 		if (currentDate.isAfter(purchase.getEventDate())) {
@@ -173,30 +231,6 @@ public class OrderingServiceImpl implements OrderingService {
 		} else if (currentDate.isAfter(purchase.getEventDate().minusDays(2)) && !AuthService.isAuthenticatedAdmin()) {
 			throw new IllegalOperationException("Cannot cancel purchase during preparation period");
 		}
-
-		transactionService.cancelAllOf(purchaseId);
-
-		purchase.setStatus(Purchase.PurchaseStatus.CANCELLED);
-		Purchase savedPurchase = purchaseRepository.save(purchase);
-
-		closedDateService.deleteBetween(
-			purchase.getEventDate().minusDays(2),
-			purchase.getEventDate()
-		);
-
-		// Send notification if owner cancels it
-		if (AuthService.isAuthenticatedAdmin()) {
-			Account account = purchase.getTransactions().getLast().getAccount();
-			try {
-				final String message = String.format("Pesanan dengan kode *%s* telah dibatalkan oleh admin. Cek di sini: %n%n%s",
-					purchase.getPurchaseId(), properties.frontend().getBaseUrl());
-				whatsappApiService.send(account.getPhone(), message, "62");
-			} catch (Exception e) {
-				log.error("Failed to send order cancellation notification to {}, error: ", account.getPhone(), e);
-			}
-		}
-
-		return purchaseMapper.toDto(savedPurchase);
 	}
 
 	@Override
@@ -205,6 +239,10 @@ public class OrderingServiceImpl implements OrderingService {
 	public PurchaseDto confirmOrder(Long purchaseId) {
 		AuthService.validateIsAdmin();
 
+		return orderTransitionService.execute(purchaseId, () -> confirm(purchaseId));
+	}
+
+	private PurchaseDto confirm(Long purchaseId) {
 		Purchase purchase = purchaseService.getById(purchaseId);
 
 		if (purchase.getStatus() == Purchase.PurchaseStatus.DELIVERED) {
@@ -232,13 +270,9 @@ public class OrderingServiceImpl implements OrderingService {
 
 		// Send notification
 		Account account = purchase.getTransactions().getLast().getAccount();
-		try {
-			final String message = String.format("Pesanan dengan kode *%s* telah dikonfirmasi oleh admin. Cek di sini: %n%n%s",
-				purchase.getPurchaseId(), properties.frontend().getBaseUrl());
-			whatsappApiService.send(account.getPhone(), message, "62");
-		} catch (Exception e) {
-			log.error("Failed to send order confirmation notification to {}, error: ", account.getPhone(), e);
-		}
+		final String message = String.format("Pesanan dengan kode *%s* telah dikonfirmasi oleh admin. Cek di sini: %n%n%s",
+			purchase.getPurchaseId(), properties.frontend().getBaseUrl());
+		notificationService.enqueue(account.getPhone(), message);
 
 		return purchaseMapper.toDto(savedPurchase);
 	}
@@ -335,6 +369,42 @@ public class OrderingServiceImpl implements OrderingService {
 		return transactionService.fetchTransaction(transaction.getTransactionId());
 	}
 
+	/**
+	 * Runs the independent database checks of a new order at the same time and returns the variants
+	 * of its items. The variants are loaded on the request thread so their lazy associations stay
+	 * attached to its persistence context, the ongoing transaction check runs on a virtual thread.
+	 */
+	private Map<Long, Variant> admit(Account account, PurchasePostDto purchasePostDto) {
+		final List<Long> variantIds = purchasePostDto.getPurchaseItems().stream()
+			.map(PurchaseItemPostDto::getVariantId)
+			.toList();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<Boolean> ongoing = executor.submit(() ->
+				transactionRepository.existsByAccount_AccountIdAndStatusIn(account.getAccountId(), ONGOING_STATUSES));
+			Map<Long, Variant> variants = variantService.getVariantsById(variantIds);
+
+			if (await(ongoing)) {
+				throw new IllegalOperationException("There's already an ongoing transaction");
+			}
+			return variants;
+		}
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalOperationException("Order placement was interrupted");
+		}
+	}
+
 	private void validateOwnershipOrAdmin(Long purchaseId) {
 		if (!transactionService.isOwner(purchaseId, AuthService.getAuthenticatedAccount().getAccountId())
 			&& !AuthService.isAuthenticatedAdmin()
@@ -361,12 +431,8 @@ public class OrderingServiceImpl implements OrderingService {
 	}
 
 	private void sendRefundNotification(Account account, Purchase purchase) {
-		try {
-			String message = String.format("Pesanan dengan kode *%s* telah direfund oleh admin. Cek di sini: %n%n%s",
-				purchase.getPurchaseId(), properties.frontend().getBaseUrl());
-			whatsappApiService.send(account.getPhone(), message, "62");
-		} catch (Exception e) {
-			log.error("Failed to send order refund notification to {}, error: ", account.getPhone(), e);
-		}
+		String message = String.format("Pesanan dengan kode *%s* telah direfund oleh admin. Cek di sini: %n%n%s",
+			purchase.getPurchaseId(), properties.frontend().getBaseUrl());
+		notificationService.enqueue(account.getPhone(), message);
 	}
 }
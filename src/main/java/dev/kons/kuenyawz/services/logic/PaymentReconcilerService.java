@@ -0,0 +1,13 @@
+package dev.kons.kuenyawz.services.logic;
+
+public interface PaymentReconcilerService {
+
+	/**
+	 * Fetches from Midtrans the status of the payments left unpaid for longer than the stale
+	 * threshold, in case their notification was lost, and applies the changed ones. Statuses are
+	 * fetched concurrently, bounded by the maximum concurrency and the rate per second.
+	 *
+	 * @return number of payments whose status changed
+	 */
+	int reconcile();
+}
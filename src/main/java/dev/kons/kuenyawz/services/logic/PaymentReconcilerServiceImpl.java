@@ -0,0 +1,100 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.repositories.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class PaymentReconcilerServiceImpl implements PaymentReconcilerService {
+
+	/// Statuses of a payment whose notification is still awaited
+	private static final List<Transaction.TransactionStatus> AWAITED = List.of(
+		Transaction.TransactionStatus.CREATED,
+		Transaction.TransactionStatus.PENDING
+	);
+
+	private final TransactionRepository transactionRepository;
+	private final MidtransApiService midtransApiService;
+	private final MidtransWebhookService midtransWebhookService;
+	private final ApplicationProperties properties;
+
+	public PaymentReconcilerServiceImpl(
+		TransactionRepository transactionRepository,
+		MidtransApiService midtransApiService,
+		MidtransWebhookService midtransWebhookService,
+		ApplicationProperties properties
+	) {
+		this.transactionRepository = transactionRepository;
+		this.midtransApiService = midtransApiService;
+		this.midtransWebhookService = midtransWebhookService;
+		this.properties = properties;
+	}
+
+	/**
+	 * Reconciles on a fixed delay, so runs never overlap.
+	 */
+	@Scheduled(
+		fixedDelayString = "${application.reconciler.delay-millis:300000}",
+		initialDelayString = "${application.reconciler.delay-millis:300000}"
+	)
+	public void scheduledReconcile() {
+		reconcile();
+	}
+
+	@Override
+	public int reconcile() {
+		final ApplicationProperties.Reconciler config = properties.reconciler();
+		final List<Long> transactionIds = transactionRepository.findStaleIds(
+			AWAITED, LocalDateTime.now().minusMinutes(config.getStaleAfterMinutes()), Limit.of(config.getBatchSize()));
+		if (transactionIds.isEmpty()) {
+			return 0;
+		}
+
+		final AtomicInteger changed = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final Duration interval = Duration.ofNanos((long) (1_000_000_000d / config.getRatePerSecond()));
+		// The status requests share the event loop, only applying their results takes a thread
+		Flux.fromIterable(transactionIds)
+			.delayElements(interval)
+			.flatMap(transactionId -> midtransApiService.fetchTransactionStatusAsync(String.valueOf(transactionId))
+				.map(response -> new Status(transactionId, response))
+				.onErrorResume(e -> {
+					failed.incrementAndGet();
+					log.warn("Failed to fetch the status of transaction {}: {}", transactionId, e.getMessage());
+					return Mono.empty();
+				}), Math.max(config.getMaxConcurrency(), 1))
+			.publishOn(Schedulers.boundedElastic())
+			.doOnNext(status -> {
+				try {
+					if (midtransWebhookService.reconcile(status.transactionId(), status.response())) {
+						changed.incrementAndGet();
+					}
+				} catch (RuntimeException e) {
+					failed.incrementAndGet();
+					log.warn("Failed to reconcile transaction {}: {}", status.transactionId(), e.getMessage());
+				}
+			})
+			.blockLast();
+
+		log.info("Reconciled {} stale payments, {} changed, {} failed", transactionIds.size(), changed.get(), failed.get());
+		return changed.get();
+	}
+
+	private record Status(Long transactionId, MidtransResponse response) {
+	}
+}
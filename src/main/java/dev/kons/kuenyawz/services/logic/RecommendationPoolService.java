@@ -0,0 +1,47 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.dtos.product.ProductDto;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RecommendationPoolService {
+
+	/**
+	 * Picks fallback recommendations for a product from the in-memory pools, preferring the popular
+	 * products of the same category and filling the rest from the whole catalog. Only available,
+	 * non-deleted products are picked and the database is not accessed.
+	 *
+	 * @param productId {@link Long} the product id, never part of the result
+	 * @param limit     maximum number of products
+	 * @return {@link List} of {@link ProductDto}
+	 * @throws ResourceNotFoundException if the product does not exist
+	 * @throws IllegalOperationException if the catalog is too small to recommend from
+	 */
+	List<ProductDto> sample(Long productId, int limit);
+
+	/**
+	 * Returns the most popular available products of the whole catalog, followed by random ones.
+	 *
+	 * @param limit maximum number of products
+	 * @return {@link List} of {@link ProductDto}
+	 */
+	List<ProductDto> popular(int limit);
+
+	/**
+	 * Looks a product up in the in-memory pools, without accessing the database.
+	 *
+	 * @param productId {@link Long} the product id
+	 * @return {@link Optional} of the {@link ProductDto}, empty if the product is unknown, unavailable or deleted
+	 */
+	Optional<ProductDto> findAvailable(Long productId);
+
+	/**
+	 * Rebuilds the pools from the catalog and the purchase history.
+	 */
+	@Transactional(readOnly = true)
+	void refresh();
+}
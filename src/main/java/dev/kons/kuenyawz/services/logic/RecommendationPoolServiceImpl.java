@@ -0,0 +1,176 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.dtos.product.ProductDto;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.events.CatalogChangedEvent;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
+import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.services.entity.ProductService;
+import dev.kons.kuenyawz.utils.collections.LongObjectMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationPoolServiceImpl implements RecommendationPoolService {
+
+	private final ProductRepository productRepository;
+	private final PurchaseItemRepository purchaseItemRepository;
+	private final ProductService productService;
+
+	private static final int MIN_PRODUCTS = 4;
+	/// Picks are drawn from the leading entries of a pool, so popular products come up more often
+	private static final int SAMPLE_WINDOW = 12;
+	private static final List<Purchase.PurchaseStatus> POPULAR_STATUSES = List.of(
+		Purchase.PurchaseStatus.CONFIRMED,
+		Purchase.PurchaseStatus.PROCESSING,
+		Purchase.PurchaseStatus.DELIVERED
+	);
+
+	private volatile Pools pools = Pools.EMPTY;
+	private final AtomicBoolean stale = new AtomicBoolean(false);
+
+	@Override
+	public List<ProductDto> sample(Long productId, int limit) {
+		final Pools current = pools;
+		Product.Category category = current.categories().get(productId);
+		if (category == null) {
+			throw new ResourceNotFoundException("Product not found");
+		}
+		if (current.all().length < MIN_PRODUCTS) {
+			throw new IllegalOperationException("Not enough products to recommend");
+		}
+
+		List<ProductDto> result = new ArrayList<>(limit);
+		Set<Long> picked = new HashSet<>();
+		picked.add(productId);
+		pick(current.byCategory().getOrDefault(category, new ProductDto[0]), limit, picked, result);
+		if (result.size() < limit) {
+			pick(current.all(), limit, picked, result);
+		}
+		return result;
+	}
+
+	@Override
+	public List<ProductDto> popular(int limit) {
+		final ProductDto[] all = pools.all();
+		return Arrays.asList(all).subList(0, Math.min(limit, all.length));
+	}
+
+	@Override
+	public Optional<ProductDto> findAvailable(Long productId) {
+		return Optional.ofNullable(pools.available().get(productId));
+	}
+
+	@Override
+	@EventListener(ApplicationReadyEvent.class)
+	public void refresh() {
+		stale.set(false);
+		Map<Long, Integer> popularity = new HashMap<>();
+		List<Long> popularIds = purchaseItemRepository.findPopularProductIds(POPULAR_STATUSES);
+		for (int i = 0; i < popularIds.size(); i++) {
+			popularity.put(popularIds.get(i), i);
+		}
+
+		List<Product> products = productRepository.findAll();
+		LongObjectMap<Product.Category> categories = new LongObjectMap<>(products.size());
+		List<Product> candidates = new ArrayList<>();
+		for (Product product : products) {
+			categories.put(product.getProductId(), product.getCategory());
+			if (Boolean.TRUE.equals(product.getAvailable()) && !Boolean.TRUE.equals(product.getDeleted())) {
+				candidates.add(product);
+			}
+		}
+
+		// Popular products keep their rank, the never bought ones are shuffled behind them
+		Collections.shuffle(candidates);
+		candidates.sort(Comparator.comparing(product -> popularity.getOrDefault(product.getProductId(), Integer.MAX_VALUE)));
+
+		Map<Product.Category, List<ProductDto>> byCategory = new EnumMap<>(Product.Category.class);
+		List<ProductDto> all = new ArrayList<>(candidates.size());
+		LongObjectMap<ProductDto> available = new LongObjectMap<>(candidates.size());
+		for (Product product : candidates) {
+			ProductDto productDto = productService.convertToDto(product);
+			all.add(productDto);
+			available.put(product.getProductId(), productDto);
+			byCategory.computeIfAbsent(product.getCategory(), k -> new ArrayList<>()).add(productDto);
+		}
+
+		Map<Product.Category, ProductDto[]> categoryPools = new EnumMap<>(Product.Category.class);
+		byCategory.forEach((category, pool) -> categoryPools.put(category, pool.toArray(ProductDto[]::new)));
+		pools = new Pools(categories, available, categoryPools, all.toArray(ProductDto[]::new));
+		log.info("Refreshed recommendation pools of {} products", all.size());
+	}
+
+	/**
+	 * Marks the pools as stale once the change is committed, they are rebuilt by
+	 * {@link #refreshIfStale()} and several changes in a row only cause one rebuild.
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onCatalogChanged(CatalogChangedEvent event) {
+		stale.set(true);
+	}
+
+	@Scheduled(fixedDelay = 5000, initialDelay = 5000)
+	@Transactional(readOnly = true)
+	public void refreshIfStale() {
+		if (stale.get()) {
+			refresh();
+		}
+	}
+
+	/// Draws distinct products out of the head of the pool with a partial Fisher–Yates shuffle, then walks it if still short
+	private static void pick(ProductDto[] pool, int limit, Set<Long> picked, List<ProductDto> result) {
+		final int window = Math.min(pool.length, Math.max(SAMPLE_WINDOW, limit * 2));
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int[] order = new int[window];
+		for (int i = 0; i < window; i++) {
+			order[i] = i;
+		}
+		for (int i = 0; i < window && result.size() < limit; i++) {
+			int j = i + random.nextInt(window - i);
+			int drawn = order[j];
+			order[j] = order[i];
+			order[i] = drawn;
+			addIfAbsent(pool[drawn], picked, result);
+		}
+		for (int i = window; i < pool.length && result.size() < limit; i++) {
+			addIfAbsent(pool[i], picked, result);
+		}
+	}
+
+	private static void addIfAbsent(ProductDto candidate, Set<Long> picked, List<ProductDto> result) {
+		if (picked.add(candidate.getProductId())) {
+			result.add(candidate);
+		}
+	}
+
+	/**
+	 * Immutable pools swapped as a whole on refresh. The category of every product, including the
+	 * unavailable and deleted ones, is kept to tell unknown products apart. Only the available ones
+	 * are kept by id.
+	 */
+	private record Pools(
+		LongObjectMap<Product.Category> categories,
+		LongObjectMap<ProductDto> available,
+		Map<Product.Category, ProductDto[]> byCategory,
+		ProductDto[] all
+	) {
+		static final Pools EMPTY = new Pools(new LongObjectMap<>(), new LongObjectMap<>(), Map.of(), new ProductDto[0]);
+	}
+}
@@ -6,6 +6,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 public interface RecommenderService {
+
+	/// Maximum number of recommended products of a single request
+	int MAX_LIMIT = 20;
+
 	/**
 	 * Get recommended products for a given product, it is limited up to 3 products.
 	 *
@@ -16,7 +20,33 @@ public interface RecommenderService {
 	List<ProductDto> getRecommendsOfProduct(Long productId, Boolean addRandom);
 
 	/**
-	 * Trigger the Apriori algorithm to generate the frequent item sets.
+	 * Get recommended products for a given product, ranked by the confidence and lift of the mined
+	 * rules. Unavailable products are skipped.
+	 *
+	 * @param productId {@link Long} the product id
+	 * @param addRandom {@link Boolean} whether to fall back to random products when there are no rules,
+	 *                  defaults to true, otherwise the result is empty without rules
+	 * @param limit     {@link Integer} the maximum number of products, defaults to 3
+	 * @return {@link List} of {@link ProductDto} recommended products
+	 */
+	List<ProductDto> getRecommendsOfProduct(Long productId, Boolean addRandom, Integer limit);
+
+	/**
+	 * Get recommended products for an account, scoring the consequents of the products in its cart
+	 * and of its past purchases by their confidence. Products in the cart are not recommended, and
+	 * popular products fill the rest when there are not enough rules. The result is cached briefly
+	 * and evicted when the account changes its cart or places an order.
+	 *
+	 * @param accountId {@link Long} the account id
+	 * @return {@link List} of {@link ProductDto} ranked recommended products, up to {@link #MAX_LIMIT}
+	 */
+	@Transactional(readOnly = true)
+	List<ProductDto> getRecommendsOfAccount(Long accountId);
+
+	/**
+	 * Trigger the Apriori algorithm to generate the frequent item sets. The new generation is
+	 * written beside the active one and only replaces it once it is complete, so recommendations
+	 * keep being served during the regeneration.
 	 */
 	void generateApriori();
 
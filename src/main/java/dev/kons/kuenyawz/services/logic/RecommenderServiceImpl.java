@@ -1,156 +1,291 @@
 package dev.kons.kuenyawz.services.logic;
 
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
 import dev.kons.kuenyawz.dtos.product.ProductDto;
-import dev.kons.kuenyawz.entities.Apriori;
+import dev.kons.kuenyawz.entities.AprioriRule;
 import dev.kons.kuenyawz.entities.Product;
 import dev.kons.kuenyawz.entities.Purchase;
-import dev.kons.kuenyawz.exceptions.IllegalOperationException;
-import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
-import dev.kons.kuenyawz.repositories.AprioriRepository;
+import dev.kons.kuenyawz.repositories.AprioriRuleRepository;
+import dev.kons.kuenyawz.repositories.CartItemRepository;
 import dev.kons.kuenyawz.repositories.ProductRepository;
-import dev.kons.kuenyawz.repositories.ProductSpec;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
 import dev.kons.kuenyawz.services.entity.ProductService;
-import dev.kons.kuenyawz.services.entity.PurchaseService;
+import dev.kons.kuenyawz.utils.collections.LongObjectMap;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class RecommenderServiceImpl implements RecommenderService {
 
 	private final ProductService productService;
-	private final ProductRepository productRepository;
 	private final AprioriService aprioriService;
-	private final PurchaseService purchaseService;
-	private final AprioriRepository aprioriRepository;
+	private final BasketWindowService basketWindowService;
+	private final AprioriRuleRepository aprioriRuleRepository;
+	private final SnowFlakeIdGenerator snowFlakeIdGenerator;
+	private final RecommendationPoolService recommendationPoolService;
+	private final PurchaseItemRepository purchaseItemRepository;
+	private final CartItemRepository cartItemRepository;
+	private final ProductRepository productRepository;
+	private final JobLockService jobLockService;
+	private final ApplicationProperties properties;
+
+	private static final String REGENERATION_JOB = "apriori-regeneration";
+	private static final int DEFAULT_LIMIT = 3;
+	/// Number of best ranked consequents kept in memory per product
+	private static final int CACHED_CONSEQUENTS = 10;
+	/// Products in the cart tell the current intent better than the past purchases
+	private static final double CART_WEIGHT = 2;
+	private static final double HISTORY_WEIGHT = 1;
+	private static final List<Purchase.PurchaseStatus> PURCHASED_STATUSES = List.of(
+		Purchase.PurchaseStatus.CONFIRMED,
+		Purchase.PurchaseStatus.PROCESSING,
+		Purchase.PurchaseStatus.DELIVERED
+	);
+
+	/// Rules of the active generation, swapped as a whole after a regeneration
+	private volatile RuleSnapshot snapshot = RuleSnapshot.EMPTY;
+	private final ReentrantLock regenerationLock = new ReentrantLock();
 
 	@Override
 	public List<ProductDto> getRecommendsOfProduct(Long productId, Boolean addRandom) {
-		return newRecommender(productId);
+		return getRecommendsOfProduct(productId, addRandom, DEFAULT_LIMIT);
 	}
 
 	@Override
-	public void generateApriori() {
-		aprioriRepository.deleteAll();
+	public List<ProductDto> getRecommendsOfProduct(Long productId, Boolean addRandom, Integer limit) {
+		limit = (limit == null || limit < 1) ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+		return newRecommender(productId, limit, addRandom == null || addRandom);
+	}
 
-		Map<Long, Set<Long>> purchaseData = gatherPurchaseData();
-		var ruleSets = aprioriService.findAllFrequentSetOfItems(purchaseData);
+	@Override
+	@Cacheable(value = "accountRecommendationsCache", key = "#accountId")
+	public List<ProductDto> getRecommendsOfAccount(Long accountId) {
+		final RuleSnapshot current = snapshot;
+		final Set<Long> cart = new HashSet<>(cartItemRepository.findProductIdsByAccountId(accountId));
+		final List<Long> purchased = purchaseItemRepository.findPurchasedProductIdsOfAccount(accountId, PURCHASED_STATUSES);
 
-		for (Map.Entry<Long, Set<Long>> entry : ruleSets.entrySet()) {
-			Long productId = entry.getKey();
-			Set<Long> recommendedIds = entry.getValue();
+		// Sum the confidence of every rule leading out of the cart and the purchase history
+		Map<Long, Double> scores = new HashMap<>();
+		cart.forEach(productId -> score(current, productId, CART_WEIGHT, scores));
+		purchased.forEach(productId -> score(current, productId, HISTORY_WEIGHT, scores));
+		cart.forEach(scores::remove);
 
-			Apriori apriori = new Apriori();
-			apriori.setProductId(productId);
+		// The scored products are fetched at once, the missing and unavailable ones are left out
+		List<ProductDto> result = new ArrayList<>(MAX_LIMIT);
+		Set<Long> picked = new HashSet<>(cart);
+		if (!scores.isEmpty()) {
+			Map<Long, Product> available = new HashMap<>();
+			productRepository.findAllAvailableByProductIdIn(scores.keySet())
+				.forEach(product -> available.put(product.getProductId(), product));
+			scores.entrySet().stream()
+				.sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+				.map(entry -> available.get(entry.getKey()))
+				.filter(Objects::nonNull)
+				.limit(MAX_LIMIT)
+				.forEachOrdered(product -> {
+					picked.add(product.getProductId());
+					result.add(productService.convertToDto(product));
+				});
+		}
 
-			Iterator<Long> iterator = recommendedIds.iterator();
-			if (iterator.hasNext()) {
-				if(iterator.next() == null) {
-					apriori.setRecommended1(addOneRandom(productId, recommendedIds));
-				}
-				apriori.setRecommended1(iterator.next());
+		if (result.size() < MAX_LIMIT) {
+			for (ProductDto productDto : recommendationPoolService.popular(MAX_LIMIT + picked.size())) {
+				if (result.size() >= MAX_LIMIT)
+					break;
+				if (picked.add(productDto.getProductId()))
+					result.add(productDto);
 			}
-			if (iterator.hasNext()) {
-				if(iterator.next() == null) {
-					apriori.setRecommended2(addOneRandom(productId, recommendedIds));
-				}
-				apriori.setRecommended2(iterator.next());
+		}
+		return result;
+	}
+
+	@Override
+	public void generateApriori() {
+		if (!regenerationLock.tryLock()) {
+			log.warn("Apriori regeneration is already running, skipping");
+			return;
+		}
+		try {
+			// Every instance runs the schedule, only the one holding the shared lock regenerates
+			if (!jobLockService.tryAcquire(REGENERATION_JOB, Duration.ofMinutes(properties.recommender().getLockLeaseMinutes()))) {
+				log.info("Apriori regeneration is running on another instance, skipping");
+				return;
 			}
-			if (iterator.hasNext()) {
-				if(iterator.next() == null) {
-					apriori.setRecommended3(addOneRandom(productId, recommendedIds));
-				}
-				apriori.setRecommended3(iterator.next());
+			try {
+				regenerate();
+			} finally {
+				jobLockService.release(REGENERATION_JOB);
 			}
-
-			aprioriRepository.save(apriori);
+		} finally {
+			regenerationLock.unlock();
 		}
 	}
 
+	/**
+	 * Regenerates the recommendations on schedule, nightly by default.
+	 */
+	@Scheduled(cron = "${application.recommender.cron:0 0 2 * * *}", zone = "${application.timezone:Asia/Jakarta}")
+	public void scheduledGenerateApriori() {
+		generateApriori();
+	}
+
+	/**
+	 * Loads the latest complete generation into memory once the application is ready.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadRecommendations() {
+		aprioriRuleRepository.findLatestGeneration()
+			.ifPresent(generation -> snapshot = RuleSnapshot.of(generation, aprioriRuleRepository.findAllByGeneration(generation)));
+		log.info("Loaded Apriori rules of {} products", snapshot.consequents().size());
+	}
+
+	/**
+	 * Switches to the latest generation once another instance has written it, or clears the rules
+	 * once another instance has removed them all.
+	 */
+	@Scheduled(fixedDelayString = "${application.recommender.reload-delay-millis:60000}",
+		initialDelayString = "${application.recommender.reload-delay-millis:60000}")
+	public void reloadIfNewer() {
+		// A regeneration on this instance swaps the snapshot itself
+		if (regenerationLock.isLocked())
+			return;
+
+		final Long latest = aprioriRuleRepository.findLatestGeneration().orElse(null);
+		if (Objects.equals(latest, snapshot.generation()))
+			return;
+
+		snapshot = latest == null
+			? RuleSnapshot.EMPTY
+			: RuleSnapshot.of(latest, aprioriRuleRepository.findAllByGeneration(latest));
+		log.info("Switched to Apriori generation {} with rules of {} products", latest, snapshot.consequents().size());
+	}
+
 	@Override
 	public void clearAprioriRecommendations() {
-		aprioriRepository.deleteAll();
+		aprioriRuleRepository.deleteAll();
+		basketWindowService.clear();
+		snapshot = RuleSnapshot.EMPTY;
 	}
 
-	private Map<Long, Set<Long>> gatherPurchaseData() {
-		List<Purchase> purchases = purchaseService.getAprioriNeeds();
-		return convertToAprioriSource(purchases);
-	}
+	private void regenerate() {
+		final Long generation = snowFlakeIdGenerator.generateId();
+		final Long previous = aprioriRuleRepository.findLatestGeneration().orElse(null);
+		log.info("Generating Apriori rules of generation {}", generation);
 
-	public Map<Long, Set<Long>> convertToAprioriSource(List<Purchase> purchases) {
-		Map<Long, Set<Long>> purchaseIdAndProductIds = new HashMap<>();
+		BasketCounts counts = basketWindowService.collect(LocalDate.now());
+		List<AprioriRule> rules = aprioriService.findAllRules(counts).stream()
+			.map(rule -> AprioriRule.builder()
+				.generation(generation)
+				.antecedent(rule.antecedent())
+				.consequent(rule.consequent())
+				.support(rule.support())
+				.confidence(rule.confidence())
+				.lift(rule.lift())
+				.build())
+			.toList();
 
-		// Create set of product ids for each purchase and put it to the map
-		for (Purchase purchase : purchases) {
-			Set<Long> productIds = purchase.getPurchaseItems().stream()
-				.map(purchaseItem -> purchaseItem.getVariant().getProduct().getProductId())
-				.collect(Collectors.toSet());
-			purchaseIdAndProductIds.put(purchase.getPurchaseId(), productIds);
-		}
+		// The whole generation is committed at once, then becomes the latest one. The previous one
+		// is kept for the instances still serving it until their next reload.
+		aprioriRuleRepository.saveAll(rules);
+		snapshot = RuleSnapshot.of(generation, rules);
+		int removed = previous == null ? 0 : aprioriRuleRepository.deleteAllByGenerationLessThan(previous);
+		log.info("Activated Apriori generation {} with {} rules, removed {} stale rules", generation, rules.size(), removed);
 
-		return purchaseIdAndProductIds;
+		// Popularity of the fallback pools follows the same purchase history
+		recommendationPoolService.refresh();
 	}
 
-	private List<ProductDto> newRecommender(Long productId) {
-		Optional<Apriori> result = aprioriRepository.findByProductId(productId);
-		if (result.isEmpty()) {
-			return oldRecommender(productId, true);
-		} else {
-			final var apriori = result.get();
-			List<ProductDto> recommendations = new ArrayList<>();
-
-			Optional.ofNullable(apriori.getRecommended1())
-				.map(productService::getProduct)
-				.filter(ProductDto::isAvailable)
-				.ifPresent(recommendations::add);
-
-			Optional.ofNullable(apriori.getRecommended2())
-				.map(productService::getProduct)
-				.filter(ProductDto::isAvailable)
-				.ifPresent(recommendations::add);
-
-			Optional.ofNullable(apriori.getRecommended3())
-				.map(productService::getProduct)
-				.filter(ProductDto::isAvailable)
-				.ifPresent(recommendations::add);
-
-			return recommendations.isEmpty()
-				? oldRecommender(productId, true)
-				: recommendations;
+	private static void score(RuleSnapshot snapshot, Long productId, double weight, Map<Long, Double> scores) {
+		Consequents consequents = snapshot.consequents().get(productId);
+		if (consequents == null)
+			return;
+		for (int i = 0; i < consequents.products().length; i++) {
+			scores.merge(consequents.products()[i], weight * consequents.confidences()[i], Double::sum);
 		}
 	}
 
-	private List<ProductDto> oldRecommender(Long productId, Boolean addRandom) {
-		if (!productService.existsById(productId)) {
-			throw new ResourceNotFoundException("Product not found");
+	private List<ProductDto> newRecommender(Long productId, int limit, boolean addRandom) {
+		final RuleSnapshot current = snapshot;
+		final Consequents consequents = current.consequents().get(productId);
+		if (consequents == null) {
+			return addRandom ? fallbackRecommender(productId, limit) : List.of();
+		}
+
+		// The ranked consequents are served from memory, skipping the products no longer available
+		List<ProductDto> result = new ArrayList<>(limit);
+		for (long consequent : consequents.products()) {
+			if (result.size() >= limit)
+				break;
+			recommendationPoolService.findAvailable(consequent).ifPresent(result::add);
 		}
-		if (productRepository.count() < 4) {
-			throw new IllegalOperationException("Not enough products to recommend");
+
+		// Only the best consequents are kept in memory, the others are queried once too many of those are unavailable
+		if (result.size() < limit && consequents.products().length == CACHED_CONSEQUENTS) {
+			result = aprioriRuleRepository
+				.findTopAvailableConsequents(productId, current.generation(), PageRequest.of(0, limit))
+				.stream()
+				.map(productService::convertToDto)
+				.toList();
 		}
-		addRandom = (addRandom != null && addRandom);
-		Specification<Product> spec = ProductSpec.withFilters(
-			null, null, true,
-			null, null, true, productId);
-		List<Product> products = productRepository.findAll(spec,
-			addRandom ? PageRequest.of(0, 3) : PageRequest.of(0, 1)
-		).toList();
-
-		return products.stream().map(productService::convertToDto).toList();
+
+		return result.isEmpty() && addRandom
+			? fallbackRecommender(productId, limit)
+			: result;
 	}
 
-	private Long addOneRandom(Long productId, Set<Long> excludeSet) {
-		excludeSet.add(productId);
+	private List<ProductDto> fallbackRecommender(Long productId, int limit) {
+		return recommendationPoolService.sample(productId, limit);
+	}
+
+	/**
+	 * Best ranked consequent product ids of a product, with the confidence of each rule.
+	 */
+	private record Consequents(long[] products, double[] confidences) {
+	}
 
-		List<Long> allProductIds = productRepository.findAllIds();
-		List<Long> filteredProductIds = allProductIds.stream()
-				.filter(id -> !excludeSet.contains(id))
-				.collect(Collectors.toList());
+	/**
+	 * Immutable view of one rule generation, keyed by antecedent product id with the consequents
+	 * ordered from the best confidence and lift.
+	 */
+	private record RuleSnapshot(Long generation, LongObjectMap<Consequents> consequents) {
 
-		return filteredProductIds.get(new Random().nextInt(filteredProductIds.size()));
+		static final RuleSnapshot EMPTY = new RuleSnapshot(null, new LongObjectMap<>());
+
+		static RuleSnapshot of(Long generation, List<AprioriRule> rules) {
+			Map<Long, List<AprioriRule>> byAntecedent = new HashMap<>();
+			for (AprioriRule rule : rules) {
+				byAntecedent.computeIfAbsent(rule.getAntecedent(), k -> new ArrayList<>()).add(rule);
+			}
+
+			Comparator<AprioriRule> ranking = Comparator.comparing(AprioriRule::getConfidence)
+				.thenComparing(AprioriRule::getLift)
+				.reversed();
+			LongObjectMap<Consequents> consequents = new LongObjectMap<>(byAntecedent.size());
+			byAntecedent.forEach((antecedent, antecedentRules) -> {
+				List<AprioriRule> best = antecedentRules.stream()
+					.sorted(ranking)
+					.limit(CACHED_CONSEQUENTS)
+					.toList();
+				consequents.put(antecedent, new Consequents(
+					best.stream().mapToLong(AprioriRule::getConsequent).toArray(),
+					best.stream().mapToDouble(AprioriRule::getConfidence).toArray()));
+			});
+			return new RuleSnapshot(generation, consequents);
+		}
 	}
 }
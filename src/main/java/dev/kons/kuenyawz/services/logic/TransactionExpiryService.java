@@ -0,0 +1,13 @@
+package dev.kons.kuenyawz.services.logic;
+
+public interface TransactionExpiryService {
+
+	/**
+	 * Expires the unpaid transactions past their expiry time in bounded batches, each committed on
+	 * its own, cancelling their pending purchases and freeing the dates those purchases held.
+	 * Whatever is left after the maximum batches waits for the next sweep.
+	 *
+	 * @return number of transactions expired
+	 */
+	int sweep();
+}
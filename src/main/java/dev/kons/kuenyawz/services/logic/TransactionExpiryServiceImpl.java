@@ -0,0 +1,48 @@
+package dev.kons.kuenyawz.services.logic;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.services.entity.TransactionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionExpiryServiceImpl implements TransactionExpiryService {
+
+	private final TransactionService transactionService;
+	private final ApplicationProperties properties;
+
+	/**
+	 * Sweeps on a fixed delay, so sweeps never overlap.
+	 */
+	@Scheduled(fixedDelayString = "${application.expiry.sweep-delay-millis:60000}")
+	public void scheduledSweep() {
+		sweep();
+	}
+
+	@Override
+	public int sweep() {
+		final ApplicationProperties.Expiry config = properties.expiry();
+		// Midtrans accepts a payment until the same expiry, the grace keeps a late settlement from finding its order cancelled
+		final LocalDateTime expiredBefore = LocalDateTime.now().minus(config.getGrace());
+
+		int expired = 0;
+		for (int batch = 0; batch < config.getMaxBatches(); batch++) {
+			int count = transactionService.expireOverdue(expiredBefore, config.getBatchSize());
+			expired += count;
+			if (count < config.getBatchSize()) {
+				break;
+			}
+		}
+
+		if (expired > 0) {
+			log.info("Swept {} expired transactions", expired);
+		}
+		return expired;
+	}
+}
@@ -0,0 +1,21 @@
+package dev.kons.kuenyawz.services.logic;
+
+public interface WebhookInboxService {
+
+	/**
+	 * Processes a batch of the pending notifications of the webhook inbox. Notifications of the
+	 * same order are processed one after another in the order received, different orders are
+	 * processed in parallel up to the configured workers. A notification waiting for its retry
+	 * holds back the later notifications of its order.
+	 *
+	 * @return number of notifications processed or dead-lettered
+	 */
+	int drain();
+
+	/**
+	 * Deletes the processed and dead notifications older than the retention.
+	 *
+	 * @return number of notifications deleted
+	 */
+	int purge();
+}
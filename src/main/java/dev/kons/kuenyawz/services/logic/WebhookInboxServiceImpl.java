@@ -0,0 +1,229 @@
+package dev.kons.kuenyawz.services.logic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.entities.WebhookInbox;
+import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
+import dev.kons.kuenyawz.exceptions.UnauthorizedException;
+import dev.kons.kuenyawz.repositories.WebhookInboxRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class WebhookInboxServiceImpl implements WebhookInboxService {
+
+	private final WebhookInboxRepository webhookInboxRepository;
+	private final MidtransWebhookService midtransWebhookService;
+	private final ObjectMapper objectMapper;
+	private final ApplicationProperties properties;
+	/// Orders processed at the same time
+	private final Semaphore workers;
+
+	/// Longer than a batch takes, a claim left by a stopped node expires after it
+	private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+
+	public WebhookInboxServiceImpl(
+		WebhookInboxRepository webhookInboxRepository,
+		MidtransWebhookService midtransWebhookService,
+		ObjectMapper objectMapper,
+		ApplicationProperties properties
+	) {
+		this.webhookInboxRepository = webhookInboxRepository;
+		this.midtransWebhookService = midtransWebhookService;
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+		this.workers = new Semaphore(Math.max(properties.webhook().getWorkers(), 1));
+	}
+
+	/**
+	 * Drains the inbox on a fixed delay, so drains never overlap.
+	 */
+	@Scheduled(fixedDelayString = "${application.webhook.drain-delay-millis:250}")
+	public void scheduledDrain() {
+		drain();
+	}
+
+	@Scheduled(cron = "0 30 3 * * *", zone = "${application.timezone:Asia/Jakarta}")
+	public void scheduledPurge() {
+		purge();
+	}
+
+	@Override
+	public int drain() {
+		final ApplicationProperties.Webhook config = properties.webhook();
+		final LocalDateTime now = LocalDateTime.now();
+		final String claimToken = UUID.randomUUID().toString();
+		final Map<String, List<WebhookInbox>> byOrder = claim(webhookInboxRepository.findAllUnclaimedDue(
+			WebhookInbox.Status.PENDING, now, PageRequest.of(0, config.getBatchSize())), claimToken, now);
+		if (byOrder.isEmpty()) {
+			return 0;
+		}
+
+		final AtomicInteger handled = new AtomicInteger();
+		// Closing the executor waits for every order to finish
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (List<WebhookInbox> notifications : byOrder.values()) {
+				executor.submit(() -> {
+					try {
+						workers.acquire();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					try {
+						handled.addAndGet(processInOrder(notifications, claimToken, config));
+					} finally {
+						workers.release();
+					}
+				});
+			}
+		}
+		return handled.get();
+	}
+
+	@Override
+	public int purge() {
+		final LocalDateTime before = LocalDateTime.now().minusDays(properties.webhook().getRetentionDays());
+		int deleted = webhookInboxRepository.deleteAllByStatusAndUpdatedAtBefore(WebhookInbox.Status.PROCESSED, before)
+			+ webhookInboxRepository.deleteAllByStatusAndUpdatedAtBefore(WebhookInbox.Status.DEAD, before);
+		if (deleted > 0) {
+			log.info("Purged {} notifications from the webhook inbox", deleted);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Claims the due notifications for this drain and groups them by order. Of the notifications
+	 * claimed by another node at the same time, the later ones of the same order are given back, so
+	 * an order is only ever processed from its earliest pending notification on.
+	 */
+	private Map<String, List<WebhookInbox>> claim(List<WebhookInbox> due, String claimToken, LocalDateTime now) {
+		if (due.isEmpty()) {
+			return Map.of();
+		}
+		final List<Long> ids = due.stream().map(WebhookInbox::getInboxId).toList();
+		int claimed = webhookInboxRepository.claim(ids, WebhookInbox.Status.PENDING,
+			claimToken, now.plus(CLAIM_LEASE), now);
+		if (claimed == 0) {
+			return Map.of();
+		}
+		final Set<Long> ours = claimed == ids.size()
+			? new HashSet<>(ids)
+			: new HashSet<>(webhookInboxRepository.findIdsByClaimToken(claimToken));
+		if (claimed < ids.size()) {
+			log.debug("Claimed {} of {} notifications, the rest is processed by another node", claimed, ids.size());
+		}
+
+		final Map<String, List<WebhookInbox>> byOrder = new LinkedHashMap<>();
+		final Set<String> interrupted = new HashSet<>();
+		final List<Long> givenBack = new ArrayList<>();
+		for (WebhookInbox notification : due) {
+			if (!ours.contains(notification.getInboxId())) {
+				interrupted.add(notification.getOrderId());
+			} else if (interrupted.contains(notification.getOrderId())) {
+				givenBack.add(notification.getInboxId());
+			} else {
+				byOrder.computeIfAbsent(notification.getOrderId(), k -> new ArrayList<>()).add(notification);
+			}
+		}
+		if (!givenBack.isEmpty()) {
+			webhookInboxRepository.release(givenBack, claimToken);
+		}
+		return byOrder;
+	}
+
+	/**
+	 * Processes the notifications of one order until one of them has to be retried, the claim on
+	 * the later ones is given back so they follow as soon as the retry succeeds.
+	 */
+	private int processInOrder(List<WebhookInbox> notifications, String claimToken, ApplicationProperties.Webhook config) {
+		int handled = 0;
+		for (WebhookInbox notification : notifications) {
+			process(notification, config);
+			if (notification.getStatus() == WebhookInbox.Status.PENDING) {
+				List<Long> later = notifications.subList(handled + 1, notifications.size()).stream()
+					.map(WebhookInbox::getInboxId)
+					.toList();
+				if (!later.isEmpty()) {
+					webhookInboxRepository.release(later, claimToken);
+				}
+				break;
+			}
+			handled++;
+		}
+		return handled;
+	}
+
+	private void process(WebhookInbox notification, ApplicationProperties.Webhook config) {
+		notification.setAttempts(notification.getAttempts() + 1);
+		// Saved with the outcome, the claim ends with this attempt
+		notification.setClaimToken(null);
+		notification.setClaimedUntil(null);
+		try {
+			midtransWebhookService.processNotification(
+				objectMapper.readValue(notification.getPayload(), MidtransNotification.class));
+			notification.setStatus(WebhookInbox.Status.PROCESSED);
+			notification.setProcessedAt(LocalDateTime.now());
+			notification.setLastError(null);
+		} catch (JsonProcessingException | InvalidRequestBodyValue | UnauthorizedException
+				 | EntityNotFoundException | IllegalArgumentException e) {
+			// Processing it again would be rejected the same way
+			reject(notification, e);
+		} catch (Exception e) {
+			onFailure(notification, e, config);
+		}
+		webhookInboxRepository.save(notification);
+	}
+
+	private void reject(WebhookInbox notification, Exception e) {
+		notification.setStatus(WebhookInbox.Status.DEAD);
+		notification.setLastError(truncate(e.getMessage()));
+		log.warn("Notification {} of order {} is rejected: {}",
+			notification.getInboxId(), notification.getOrderId(), e.getMessage());
+	}
+
+	private void onFailure(WebhookInbox notification, Exception e, ApplicationProperties.Webhook config) {
+		String error = truncate(e.getMessage());
+		notification.setLastError(error);
+
+		if (notification.getAttempts() >= config.getMaxAttempts()) {
+			notification.setStatus(WebhookInbox.Status.DEAD);
+			log.error("Notification {} of order {} is dead after {} attempts, error: {}",
+				notification.getInboxId(), notification.getOrderId(), notification.getAttempts(), error);
+			return;
+		}
+
+		Duration backoff = backoffOf(notification.getAttempts(), config);
+		notification.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+		log.warn("Failed to process notification {} of order {}, retrying in {}s, error: {}",
+			notification.getInboxId(), notification.getOrderId(), backoff.toSeconds(), error);
+	}
+
+	/// Doubles from the initial backoff on every attempt up to the maximum, with up to 20% jitter
+	private static Duration backoffOf(int attempts, ApplicationProperties.Webhook config) {
+		long seconds = config.getInitialBackoffSeconds() << Math.min(attempts - 1, 20);
+		seconds = Math.min(seconds, config.getMaxBackoffSeconds());
+		long jitter = (long) (seconds * 0.2 * ThreadLocalRandom.current().nextDouble());
+		return Duration.ofSeconds(seconds + jitter);
+	}
+
+	private static String truncate(String error) {
+		error = String.valueOf(error);
+		return error.length() > 1024 ? error.substring(0, 1024) : error;
+	}
+}
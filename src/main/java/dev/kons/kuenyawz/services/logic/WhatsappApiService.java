@@ -1,10 +1,25 @@
 package dev.kons.kuenyawz.services.logic;
 
 import dev.kons.kuenyawz.dtos.fonnte.SendMessageDto;
+import reactor.core.publisher.Mono;
 
 public interface WhatsappApiService {
 
 	String send(String target, String message, String countryCode);
 
 	String send(SendMessageDto sendMessageDto);
+
+	/**
+	 * Non-blocking variant of {@link #send(String, String, String)}, nothing is sent until the
+	 * result is subscribed to. A message rejected by Fonnte fails with a
+	 * {@link dev.kons.kuenyawz.exceptions.WhatsappMessageException}.
+	 */
+	Mono<String> sendAsync(String target, String message, String countryCode);
+
+	/**
+	 * Non-blocking variant of {@link #send(SendMessageDto)}, nothing is sent until the result is
+	 * subscribed to. A message rejected by Fonnte fails with a
+	 * {@link dev.kons.kuenyawz.exceptions.WhatsappMessageException}.
+	 */
+	Mono<String> sendAsync(SendMessageDto sendMessageDto);
 }
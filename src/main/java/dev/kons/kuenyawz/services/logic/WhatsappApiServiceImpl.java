@@ -1,21 +1,28 @@
 package dev.kons.kuenyawz.services.logic;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kons.kuenyawz.configurations.ApplicationProperties;
 import dev.kons.kuenyawz.dtos.fonnte.SendMessageDto;
+import dev.kons.kuenyawz.dtos.fonnte.SendMessageResponse;
+import dev.kons.kuenyawz.exceptions.WhatsappMessageException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 @Service
 public class WhatsappApiServiceImpl implements WhatsappApiService {
 
 	private final WebClient webClient;
 	private final ApplicationProperties properties;
+	private final ObjectMapper objectMapper;
 
-	public WhatsappApiServiceImpl(WebClient.Builder webClientBuilder, ApplicationProperties properties) {
+	public WhatsappApiServiceImpl(WebClient.Builder webClientBuilder, ApplicationProperties properties, ObjectMapper objectMapper) {
 		this.webClient = webClientBuilder
-			.baseUrl("https://api.fonnte.com")
+			.baseUrl(properties.security().getFonnteBaseUrl())
 			.build();
 		this.properties = properties;
+		this.objectMapper = objectMapper;
 	}
 
 	@Override
@@ -32,12 +39,41 @@ public class WhatsappApiServiceImpl implements WhatsappApiService {
 
 	@Override
 	public String send(SendMessageDto sendMessageDto) {
+		return sendAsync(sendMessageDto).block();
+	}
+
+	@Override
+	public Mono<String> sendAsync(String target, String message, String countryCode) {
+		SendMessageDto sendMessageDto = SendMessageDto.builder()
+			.target(target)
+			.message(message)
+			.countryCode(countryCode)
+			.build();
+
+		return sendAsync(sendMessageDto);
+	}
+
+	@Override
+	public Mono<String> sendAsync(SendMessageDto sendMessageDto) {
 		return webClient.post()
 			.uri("/send")
 			.header("Authorization", properties.getSecurity().getFonnteApiToken())
 			.bodyValue(sendMessageDto)
 			.retrieve()
 			.bodyToMono(String.class)
-			.block();
+			.flatMap(this::checkAccepted);
+	}
+
+	/// Fonnte rejects messages with HTTP 200 and a false status, they fail like any other error
+	private Mono<String> checkAccepted(String body) {
+		try {
+			SendMessageResponse response = objectMapper.readValue(body, SendMessageResponse.class);
+			if (!Boolean.TRUE.equals(response.getStatus())) {
+				return Mono.error(new WhatsappMessageException(response.getReason()));
+			}
+			return Mono.just(body);
+		} catch (JsonProcessingException e) {
+			return Mono.error(new WhatsappMessageException("unreadable response", e));
+		}
 	}
 }
@@ -0,0 +1,138 @@
+package dev.kons.kuenyawz.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map keyed by primitive {@code long}, avoiding the boxing and entry objects
+ * of a {@link java.util.HashMap}. It is not thread safe, build it fully then publish it through
+ * a final or volatile field and only read from it afterward.
+ *
+ * @param <V> type of the values
+ */
+public final class LongObjectMap<V> {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private Object[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	public LongObjectMap() {
+		this(16);
+	}
+
+	public LongObjectMap(int expectedSize) {
+		int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR));
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.used = new boolean[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Associates the value to the key, replacing any previous value.
+	 *
+	 * @return the previous value or {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (size + 1 > keys.length * LOAD_FACTOR) {
+			resize(keys.length << 1);
+		}
+		int index = indexOf(key);
+		if (used[index]) {
+			V previous = (V) values[index];
+			values[index] = value;
+			return previous;
+		}
+		used[index] = true;
+		keys[index] = key;
+		values[index] = value;
+		size++;
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index = indexOf(key);
+		return used[index] ? (V) values[index] : null;
+	}
+
+	public V getOrDefault(long key, V defaultValue) {
+		V value = get(key);
+		return value != null ? value : defaultValue;
+	}
+
+	public boolean containsKey(long key) {
+		return used[indexOf(key)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the keys in no particular order.
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int position = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (used[i]) {
+				result[position++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	/// Linear probing, returns either the slot of the key or the first free slot
+	private int indexOf(long key) {
+		int index = mix(key) & mask;
+		while (used[index] && keys[index] != key) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		keys = new long[capacity];
+		values = new Object[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int index = indexOf(oldKeys[i]);
+				used[index] = true;
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/// Spreads the snowflake ids, whose low bits are mostly sequence numbers
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int capacity) {
+		int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		return Math.max(n, 2);
+	}
+
+	@Override
+	public String toString() {
+		return "LongObjectMap{size=" + size + ", keys=" + Arrays.toString(keys()) + "}";
+	}
+}
@@ -0,0 +1,43 @@
+package dev.kons.kuenyawz.utils.concurrent;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of reentrant locks shared by key. Equal keys always take the same lock, different
+ * keys only contend when they fall on the same stripe, so memory stays bounded however many keys
+ * are locked over time.
+ */
+public final class StripedLock {
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	/**
+	 * @param stripes number of locks, rounded up to a power of two
+	 */
+	public StripedLock(int stripes) {
+		int size = Integer.highestOneBit(Math.max(stripes, 1) - 1) << 1;
+		this.stripes = new ReentrantLock[Math.max(size, 1)];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = this.stripes.length - 1;
+	}
+
+	/**
+	 * Gets the lock of a key.
+	 *
+	 * @param key key to lock
+	 * @return {@link Lock} shared by every equal key
+	 */
+	public Lock get(long key) {
+		// Snowflake ids share their low bits, mixing spreads them across the stripes
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		return stripes[(int) (mixed ^ (mixed >>> 32)) & mask];
+	}
+
+	public int size() {
+		return stripes.length;
+	}
+}
@@ -0,0 +1,44 @@
+package dev.kons.kuenyawz.utils.ratelimit;
+
+/**
+ * Token bucket rate limiter. Tokens are refilled continuously at a fixed rate up to the capacity,
+ * which is the burst allowed after being idle, and every permitted call takes one token.
+ */
+public final class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param capacity      maximum tokens held, at least 1
+	 * @param ratePerSecond tokens added per second
+	 */
+	public TokenBucket(double capacity, double ratePerSecond) {
+		this.capacity = Math.max(capacity, 1);
+		this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+		this.tokens = this.capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Takes a token if one is available, without waiting.
+	 *
+	 * @return {@code true} if the call is permitted
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (tokens < 1) {
+			return false;
+		}
+		tokens -= 1;
+		return true;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
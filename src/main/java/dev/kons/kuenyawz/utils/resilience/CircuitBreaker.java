@@ -0,0 +1,87 @@
+package dev.kons.kuenyawz.utils.resilience;
+
+/**
+ * Circuit breaker counting consecutive failures. After the failure threshold the circuit opens
+ * and calls are rejected for the open duration, then a single trial call is let through: its
+ * success closes the circuit, its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		/// Open duration elapsed, waiting for the outcome of a trial call
+		HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	/**
+	 * @param failureThreshold consecutive failures opening the circuit, at least 1
+	 * @param openMillis       milliseconds calls are rejected once the circuit opened
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = Math.max(failureThreshold, 1);
+		this.openNanos = openMillis * 1_000_000L;
+	}
+
+	/**
+	 * Checks whether a call may go through. Every permitted call must report its outcome.
+	 *
+	 * @return {@code true} if the call is permitted
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+			case OPEN -> {
+				if (System.nanoTime() - openedAt < openNanos) {
+					return false;
+				}
+				state = State.HALF_OPEN;
+				trialInFlight = true;
+				return true;
+			}
+			case HALF_OPEN -> {
+				if (trialInFlight) {
+					return false;
+				}
+				trialInFlight = true;
+				return true;
+			}
+			default -> {
+				return true;
+			}
+		}
+	}
+
+	public synchronized void onSuccess() {
+		failures = 0;
+		trialInFlight = false;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Reports a permitted call that ended without an outcome, such as a cancelled one, so a trial
+	 * call can be let through again.
+	 */
+	public synchronized void onIgnored() {
+		trialInFlight = false;
+	}
+
+	public synchronized void onFailure() {
+		trialInFlight = false;
+		if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+			failures = 0;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
@@ -0,0 +1,324 @@
+package dev.kons.kuenyawz.utils.stub;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookService;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process stand-in for the Midtrans Snap and Core APIs and the Fonnte send API, so the
+ * gateway-bound paths can be load tested offline. Every response is delayed by a latency drawn
+ * from the configured distribution, and a configured fraction of the requests fails with a server
+ * error. A created payment is notified to the webhook URL after a delay, signed with the server key.
+ * <p>
+ * Serves {@code POST /snap/v1/transactions}, {@code GET /v2/{order_id}/status},
+ * {@code POST /v2/{order_id}/cancel}, {@code POST /v2/{order_id}/refund} and {@code POST /send}.
+ */
+@Slf4j
+public final class GatewayStubServer implements AutoCloseable {
+
+	public enum LatencyDistribution {
+		/// Always the mean
+		FIXED,
+		/// Evenly spread between zero and twice the mean
+		UNIFORM,
+		EXPONENTIAL,
+		/// Skewed with a long tail, as measured on most remote APIs
+		LOG_NORMAL;
+
+		long sampleMillis(long mean, double sigma, long max) {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			double millis = switch (this) {
+				case FIXED -> mean;
+				case UNIFORM -> random.nextDouble() * 2 * mean;
+				case EXPONENTIAL -> -mean * Math.log(1 - random.nextDouble());
+				case LOG_NORMAL -> mean * Math.exp(sigma * random.nextGaussian());
+			};
+			return Math.min(Math.max((long) millis, 0), max);
+		}
+	}
+
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final List<String> PAID = List.of("capture", "settlement");
+
+	private final ApplicationProperties.Stub config;
+	private final String merchantId;
+	private final String serverKey;
+	/// Keeps the scale of the amounts, which the notification signatures cover
+	private final ObjectMapper objectMapper = JsonMapper.builder()
+		.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+		.disable(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES)
+		.build();
+	private final HttpClient webhookClient = HttpClient.create();
+	/// Payments created on the stub, by order id
+	private final Map<String, Payment> payments = new ConcurrentHashMap<>();
+	private final AtomicLong messagesSent = new AtomicLong();
+	private DisposableServer server;
+
+	/**
+	 * @param merchantId merchant id put in the notifications
+	 * @param serverKey  server key the notifications are signed with
+	 */
+	public GatewayStubServer(ApplicationProperties.Stub config, String merchantId, String serverKey) {
+		this.config = config;
+		this.merchantId = merchantId;
+		this.serverKey = serverKey;
+	}
+
+	public synchronized GatewayStubServer start() {
+		if (server == null) {
+			server = HttpServer.create()
+				.host("localhost")
+				.port(config.getPort())
+				.route(routes -> routes
+					.post("/snap/v1/transactions", (request, response) -> handle(request, response, this::create))
+					.get("/v2/{orderId}/status", (request, response) -> handle(request, response, body -> status(request.param("orderId"))))
+					.post("/v2/{orderId}/cancel", (request, response) -> handle(request, response, body -> cancel(request.param("orderId"))))
+					.post("/v2/{orderId}/refund", (request, response) -> handle(request, response, body -> refund(request.param("orderId"))))
+					.post("/send", (request, response) -> handle(request, response, this::send)))
+				.bindNow();
+			log.info("Gateway stub listening on port {}", server.port());
+		}
+		return this;
+	}
+
+	public int port() {
+		return server.port();
+	}
+
+	public String baseUrl() {
+		return "http://localhost:" + port();
+	}
+
+	/**
+	 * @return current transaction status of a payment created on the stub
+	 */
+	public Optional<String> statusOf(String orderId) {
+		return Optional.ofNullable(payments.get(orderId)).map(Payment::status);
+	}
+
+	public long messagesSent() {
+		return messagesSent.get();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (server != null) {
+			server.disposeNow();
+			server = null;
+		}
+	}
+
+	/**
+	 * Reads the request body, waits for the sampled latency, then answers either with a server error
+	 * or with the reply of the handler.
+	 */
+	private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response, Function<JsonNode, Reply> handler) {
+		final long latency = config.getLatencyDistribution()
+			.sampleMillis(config.getLatencyMillis(), config.getLatencySigma(), config.getMaxLatencyMillis());
+		return request.receive().aggregate().asString()
+			.defaultIfEmpty("")
+			.delayElement(Duration.ofMillis(latency))
+			.map(body -> ThreadLocalRandom.current().nextDouble() < config.getErrorRate()
+				? Reply.error(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Sorry, we encountered internal server error. We will fix this soon.")
+				: handler.apply(read(body)))
+			.flatMap(reply -> response.status(reply.status())
+				.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+				.sendString(Mono.just(write(reply.body())))
+				.then());
+	}
+
+	private Reply create(JsonNode body) {
+		final JsonNode details = body.path("transaction_details");
+		final String orderId = details.path("order_id").asText(null);
+		if (orderId == null) {
+			return Reply.error(HttpResponseStatus.BAD_REQUEST, "transaction_details.order_id is required");
+		}
+		final Payment payment = new Payment(orderId, UUID.randomUUID().toString(),
+			details.path("gross_amount").decimalValue().toString(), "pending");
+		if (payments.putIfAbsent(orderId, payment) != null) {
+			return Reply.error(HttpResponseStatus.BAD_REQUEST, "transaction_details.order_id sudah digunakan");
+		}
+		scheduleWebhook(payment);
+
+		final String token = UUID.randomUUID().toString();
+		return new Reply(HttpResponseStatus.CREATED, MidtransResponse.builder()
+			.token(token)
+			.redirectUrl(baseUrl() + "/snap/v4/redirection/" + token)
+			.build());
+	}
+
+	private Reply status(String orderId) {
+		final Payment payment = payments.get(orderId);
+		if (payment == null) {
+			return Reply.error(HttpResponseStatus.NOT_FOUND, "Transaction doesn't exist.");
+		}
+		return Reply.of(payment, "Success, transaction is found");
+	}
+
+	private Reply cancel(String orderId) {
+		return transition(orderId, "cancel", List.of("pending"), "Success, transaction is canceled");
+	}
+
+	private Reply refund(String orderId) {
+		return transition(orderId, "refund", PAID, "Success, refund request is approved");
+	}
+
+	/// Moves a payment to the target status if it is in one of the given ones
+	private Reply transition(String orderId, String target, List<String> from, String message) {
+		final Payment payment = payments.computeIfPresent(orderId, (id, current) ->
+			from.contains(current.status()) ? current.withStatus(target) : current);
+		if (payment == null) {
+			return Reply.error(HttpResponseStatus.NOT_FOUND, "Transaction doesn't exist.");
+		}
+		if (!payment.status().equals(target)) {
+			return Reply.error(HttpResponseStatus.PRECONDITION_FAILED, "Merchant cannot modify the status of the transaction");
+		}
+		return Reply.of(payment, message);
+	}
+
+	private Reply send(JsonNode body) {
+		messagesSent.incrementAndGet();
+		return new Reply(HttpResponseStatus.OK, Map.of(
+			"detail", "success! message in queue",
+			"id", List.of(String.valueOf(messagesSent.get())),
+			"process", "pending",
+			"status", true,
+			"target", List.of(body.path("target").asText(""))
+		));
+	}
+
+	private void scheduleWebhook(Payment payment) {
+		if (!StringUtils.hasText(config.getWebhookUrl())) {
+			return;
+		}
+		Mono.delay(Duration.ofMillis(config.getWebhookDelayMillis()))
+			.flatMap(tick -> Mono.justOrEmpty(payments.computeIfPresent(payment.orderId(), (id, current) ->
+				current.status().equals("pending") ? current.withStatus(config.getWebhookStatus()) : current)))
+			// A payment cancelled in the meantime is not notified
+			.filter(notified -> notified.status().equals(config.getWebhookStatus()))
+			.flatMap(notified -> {
+				final String notification = write(notificationOf(notified));
+				final int deliveries = ThreadLocalRandom.current().nextDouble() < config.getWebhookDuplicateRate() ? 2 : 1;
+				return deliver(notification).repeat(deliveries - 1).then();
+			})
+			.subscribe(
+				null,
+				e -> log.warn("Failed to notify payment {}: {}", payment.orderId(), e.getMessage())
+			);
+	}
+
+	private Mono<Integer> deliver(String notification) {
+		return webhookClient
+			.headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, "application/json"))
+			.post()
+			.uri(config.getWebhookUrl())
+			.send(ByteBufFlux.fromString(Mono.just(notification)))
+			.responseSingle((response, body) -> Mono.just(response.status().code()))
+			.doOnNext(code -> {
+				if (code >= 300) {
+					log.warn("Webhook answered {} to a stub notification", code);
+				}
+			});
+	}
+
+	private MidtransNotification notificationOf(Payment payment) {
+		final MidtransNotification notification = MidtransNotification.builder()
+			.transactionTime(LocalDateTime.now().format(TIME_FORMAT))
+			.transactionStatus(payment.status())
+			.transactionId(payment.transactionId())
+			.statusMessage("midtrans payment notification")
+			.statusCode(payment.statusCode())
+			.paymentType("bank_transfer")
+			.orderId(payment.orderId())
+			.merchantId(merchantId)
+			.grossAmount(payment.grossAmount())
+			.fraudStatus("accept")
+			.currency("IDR")
+			.build();
+		if (PAID.contains(payment.status())) {
+			notification.setSettlementTime(notification.getTransactionTime());
+		}
+		notification.setSignatureKey(MidtransWebhookService.generateSignatureKey(notification, serverKey));
+		return notification;
+	}
+
+	private JsonNode read(String body) {
+		try {
+			return body.isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+		} catch (Exception e) {
+			return objectMapper.createObjectNode();
+		}
+	}
+
+	private String write(Object body) {
+		try {
+			return objectMapper.writeValueAsString(body);
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to write a stub response", e);
+		}
+	}
+
+	private record Payment(String orderId, String transactionId, String grossAmount, String status) {
+
+		Payment withStatus(String status) {
+			return new Payment(orderId, transactionId, grossAmount, status);
+		}
+
+		/// Midtrans answers 201 while a payment is awaited
+		String statusCode() {
+			return status.equals("pending") ? "201" : "200";
+		}
+	}
+
+	private record Reply(HttpResponseStatus status, Object body) {
+
+		static Reply of(Payment payment, String message) {
+			return new Reply(HttpResponseStatus.OK, MidtransResponse.builder()
+				.statusCode(payment.statusCode())
+				.statusMessage(message)
+				.transactionId(payment.transactionId())
+				.transactionStatus(payment.status())
+				.grossAmount(payment.grossAmount())
+				.paymentType("bank_transfer")
+				.fraudStatus("accept")
+				.build());
+		}
+
+		static Reply error(HttpResponseStatus status, String message) {
+			return new Reply(status, MidtransResponse.builder()
+				.statusCode(String.valueOf(status.code()))
+				.statusMessage(message)
+				.build());
+		}
+	}
+}
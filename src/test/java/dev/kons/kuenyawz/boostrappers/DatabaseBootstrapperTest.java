@@ -5,6 +5,7 @@ import dev.kons.kuenyawz.dtos.product.ProductPostDto;
 import dev.kons.kuenyawz.dtos.product.VariantPostDto;
 import dev.kons.kuenyawz.repositories.AccountRepository;
 import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
 import dev.kons.kuenyawz.services.entity.ProductService;
 import dev.kons.kuenyawz.services.logic.AccountCsvService;
 import dev.kons.kuenyawz.services.logic.ProductCsvService;
@@ -42,13 +43,16 @@ class DatabaseBootstrapperTest {
 	@Autowired
 	private AccountRepository accountRepository;
 
+	@Autowired
+	private PurchaseRepository purchaseRepository;
+
 	DatabaseBootstrapper databaseBootstrapper;
 	@Autowired
 	private ProductService productService;
 
 	@BeforeEach
 	void setUp() {
-		databaseBootstrapper = new DatabaseBootstrapper(properties, productCsvService, productRepository, accountCsvService, accountRepository);
+		databaseBootstrapper = new DatabaseBootstrapper(properties, productCsvService, productRepository, accountCsvService, accountRepository, purchaseRepository);
 	}
 
 	@Test
@@ -0,0 +1,89 @@
+package dev.kons.kuenyawz.entities;
+
+import dev.kons.kuenyawz.services.logic.OrderRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class PurchaseStatusListenerTest {
+
+	private OrderRollupService orderRollupService;
+	private PurchaseStatusListener listener;
+
+	@BeforeEach
+	void setUp() {
+		orderRollupService = mock(OrderRollupService.class);
+		listener = new PurchaseStatusListener(new StaticListableBeanFactory(Map.of("orderRollupService", orderRollupService))
+			.getBeanProvider(OrderRollupService.class));
+	}
+
+	@Test
+	void onWrite_RecordsTheOldTotalOfAChangedDeliveryFee() {
+		// Arrange
+		Purchase purchase = loaded(Purchase.PurchaseStatus.CONFIRMED, "250000");
+		purchase.changeDeliveryFee(new BigDecimal("50000"));
+
+		// Act
+		listener.onWrite(purchase);
+
+		// Assert
+		verify(orderRollupService).record(purchase,
+			Purchase.PurchaseStatus.CONFIRMED, new BigDecimal("250000"), Purchase.PurchaseStatus.CONFIRMED);
+		verify(orderRollupService, never()).record(any(), any(), any());
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("300000");
+	}
+
+	@Test
+	void onWrite_SkipsAnUpdateKeepingStatusAndTotal() {
+		// Arrange
+		Purchase purchase = loaded(Purchase.PurchaseStatus.CONFIRMED, "250000");
+		purchase.setFullAddress("Jl. Kaliurang 5");
+
+		// Act
+		listener.onWrite(purchase);
+
+		// Assert
+		verifyNoInteractions(orderRollupService);
+	}
+
+	@Test
+	void onRemove_RecordsTheLastPersistedStatusAndTotal() {
+		// Arrange
+		Purchase purchase = loaded(Purchase.PurchaseStatus.PENDING, "250000");
+
+		// Act
+		listener.onRemove(purchase);
+
+		// Assert
+		verify(orderRollupService).record(eq(purchase),
+			eq(Purchase.PurchaseStatus.PENDING), eq(new BigDecimal("250000")), isNull());
+	}
+
+	/// A purchase as read from the database, its stored grand total is the item total plus the fee
+	private Purchase loaded(Purchase.PurchaseStatus status, String grandTotal) {
+		Purchase purchase = Purchase.builder()
+			.purchaseId(1L)
+			.status(status)
+			.deliveryFee(BigDecimal.ZERO)
+			.purchaseItems(new ArrayList<>())
+			.grandTotal(new BigDecimal(grandTotal))
+			.subtotal(new BigDecimal(grandTotal))
+			.build();
+		listener.onLoad(purchase);
+		purchase.getPurchaseItems().add(PurchaseItem.builder()
+			.boughtPrice(new BigDecimal(grandTotal))
+			.quantity(1)
+			.build());
+		return purchase;
+	}
+}
@@ -0,0 +1,111 @@
+package dev.kons.kuenyawz.entities;
+
+import org.hibernate.collection.spi.PersistentBag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseTest {
+
+	@Test
+	void recalculateTotals_SumsTheItemsAndTheDeliveryFee() {
+		// Arrange
+		Purchase purchase = purchase(List.of(item("15000", 2), item("4500", 3)));
+		purchase.changeDeliveryFee(new BigDecimal("7000"));
+
+		// Act
+		purchase.recalculateTotals();
+
+		// Assert
+		assertThat(purchase.getSubtotal()).isEqualByComparingTo("43500");
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("50500");
+	}
+
+	@Test
+	void recalculateTotals_TreatsMissingItemsAndFeeAsZero() {
+		// Arrange
+		Purchase purchase = purchase(null);
+
+		// Act
+		purchase.recalculateTotals();
+
+		// Assert
+		assertThat(purchase.getSubtotal()).isEqualByComparingTo("0");
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void changeDeliveryFee_MovesTheGrandTotalWithTheFee() {
+		// Arrange
+		Purchase purchase = purchase(List.of(item("20000", 1)));
+		purchase.changeDeliveryFee(new BigDecimal("5000"));
+
+		// Act
+		purchase.changeDeliveryFee(new BigDecimal("12000"));
+
+		// Assert
+		assertThat(purchase.getDeliveryFee()).isEqualByComparingTo("12000");
+		assertThat(purchase.getSubtotal()).isEqualByComparingTo("20000");
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("32000");
+	}
+
+	@Test
+	void recalculateTotals_PicksUpItemsAddedAfterTheLastCalculation() {
+		// Arrange
+		Purchase purchase = purchase(new ArrayList<>(List.of(item("10000", 1))));
+		purchase.recalculateTotals();
+
+		// Act
+		purchase.getPurchaseItems().add(item("2500", 2));
+		purchase.recalculateTotals();
+
+		// Assert
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("15000");
+	}
+
+	@Test
+	void recalculateLoadedTotals_KeepsTheStoredTotalsOfItemsNotLoaded() {
+		// Arrange, a collection not yet initialized from the database
+		Purchase purchase = purchase(new PersistentBag<>());
+		purchase.setSubtotal(new BigDecimal("20000"));
+		purchase.setGrandTotal(new BigDecimal("25000"));
+
+		// Act
+		purchase.recalculateLoadedTotals();
+
+		// Assert
+		assertThat(purchase.getSubtotal()).isEqualByComparingTo("20000");
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("25000");
+	}
+
+	@Test
+	void recalculateLoadedTotals_RecalculatesFromLoadedItems() {
+		// Arrange
+		Purchase purchase = purchase(List.of(item("10000", 3)));
+		purchase.setGrandTotal(new BigDecimal("25000"));
+
+		// Act
+		purchase.recalculateLoadedTotals();
+
+		// Assert
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("30000");
+	}
+
+	private static Purchase purchase(List<PurchaseItem> items) {
+		return Purchase.builder()
+			.status(Purchase.PurchaseStatus.PENDING)
+			.purchaseItems(items)
+			.build();
+	}
+
+	private static PurchaseItem item(String price, int quantity) {
+		return PurchaseItem.builder()
+			.boughtPrice(new BigDecimal(price))
+			.quantity(quantity)
+			.build();
+	}
+}
@@ -0,0 +1,62 @@
+package dev.kons.kuenyawz.recommender;
+
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+import dev.kons.kuenyawz.services.logic.AprioriService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+/**
+ * Measures counting and mining of a set of baskets: wall time, peak heap and rules per second.
+ * The peak heap is the sum of the peak usage of the heap pools during the run, so it includes
+ * garbage not collected yet and is an upper bound.
+ */
+public class MiningBenchmark {
+
+	private final AprioriService aprioriService;
+
+	public MiningBenchmark(AprioriService aprioriService) {
+		this.aprioriService = aprioriService;
+	}
+
+	public Result run(List<TimedBasket> baskets) {
+		List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+			.filter(pool -> pool.getType() == MemoryType.HEAP)
+			.toList();
+		System.gc();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+		long start = System.nanoTime();
+		BasketCounts counts = new BasketCounts();
+		baskets.forEach(basket -> counts.add(basket.products(), 1));
+		List<AssociationRule> rules = aprioriService.findAllRules(counts);
+		long elapsed = System.nanoTime() - start;
+
+		long peakHeap = heapPools.stream()
+			.mapToLong(pool -> pool.getPeakUsage().getUsed())
+			.sum();
+		return new Result(baskets.size(), rules, elapsed / 1_000_000, peakHeap);
+	}
+
+	/**
+	 * @param baskets    number of mined baskets
+	 * @param rules      mined rules
+	 * @param wallMillis time spent counting and mining
+	 * @param peakHeap   peak heap usage in bytes
+	 */
+	public record Result(int baskets, List<AssociationRule> rules, long wallMillis, long peakHeap) {
+
+		public double rulesPerSecond() {
+			return rules.size() * 1000.0 / Math.max(wallMillis, 1);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("baskets=%d rules=%d wall=%dms peakHeap=%dMiB rules/s=%.1f",
+				baskets, rules.size(), wallMillis, peakHeap >> 20, rulesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package dev.kons.kuenyawz.recommender;
+
+import dev.kons.kuenyawz.services.logic.AprioriServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Offline evaluation of the rule mining over synthetic baskets. The throughput is only logged, as
+ * the wall-clock time depends on the machine. Sizes default to 10k baskets to keep CI fast, larger
+ * runs are selected with {@code -Drecommender.benchmark.sizes=10000,100000,1000000}.
+ */
+@Slf4j
+class RecommenderBenchmarkTest {
+
+	private static final int PRODUCTS = 40;
+	private static final int TOP_K = 3;
+	/// Floors of the quality on the synthetic data, a regression of the miner drops below them
+	private static final double MIN_HIT_RATE = 0.3;
+	private static final double MIN_COVERAGE = 0.1;
+
+	private final AprioriServiceImpl aprioriService = new AprioriServiceImpl();
+
+	@Test
+	void mineSyntheticBaskets_KeepsQuality() {
+		for (int size : sizes()) {
+			// Arrange
+			ZipfBasketGenerator generator = new ZipfBasketGenerator(PRODUCTS, 1L, 1.0, 0.8, 42L);
+			List<TimedBasket> baskets = generator.generate(size, LocalDateTime.of(2024, 1, 1, 8, 0), 30);
+			TemporalSplit split = TemporalSplit.of(baskets, 0.8);
+
+			// Act
+			MiningBenchmark.Result result = new MiningBenchmark(aprioriService).run(split.train());
+			RecommenderEvaluator.EvaluationReport report = new RecommenderEvaluator(result.rules())
+				.evaluate(split.test(), TOP_K, generator.products());
+
+			// Assert
+			log.info("Mining {} | evaluation@{} {}", result, TOP_K, report);
+			assertThat(report.hitRate()).isGreaterThanOrEqualTo(MIN_HIT_RATE);
+			assertThat(report.coverage()).isGreaterThanOrEqualTo(MIN_COVERAGE);
+		}
+	}
+
+	private static int[] sizes() {
+		return Arrays.stream(System.getProperty("recommender.benchmark.sizes", "10000").split(","))
+			.map(String::trim)
+			.mapToInt(Integer::parseInt)
+			.toArray();
+	}
+}
@@ -0,0 +1,130 @@
+package dev.kons.kuenyawz.recommender;
+
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.PurchaseItem;
+import dev.kons.kuenyawz.entities.Variant;
+import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
+import dev.kons.kuenyawz.services.entity.PurchaseService;
+import dev.kons.kuenyawz.services.logic.AprioriService;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Evaluates the rules mined out of purchases stored in the embedded database, read through the
+ * same projection the regeneration uses, with a temporal split over the purchase creation time.
+ */
+@Slf4j
+@SpringBootTest
+@Transactional
+class RecommenderEvaluationTest {
+
+	private static final int PRODUCTS = 40;
+	private static final int BASKETS = 2000;
+	private static final int TOP_K = 3;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PurchaseRepository purchaseRepository;
+
+	@Autowired
+	private PurchaseService purchaseService;
+
+	@Autowired
+	private AprioriService aprioriService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void mineStoredPurchases_RecommendsHeldOutBaskets() {
+		// Arrange
+		final LocalDateTime since = LocalDateTime.now().minusMinutes(BASKETS + 1);
+		Map<Long, Variant> variants = new HashMap<>();
+		for (int rank = 0; rank < PRODUCTS; rank++) {
+			Product product = productRepository.save(product("Benchmark product " + rank));
+			variants.put(rank + 1L, product.getVariants().iterator().next());
+		}
+		ZipfBasketGenerator generator = new ZipfBasketGenerator(PRODUCTS, 1L, 1.0, 0.8, 42L);
+		for (TimedBasket basket : generator.generate(BASKETS, since, 1)) {
+			Purchase purchase = purchaseRepository.save(purchase(basket.products().stream().map(variants::get).toList()));
+			backdate(purchase, basket.createdAt());
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		// Act
+		List<TimedBasket> stored = new ArrayList<>();
+		purchaseService.forEachAprioriBasket(since, (createdAt, products) -> stored.add(new TimedBasket(createdAt, products)));
+		TemporalSplit split = TemporalSplit.of(stored, 0.8);
+		BasketCounts counts = new BasketCounts();
+		split.train().forEach(basket -> counts.add(basket.products(), 1));
+		RecommenderEvaluator.EvaluationReport report = new RecommenderEvaluator(aprioriService.findAllRules(counts))
+			.evaluate(split.test(), TOP_K, PRODUCTS);
+
+		// Assert
+		log.info("Evaluation@{} of {} stored baskets: {}", TOP_K, stored.size(), report);
+		assertThat(stored).hasSize(BASKETS);
+		assertThat(split.train().getLast().createdAt()).isBefore(split.test().getFirst().createdAt());
+		assertThat(report.hitRate()).isGreaterThanOrEqualTo(0.3);
+	}
+
+	/// Auditing stamps the time of the insert, the generated time is written over it afterwards
+	private void backdate(Purchase purchase, LocalDateTime createdAt) {
+		entityManager.flush();
+		entityManager.createQuery("UPDATE Purchase p SET p.createdAt = :createdAt WHERE p.purchaseId = :purchaseId")
+			.setParameter("createdAt", createdAt)
+			.setParameter("purchaseId", purchase.getPurchaseId())
+			.executeUpdate();
+	}
+
+	private static Product product(String name) {
+		Product product = Product.builder()
+			.name(name)
+			.category(Product.Category.CAKE)
+			.available(true)
+			.deleted(false)
+			.variants(new HashSet<>())
+			.build();
+		product.getVariants().add(Variant.builder()
+			.price(BigDecimal.valueOf(10_000))
+			.type("Regular")
+			.minQuantity(1)
+			.maxQuantity(10)
+			.product(product)
+			.build());
+		return product;
+	}
+
+	private static Purchase purchase(List<Variant> variants) {
+		Purchase purchase = Purchase.builder()
+			.fullAddress("Benchmark address")
+			.deliveryOption(Purchase.DeliveryOption.PICK_UP)
+			.deliveryFee(BigDecimal.ZERO)
+			.status(Purchase.PurchaseStatus.CONFIRMED)
+			.purchaseItems(new ArrayList<>())
+			.transactions(new ArrayList<>())
+			.build();
+		variants.forEach(variant -> purchase.getPurchaseItems().add(PurchaseItem.builder()
+			.quantity(1)
+			.boughtPrice(variant.getPrice())
+			.variant(variant)
+			.purchase(purchase)
+			.build()));
+		return purchase;
+	}
+}
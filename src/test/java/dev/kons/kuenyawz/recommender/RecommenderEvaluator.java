@@ -0,0 +1,87 @@
+package dev.kons.kuenyawz.recommender;
+
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+
+import java.util.*;
+
+/**
+ * Scores mined rules against held out baskets. Every product of a test basket is used in turn as
+ * the viewed product, and the top k consequents of its rules are checked against the rest of the
+ * basket.
+ */
+public class RecommenderEvaluator {
+
+	private final Map<Long, List<Long>> rankedConsequents = new HashMap<>();
+
+	public RecommenderEvaluator(List<AssociationRule> rules) {
+		Map<Long, List<AssociationRule>> byAntecedent = new HashMap<>();
+		for (AssociationRule rule : rules) {
+			byAntecedent.computeIfAbsent(rule.antecedent(), k -> new ArrayList<>()).add(rule);
+		}
+		Comparator<AssociationRule> ranking = Comparator.comparingDouble(AssociationRule::confidence)
+			.thenComparingDouble(AssociationRule::lift)
+			.reversed();
+		byAntecedent.forEach((antecedent, antecedentRules) -> rankedConsequents.put(antecedent, antecedentRules.stream()
+			.sorted(ranking)
+			.map(AssociationRule::consequent)
+			.toList()));
+	}
+
+	/**
+	 * @param test         held out baskets
+	 * @param k            number of recommendations per viewed product
+	 * @param catalogSize  number of products that could be recommended
+	 */
+	public EvaluationReport evaluate(List<TimedBasket> test, int k, int catalogSize) {
+		long cases = 0;
+		long hits = 0;
+		double precisionSum = 0;
+		Set<Long> recommended = new HashSet<>();
+
+		for (TimedBasket basket : test) {
+			if (basket.products().size() < 2) {
+				continue;
+			}
+			for (Long viewed : basket.products()) {
+				List<Long> top = recommend(viewed, k);
+				recommended.addAll(top);
+
+				int relevant = 0;
+				for (Long product : top) {
+					if (!product.equals(viewed) && basket.products().contains(product)) {
+						relevant++;
+					}
+				}
+				cases++;
+				hits += relevant > 0 ? 1 : 0;
+				precisionSum += (double) relevant / k;
+			}
+		}
+
+		return new EvaluationReport(
+			cases,
+			cases == 0 ? 0 : (double) hits / cases,
+			cases == 0 ? 0 : precisionSum / cases,
+			catalogSize == 0 ? 0 : (double) recommended.size() / catalogSize
+		);
+	}
+
+	private List<Long> recommend(Long viewed, int k) {
+		List<Long> consequents = rankedConsequents.getOrDefault(viewed, List.of());
+		return consequents.subList(0, Math.min(k, consequents.size()));
+	}
+
+	/**
+	 * @param cases     number of (basket, viewed product) pairs evaluated
+	 * @param hitRate   share of cases with at least one recommendation in the basket
+	 * @param precision average share of the k recommendations found in the basket
+	 * @param coverage  share of the catalog recommended at least once
+	 */
+	public record EvaluationReport(long cases, double hitRate, double precision, double coverage) {
+
+		@Override
+		public String toString() {
+			return String.format("cases=%d hitRate=%.4f precision=%.4f coverage=%.4f", cases, hitRate, precision, coverage);
+		}
+	}
+}
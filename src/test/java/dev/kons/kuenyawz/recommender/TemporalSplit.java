@@ -0,0 +1,23 @@
+package dev.kons.kuenyawz.recommender;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Baskets split by time, the model is trained on the older ones and evaluated on the newer ones,
+ * as it would be in production.
+ */
+public record TemporalSplit(List<TimedBasket> train, List<TimedBasket> test) {
+
+	/**
+	 * @param baskets       baskets in any order
+	 * @param trainFraction fraction of the oldest baskets used for training
+	 */
+	public static TemporalSplit of(List<TimedBasket> baskets, double trainFraction) {
+		List<TimedBasket> sorted = baskets.stream()
+			.sorted(Comparator.comparing(TimedBasket::createdAt))
+			.toList();
+		int cut = (int) Math.round(sorted.size() * trainFraction);
+		return new TemporalSplit(sorted.subList(0, cut), sorted.subList(cut, sorted.size()));
+	}
+}
@@ -0,0 +1,10 @@
+package dev.kons.kuenyawz.recommender;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Product ids bought together in one purchase, with the time of the purchase.
+ */
+public record TimedBasket(LocalDateTime createdAt, Set<Long> products) {
+}
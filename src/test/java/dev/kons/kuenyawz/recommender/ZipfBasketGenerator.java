@@ -0,0 +1,92 @@
+package dev.kons.kuenyawz.recommender;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Generates synthetic baskets whose product popularity follows a Zipf distribution, so a few
+ * products are in most baskets and the long tail is rarely bought. Every product also has a
+ * companion product bought alongside it with a fixed probability, giving the miner real
+ * associations to find. Generation is deterministic for a given seed.
+ */
+public class ZipfBasketGenerator {
+
+	private final int products;
+	private final long firstProductId;
+	private final double[] cumulative;
+	private final long[] companions;
+	private final double companionProbability;
+	private final Random random;
+
+	/**
+	 * @param products             size of the catalog
+	 * @param firstProductId       id of the most popular product, the others follow it
+	 * @param exponent             Zipf exponent, higher is more skewed
+	 * @param companionProbability chance of adding the companion of a drawn product
+	 * @param seed                 seed of the generator
+	 */
+	public ZipfBasketGenerator(int products, long firstProductId, double exponent, double companionProbability, long seed) {
+		this.products = products;
+		this.firstProductId = firstProductId;
+		this.companionProbability = companionProbability;
+		this.random = new Random(seed);
+
+		this.cumulative = new double[products];
+		double total = 0;
+		for (int rank = 0; rank < products; rank++) {
+			total += 1 / Math.pow(rank + 1, exponent);
+			cumulative[rank] = total;
+		}
+		for (int rank = 0; rank < products; rank++) {
+			cumulative[rank] /= total;
+		}
+
+		this.companions = new long[products];
+		for (int rank = 0; rank < products; rank++) {
+			int companion = (rank + 1 + random.nextInt(products - 1)) % products;
+			companions[rank] = firstProductId + companion;
+		}
+	}
+
+	/**
+	 * Generates baskets spread evenly over time, ordered from the oldest.
+	 *
+	 * @param count number of baskets
+	 * @param start time of the first basket
+	 * @param step  minutes between two baskets
+	 */
+	public List<TimedBasket> generate(int count, LocalDateTime start, long step) {
+		List<TimedBasket> baskets = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			baskets.add(new TimedBasket(start.plusMinutes(i * step), nextBasket()));
+		}
+		return baskets;
+	}
+
+	public int products() {
+		return products;
+	}
+
+	private Set<Long> nextBasket() {
+		// Mostly small baskets, as a cake shop order rarely has more than a few products
+		int size = 1;
+		while (size < 6 && random.nextDouble() < 0.45) {
+			size++;
+		}
+
+		Set<Long> basket = new HashSet<>();
+		while (basket.size() < size) {
+			int rank = drawRank();
+			basket.add(firstProductId + rank);
+			if (random.nextDouble() < companionProbability) {
+				basket.add(companions[rank]);
+			}
+		}
+		return basket;
+	}
+
+	private int drawRank() {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(index >= 0 ? index : -index - 1, products - 1);
+	}
+}
@@ -0,0 +1,263 @@
+package dev.kons.kuenyawz.repositories;
+
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.entities.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link PurchaseRepository} and {@link PurchaseSpec}, on the stored totals of the
+ * purchases and on the number of statements the fetch plans of the order aggregate take.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PurchaseRepositoryTest {
+
+	/// Page query, count, then one batch each for the items, variants, products and transactions
+	private static final long PAGE_STATEMENTS = 6;
+
+	@Autowired
+	private PurchaseRepository purchaseRepository;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private Variant variant;
+
+	@BeforeEach
+	void setUp() {
+		Product product = Product.builder()
+			.name("Brownies")
+			.category(Product.Category.CAKE)
+			.available(true)
+			.deleted(false)
+			.variants(new HashSet<>())
+			.build();
+		variant = Variant.builder()
+			.price(new BigDecimal("10000"))
+			.type("Small")
+			.minQuantity(1)
+			.maxQuantity(10)
+			.product(product)
+			.build();
+		product.getVariants().add(variant);
+		entityManager.persist(product);
+	}
+
+	@Test
+	void backfillTotals_FillsOnlyTheMissingTotals() {
+		// Arrange
+		Purchase missing = entityManager.persist(purchase(3, "5000"));
+		Purchase stored = entityManager.persist(purchase(1, "0"));
+		entityManager.flush();
+		entityManager.getEntityManager()
+			.createQuery("UPDATE Purchase p SET p.subtotal = null, p.grandTotal = null WHERE p.purchaseId = :purchaseId")
+			.setParameter("purchaseId", missing.getPurchaseId())
+			.executeUpdate();
+		entityManager.clear();
+
+		// Act
+		int updated = purchaseRepository.backfillTotals();
+
+		// Assert
+		assertThat(updated).isOne();
+		Purchase backfilled = entityManager.find(Purchase.class, missing.getPurchaseId());
+		assertThat(backfilled.getSubtotal()).isEqualByComparingTo("30000");
+		assertThat(backfilled.getGrandTotal()).isEqualByComparingTo("35000");
+		assertThat(entityManager.find(Purchase.class, stored.getPurchaseId()).getGrandTotal()).isEqualByComparingTo("10000");
+	}
+
+	@Test
+	void withGrandTotalBetween_FiltersOnTheStoredGrandTotal() {
+		// Arrange
+		entityManager.persist(purchase(1, "0"));
+		entityManager.persist(purchase(3, "0"));
+		entityManager.persist(purchase(5, "0"));
+		entityManager.flush();
+
+		// Act
+		List<Purchase> between = purchaseRepository.findAll(PurchaseSpec.withGrandTotalBetween(new BigDecimal("20000"), new BigDecimal("40000")));
+		List<Purchase> atLeast = purchaseRepository.findAll(PurchaseSpec.withGrandTotalBetween(new BigDecimal("30000"), null));
+		List<Purchase> atMost = purchaseRepository.findAll(PurchaseSpec.withGrandTotalBetween(null, new BigDecimal("30000")));
+		List<Purchase> unbounded = purchaseRepository.findAll(PurchaseSpec.withGrandTotalBetween(null, null));
+
+		// Assert
+		assertThat(between).extracting(Purchase::getGrandTotal).usingComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+			.containsExactly(new BigDecimal("30000"));
+		assertThat(atLeast).hasSize(2);
+		assertThat(atMost).hasSize(2);
+		assertThat(unbounded).hasSize(3);
+	}
+
+	@Test
+	void update_RecalculatesTheGrandTotalBeforeWriting() {
+		// Arrange
+		Purchase purchase = entityManager.persistFlushFind(purchase(1, "5000"));
+		purchase.getPurchaseItems().getFirst().setQuantity(4);
+
+		// Act
+		purchase.setStatus(Purchase.PurchaseStatus.CONFIRMING);
+		entityManager.flush();
+		entityManager.clear();
+
+		// Assert
+		assertThat(entityManager.find(Purchase.class, purchase.getPurchaseId()).getGrandTotal()).isEqualByComparingTo("45000");
+	}
+
+	@Test
+	void findAll_LoadsAPageWithItsDetailsInBoundedStatements() {
+		// Arrange
+		Account account = givenAccount();
+		for (int i = 0; i < 12; i++) {
+			givenPaidPurchase(account, i + 1);
+		}
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = statistics();
+
+		// Act
+		Page<Purchase> page = purchaseRepository.findAll(PurchaseSpec.withAccountId2(account.getAccountId()),
+			PageRequest.of(0, 10, Sort.by("grandTotal")));
+		page.forEach(PurchaseRepositoryTest::touchDetails);
+
+		// Assert, the statements do not grow with the page size
+		assertThat(page.getContent()).hasSize(10);
+		assertThat(page.getTotalElements()).isEqualTo(12);
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(PAGE_STATEMENTS);
+	}
+
+	@Test
+	void findDetailedByPurchaseId_FetchesTheItemsWithTheirProducts() {
+		// Arrange
+		Purchase purchase = givenPaidPurchase(givenAccount(), 3);
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = statistics();
+
+		// Act
+		Purchase detailed = purchaseRepository.findDetailedByPurchaseId(purchase.getPurchaseId()).orElseThrow();
+		detailed.getPurchaseItems().forEach(item -> item.getVariant().getProduct().getName());
+		long graphStatements = statistics.getPrepareStatementCount();
+		detailed.getTransactions().size();
+
+		// Assert, the transactions are a second bag and come in their own select
+		assertThat(graphStatements).isOne();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void findWithPurchaseByTransactionId_LoadsThePurchaseInTheSameStatement() {
+		// Arrange
+		Purchase purchase = givenPaidPurchase(givenAccount(), 1);
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = statistics();
+
+		// Act
+		Long transactionId = purchase.getTransactions().getFirst().getTransactionId();
+		Transaction transaction = transactionRepository.findWithPurchaseByTransactionId(transactionId).orElseThrow();
+
+		// Assert
+		assertThat(transaction.getPurchase().getStatus()).isEqualTo(Purchase.PurchaseStatus.CONFIRMED);
+		assertThat(statistics.getPrepareStatementCount()).isOne();
+	}
+
+	private Statistics statistics() {
+		Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+			.unwrap(SessionFactory.class)
+			.getStatistics();
+		statistics.clear();
+		return statistics;
+	}
+
+	private static void touchDetails(Purchase purchase) {
+		purchase.getPurchaseItems().forEach(item -> item.getVariant().getProduct().getName());
+		purchase.getTransactions().forEach(Transaction::getStatus);
+	}
+
+	private Account givenAccount() {
+		return entityManager.persist(Account.builder()
+			.email("buyer@test.com")
+			.phone("8120011")
+			.password("password")
+			.privilege(Account.Privilege.USER)
+			.build());
+	}
+
+	/// A confirmed purchase of its own product besides the shared one, paid by one transaction
+	private Purchase givenPaidPurchase(Account account, int quantity) {
+		Product product = Product.builder()
+			.name("Product " + quantity)
+			.category(Product.Category.CAKE)
+			.available(true)
+			.deleted(false)
+			.variants(new HashSet<>())
+			.build();
+		Variant own = Variant.builder()
+			.price(new BigDecimal("10000"))
+			.type("Regular")
+			.minQuantity(1)
+			.maxQuantity(10)
+			.product(product)
+			.build();
+		product.getVariants().add(own);
+		entityManager.persist(product);
+
+		Purchase purchase = purchase(quantity, "0");
+		purchase.getPurchaseItems().add(PurchaseItem.builder()
+			.quantity(1)
+			.boughtPrice(own.getPrice())
+			.variant(own)
+			.purchase(purchase)
+			.build());
+		purchase.setStatus(Purchase.PurchaseStatus.CONFIRMED);
+		entityManager.persist(purchase);
+		purchase.getTransactions().add(entityManager.persist(Transaction.builder()
+			.transactionId(transactionIds.incrementAndGet())
+			.amount(purchase.getGrandTotal())
+			.status(Transaction.TransactionStatus.SETTLEMENT)
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.account(account)
+			.purchase(purchase)
+			.build()));
+		return purchase;
+	}
+
+	private static final AtomicLong transactionIds = new AtomicLong();
+
+	private Purchase purchase(int quantity, String deliveryFee) {
+		Purchase purchase = Purchase.builder()
+			.fullAddress("Jl. Kaliurang")
+			.deliveryOption(Purchase.DeliveryOption.DELIVERY)
+			.status(Purchase.PurchaseStatus.PENDING)
+			.purchaseItems(new ArrayList<>())
+			.transactions(new ArrayList<>())
+			.build();
+		purchase.getPurchaseItems().add(PurchaseItem.builder()
+			.quantity(quantity)
+			.boughtPrice(variant.getPrice())
+			.variant(variant)
+			.purchase(purchase)
+			.build());
+		purchase.changeDeliveryFee(new BigDecimal(deliveryFee));
+		return purchase;
+	}
+}
@@ -0,0 +1,52 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+import dev.kons.kuenyawz.services.logic.AprioriServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AprioriServiceImplTest {
+
+	private final AprioriServiceImpl aprioriService = new AprioriServiceImpl();
+
+	@Test
+	void findAllRules_ScoresPairsBySupportConfidenceAndLift() {
+		// Arrange
+		Map<Long, Set<Long>> orders = Map.of(
+			1L, Set.of(10L, 20L),
+			2L, Set.of(10L, 20L),
+			3L, Set.of(10L, 20L, 30L),
+			4L, Set.of(30L)
+		);
+
+		// Act
+		List<AssociationRule> rules = aprioriService.findAllRules(orders);
+
+		// Assert
+		AssociationRule rule = rules.stream()
+			.filter(r -> r.antecedent() == 10L && r.consequent() == 20L)
+			.findFirst()
+			.orElseThrow();
+		assertThat(rule.support()).isCloseTo(0.75, within(1e-9));
+		assertThat(rule.confidence()).isCloseTo(1.0, within(1e-9));
+		assertThat(rule.lift()).isCloseTo(1.0 / 0.75, within(1e-9));
+
+		// 30 is bought with 10 only once out of three baskets with 10, below the minimum confidence
+		assertThat(rules).noneMatch(r -> r.antecedent() == 10L && r.consequent() == 30L);
+	}
+
+	@Test
+	void findAllRules_ReturnsNothingWithoutOrders() {
+		// Act
+		List<AssociationRule> rules = aprioriService.findAllRules(Map.of());
+
+		// Assert
+		assertThat(rules).isEmpty();
+	}
+}
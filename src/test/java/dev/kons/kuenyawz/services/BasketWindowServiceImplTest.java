@@ -0,0 +1,115 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+import dev.kons.kuenyawz.services.entity.PurchaseService;
+import dev.kons.kuenyawz.services.logic.BasketWindowServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BasketWindowServiceImplTest {
+
+	@Mock
+	private PurchaseService purchaseService;
+
+	@Mock
+	private ApplicationProperties properties;
+
+	@InjectMocks
+	private BasketWindowServiceImpl basketWindowService;
+
+	private ApplicationProperties.Recommender recommender;
+
+	// A monday, so that the current week starts today
+	private final LocalDate today = LocalDate.of(2024, 6, 3);
+
+	@BeforeEach
+	void setUp() {
+		recommender = new ApplicationProperties.Recommender();
+		recommender.setHalfLifeDays(7);
+		recommender.setWindowWeeks(8);
+		when(properties.recommender()).thenReturn(recommender);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void collect_HalvesTheWeightEveryHalfLife() {
+		// Arrange
+		doAnswer(invocation -> {
+			BiConsumer<LocalDateTime, Set<Long>> action = invocation.getArgument(1);
+			action.accept(today.atTime(10, 0), Set.of(1L, 2L));
+			action.accept(today.minusWeeks(1).atTime(10, 0), Set.of(1L, 2L));
+			return null;
+		}).when(purchaseService).forEachAprioriBasket(any(), any(BiConsumer.class));
+
+		// Act
+		BasketCounts counts = basketWindowService.collect(today);
+
+		// Assert
+		assertThat(counts.baskets()).isCloseTo(1.5, within(1e-9));
+		assertThat(counts.itemCount(1L)).isCloseTo(1.5, within(1e-9));
+		assertThat(counts.pairs().get(1L).get(2L)).isCloseTo(1.5, within(1e-9));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void collect_CountsEquallyWithoutTimeDecay() {
+		// Arrange
+		recommender.setTimeDecay(false);
+		doAnswer(invocation -> {
+			BiConsumer<LocalDateTime, Set<Long>> action = invocation.getArgument(1);
+			action.accept(today.atTime(10, 0), Set.of(1L, 2L));
+			action.accept(today.minusWeeks(5).atTime(10, 0), Set.of(1L, 3L));
+			return null;
+		}).when(purchaseService).forEachAprioriBasket(any(), any(BiConsumer.class));
+
+		// Act
+		BasketCounts counts = basketWindowService.collect(today);
+
+		// Assert
+		assertThat(counts.baskets()).isCloseTo(2, within(1e-9));
+		assertThat(counts.itemCount(1L)).isCloseTo(2, within(1e-9));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void collect_OnlyReadsRecentWeeksAfterTheFirstCollection() {
+		// Arrange
+		final LocalDateTime purchasedAt = today.minusWeeks(6).atTime(10, 0);
+		doAnswer(invocation -> {
+			LocalDateTime since = invocation.getArgument(0);
+			BiConsumer<LocalDateTime, Set<Long>> action = invocation.getArgument(1);
+			if (!purchasedAt.isBefore(since)) {
+				action.accept(purchasedAt, Set.of(1L, 2L));
+			}
+			return null;
+		}).when(purchaseService).forEachAprioriBasket(any(), any(BiConsumer.class));
+
+		// Act
+		basketWindowService.collect(today);
+		BasketCounts counts = basketWindowService.collect(today);
+
+		// Assert
+		verify(purchaseService).forEachAprioriBasket(eq(today.minusWeeks(7).atStartOfDay()), any(BiConsumer.class));
+		verify(purchaseService).forEachAprioriBasket(eq(today.minusWeeks(3).atStartOfDay()), any(BiConsumer.class));
+		assertThat(counts.itemCount(1L)).isCloseTo(Math.pow(0.5, 6), within(1e-9));
+	}
+}
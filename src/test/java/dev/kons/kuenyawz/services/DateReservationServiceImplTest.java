@@ -0,0 +1,189 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.ClosedDate;
+import dev.kons.kuenyawz.entities.DateReservation;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.ClosedDateRepository;
+import dev.kons.kuenyawz.repositories.DateReservationRepository;
+import dev.kons.kuenyawz.services.entity.DateReservationServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DateReservationServiceImplTest {
+
+	@Mock
+	private DateReservationRepository dateReservationRepository;
+
+	@Mock
+	private ClosedDateRepository closedDateRepository;
+
+	private ApplicationProperties properties;
+	private DateReservationServiceImpl dateReservationService;
+
+	private final LocalDate eventDate = LocalDate.now().plusDays(10);
+
+	@BeforeEach
+	void setUp() {
+		properties = new ApplicationProperties();
+		properties.vendor().setOrdersPerDay(1);
+		dateReservationService = new DateReservationServiceImpl(dateReservationRepository, closedDateRepository, properties);
+	}
+
+	@Test
+	void claim_HoldsTheEventAndPreparationDates() {
+		// Act
+		List<DateReservation> reservations = dateReservationService.claim(1L, eventDate);
+
+		// Assert
+		assertThat(reservations).extracting(DateReservation::getDate)
+			.containsExactly(eventDate.minusDays(2), eventDate.minusDays(1), eventDate);
+		assertThat(reservations).extracting(DateReservation::getClosureType)
+			.containsExactly(ClosedDate.ClosureType.PREP, ClosedDate.ClosureType.PREP, ClosedDate.ClosureType.RESERVED);
+		assertThat(dateReservationService.isAvailable(eventDate)).isFalse();
+		verify(closedDateRepository, times(3)).save(any(ClosedDate.class));
+	}
+
+	@Test
+	void claim_RejectsAFullyBookedDate() {
+		// Arrange
+		List<DateReservation> held = dateReservationService.claim(1L, eventDate);
+		when(dateReservationRepository.findAllByDateIn(any())).thenReturn(held);
+
+		// Act & Assert
+		assertThatThrownBy(() -> dateReservationService.claim(2L, eventDate.plusDays(1)))
+			.isInstanceOf(IllegalOperationException.class);
+		assertThat(dateReservationService.isAvailable(eventDate.plusDays(1))).isTrue();
+	}
+
+	@Test
+	void claim_ReloadsTheDatesTakenByAnotherInstance() {
+		// Arrange
+		properties.vendor().setOrdersPerDay(2);
+		when(dateReservationRepository.saveAllAndFlush(anyList()))
+			.thenThrow(new DataIntegrityViolationException("duplicate slot"))
+			.thenAnswer(invocation -> invocation.getArgument(0));
+		assertThatThrownBy(() -> dateReservationService.claim(1L, eventDate))
+			.isInstanceOf(IllegalOperationException.class);
+		when(dateReservationRepository.findAllByDateIn(Set.of(eventDate.minusDays(2), eventDate.minusDays(1), eventDate)))
+			.thenReturn(List.of(reservation(9L, eventDate.minusDays(2), 0), reservation(9L, eventDate.minusDays(1), 0), reservation(9L, eventDate, 0)));
+
+		// Act
+		List<DateReservation> reservations = dateReservationService.claim(2L, eventDate);
+
+		// Assert, the slot of the other instance is skipped and the date is now fully booked
+		assertThat(reservations).extracting(DateReservation::getSlot).containsOnly(1);
+		assertThat(dateReservationService.isAvailable(eventDate)).isFalse();
+		verify(dateReservationRepository, times(1)).findAllByDateIn(any());
+	}
+
+	@Test
+	void claim_TakesSeveralOrdersPerDay() {
+		// Arrange
+		properties.vendor().setOrdersPerDay(2);
+
+		// Act
+		List<DateReservation> first = dateReservationService.claim(1L, eventDate);
+		boolean availableAfterFirst = dateReservationService.isAvailable(eventDate);
+		List<DateReservation> second = dateReservationService.claim(2L, eventDate);
+		when(dateReservationRepository.findAllByDateIn(any())).thenReturn(List.of(first.getLast(), second.getLast()));
+
+		// Assert
+		assertThat(availableAfterFirst).isTrue();
+		assertThat(first.getLast().getSlot()).isZero();
+		assertThat(second.getLast().getSlot()).isOne();
+		assertThat(dateReservationService.isOrderable(eventDate)).isFalse();
+	}
+
+	@Test
+	void isOrderable_ReadsAFullDateAgainOnceAnotherInstanceReleasedIt() {
+		// Arrange, the slots were held here and released by another instance since
+		dateReservationService.claim(1L, eventDate);
+		when(dateReservationRepository.findAllByDateIn(any())).thenReturn(List.of());
+		when(closedDateRepository.findAllByDateIn(any())).thenReturn(List.of());
+
+		// Act
+		boolean orderable = dateReservationService.isOrderable(eventDate);
+
+		// Assert, only the full dates are read again
+		assertThat(orderable).isTrue();
+		assertThat(dateReservationService.claim(2L, eventDate)).extracting(DateReservation::getSlot).containsOnly(0);
+		verify(dateReservationRepository).findAllByDateIn(Set.of(eventDate.minusDays(2), eventDate.minusDays(1), eventDate));
+	}
+
+	@Test
+	void isOrderable_StaysClosedOnADateClosedByTheVendor() {
+		// Arrange
+		when(dateReservationRepository.findAllByDateIn(any())).thenReturn(List.of());
+		when(closedDateRepository.findAllByDateGreaterThanEqual(any())).thenReturn(List.of(closedDate(eventDate)));
+		when(closedDateRepository.findAllByDateIn(any())).thenReturn(List.of(closedDate(eventDate)));
+		dateReservationService.reload();
+
+		// Act & Assert
+		assertThat(dateReservationService.isOrderable(eventDate)).isFalse();
+	}
+
+	@Test
+	void release_FreesTheHeldSlots() {
+		// Arrange
+		List<DateReservation> reservations = dateReservationService.claim(1L, eventDate);
+		when(dateReservationRepository.findAllByPurchaseId(1L)).thenReturn(reservations);
+
+		// Act
+		dateReservationService.release(1L, eventDate);
+
+		// Assert
+		assertThat(dateReservationService.isOrderable(eventDate)).isTrue();
+		verify(dateReservationRepository).deleteAllInBatch(reservations);
+	}
+
+	@Test
+	void releaseAll_DeletesTheReservationsOfEveryPurchaseAtOnce() {
+		// Arrange
+		List<DateReservation> reservations = dateReservationService.claim(1L, eventDate);
+		when(dateReservationRepository.findAllByPurchaseIdIn(Set.of(1L))).thenReturn(reservations);
+
+		// Act
+		dateReservationService.releaseAll(Map.of(1L, eventDate));
+
+		// Assert
+		assertThat(dateReservationService.isOrderable(eventDate)).isTrue();
+		verify(dateReservationRepository).deleteAllByPurchaseIdIn(Set.of(1L));
+		verify(closedDateRepository).deleteAllByDateInAndClosureTypeIn(
+			Set.of(eventDate.minusDays(2), eventDate.minusDays(1), eventDate),
+			List.of(ClosedDate.ClosureType.PREP, ClosedDate.ClosureType.RESERVED));
+		verify(dateReservationRepository, never()).existsByDateIn(any());
+	}
+
+	private static DateReservation reservation(Long purchaseId, LocalDate date, int slot) {
+		return DateReservation.builder()
+			.date(date)
+			.slot(slot)
+			.closureType(ClosedDate.ClosureType.PREP)
+			.purchaseId(purchaseId)
+			.build();
+	}
+
+	private static ClosedDate closedDate(LocalDate date) {
+		return ClosedDate.builder()
+			.date(date)
+			.closureType(ClosedDate.ClosureType.CLOSED)
+			.build();
+	}
+}
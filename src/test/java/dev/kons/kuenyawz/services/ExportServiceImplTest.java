@@ -0,0 +1,98 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.services.logic.ExportService;
+import dev.kons.kuenyawz.services.logic.ExportServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportServiceImplTest {
+
+	private EmbeddedDatabase database;
+	private ExportServiceImpl exportService;
+
+	@BeforeEach
+	void setUp() {
+		database = new EmbeddedDatabaseBuilder()
+			.setType(EmbeddedDatabaseType.H2)
+			.generateUniqueName(true)
+			.build();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+		jdbcTemplate.execute("CREATE TABLE product (product_id BIGINT PRIMARY KEY, name VARCHAR(255))");
+		jdbcTemplate.execute("CREATE TABLE variant (variant_id BIGINT PRIMARY KEY, type VARCHAR(255), product_id BIGINT)");
+		jdbcTemplate.execute("CREATE TABLE purchase (purchase_id BIGINT PRIMARY KEY, created_at TIMESTAMP, event_date DATE, "
+			+ "status VARCHAR(32), payment_type SMALLINT, delivery_option VARCHAR(32), delivery_fee NUMERIC(38, 2), "
+			+ "subtotal NUMERIC(38, 2), grand_total NUMERIC(38, 2), full_address VARCHAR(255))");
+		jdbcTemplate.execute("CREATE TABLE purchase_item (purchase_item_id BIGINT PRIMARY KEY, note VARCHAR(255), "
+			+ "quantity INT, bought_price NUMERIC(38, 2), variant_id BIGINT, purchase_id BIGINT)");
+		jdbcTemplate.execute("INSERT INTO product VALUES (1, 'Brownies')");
+		jdbcTemplate.execute("INSERT INTO variant VALUES (10, 'Small', 1)");
+		jdbcTemplate.execute("INSERT INTO purchase VALUES (100, TIMESTAMP '2024-04-21 10:00:00', DATE '2024-05-01', "
+			+ "'CONFIRMED', 1, 'DELIVERY', 15000, 50000, 65000, 'Jalan Merdeka; No. 1')");
+		jdbcTemplate.execute("INSERT INTO purchase VALUES (200, TIMESTAMP '2024-04-22 10:00:00', DATE '2024-05-02', "
+			+ "'CANCELLED', 0, 'PICK_UP', 0, 25000, 25000, 'Jalan Sudirman')");
+		jdbcTemplate.execute("INSERT INTO purchase_item VALUES (1000, NULL, 2, 25000, 10, 100)");
+		jdbcTemplate.execute("INSERT INTO purchase_item VALUES (2000, 'less sugar', 1, 25000, 10, 200)");
+
+		ApplicationProperties properties = new ApplicationProperties();
+		properties.export().setFlushRows(1);
+		exportService = new ExportServiceImpl(jdbcTemplate, new ObjectMapper(), properties);
+	}
+
+	@AfterEach
+	void tearDown() {
+		database.shutdown();
+	}
+
+	@Test
+	void exportOrders_WritesAHeaderAndOneEscapedCsvRowPerItem() throws Exception {
+		// Arrange
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// Act
+		exportService.exportOrders(null, null, List.of(), ExportService.Format.CSV, out);
+
+		// Assert
+		List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+		assertThat(lines).hasSize(3);
+		assertThat(lines.get(0)).startsWith("purchaseId;createdAt;eventDate;status;paymentType");
+		assertThat(lines.get(1))
+			.startsWith("100;2024-04-21T10:00;2024-05-01;CONFIRMED;FULL_PAYMENT;DELIVERY;")
+			.contains("\"Jalan Merdeka; No. 1\"");
+		assertThat(lines.get(2)).startsWith("200;").endsWith(";less sugar");
+	}
+
+	@Test
+	void exportOrders_FiltersByStatusAndDateAsNdjson() throws Exception {
+		// Arrange
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// Act
+		exportService.exportOrders(LocalDate.of(2024, 4, 21), LocalDate.of(2024, 4, 21),
+			List.of(Purchase.PurchaseStatus.CONFIRMED), ExportService.Format.NDJSON, out);
+
+		// Assert
+		List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+		assertThat(lines).hasSize(1);
+		JsonNode row = new ObjectMapper().readTree(lines.get(0));
+		assertThat(row.get("purchaseId").asLong()).isEqualTo(100L);
+		assertThat(row.get("productName").asText()).isEqualTo("Brownies");
+		assertThat(row.get("quantity").asLong()).isEqualTo(2L);
+		assertThat(row.get("note").isNull()).isTrue();
+	}
+}
@@ -0,0 +1,143 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransRequest;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.services.logic.MidtransApiServiceImpl;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookService;
+import dev.kons.kuenyawz.services.logic.WhatsappApiServiceImpl;
+import dev.kons.kuenyawz.utils.stub.GatewayStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+class GatewayStubServerTest {
+
+	private ApplicationProperties properties;
+	private GatewayStubServer stub;
+	private DisposableServer webhook;
+	private final BlockingQueue<String> notifications = new LinkedBlockingQueue<>();
+
+	@BeforeEach
+	void setUp() {
+		properties = new ApplicationProperties();
+		properties.midtrans().setMerchantId("G123456789");
+		properties.midtrans().setServerKey("server-key");
+		properties.gateway().setMaxRetries(0);
+		properties.stub().setPort(0);
+		properties.stub().setLatencyDistribution(GatewayStubServer.LatencyDistribution.FIXED);
+		properties.stub().setLatencyMillis(5);
+		properties.stub().setWebhookDelayMillis(500);
+
+		webhook = HttpServer.create()
+			.host("localhost")
+			.port(0)
+			.handle((request, response) -> request.receive().aggregate().asString()
+				.doOnNext(notifications::add)
+				.then(response.status(200).send()))
+			.bindNow();
+		properties.stub().setWebhookUrl("http://localhost:" + webhook.port() + "/api/midtrans/notify");
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (stub != null) {
+			stub.close();
+		}
+		webhook.disposeNow();
+	}
+
+	@Test
+	void createTransaction_NotifiesTheSignedSettlementAfterTheDelay() throws Exception {
+		// Arrange
+		MidtransApiServiceImpl midtransApiService = midtransApiService();
+
+		// Act
+		MidtransResponse created = midtransApiService.createTransaction(request("100", "69000.00"));
+		String pending = midtransApiService.fetchTransactionStatus("100").getTransactionStatus();
+		String body = notifications.poll(5, TimeUnit.SECONDS);
+
+		// Assert
+		assertThat(created.getRedirectUrl()).startsWith(stub.baseUrl());
+		assertThat(pending).isEqualTo("pending");
+		assertThat(body).isNotNull();
+		MidtransNotification notification = new ObjectMapper().readValue(body, MidtransNotification.class);
+		assertThat(notification.getTransactionStatus()).isEqualTo("settlement");
+		assertThat(notification.getGrossAmount()).isEqualTo("69000.00");
+		assertThat(notification.getMerchantId()).isEqualTo("G123456789");
+		assertThatCode(() -> MidtransWebhookService.validateSignatureKey(notification, "server-key"))
+			.doesNotThrowAnyException();
+		assertThat(midtransApiService.fetchTransactionStatus("100").getTransactionStatus()).isEqualTo("settlement");
+	}
+
+	@Test
+	void cancelTransaction_StopsThePendingNotificationAndRejectsARefund() throws Exception {
+		// Arrange
+		MidtransApiServiceImpl midtransApiService = midtransApiService();
+		midtransApiService.createTransaction(request("200", "25000"));
+
+		// Act
+		MidtransResponse cancelled = midtransApiService.cancelTransaction("200");
+		MidtransResponse refunded = midtransApiService.refundTransaction("200");
+
+		// Assert
+		assertThat(cancelled.getTransactionStatus()).isEqualTo("cancel");
+		assertThat(refunded.getStatusCode()).startsWith("412");
+		assertThat(notifications.poll(1, TimeUnit.SECONDS)).isNull();
+		assertThat(stub.statusOf("200")).contains("cancel");
+	}
+
+	@Test
+	void send_AnswersEveryMessageOrFailsAtTheErrorRate() {
+		// Arrange
+		stub = new GatewayStubServer(properties.stub(), "G123456789", "server-key").start();
+		properties.security().setFonnteBaseUrl(stub.baseUrl());
+		WhatsappApiServiceImpl whatsappApiService = new WhatsappApiServiceImpl(WebClient.builder(), properties, new ObjectMapper());
+
+		// Act
+		String response = whatsappApiService.send("81234567890", "Pesanan baru", "62");
+		properties.stub().setErrorRate(1);
+		Throwable failure = whatsappApiService.sendAsync("81234567890", "Pesanan baru", "62")
+			.then(Mono.<Throwable>empty())
+			.onErrorResume(Mono::just)
+			.block();
+
+		// Assert
+		assertThat(response).contains("\"status\":true");
+		assertThat(failure).isNotNull();
+		assertThat(stub.messagesSent()).isOne();
+	}
+
+	private MidtransApiServiceImpl midtransApiService() {
+		stub = new GatewayStubServer(properties.stub(), "G123456789", "server-key").start();
+		properties.midtrans().setBaseUrlApp(stub.baseUrl());
+		properties.midtrans().setBaseUrlApi(stub.baseUrl());
+		return new MidtransApiServiceImpl(WebClient.builder(), properties, new ObjectMapper(), new SimpleMeterRegistry());
+	}
+
+	private static MidtransRequest request(String orderId, String grossAmount) {
+		return MidtransRequest.builder()
+			.transactionDetails(MidtransRequest.TransactionDetails.builder()
+				.orderId(orderId)
+				.grossAmount(new BigDecimal(grossAmount))
+				.build())
+			.itemDetails(List.of())
+			.build();
+	}
+}
@@ -0,0 +1,223 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.IdempotencyKey;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.IdempotencyKeyRepository;
+import dev.kons.kuenyawz.services.logic.IdempotencyServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+	@Mock
+	private IdempotencyKeyRepository idempotencyKeyRepository;
+
+	@Mock
+	private EntityManager entityManager;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private Query insert;
+	private IdempotencyServiceImpl idempotencyService;
+
+	@BeforeEach
+	void setUp() {
+		// Every key is new unless a test says otherwise
+		insert = mock(Query.class, RETURNS_SELF);
+		lenient().when(insert.executeUpdate()).thenReturn(1);
+		lenient().when(entityManager.createQuery(startsWith("INSERT INTO IdempotencyKey"))).thenReturn(insert);
+		idempotencyService = newInstance();
+	}
+
+	@Test
+	void execute_ReplaysTheFirstResultOfAKey() {
+		// Arrange
+		AtomicInteger calls = new AtomicInteger();
+
+		// Act
+		Integer first = idempotencyService.execute(1L, "order", "key", "body", Integer.class, calls::incrementAndGet);
+		Integer retry = idempotencyService.execute(1L, "order", "key", "body", Integer.class, calls::incrementAndGet);
+
+		// Assert
+		assertThat(first).isEqualTo(1);
+		assertThat(retry).isEqualTo(1);
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void execute_SeparatesAccountsAndRunsWithoutKey() {
+		// Arrange
+		AtomicInteger calls = new AtomicInteger();
+
+		// Act
+		idempotencyService.execute(1L, "order", "key", "body", Integer.class, calls::incrementAndGet);
+		idempotencyService.execute(2L, "order", "key", "body", Integer.class, calls::incrementAndGet);
+		idempotencyService.execute(1L, "order", null, "body", Integer.class, calls::incrementAndGet);
+
+		// Assert
+		assertThat(calls).hasValue(3);
+	}
+
+	@Test
+	void execute_RejectsAKeyReusedWithAnotherBody() {
+		// Arrange
+		idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> 1);
+
+		// Act & Assert
+		assertThatThrownBy(() -> idempotencyService.execute(1L, "order", "key", "other", Integer.class, () -> 2))
+			.isInstanceOf(IllegalOperationException.class);
+	}
+
+	@Test
+	void execute_DoesNotKeepFailures() {
+		// Arrange
+		assertThatThrownBy(() -> idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> {
+			throw new IllegalOperationException("There's already an ongoing transaction");
+		})).isInstanceOf(IllegalOperationException.class);
+
+		// Act
+		Integer retry = idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> 2);
+
+		// Assert
+		assertThat(retry).isEqualTo(2);
+	}
+
+	@Test
+	void execute_DuplicateWaitsForTheInFlightRequest() throws Exception {
+		// Arrange
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() ->
+			idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return calls.incrementAndGet();
+			}));
+		started.await();
+
+		// Act
+		CompletableFuture<Integer> duplicate = CompletableFuture.supplyAsync(() ->
+			idempotencyService.execute(1L, "order", "key", "body", Integer.class, calls::incrementAndGet));
+		release.countDown();
+
+		// Assert
+		assertThat(first.get()).isEqualTo(1);
+		assertThat(duplicate.get()).isEqualTo(1);
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void execute_StoresTheResponseAndReleasesFailures() {
+		// Act
+		idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> 7);
+		assertThatThrownBy(() -> idempotencyService.execute(1L, "order", "other-key", "body", Integer.class, () -> {
+			throw new IllegalOperationException("There's already an ongoing transaction");
+		})).isInstanceOf(IllegalOperationException.class);
+
+		// Assert
+		verify(idempotencyKeyRepository).complete(eq("1:order:key"), anyString(), eq("7"), any());
+		verify(idempotencyKeyRepository).release(eq("1:order:other-key"), anyString());
+	}
+
+	@Test
+	void execute_ReplaysTheResponseStoredByAnotherInstance() {
+		// Arrange
+		IdempotencyKey stored = storedByAnotherInstance("body", 1);
+		when(insert.executeUpdate()).thenReturn(0);
+		when(idempotencyKeyRepository.findById("1:order:key")).thenReturn(Optional.of(stored));
+		AtomicInteger calls = new AtomicInteger();
+
+		// Act
+		Integer retry = newInstance().execute(1L, "order", "key", "body", Integer.class, calls::incrementAndGet);
+
+		// Assert
+		assertThat(retry).isEqualTo(1);
+		assertThat(calls).hasValue(0);
+	}
+
+	@Test
+	void execute_RejectsAKeyUsedOnAnotherInstanceWithAnotherBody() {
+		// Arrange
+		IdempotencyKey stored = storedByAnotherInstance("body", 1);
+		when(insert.executeUpdate()).thenReturn(0);
+		when(idempotencyKeyRepository.findById("1:order:key")).thenReturn(Optional.of(stored));
+
+		// Act & Assert
+		assertThatThrownBy(() -> newInstance().execute(1L, "order", "key", "other", Integer.class, () -> 2))
+			.isInstanceOf(IllegalOperationException.class);
+	}
+
+	@Test
+	void execute_TakesOverAKeyLeftPastItsLease() {
+		// Arrange
+		when(insert.executeUpdate()).thenReturn(0);
+		when(idempotencyKeyRepository.takeOver(eq("1:order:key"), anyString(), anyString(), any(), any())).thenReturn(1);
+
+		// Act
+		Integer result = idempotencyService.execute(1L, "order", "key", "body", Integer.class, () -> 2);
+
+		// Assert
+		assertThat(result).isEqualTo(2);
+		verify(idempotencyKeyRepository, never()).findById(any());
+	}
+
+	@Test
+	void purge_DeletesTheExpiredKeys() {
+		// Arrange
+		when(idempotencyKeyRepository.deleteAllByExpiresAtBefore(any())).thenReturn(3);
+
+		// Act & Assert
+		assertThat(idempotencyService.purge()).isEqualTo(3);
+	}
+
+	private IdempotencyServiceImpl newInstance() {
+		return new IdempotencyServiceImpl(idempotencyKeyRepository, entityManager, objectMapper,
+			new ApplicationProperties(), transactionManager);
+	}
+
+	/// Runs the request on a separate instance and returns the key it stored
+	private IdempotencyKey storedByAnotherInstance(String body, Integer response) {
+		newInstance().execute(1L, "order", "key", body, Integer.class, () -> response);
+		ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+		verify(insert).setParameter(eq("fingerprint"), fingerprint.capture());
+		verify(idempotencyKeyRepository).complete(eq("1:order:key"), anyString(), json.capture(), any());
+		return IdempotencyKey.builder()
+			.idempotencyKey("1:order:key")
+			.fingerprint(fingerprint.getValue())
+			.response(json.getValue())
+			.expiresAt(LocalDateTime.now().plusHours(1))
+			.build();
+	}
+}
@@ -0,0 +1,145 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.exceptions.GatewayUnavailableException;
+import dev.kons.kuenyawz.exceptions.MidtransTransactionException;
+import dev.kons.kuenyawz.services.logic.MidtransApiServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MidtransApiServiceImplTest {
+
+	private ApplicationProperties properties;
+	private SimpleMeterRegistry meterRegistry;
+	private final AtomicInteger exchanges = new AtomicInteger();
+	private final Deque<HttpStatus> statuses = new ArrayDeque<>();
+	/// Leaves the responses unanswered while set
+	private volatile boolean hanging;
+
+	@BeforeEach
+	void setUp() {
+		properties = new ApplicationProperties();
+		properties.midtrans().setServerKey("server-key");
+		properties.midtrans().setBaseUrlApp("http://midtrans.test");
+		properties.midtrans().setBaseUrlApi("http://midtrans.test");
+		properties.gateway().setRetryBackoffMillis(1);
+		properties.gateway().setMaxRetryBackoffMillis(5);
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void fetchTransactionStatus_RetriesAServerError() {
+		// Arrange
+		statuses.add(HttpStatus.SERVICE_UNAVAILABLE);
+		statuses.add(HttpStatus.OK);
+		MidtransApiServiceImpl midtransApiService = service();
+
+		// Act
+		MidtransResponse response = midtransApiService.fetchTransactionStatus("100");
+
+		// Assert
+		assertThat(response.getTransactionStatus()).isEqualTo("settlement");
+		assertThat(exchanges.get()).isEqualTo(2);
+		assertThat(meterRegistry.get("gateway.retries").counter().count()).isOne();
+		assertThat(meterRegistry.get("gateway.calls").tag("outcome", "success").timer().count()).isOne();
+	}
+
+	@Test
+	void cancelTransaction_IsNotRetried() {
+		// Arrange
+		statuses.add(HttpStatus.SERVICE_UNAVAILABLE);
+		MidtransApiServiceImpl midtransApiService = service();
+
+		// Act & Assert
+		assertThatThrownBy(() -> midtransApiService.cancelTransaction("100"))
+			.isInstanceOf(MidtransTransactionException.class);
+		assertThat(exchanges.get()).isOne();
+	}
+
+	@Test
+	void fetchTransactionStatus_RejectsCallsOnceTheCircuitIsOpen() {
+		// Arrange
+		properties.gateway().setMaxRetries(0);
+		properties.gateway().setFailureThreshold(2);
+		statuses.add(HttpStatus.INTERNAL_SERVER_ERROR);
+		statuses.add(HttpStatus.INTERNAL_SERVER_ERROR);
+		MidtransApiServiceImpl midtransApiService = service();
+		midtransApiService.fetchTransactionStatus("100");
+		midtransApiService.fetchTransactionStatus("100");
+
+		// Act & Assert
+		assertThatThrownBy(() -> midtransApiService.fetchTransactionStatus("100"))
+			.isInstanceOf(GatewayUnavailableException.class);
+		assertThat(exchanges.get()).isEqualTo(2);
+		assertThat(meterRegistry.get("gateway.circuit.state").gauge().value()).isOne();
+	}
+
+	@Test
+	void fetchTransactionStatus_KeepsTheCircuitClosedOnClientErrors() {
+		// Arrange
+		properties.gateway().setFailureThreshold(1);
+		statuses.add(HttpStatus.NOT_FOUND);
+		statuses.add(HttpStatus.OK);
+		MidtransApiServiceImpl midtransApiService = service();
+		midtransApiService.fetchTransactionStatus("100");
+
+		// Act
+		MidtransResponse response = midtransApiService.fetchTransactionStatus("100");
+
+		// Assert
+		assertThat(response.getTransactionStatus()).isEqualTo("settlement");
+		assertThat(exchanges.get()).isEqualTo(2);
+	}
+
+	@Test
+	void fetchTransactionStatusAsync_RejectsCallsBeyondTheBulkheadUntilOneEnds() {
+		// Arrange
+		properties.gateway().setMaxConcurrentCalls(1);
+		hanging = true;
+		MidtransApiServiceImpl midtransApiService = service();
+		Disposable first = midtransApiService.fetchTransactionStatusAsync("100").subscribe();
+
+		// Act & Assert
+		assertThatThrownBy(() -> midtransApiService.fetchTransactionStatus("200"))
+			.isInstanceOf(GatewayUnavailableException.class);
+		first.dispose();
+		hanging = false;
+		assertThat(midtransApiService.fetchTransactionStatus("200").getTransactionStatus()).isEqualTo("settlement");
+		assertThat(meterRegistry.get("gateway.calls").tag("outcome", "bulkhead_full").timer().count()).isOne();
+	}
+
+	private MidtransApiServiceImpl service() {
+		WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+			exchanges.incrementAndGet();
+			if (hanging) {
+				return Mono.never();
+			}
+			HttpStatus status = statuses.isEmpty() ? HttpStatus.OK : statuses.poll();
+			String body = status == HttpStatus.OK
+				? "{\"transaction_status\":\"settlement\",\"status_code\":\"200\"}"
+				: "{\"status_code\":\"" + status.value() + "\"}";
+			return Mono.just(ClientResponse.create(status)
+				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+				.body(body)
+				.build());
+		});
+		return new MidtransApiServiceImpl(builder, properties, new ObjectMapper(), meterRegistry);
+	}
+}
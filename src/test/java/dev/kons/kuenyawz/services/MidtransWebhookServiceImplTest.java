@@ -0,0 +1,234 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.Transaction;
+import dev.kons.kuenyawz.entities.WebhookInbox;
+import dev.kons.kuenyawz.exceptions.UnauthorizedException;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
+import dev.kons.kuenyawz.repositories.TransactionRepository;
+import dev.kons.kuenyawz.repositories.WebhookInboxRepository;
+import dev.kons.kuenyawz.services.entity.DateReservationService;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookService;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookServiceImpl;
+import dev.kons.kuenyawz.services.logic.OrderTransitionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MidtransWebhookServiceImplTest {
+
+	@Mock
+	private PurchaseRepository purchaseRepository;
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private NotificationService notificationService;
+
+	@Mock
+	private DateReservationService dateReservationService;
+
+	@Mock
+	private OrderTransitionService orderTransitionService;
+
+	@Mock
+	private WebhookInboxRepository webhookInboxRepository;
+
+	private MidtransWebhookServiceImpl midtransWebhookService;
+
+	private static final String SERVER_KEY = "server-key";
+
+	@BeforeEach
+	void setUp() {
+		ApplicationProperties properties = new ApplicationProperties();
+		properties.midtrans().setServerKey(SERVER_KEY);
+		properties.midtrans().setMerchantId("M123");
+		ObjectMapper objectMapper = new ObjectMapper();
+		midtransWebhookService = new MidtransWebhookServiceImpl(properties, purchaseRepository, transactionRepository,
+			objectMapper, notificationService, dateReservationService, objectMapper, orderTransitionService,
+			webhookInboxRepository);
+	}
+
+	@Test
+	void receiveNotification_StoresANewNotificationInTheInbox() {
+		// Act
+		midtransWebhookService.receiveNotification(notification("settlement"));
+
+		// Assert
+		ArgumentCaptor<WebhookInbox> captor = ArgumentCaptor.forClass(WebhookInbox.class);
+		verify(webhookInboxRepository).saveAndFlush(captor.capture());
+		assertThat(captor.getValue().getOrderId()).isEqualTo("100");
+		assertThat(captor.getValue().getDedupKey()).hasSize(64);
+		assertThat(captor.getValue().getStatus()).isEqualTo(WebhookInbox.Status.PENDING);
+		verifyNoInteractions(transactionRepository, purchaseRepository);
+	}
+
+	@Test
+	void receiveNotification_AcknowledgesADuplicateFromMemory() {
+		// Arrange
+		midtransWebhookService.receiveNotification(notification("settlement"));
+
+		// Act
+		midtransWebhookService.receiveNotification(notification("settlement"));
+
+		// Assert
+		verify(webhookInboxRepository, times(1)).existsByDedupKey(anyString());
+		verify(webhookInboxRepository, times(1)).saveAndFlush(any());
+	}
+
+	@Test
+	void receiveNotification_AcknowledgesADuplicateStoredByAnotherNode() {
+		// Arrange
+		when(webhookInboxRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("dedup_key"));
+
+		// Act
+		midtransWebhookService.receiveNotification(notification("settlement"));
+		midtransWebhookService.receiveNotification(notification("settlement"));
+
+		// Assert
+		verify(webhookInboxRepository, times(1)).saveAndFlush(any());
+	}
+
+	@Test
+	void receiveNotification_KeepsTheStatusesOfAnOrderApart() {
+		// Act
+		midtransWebhookService.receiveNotification(notification("pending"));
+		midtransWebhookService.receiveNotification(notification("settlement"));
+
+		// Assert
+		verify(webhookInboxRepository, times(2)).saveAndFlush(any());
+	}
+
+	@Test
+	void receiveNotification_RejectsAForgedNotification() {
+		// Arrange
+		MidtransNotification forged = notification("settlement");
+		forged.setSignatureKey("forged");
+
+		// Act & Assert
+		assertThatThrownBy(() -> midtransWebhookService.receiveNotification(forged))
+			.isInstanceOf(UnauthorizedException.class);
+		verifyNoInteractions(webhookInboxRepository);
+	}
+
+	@Test
+	void reconcile_CapturesAPendingTransaction() {
+		// Arrange
+		Transaction transaction = givenTransaction(Transaction.TransactionStatus.PENDING, Purchase.PurchaseStatus.PENDING);
+
+		// Act
+		boolean changed = midtransWebhookService.reconcile(1L, response("capture"));
+
+		// Assert
+		assertThat(changed).isTrue();
+		assertThat(transaction.getStatus()).isEqualTo(Transaction.TransactionStatus.CAPTURE);
+		assertThat(transaction.getPurchase().getStatus()).isEqualTo(Purchase.PurchaseStatus.CONFIRMING);
+		verify(notificationService).enqueueVendorNewOrder(2L);
+	}
+
+	@Test
+	void reconcile_FailsAPendingTransaction() {
+		// Arrange
+		Transaction transaction = givenTransaction(Transaction.TransactionStatus.PENDING, Purchase.PurchaseStatus.PENDING);
+
+		// Act
+		boolean changed = midtransWebhookService.reconcile(1L, response("failure"));
+
+		// Assert
+		assertThat(changed).isTrue();
+		assertThat(transaction.getStatus()).isEqualTo(Transaction.TransactionStatus.FAILURE);
+		assertThat(transaction.getPurchase().getStatus()).isEqualTo(Purchase.PurchaseStatus.CANCELLED);
+		verify(dateReservationService).release(eq(2L), any());
+	}
+
+	@Test
+	void reconcile_IgnoresAStatusBehindTheCurrentOne() {
+		// Arrange
+		Transaction transaction = givenTransaction(Transaction.TransactionStatus.SETTLEMENT, Purchase.PurchaseStatus.CONFIRMED);
+
+		// Act
+		boolean changed = midtransWebhookService.reconcile(1L, response("pending"));
+
+		// Assert
+		assertThat(changed).isFalse();
+		assertThat(transaction.getStatus()).isEqualTo(Transaction.TransactionStatus.SETTLEMENT);
+		verify(transactionRepository, never()).save(any());
+	}
+
+	@Test
+	void processNotification_CapturesAPendingTransaction() {
+		// Arrange
+		Transaction transaction = givenTransaction(Transaction.TransactionStatus.PENDING, Purchase.PurchaseStatus.PENDING);
+		MidtransNotification notification = notification("capture", "1");
+		notification.setMerchantId("M123");
+		doCallRealMethod().when(orderTransitionService).run(eq(2L), any());
+
+		// Act
+		midtransWebhookService.processNotification(notification);
+
+		// Assert
+		assertThat(transaction.getStatus()).isEqualTo(Transaction.TransactionStatus.CAPTURE);
+		verify(transactionRepository).save(transaction);
+	}
+
+	/// A transaction of 250000 with id 1 paying purchase 2, run through the transition service as is
+	private Transaction givenTransaction(Transaction.TransactionStatus status, Purchase.PurchaseStatus purchaseStatus) {
+		Transaction transaction = Transaction.builder()
+			.transactionId(1L)
+			.amount(new BigDecimal("250000.00"))
+			.status(status)
+			.purchase(Purchase.builder()
+				.purchaseId(2L)
+				.status(purchaseStatus)
+				.build())
+			.build();
+		when(transactionRepository.findPurchaseIdByTransactionId(1L)).thenReturn(Optional.of(2L));
+		when(transactionRepository.findWithPurchaseByTransactionId(1L)).thenReturn(Optional.of(transaction));
+		when(orderTransitionService.execute(eq(2L), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+		return transaction;
+	}
+
+	private static MidtransResponse response(String transactionStatus) {
+		return MidtransResponse.builder()
+			.transactionStatus(transactionStatus)
+			.grossAmount("250000.00")
+			.build();
+	}
+
+	private static MidtransNotification notification(String transactionStatus) {
+		return notification(transactionStatus, "100");
+	}
+
+	private static MidtransNotification notification(String transactionStatus, String orderId) {
+		MidtransNotification notification = MidtransNotification.builder()
+			.orderId(orderId)
+			.statusCode("200")
+			.grossAmount("250000.00")
+			.transactionStatus(transactionStatus)
+			.build();
+		notification.setSignatureKey(MidtransWebhookService.generateSignatureKey(notification, SERVER_KEY));
+		return notification;
+	}
+}
@@ -0,0 +1,237 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.entities.NotificationOutbox;
+import dev.kons.kuenyawz.exceptions.WhatsappMessageException;
+import dev.kons.kuenyawz.repositories.NotificationOutboxRepository;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import dev.kons.kuenyawz.services.logic.NotificationDispatchServiceImpl;
+import dev.kons.kuenyawz.services.logic.WhatsappApiService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatchServiceImplTest {
+
+	@Mock
+	private NotificationOutboxRepository notificationOutboxRepository;
+
+	@Mock
+	private NotificationService notificationService;
+
+	@Mock
+	private WhatsappApiService whatsappApiService;
+
+	private ApplicationProperties properties;
+	private NotificationDispatchServiceImpl notificationDispatchService;
+
+	@BeforeEach
+	void setUp() {
+		properties = new ApplicationProperties();
+		properties.notification().setBurst(2);
+		properties.notification().setRatePerSecond(0.001);
+		properties.notification().setMaxAttempts(3);
+		notificationDispatchService = new NotificationDispatchServiceImpl(notificationOutboxRepository, notificationService, whatsappApiService, properties);
+	}
+
+	@Test
+	void dispatch_MarksSentNotifications() {
+		// Arrange
+		NotificationOutbox notification = pending(0);
+		givenDue(List.of(notification));
+		givenSent();
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(sent).isEqualTo(1);
+		assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.SENT);
+		assertThat(notification.getAttempts()).isEqualTo(1);
+		verify(notificationOutboxRepository).saveAll(List.of(notification));
+	}
+
+	@Test
+	void dispatch_SchedulesRetryWithBackoffOnFailure() {
+		// Arrange
+		NotificationOutbox notification = pending(0);
+		givenDue(List.of(notification));
+		when(whatsappApiService.sendAsync(anyString(), anyString(), anyString())).thenReturn(Mono.error(new RuntimeException("timeout")));
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(sent).isZero();
+		assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+		assertThat(notification.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(29));
+		assertThat(notification.getLastError()).isEqualTo("timeout");
+	}
+
+	@Test
+	void dispatch_DeadLettersAfterMaxAttempts() {
+		// Arrange
+		NotificationOutbox notification = pending(2);
+		givenDue(List.of(notification));
+		when(whatsappApiService.sendAsync(anyString(), anyString(), anyString())).thenReturn(Mono.error(new RuntimeException("invalid target")));
+
+		// Act
+		notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.DEAD);
+		assertThat(notification.getAttempts()).isEqualTo(3);
+	}
+
+	@Test
+	void dispatch_RetriesNotificationsRejectedByFonnte() {
+		// Arrange
+		NotificationOutbox notification = pending(0);
+		givenDue(List.of(notification));
+		when(whatsappApiService.sendAsync(anyString(), anyString(), anyString()))
+			.thenReturn(Mono.error(new WhatsappMessageException("device disconnected")));
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(sent).isZero();
+		assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+		assertThat(notification.getLastError()).contains("device disconnected");
+		assertThat(notification.getClaimToken()).isNull();
+	}
+
+	@Test
+	void dispatch_SkipsNotificationsClaimedByAnotherNode() {
+		// Arrange
+		NotificationOutbox ours = pending(0);
+		NotificationOutbox theirs = pending(0);
+		when(notificationOutboxRepository.findAllUnclaimedDue(eq(NotificationOutbox.Status.PENDING), any(), any()))
+			.thenReturn(List.of(ours, theirs));
+		when(notificationOutboxRepository.claim(eq(List.of(ours.getNotificationId(), theirs.getNotificationId())),
+			eq(NotificationOutbox.Status.PENDING), anyString(), any(), any())).thenReturn(1);
+		when(notificationOutboxRepository.findIdsByClaimToken(anyString())).thenReturn(List.of(ours.getNotificationId()));
+		givenSent();
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(sent).isEqualTo(1);
+		assertThat(ours.getStatus()).isEqualTo(NotificationOutbox.Status.SENT);
+		assertThat(theirs.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+		assertThat(theirs.getAttempts()).isZero();
+		verify(whatsappApiService, times(1)).sendAsync(anyString(), anyString(), anyString());
+		verify(notificationOutboxRepository).saveAll(List.of(ours));
+	}
+
+	@Test
+	void dispatch_StopsAtTheRateLimit() {
+		// Arrange
+		givenDue(List.of(pending(0), pending(0), pending(0)));
+		givenSent();
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert, the burst allows two messages and the third waits for the next drain
+		assertThat(sent).isEqualTo(2);
+		verify(whatsappApiService, times(2)).sendAsync(anyString(), anyString(), anyString());
+	}
+
+	@Test
+	void dispatch_SendsOneDigestForTheWholeGroup() {
+		// Arrange
+		NotificationOutbox first = pending(0);
+		first.setDigestGroup("vendor-new-order");
+		NotificationOutbox second = pending(0);
+		second.setDigestGroup("vendor-new-order");
+		givenDue(List.of(first, second));
+		when(notificationOutboxRepository.findAllUnclaimedOfDigest(
+			eq("vendor-new-order"), eq(first.getTarget()), eq(NotificationOutbox.Status.PENDING), any(), any()))
+			.thenReturn(List.of(first, second));
+		when(notificationService.composeDigest(List.of(first, second))).thenReturn("Ada 2 pesanan baru");
+		givenSent();
+
+		// Act
+		int sent = notificationDispatchService.dispatch();
+
+		// Assert
+		assertThat(sent).isEqualTo(2);
+		verify(whatsappApiService, times(1)).sendAsync(first.getTarget(), "Ada 2 pesanan baru", "62");
+		assertThat(second.getStatus()).isEqualTo(NotificationOutbox.Status.SENT);
+	}
+
+	@Test
+	void dispatch_BlanksSensitiveMessagesOnceSent() {
+		// Arrange
+		NotificationOutbox otp = pending(0);
+		otp.setSensitive(true);
+		NotificationOutbox notification = pending(0);
+		givenDue(List.of(otp, notification));
+		givenSent();
+
+		// Act
+		notificationDispatchService.dispatch();
+
+		// Assert
+		verify(whatsappApiService, times(2)).sendAsync(otp.getTarget(), "Pesanan baru", "62");
+		assertThat(otp.getMessage()).isEmpty();
+		assertThat(notification.getMessage()).isEqualTo("Pesanan baru");
+	}
+
+	@Test
+	void purge_DeletesSentAndDeadNotificationsPastTheRetention() {
+		// Arrange
+		when(notificationOutboxRepository.deleteAllByStatusAndUpdatedAtBefore(eq(NotificationOutbox.Status.SENT), any())).thenReturn(3);
+		when(notificationOutboxRepository.deleteAllByStatusAndUpdatedAtBefore(eq(NotificationOutbox.Status.DEAD), any())).thenReturn(1);
+
+		// Act
+		int deleted = notificationDispatchService.purge();
+
+		// Assert
+		assertThat(deleted).isEqualTo(4);
+		verify(notificationOutboxRepository, never())
+			.deleteAllByStatusAndUpdatedAtBefore(eq(NotificationOutbox.Status.PENDING), any());
+	}
+
+	private void givenDue(List<NotificationOutbox> notifications) {
+		when(notificationOutboxRepository.findAllUnclaimedDue(eq(NotificationOutbox.Status.PENDING), any(), any()))
+			.thenReturn(notifications);
+		lenient().when(notificationOutboxRepository.claim(anyCollection(), eq(NotificationOutbox.Status.PENDING), anyString(), any(), any()))
+			.thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).size());
+	}
+
+	private void givenSent() {
+		when(whatsappApiService.sendAsync(anyString(), anyString(), anyString())).thenReturn(Mono.just("{\"status\":true}"));
+	}
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	private static NotificationOutbox pending(int attempts) {
+		return NotificationOutbox.builder()
+			.notificationId(ids.incrementAndGet())
+			.target("81234567890")
+			.message("Pesanan baru")
+			.countryCode("62")
+			.status(NotificationOutbox.Status.PENDING)
+			.attempts(attempts)
+			.nextAttemptAt(LocalDateTime.now())
+			.build();
+	}
+}
@@ -0,0 +1,89 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.repositories.NotificationOutboxRepository;
+import dev.kons.kuenyawz.services.entity.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Queues the vendor alerts against the database, where the dedup key is enforced by a unique
+ * constraint.
+ */
+@SpringBootTest
+class NotificationServiceImplTest {
+
+	private static final int NODES = 4;
+
+	@Autowired
+	private NotificationService notificationService;
+
+	@Autowired
+	private NotificationOutboxRepository notificationOutboxRepository;
+
+	@Autowired
+	private ApplicationProperties properties;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@BeforeEach
+	void setUp() {
+		notificationOutboxRepository.deleteAll();
+		properties.vendor().setPhone("81234567890");
+	}
+
+	@Test
+	void enqueueVendorNewOrder_QueuesOneAlertWhenEnqueuedConcurrently() throws Exception {
+		// Arrange
+		final Long purchaseId = 1001L;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> enqueues = new ArrayList<>();
+
+		// Act
+		try (ExecutorService executor = Executors.newFixedThreadPool(NODES)) {
+			for (int i = 0; i < NODES; i++) {
+				enqueues.add(executor.submit(() -> {
+					start.await();
+					notificationService.enqueueVendorNewOrder(purchaseId);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> enqueue : enqueues) {
+				enqueue.get();
+			}
+		}
+
+		// Assert, none of the losers failed
+		assertThat(notificationOutboxRepository.countByDedupKey("vendor-new-order:" + purchaseId)).isOne();
+	}
+
+	@Test
+	void enqueueVendorNewOrder_KeepsTheCallerTransactionUsableWhenAlreadyQueued() {
+		// Arrange
+		final Long purchaseId = 1002L;
+		notificationService.enqueueVendorNewOrder(purchaseId);
+
+		// Act & Assert, the transaction still commits the change the alert is about
+		assertThatCode(() -> transactionTemplate.executeWithoutResult(status -> {
+			notificationService.enqueueVendorNewOrder(purchaseId);
+			notificationService.enqueue("81234567890", "Pesanan dikonfirmasi");
+		})).doesNotThrowAnyException();
+		assertThat(notificationOutboxRepository.countByDedupKey("vendor-new-order:" + purchaseId)).isOne();
+		assertThat(notificationOutboxRepository.count()).isEqualTo(2);
+	}
+}
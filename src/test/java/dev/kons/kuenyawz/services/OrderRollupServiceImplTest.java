@@ -0,0 +1,273 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.dtos.dashboard.OrderDashboardDto;
+import dev.kons.kuenyawz.dtos.dashboard.PurchaseCategoryTotal;
+import dev.kons.kuenyawz.entities.OrderRollup;
+import dev.kons.kuenyawz.entities.OrderRollupDelta;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.repositories.OrderRollupDeltaRepository;
+import dev.kons.kuenyawz.repositories.OrderRollupRepository;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
+import dev.kons.kuenyawz.services.logic.OrderRollupServiceImpl;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderRollupServiceImplTest {
+
+	@Mock
+	private OrderRollupRepository orderRollupRepository;
+
+	@Mock
+	private OrderRollupDeltaRepository orderRollupDeltaRepository;
+
+	@Mock
+	private PurchaseRepository purchaseRepository;
+
+	@Mock
+	private PurchaseItemRepository purchaseItemRepository;
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	@Mock
+	private EntityManager entityManager;
+
+	@Mock
+	private SnowFlakeIdGenerator snowFlakeIdGenerator;
+
+	private OrderRollupServiceImpl orderRollupService;
+
+	private static final LocalDate DAY = LocalDate.of(2024, 4, 21);
+
+	@BeforeEach
+	void setUp() {
+		orderRollupService = new OrderRollupServiceImpl(
+			orderRollupRepository, orderRollupDeltaRepository, purchaseRepository, purchaseItemRepository,
+			new ApplicationProperties(), jdbcTemplate, entityManager, snowFlakeIdGenerator);
+	}
+
+	@Test
+	void record_InsertsTheDeltaInTheCurrentTransaction() {
+		// Arrange
+		Purchase purchase = purchase(1L, "300000");
+		when(snowFlakeIdGenerator.generateId()).thenReturn(9L);
+
+		// Act
+		orderRollupService.record(purchase, Purchase.PurchaseStatus.CONFIRMED, new BigDecimal("250000"), Purchase.PurchaseStatus.CONFIRMED);
+
+		// Assert
+		verify(jdbcTemplate).update(startsWith("INSERT INTO order_rollup_delta"),
+			eq(9L), eq(1L), eq(DAY), eq("FULL_PAYMENT"),
+			eq("CONFIRMED"), eq(new BigDecimal("250000")), eq("CONFIRMED"), eq(new BigDecimal("300000")));
+		verifyNoInteractions(orderRollupRepository, entityManager);
+	}
+
+	@Test
+	void checkpoint_AddsTheDeltasToTheRollupsOfTheirDay() {
+		// Arrange
+		List<OrderRollupDelta> deltas = List.of(
+			delta(null, null, Purchase.PurchaseStatus.PENDING, "250000"),
+			delta(Purchase.PurchaseStatus.PENDING, "250000", Purchase.PurchaseStatus.CONFIRMED, "250000"));
+		when(orderRollupDeltaRepository.findOldestForUpdate(any())).thenReturn(deltas);
+		when(purchaseItemRepository.sumCategoryTotalsOfPurchases(anyCollection()))
+			.thenReturn(List.of(new PurchaseCategoryTotal(1L, Product.Category.CAKE, new BigDecimal("200000"))));
+		Query upsert = upsert();
+
+		// Act
+		orderRollupService.checkpoint();
+
+		// Assert
+		// The pending status was entered and left within the same checkpoint
+		verify(upsert, times(2)).executeUpdate();
+		verify(upsert, never()).setParameter("status", Purchase.PurchaseStatus.PENDING);
+		verify(upsert).setParameter("rollupKey", "CONFIRMED/FULL_PAYMENT/-");
+		verify(upsert).setParameter("rollupKey", "CONFIRMED/FULL_PAYMENT/CAKE");
+		verify(upsert, times(2)).setParameter("orders", 1L);
+		verify(upsert).setParameter("revenue", new BigDecimal("250000"));
+		verify(upsert).setParameter("revenue", new BigDecimal("200000"));
+		verify(orderRollupDeltaRepository).deleteAllInBatch(deltas);
+	}
+
+	@Test
+	void checkpoint_MovesTheRevenueOfAChangedGrandTotal() {
+		// Arrange
+		List<OrderRollupDelta> deltas = List.of(
+			delta(Purchase.PurchaseStatus.CONFIRMED, "250000", Purchase.PurchaseStatus.CONFIRMED, "300000"));
+		when(orderRollupDeltaRepository.findOldestForUpdate(any())).thenReturn(deltas);
+		Query upsert = upsert();
+
+		// Act
+		orderRollupService.checkpoint();
+
+		// Assert
+		verify(upsert).setParameter("rollupKey", "CONFIRMED/FULL_PAYMENT/-");
+		verify(upsert).setParameter("orders", 0L);
+		verify(upsert).setParameter("revenue", new BigDecimal("50000"));
+		verify(upsert).executeUpdate();
+		verify(orderRollupDeltaRepository).deleteAllInBatch(deltas);
+	}
+
+	@Test
+	void checkpoint_DoesNothingWithoutChanges() {
+		// Act
+		orderRollupService.checkpoint();
+
+		// Assert
+		verify(orderRollupDeltaRepository, never()).deleteAllInBatch(any());
+		verifyNoInteractions(orderRollupRepository, purchaseItemRepository, entityManager);
+	}
+
+	@Test
+	void getDashboard_SumsTheRollupsOfTheRange() {
+		// Arrange
+		when(orderRollupRepository.findAllByDayBetween(DAY, DAY.plusDays(1))).thenReturn(List.of(
+			rollup(Purchase.PurchaseStatus.CONFIRMED, null, 2, "500000"),
+			rollup(Purchase.PurchaseStatus.DELIVERED, null, 1, "250000"),
+			rollup(Purchase.PurchaseStatus.CANCELLED, null, 4, "900000"),
+			rollup(Purchase.PurchaseStatus.CONFIRMED, Product.Category.CAKE, 2, "300000")
+		));
+
+		// Act
+		OrderDashboardDto dashboard = orderRollupService.getDashboard(DAY, DAY.plusDays(1), List.of());
+
+		// Assert
+		assertThat(dashboard.getTotal().getOrders()).isEqualTo(3L);
+		assertThat(dashboard.getTotal().getRevenue()).isEqualByComparingTo("750000");
+		assertThat(dashboard.getTotal().getAverageOrderValue()).isEqualByComparingTo("250000");
+		assertThat(dashboard.getByDay()).extracting(OrderDashboardDto.Bucket::getKey)
+			.containsExactly("2024-04-21", "2024-04-22");
+		assertThat(dashboard.getByDay().get(1).getOrders()).isZero();
+		assertThat(dashboard.getByStatus()).extracting(OrderDashboardDto.Bucket::getKey)
+			.containsExactly("CONFIRMED", "DELIVERED", "CANCELLED");
+		assertThat(dashboard.getByPaymentType()).singleElement()
+			.satisfies(bucket -> assertThat(bucket.getOrders()).isEqualTo(3L));
+		assertThat(dashboard.getByCategory()).singleElement()
+			.satisfies(bucket -> assertThat(bucket.getRevenue()).isEqualByComparingTo("300000"));
+		verify(orderRollupRepository, never()).saveAll(any());
+		verifyNoInteractions(entityManager);
+	}
+
+	@Test
+	void getDashboard_AddsTheChangesNotYetCheckpointed() {
+		// Arrange
+		when(orderRollupRepository.findAllByDayBetween(DAY, DAY)).thenReturn(List.of(
+			rollup(Purchase.PurchaseStatus.PENDING, null, 1, "250000")));
+		when(orderRollupDeltaRepository.findAllByDayBetween(DAY, DAY)).thenReturn(List.of(
+			delta(Purchase.PurchaseStatus.PENDING, "250000", Purchase.PurchaseStatus.CONFIRMED, "250000")));
+
+		// Act
+		OrderDashboardDto dashboard = orderRollupService.getDashboard(DAY, DAY, List.of(Purchase.PurchaseStatus.CONFIRMED));
+
+		// Assert
+		assertThat(dashboard.getTotal().getOrders()).isEqualTo(1L);
+		assertThat(dashboard.getTotal().getRevenue()).isEqualByComparingTo("250000");
+		assertThat(dashboard.getByStatus()).extracting(OrderDashboardDto.Bucket::getKey, OrderDashboardDto.Bucket::getOrders)
+			.containsExactly(tuple("PENDING", 0L), tuple("CONFIRMED", 1L));
+		verify(orderRollupDeltaRepository, never()).findOldestForUpdate(any());
+		verify(orderRollupDeltaRepository, never()).deleteAllInBatch(any());
+		verifyNoInteractions(entityManager);
+	}
+
+	@Test
+	void getDashboard_RejectsAnOverlongRange() {
+		// Act & Assert
+		assertThatThrownBy(() -> orderRollupService.getDashboard(DAY, DAY.plusYears(2), List.of()))
+			.isInstanceOf(IllegalOperationException.class);
+		verifyNoInteractions(orderRollupRepository);
+	}
+
+	@Test
+	void rebuild_DeletesOnlyTheChangesCountedInTheSums() {
+		// Arrange
+		when(orderRollupDeltaRepository.findLastDeltaId()).thenReturn(Optional.of(42L));
+
+		// Act
+		orderRollupService.rebuild();
+
+		// Assert
+		InOrder inOrder = inOrder(orderRollupDeltaRepository, purchaseRepository);
+		inOrder.verify(orderRollupDeltaRepository).findLastDeltaId();
+		inOrder.verify(purchaseRepository).sumOrderTotals();
+		inOrder.verify(orderRollupDeltaRepository).deleteAllByDeltaIdLessThanEqual(42L);
+		verify(orderRollupDeltaRepository, never()).deleteAllInBatch();
+	}
+
+	@Test
+	void rebuild_KeepsTheChangesWhenThereWereNone() {
+		// Act
+		orderRollupService.rebuild();
+
+		// Assert
+		verify(orderRollupRepository).deleteAllInBatch();
+		verify(orderRollupDeltaRepository, never()).deleteAllByDeltaIdLessThanEqual(any());
+	}
+
+	private static Purchase purchase(Long purchaseId, String grandTotal) {
+		Purchase purchase = Purchase.builder()
+			.purchaseId(purchaseId)
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.grandTotal(new BigDecimal(grandTotal))
+			.build();
+		purchase.setCreatedAt(DAY.atTime(10, 0));
+		return purchase;
+	}
+
+	private static OrderRollupDelta delta(
+		Purchase.PurchaseStatus fromStatus, String fromTotal, Purchase.PurchaseStatus toStatus, String toTotal
+	) {
+		return OrderRollupDelta.builder()
+			.purchaseId(1L)
+			.day(DAY)
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.fromStatus(fromStatus)
+			.fromTotal(fromTotal != null ? new BigDecimal(fromTotal) : null)
+			.toStatus(toStatus)
+			.toTotal(new BigDecimal(toTotal))
+			.build();
+	}
+
+	private Query upsert() {
+		Query upsert = mock(Query.class, RETURNS_SELF);
+		when(entityManager.createQuery(startsWith("INSERT INTO OrderRollup"))).thenReturn(upsert);
+		return upsert;
+	}
+
+	private static OrderRollup rollup(Purchase.PurchaseStatus status, Product.Category category, long orders, String revenue) {
+		return OrderRollup.builder()
+			.day(DAY)
+			.status(status)
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.category(category)
+			.orders(orders)
+			.revenue(new BigDecimal(revenue))
+			.build();
+	}
+}
@@ -0,0 +1,90 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.services.logic.OrderTransitionServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTransitionServiceImplTest {
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private EntityManager entityManager;
+
+	private OrderTransitionServiceImpl orderTransitionService;
+
+	@BeforeEach
+	void setUp() {
+		ApplicationProperties properties = new ApplicationProperties();
+		properties.transition().setMaxAttempts(3);
+		properties.transition().setInitialBackoffMillis(1);
+		properties.transition().setMaxBackoffMillis(2);
+		when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+		orderTransitionService = new OrderTransitionServiceImpl(transactionManager, entityManager, properties);
+	}
+
+	@Test
+	void execute_ReappliesATransitionThatLostItsOptimisticLock() {
+		// Arrange
+		AtomicInteger attempts = new AtomicInteger();
+
+		// Act
+		String result = orderTransitionService.execute(1L, () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new ObjectOptimisticLockingFailureException("Purchase", 1L);
+			}
+			return "confirmed";
+		});
+
+		// Assert
+		assertThat(result).isEqualTo("confirmed");
+		assertThat(attempts.get()).isEqualTo(3);
+		verify(transactionManager, times(2)).rollback(any());
+		verify(entityManager, times(2)).clear();
+	}
+
+	@Test
+	void execute_GivesUpAfterTheMaximumAttempts() {
+		// Arrange
+		AtomicInteger attempts = new AtomicInteger();
+
+		// Act & Assert
+		assertThatThrownBy(() -> orderTransitionService.execute(1L, () -> {
+			attempts.incrementAndGet();
+			throw new ObjectOptimisticLockingFailureException("Purchase", 1L);
+		})).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(attempts.get()).isEqualTo(3);
+	}
+
+	@Test
+	void execute_DoesNotRetryOtherFailures() {
+		// Arrange
+		AtomicInteger attempts = new AtomicInteger();
+
+		// Act & Assert
+		assertThatThrownBy(() -> orderTransitionService.execute(1L, () -> {
+			attempts.incrementAndGet();
+			throw new IllegalStateException("Purchase is already cancelled");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(attempts.get()).isOne();
+		verifyNoInteractions(entityManager);
+	}
+}
@@ -0,0 +1,102 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransResponse;
+import dev.kons.kuenyawz.repositories.TransactionRepository;
+import dev.kons.kuenyawz.services.logic.MidtransApiService;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookService;
+import dev.kons.kuenyawz.services.logic.PaymentReconcilerServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentReconcilerServiceImplTest {
+
+	@Mock
+	private TransactionRepository transactionRepository;
+
+	@Mock
+	private MidtransApiService midtransApiService;
+
+	@Mock
+	private MidtransWebhookService midtransWebhookService;
+
+	private PaymentReconcilerServiceImpl paymentReconcilerService;
+
+	@BeforeEach
+	void setUp() {
+		ApplicationProperties properties = new ApplicationProperties();
+		properties.reconciler().setMaxConcurrency(3);
+		properties.reconciler().setRatePerSecond(1000);
+		paymentReconcilerService = new PaymentReconcilerServiceImpl(
+			transactionRepository, midtransApiService, midtransWebhookService, properties);
+	}
+
+	@Test
+	void reconcile_FetchesEveryStalePaymentWithinTheConcurrencyLimit() {
+		// Arrange
+		List<Long> transactionIds = LongStream.rangeClosed(1, 20).boxed().toList();
+		when(transactionRepository.findStaleIds(any(), any(), any())).thenReturn(transactionIds);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		when(midtransApiService.fetchTransactionStatusAsync(anyString())).thenAnswer(invocation -> Mono
+			.fromRunnable(() -> peak.accumulateAndGet(running.incrementAndGet(), Math::max))
+			.then(Mono.delay(Duration.ofMillis(20)))
+			.doOnTerminate(running::decrementAndGet)
+			.thenReturn(MidtransResponse.builder().transactionStatus("settlement").build()));
+		when(midtransWebhookService.reconcile(anyLong(), any())).thenAnswer(invocation ->
+			invocation.<Long>getArgument(0) % 2 == 0);
+
+		// Act
+		int changed = paymentReconcilerService.reconcile();
+
+		// Assert
+		assertThat(changed).isEqualTo(10);
+		assertThat(peak.get()).isBetween(1, 3);
+		verify(midtransApiService, times(20)).fetchTransactionStatusAsync(anyString());
+	}
+
+	@Test
+	void reconcile_KeepsGoingWhenAPaymentFails() {
+		// Arrange
+		when(transactionRepository.findStaleIds(any(), any(), any())).thenReturn(List.of(1L, 2L));
+		when(midtransApiService.fetchTransactionStatusAsync("1")).thenReturn(Mono.error(new IllegalStateException("Timed out")));
+		when(midtransApiService.fetchTransactionStatusAsync("2")).thenReturn(Mono.just(MidtransResponse.builder().build()));
+		when(midtransWebhookService.reconcile(eq(2L), any())).thenReturn(true);
+
+		// Act
+		int changed = paymentReconcilerService.reconcile();
+
+		// Assert
+		assertThat(changed).isOne();
+		verify(midtransWebhookService, never()).reconcile(eq(1L), any());
+	}
+
+	@Test
+	void reconcile_DoesNothingWithoutStalePayments() {
+		// Arrange
+		when(transactionRepository.findStaleIds(any(), any(), any())).thenReturn(List.of());
+
+		// Act
+		int changed = paymentReconcilerService.reconcile();
+
+		// Assert
+		assertThat(changed).isZero();
+		verifyNoInteractions(midtransApiService, midtransWebhookService);
+	}
+}
@@ -19,6 +19,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -43,6 +44,9 @@ public class ProductServiceImplTest {
 	@Mock
 	private ImageStorageService imageStorageService;
 
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
 	@Spy
 	private ProductMapper productMapper;
 
@@ -0,0 +1,180 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.apriori.PurchaseProductTuple;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanDto;
+import dev.kons.kuenyawz.dtos.purchase.ProductionPlanLine;
+import dev.kons.kuenyawz.entities.Purchase;
+import dev.kons.kuenyawz.entities.PurchaseItem;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.mapper.PurchaseMapper;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.repositories.PurchaseRepository;
+import dev.kons.kuenyawz.services.entity.PurchaseServiceImpl;
+import dev.kons.kuenyawz.services.entity.TransactionService;
+import dev.kons.kuenyawz.services.entity.VariantService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseServiceImplTest {
+
+	@Mock
+	private PurchaseRepository purchaseRepository;
+
+	@Mock
+	private PurchaseItemRepository purchaseItemRepository;
+
+	@Mock
+	private PurchaseMapper purchaseMapper;
+
+	@Mock
+	private TransactionService transactionService;
+
+	@Mock
+	private ApplicationProperties properties;
+
+	@Mock
+	private VariantService variantService;
+
+	@InjectMocks
+	private PurchaseServiceImpl purchaseService;
+
+	private static final LocalDate DAY = LocalDate.of(2024, 4, 21);
+
+	@Test
+	void forEachAprioriBasket_GroupsTheStreamedTuplesPerPurchaseAndClosesTheStream() {
+		// Arrange
+		LocalDateTime since = DAY.atStartOfDay();
+		AtomicBoolean closed = new AtomicBoolean();
+		when(purchaseItemRepository.streamPurchaseProducts(any(), eq(since))).thenReturn(Stream.of(
+			new PurchaseProductTuple(1L, 10L, since.plusHours(1)),
+			new PurchaseProductTuple(1L, 20L, since.plusHours(1)),
+			new PurchaseProductTuple(2L, 10L, since.plusHours(2)),
+			new PurchaseProductTuple(3L, 30L, since.plusHours(3))
+		).onClose(() -> closed.set(true)));
+		Map<LocalDateTime, Set<Long>> baskets = new LinkedHashMap<>();
+
+		// Act
+		purchaseService.forEachAprioriBasket(since, baskets::put);
+
+		// Assert
+		assertThat(baskets).containsExactly(
+			Map.entry(since.plusHours(1), Set.of(10L, 20L)),
+			Map.entry(since.plusHours(2), Set.of(10L)),
+			Map.entry(since.plusHours(3), Set.of(30L))
+		);
+		assertThat(closed).isTrue();
+		verifyNoInteractions(purchaseRepository);
+	}
+
+	@Test
+	void forEachAprioriBasket_DoesNothingWithoutTuples() {
+		// Arrange
+		when(purchaseItemRepository.streamPurchaseProducts(any(), any())).thenReturn(Stream.empty());
+
+		// Act
+		purchaseService.forEachAprioriBasket(DAY.atStartOfDay(), (createdAt, basket) -> {
+			throw new AssertionError("No basket expected");
+		});
+
+		// Assert
+		verify(purchaseItemRepository).streamPurchaseProducts(
+			List.of(Purchase.PurchaseStatus.CONFIRMED, Purchase.PurchaseStatus.DELIVERED), DAY.atStartOfDay());
+	}
+
+	@Test
+	void getProductionPlan_GroupsTheAggregatedLinesPerEventDate() {
+		// Arrange
+		when(properties.dashboard()).thenReturn(new ApplicationProperties.Dashboard());
+		List<Purchase.PurchaseStatus> planned = List.of(Purchase.PurchaseStatus.CONFIRMED, Purchase.PurchaseStatus.PROCESSING);
+		when(purchaseItemRepository.sumProductionPlan(DAY, DAY.plusDays(6), planned)).thenReturn(List.of(
+			new ProductionPlanLine(DAY, 1L, "Brownies", 10L, "Small", 12L, 3L),
+			new ProductionPlanLine(DAY, 2L, "Lasagna", 20L, "Tray", 2L, 2L),
+			new ProductionPlanLine(DAY.plusDays(2), 1L, "Brownies", 11L, "Large", 4L, 1L)
+		));
+
+		// Act
+		ProductionPlanDto plan = purchaseService.getProductionPlan(DAY, DAY.plusDays(6), List.of());
+
+		// Assert
+		assertThat(plan.getStatuses()).containsExactly("CONFIRMED", "PROCESSING");
+		assertThat(plan.getDays()).extracting(ProductionPlanDto.Day::getEventDate)
+			.containsExactly(DAY, DAY.plusDays(2));
+		assertThat(plan.getDays().get(0).getItems()).extracting(ProductionPlanLine::quantity)
+			.containsExactly(12L, 2L);
+		assertThat(plan.getDays().get(1).getItems()).singleElement()
+			.satisfies(line -> assertThat(line.variantId()).isEqualTo(11L));
+	}
+
+	@Test
+	void getProductionPlan_RejectsAReversedRange() {
+		// Act & Assert
+		assertThatThrownBy(() -> purchaseService.getProductionPlan(DAY, DAY.minusDays(1), List.of()))
+			.isInstanceOf(IllegalOperationException.class);
+		verifyNoInteractions(purchaseItemRepository);
+	}
+
+	@Test
+	void changeFee_StoresTheGrandTotalWithTheNewFee() {
+		// Arrange
+		Purchase purchase = purchase(Purchase.PurchaseStatus.PENDING);
+		when(purchaseRepository.findById(1L)).thenReturn(Optional.of(purchase));
+		when(purchaseRepository.save(purchase)).thenReturn(purchase);
+
+		// Act
+		purchaseService.changeFee(1L, new BigDecimal("8000"));
+
+		// Assert
+		ArgumentCaptor<Purchase> captor = ArgumentCaptor.forClass(Purchase.class);
+		verify(purchaseRepository).save(captor.capture());
+		assertThat(captor.getValue().getDeliveryFee()).isEqualByComparingTo("8000");
+		assertThat(captor.getValue().getGrandTotal()).isEqualByComparingTo("38000");
+	}
+
+	@Test
+	void changeFee_RejectsAConfirmedPurchase() {
+		// Arrange
+		Purchase purchase = purchase(Purchase.PurchaseStatus.CONFIRMED);
+		when(purchaseRepository.findById(1L)).thenReturn(Optional.of(purchase));
+
+		// Act & Assert
+		assertThatThrownBy(() -> purchaseService.changeFee(1L, new BigDecimal("8000")))
+			.isInstanceOf(IllegalOperationException.class);
+		assertThat(purchase.getGrandTotal()).isEqualByComparingTo("35000");
+		verify(purchaseRepository, never()).save(any());
+	}
+
+	private static Purchase purchase(Purchase.PurchaseStatus status) {
+		Purchase purchase = Purchase.builder()
+			.purchaseId(1L)
+			.status(status)
+			.purchaseItems(List.of(PurchaseItem.builder()
+				.boughtPrice(new BigDecimal("15000"))
+				.quantity(2)
+				.build()))
+			.build();
+		purchase.changeDeliveryFee(new BigDecimal("5000"));
+		return purchase;
+	}
+}
@@ -0,0 +1,154 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.dtos.product.ProductDto;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.exceptions.IllegalOperationException;
+import dev.kons.kuenyawz.exceptions.ResourceNotFoundException;
+import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.services.entity.ProductService;
+import dev.kons.kuenyawz.services.logic.RecommendationPoolServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationPoolServiceImplTest {
+
+	@Mock
+	private ProductRepository productRepository;
+
+	@Mock
+	private PurchaseItemRepository purchaseItemRepository;
+
+	@Mock
+	private ProductService productService;
+
+	@InjectMocks
+	private RecommendationPoolServiceImpl recommendationPoolService;
+
+	@Test
+	void sample_PrefersSameCategoryAndSkipsUnavailableProducts() {
+		// Arrange
+		givenCatalog(List.of(
+			product(1L, Product.Category.CAKE, true),
+			product(2L, Product.Category.CAKE, true),
+			product(3L, Product.Category.CAKE, false),
+			product(4L, Product.Category.PIE, true),
+			product(5L, Product.Category.PIE, true)
+		));
+		recommendationPoolService.refresh();
+
+		// Act
+		List<ProductDto> result = recommendationPoolService.sample(1L, 3);
+
+		// Assert
+		assertThat(result).hasSize(3);
+		assertThat(result.getFirst().getProductId()).isEqualTo(2L);
+		assertThat(result).extracting(ProductDto::getProductId)
+			.doesNotHaveDuplicates()
+			.doesNotContain(1L, 3L);
+	}
+
+	@Test
+	void sample_DrawsDistinctProductsUntilTheLimit() {
+		// Arrange
+		List<Product> catalog = new ArrayList<>();
+		for (long productId = 1; productId <= 30; productId++) {
+			catalog.add(product(productId, productId <= 15 ? Product.Category.CAKE : Product.Category.PIE, true));
+		}
+		givenCatalog(catalog);
+		recommendationPoolService.refresh();
+
+		// Act
+		List<ProductDto> result = recommendationPoolService.sample(1L, 20);
+
+		// Assert, the 14 other cakes come first and the pies fill the rest
+		assertThat(result).hasSize(20);
+		assertThat(result).extracting(ProductDto::getProductId)
+			.doesNotHaveDuplicates()
+			.doesNotContain(1L);
+		assertThat(result.subList(0, 14)).extracting(ProductDto::getCategory)
+			.containsOnly(Product.Category.CAKE);
+	}
+
+	@Test
+	void sample_ThrowsWhenProductIsUnknown() {
+		// Arrange
+		givenCatalog(List.of(
+			product(1L, Product.Category.CAKE, true),
+			product(2L, Product.Category.CAKE, true),
+			product(3L, Product.Category.PIE, true),
+			product(4L, Product.Category.PIE, true)
+		));
+		recommendationPoolService.refresh();
+
+		// Act & Assert
+		assertThatThrownBy(() -> recommendationPoolService.sample(99L, 3))
+			.isInstanceOf(ResourceNotFoundException.class);
+	}
+
+	@Test
+	void sample_ThrowsWhenCatalogIsTooSmall() {
+		// Arrange
+		givenCatalog(List.of(
+			product(1L, Product.Category.CAKE, true),
+			product(2L, Product.Category.CAKE, true)
+		));
+		recommendationPoolService.refresh();
+
+		// Act & Assert
+		assertThatThrownBy(() -> recommendationPoolService.sample(1L, 3))
+			.isInstanceOf(IllegalOperationException.class);
+	}
+
+	@Test
+	void findAvailable_KnowsOnlyTheAvailableProducts() {
+		// Arrange
+		givenCatalog(List.of(
+			product(1L, Product.Category.CAKE, true),
+			product(2L, Product.Category.CAKE, false)
+		));
+		recommendationPoolService.refresh();
+
+		// Act & Assert
+		assertThat(recommendationPoolService.findAvailable(1L)).get()
+			.extracting(ProductDto::getProductId).isEqualTo(1L);
+		assertThat(recommendationPoolService.findAvailable(2L)).isEmpty();
+		assertThat(recommendationPoolService.findAvailable(99L)).isEmpty();
+	}
+
+	private void givenCatalog(List<Product> products) {
+		when(purchaseItemRepository.findPopularProductIds(anyCollection())).thenReturn(List.of());
+		when(productRepository.findAll()).thenReturn(products);
+		when(productService.convertToDto(any(Product.class))).thenAnswer(invocation -> {
+			Product product = invocation.getArgument(0);
+			return ProductDto.builder()
+				.productId(product.getProductId())
+				.category(product.getCategory())
+				.available(product.getAvailable())
+				.build();
+		});
+	}
+
+	private static Product product(Long productId, Product.Category category, boolean available) {
+		return Product.builder()
+			.productId(productId)
+			.name("Product " + productId)
+			.category(category)
+			.available(available)
+			.deleted(false)
+			.build();
+	}
+}
@@ -0,0 +1,290 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.apriori.AssociationRule;
+import dev.kons.kuenyawz.dtos.apriori.BasketCounts;
+import dev.kons.kuenyawz.dtos.product.ProductDto;
+import dev.kons.kuenyawz.entities.AprioriRule;
+import dev.kons.kuenyawz.entities.Product;
+import dev.kons.kuenyawz.repositories.AprioriRuleRepository;
+import dev.kons.kuenyawz.repositories.CartItemRepository;
+import dev.kons.kuenyawz.repositories.ProductRepository;
+import dev.kons.kuenyawz.repositories.PurchaseItemRepository;
+import dev.kons.kuenyawz.services.entity.ProductService;
+import dev.kons.kuenyawz.services.logic.AprioriService;
+import dev.kons.kuenyawz.services.logic.BasketWindowService;
+import dev.kons.kuenyawz.services.logic.JobLockService;
+import dev.kons.kuenyawz.services.logic.RecommendationPoolService;
+import dev.kons.kuenyawz.services.logic.RecommenderServiceImpl;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecommenderServiceImplTest {
+
+	@Mock
+	private ProductService productService;
+
+	@Mock
+	private AprioriRuleRepository aprioriRuleRepository;
+
+	@Mock
+	private RecommendationPoolService recommendationPoolService;
+
+	@Mock
+	private PurchaseItemRepository purchaseItemRepository;
+
+	@Mock
+	private CartItemRepository cartItemRepository;
+
+	@Mock
+	private ProductRepository productRepository;
+
+	@Mock
+	private AprioriService aprioriService;
+
+	@Mock
+	private BasketWindowService basketWindowService;
+
+	@Mock
+	private SnowFlakeIdGenerator snowFlakeIdGenerator;
+
+	@Mock
+	private JobLockService jobLockService;
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	private ApplicationProperties properties;
+
+	@InjectMocks
+	private RecommenderServiceImpl recommenderService;
+
+	@Test
+	void getRecommendsOfAccount_RanksByCartAndHistoryThenFillsWithPopular() {
+		// Arrange
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(List.of(
+			rule(1L, 2L, 0.9),
+			rule(1L, 3L, 0.7),
+			rule(4L, 3L, 0.7),
+			rule(4L, 1L, 0.8)
+		));
+		recommenderService.loadRecommendations();
+
+		when(cartItemRepository.findProductIdsByAccountId(10L)).thenReturn(List.of(1L));
+		when(purchaseItemRepository.findPurchasedProductIdsOfAccount(anyLong(), anyCollection())).thenReturn(List.of(4L));
+		when(productRepository.findAllAvailableByProductIdIn(anyCollection())).thenReturn(List.of(entity(2L), entity(3L)));
+		when(productService.convertToDto(any(Product.class))).thenAnswer(invocation ->
+			product(invocation.<Product>getArgument(0).getProductId()));
+		when(recommendationPoolService.popular(anyInt())).thenReturn(List.of(product(1L), product(5L)));
+
+		// Act
+		List<ProductDto> result = recommenderService.getRecommendsOfAccount(10L);
+
+		// Assert, 3 scores 2 * 0.7 + 0.7 and 2 scores 2 * 0.9, the carted 1 is skipped everywhere
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(3L, 2L, 5L);
+		verify(productRepository).findAllAvailableByProductIdIn(Set.of(2L, 3L));
+		verify(productService, never()).getProduct(anyLong());
+	}
+
+	@Test
+	void getRecommendsOfProduct_ServesTheRankedConsequentsFromMemory() {
+		// Arrange
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(List.of(
+			rule(1L, 2L, 0.9),
+			rule(1L, 3L, 0.7),
+			rule(1L, 4L, 0.8)
+		));
+		recommenderService.loadRecommendations();
+		when(recommendationPoolService.findAvailable(anyLong())).thenAnswer(invocation ->
+			invocation.<Long>getArgument(0) == 2L ? Optional.empty() : Optional.of(product(invocation.getArgument(0))));
+
+		// Act
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(1L, false, 2);
+
+		// Assert, the unavailable 2 is skipped without querying the database
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(4L, 3L);
+		verify(aprioriRuleRepository, never()).findTopAvailableConsequents(any(), any(), any());
+		verify(recommendationPoolService, never()).sample(anyLong(), anyInt());
+	}
+
+	@Test
+	void getRecommendsOfProduct_QueriesTheNextConsequentsWhenTheCachedOnesAreUnavailable() {
+		// Arrange, ten rules fill the cached consequents, the eleventh is only in the database
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(LongStream.rangeClosed(2, 12)
+			.mapToObj(consequent -> rule(1L, consequent, 1.0 / consequent))
+			.toList());
+		recommenderService.loadRecommendations();
+		when(recommendationPoolService.findAvailable(anyLong())).thenReturn(Optional.empty());
+		when(aprioriRuleRepository.findTopAvailableConsequents(eq(1L), eq(1L), any())).thenReturn(List.of(entity(12L)));
+		when(productService.convertToDto(any(Product.class))).thenAnswer(invocation ->
+			product(invocation.<Product>getArgument(0).getProductId()));
+
+		// Act
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(1L, false, 2);
+
+		// Assert
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(12L);
+		verify(recommendationPoolService, times(10)).findAvailable(anyLong());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void generateApriori_ServesTheNewGenerationBeforeRemovingTheOlderOnes() {
+		// Arrange
+		BasketCounts counts = new BasketCounts();
+		when(properties.recommender().getLockLeaseMinutes()).thenReturn(60L);
+		when(jobLockService.tryAcquire(eq("apriori-regeneration"), any())).thenReturn(true);
+		when(snowFlakeIdGenerator.generateId()).thenReturn(2L);
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(basketWindowService.collect(any())).thenReturn(counts);
+		when(aprioriService.findAllRules(counts)).thenReturn(List.of(new AssociationRule(1L, 2L, 0.5, 0.9, 1.2)));
+		when(recommendationPoolService.findAvailable(2L)).thenReturn(Optional.of(product(2L)));
+
+		// Act
+		recommenderService.generateApriori();
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(1L, false);
+
+		// Assert, the previous generation 1 stays for the instances not yet switched to 2
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(2L);
+		ArgumentCaptor<List<AprioriRule>> captor = ArgumentCaptor.forClass(List.class);
+		InOrder inOrder = inOrder(aprioriRuleRepository, recommendationPoolService, jobLockService);
+		inOrder.verify(aprioriRuleRepository).saveAll(captor.capture());
+		inOrder.verify(aprioriRuleRepository).deleteAllByGenerationLessThan(1L);
+		inOrder.verify(recommendationPoolService).refresh();
+		inOrder.verify(jobLockService).release("apriori-regeneration");
+		assertThat(captor.getValue()).singleElement()
+			.satisfies(rule -> assertThat(rule.getGeneration()).isEqualTo(2L));
+	}
+
+	@Test
+	void generateApriori_SkipsWhileAnotherInstanceRegenerates() {
+		// Arrange
+		when(properties.recommender().getLockLeaseMinutes()).thenReturn(60L);
+		when(jobLockService.tryAcquire(eq("apriori-regeneration"), any())).thenReturn(false);
+
+		// Act
+		recommenderService.generateApriori();
+
+		// Assert
+		verifyNoInteractions(basketWindowService, aprioriService, recommendationPoolService);
+		verify(aprioriRuleRepository, never()).saveAll(any());
+		verify(jobLockService, never()).release(any());
+	}
+
+	@Test
+	void reloadIfNewer_SwitchesToTheGenerationOfAnotherInstance() {
+		// Arrange
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L), Optional.of(2L), Optional.of(2L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(List.of(rule(1L, 2L, 0.9)));
+		when(aprioriRuleRepository.findAllByGeneration(2L)).thenReturn(List.of(rule(1L, 3L, 0.9)));
+		recommenderService.loadRecommendations();
+		when(recommendationPoolService.findAvailable(anyLong())).thenAnswer(invocation ->
+			Optional.of(product(invocation.getArgument(0))));
+
+		// Act
+		recommenderService.reloadIfNewer();
+		recommenderService.reloadIfNewer();
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(1L, false);
+
+		// Assert, the unchanged generation is not loaded again
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(3L);
+		verify(aprioriRuleRepository, times(1)).findAllByGeneration(2L);
+	}
+
+	@Test
+	void clearAprioriRecommendations_FallsBackAfterwards() {
+		// Arrange
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(List.of(rule(1L, 2L, 0.9)));
+		recommenderService.loadRecommendations();
+		when(recommendationPoolService.sample(1L, 3)).thenReturn(List.of(product(5L)));
+
+		// Act
+		recommenderService.clearAprioriRecommendations();
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(1L, true);
+
+		// Assert
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(5L);
+		verify(aprioriRuleRepository).deleteAll();
+		verify(basketWindowService).clear();
+		verify(aprioriRuleRepository, never()).findTopAvailableConsequents(any(), any(), any());
+	}
+
+	@Test
+	void getRecommendsOfProduct_FallsBackWithoutRules() {
+		// Arrange
+		when(recommendationPoolService.sample(7L, 3)).thenReturn(List.of(product(5L)));
+
+		// Act
+		List<ProductDto> result = recommenderService.getRecommendsOfProduct(7L, null);
+
+		// Assert
+		assertThat(result).extracting(ProductDto::getProductId).containsExactly(5L);
+		verifyNoInteractions(aprioriRuleRepository);
+	}
+
+	@Test
+	void getRecommendsOfProduct_ReturnsNothingWithoutRulesUnlessRandomIsAdded() {
+		// Arrange
+		when(aprioriRuleRepository.findLatestGeneration()).thenReturn(Optional.of(1L));
+		when(aprioriRuleRepository.findAllByGeneration(1L)).thenReturn(List.of(rule(1L, 2L, 0.9)));
+		recommenderService.loadRecommendations();
+		when(recommendationPoolService.findAvailable(2L)).thenReturn(Optional.empty());
+
+		// Act
+		List<ProductDto> unavailable = recommenderService.getRecommendsOfProduct(1L, false);
+		List<ProductDto> unknown = recommenderService.getRecommendsOfProduct(7L, false);
+
+		// Assert
+		assertThat(unavailable).isEmpty();
+		assertThat(unknown).isEmpty();
+		verify(recommendationPoolService, never()).sample(anyLong(), anyInt());
+	}
+
+	private static AprioriRule rule(long antecedent, long consequent, double confidence) {
+		return AprioriRule.builder()
+			.generation(1L)
+			.antecedent(antecedent)
+			.consequent(consequent)
+			.support(0.1)
+			.confidence(confidence)
+			.lift(1.0)
+			.build();
+	}
+
+	private static Product entity(long productId) {
+		return Product.builder()
+			.productId(productId)
+			.available(true)
+			.build();
+	}
+
+	private static ProductDto product(long productId) {
+		return ProductDto.builder()
+			.productId(productId)
+			.available(true)
+			.build();
+	}
+}
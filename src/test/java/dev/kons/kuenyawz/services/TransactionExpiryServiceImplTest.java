@@ -0,0 +1,79 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.services.entity.TransactionService;
+import dev.kons.kuenyawz.services.logic.TransactionExpiryServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExpiryServiceImplTest {
+
+	@Mock
+	private TransactionService transactionService;
+
+	private ApplicationProperties properties;
+	private TransactionExpiryServiceImpl transactionExpiryService;
+
+	@BeforeEach
+	void setUp() {
+		properties = new ApplicationProperties();
+		properties.expiry().setBatchSize(10);
+		properties.expiry().setMaxBatches(3);
+		transactionExpiryService = new TransactionExpiryServiceImpl(transactionService, properties);
+	}
+
+	@Test
+	void sweep_StopsAtTheFirstShortBatch() {
+		// Arrange
+		when(transactionService.expireOverdue(any(LocalDateTime.class), eq(10))).thenReturn(10, 4);
+
+		// Act
+		int expired = transactionExpiryService.sweep();
+
+		// Assert
+		assertThat(expired).isEqualTo(14);
+		verify(transactionService, times(2)).expireOverdue(any(LocalDateTime.class), eq(10));
+	}
+
+	@Test
+	void sweep_LeavesTheRestForTheNextSweepAfterTheMaximumBatches() {
+		// Arrange
+		when(transactionService.expireOverdue(any(LocalDateTime.class), eq(10))).thenReturn(10);
+
+		// Act
+		int expired = transactionExpiryService.sweep();
+
+		// Assert
+		assertThat(expired).isEqualTo(30);
+		verify(transactionService, times(3)).expireOverdue(any(LocalDateTime.class), eq(10));
+	}
+
+	@Test
+	void sweep_LeavesTransactionsOpenDuringTheGrace() {
+		// Arrange
+		properties.expiry().setGrace(Duration.ofMinutes(15));
+		when(transactionService.expireOverdue(any(LocalDateTime.class), eq(10))).thenReturn(0);
+		LocalDateTime before = LocalDateTime.now();
+
+		// Act
+		transactionExpiryService.sweep();
+
+		// Assert
+		ArgumentCaptor<LocalDateTime> captor = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(transactionService).expireOverdue(captor.capture(), eq(10));
+		assertThat(captor.getValue()).isBetween(before.minusMinutes(15), LocalDateTime.now().minusMinutes(15));
+	}
+}
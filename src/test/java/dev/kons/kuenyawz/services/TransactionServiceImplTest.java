@@ -0,0 +1,211 @@
+package dev.kons.kuenyawz.services;
+
+import dev.kons.kuenyawz.constants.PaymentType;
+import dev.kons.kuenyawz.entities.*;
+import dev.kons.kuenyawz.repositories.*;
+import dev.kons.kuenyawz.services.entity.DateReservationService;
+import dev.kons.kuenyawz.services.entity.TransactionService;
+import dev.kons.kuenyawz.utils.idgenerator.SnowFlakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Expires overdue transactions against the database, where the set-based statements, the status
+ * guards and the purchase locks take effect. The sweep and checkpoint jobs are held off so they
+ * do not expire or drain the rows under test.
+ */
+@SpringBootTest(properties = {
+	"application.expiry.sweep-delay-millis=3600000",
+	"application.dashboard.checkpoint-delay-millis=3600000",
+})
+class TransactionServiceImplTest {
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private PurchaseRepository purchaseRepository;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private DateReservationRepository dateReservationRepository;
+
+	@Autowired
+	private OrderRollupDeltaRepository orderRollupDeltaRepository;
+
+	@Autowired
+	private DateReservationService dateReservationService;
+
+	@Autowired
+	private SnowFlakeIdGenerator snowFlakeIdGenerator;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private static final LocalDateTime NOW = LocalDateTime.now();
+
+	private Account account;
+	private Variant variant;
+
+	@BeforeEach
+	void setUp() {
+		account = accountRepository.save(Account.builder()
+			.email(UUID.randomUUID() + "@test.com")
+			.phone("8120011")
+			.password("password")
+			.privilege(Account.Privilege.USER)
+			.build());
+		Product product = Product.builder()
+			.name("Brownies " + UUID.randomUUID())
+			.category(Product.Category.CAKE)
+			.available(true)
+			.deleted(false)
+			.variants(new HashSet<>())
+			.build();
+		variant = Variant.builder()
+			.price(new BigDecimal("10000"))
+			.type("Small")
+			.minQuantity(1)
+			.maxQuantity(10)
+			.product(product)
+			.build();
+		product.getVariants().add(variant);
+		productRepository.save(product);
+	}
+
+	@Test
+	void expireOverdue_CancelsOnlyTheUnpaidPurchasesOfOverdueTransactions() {
+		// Arrange
+		Purchase unpaid = givenPurchase(Purchase.PurchaseStatus.PENDING, 40);
+		Transaction overdue = givenTransaction(unpaid, Transaction.TransactionStatus.PENDING, NOW.minusMinutes(5));
+		Purchase partlyPaid = givenPurchase(Purchase.PurchaseStatus.CONFIRMED, 50);
+		Transaction lateRest = givenTransaction(partlyPaid, Transaction.TransactionStatus.PENDING, NOW.minusMinutes(5));
+		Purchase settled = givenPurchase(Purchase.PurchaseStatus.CONFIRMED, 60);
+		Transaction paid = givenTransaction(settled, Transaction.TransactionStatus.SETTLEMENT, NOW.minusMinutes(5));
+		Purchase waiting = givenPurchase(Purchase.PurchaseStatus.PENDING, 70);
+		Transaction notYetDue = givenTransaction(waiting, Transaction.TransactionStatus.PENDING, NOW.plusMinutes(5));
+
+		// Act
+		int expired = transactionService.expireOverdue(NOW, 10);
+
+		// Assert
+		assertThat(expired).isEqualTo(2);
+		assertThat(statusOf(overdue)).isEqualTo(Transaction.TransactionStatus.EXPIRE);
+		assertThat(statusOf(lateRest)).isEqualTo(Transaction.TransactionStatus.EXPIRE);
+		assertThat(statusOf(paid)).isEqualTo(Transaction.TransactionStatus.SETTLEMENT);
+		assertThat(statusOf(notYetDue)).isEqualTo(Transaction.TransactionStatus.PENDING);
+
+		// Purchases already paid in part keep their status and their dates
+		assertThat(statusOf(unpaid)).isEqualTo(Purchase.PurchaseStatus.CANCELLED);
+		assertThat(statusOf(partlyPaid)).isEqualTo(Purchase.PurchaseStatus.CONFIRMED);
+		assertThat(statusOf(waiting)).isEqualTo(Purchase.PurchaseStatus.PENDING);
+		assertThat(dateReservationRepository.findAllByPurchaseId(unpaid.getPurchaseId())).isEmpty();
+		assertThat(dateReservationRepository.findAllByPurchaseId(partlyPaid.getPurchaseId())).isNotEmpty();
+		assertThat(dateReservationRepository.findAllByPurchaseId(waiting.getPurchaseId())).isNotEmpty();
+
+		// The bulk update skipped the listener, the cancellation is recorded for the rollups anyway
+		assertThat(orderRollupDeltaRepository.findAll())
+			.filteredOn(delta -> delta.getPurchaseId().equals(unpaid.getPurchaseId()) && delta.getFromStatus() != null)
+			.singleElement()
+			.satisfies(delta -> {
+				assertThat(delta.getFromStatus()).isEqualTo(Purchase.PurchaseStatus.PENDING);
+				assertThat(delta.getToStatus()).isEqualTo(Purchase.PurchaseStatus.CANCELLED);
+				assertThat(delta.getToTotal()).isEqualByComparingTo("10000");
+			});
+		assertThat(orderRollupDeltaRepository.findAll())
+			.noneMatch(delta -> delta.getPurchaseId().equals(partlyPaid.getPurchaseId()) && delta.getFromStatus() != null);
+	}
+
+	@Test
+	void expireOverdue_HoldsTheCancelledPurchasesLockedUntilCommit() {
+		// Arrange
+		Purchase unpaid = givenPurchase(Purchase.PurchaseStatus.PENDING, 80);
+		Transaction overdue = givenTransaction(unpaid, Transaction.TransactionStatus.PENDING, NOW.minusMinutes(5));
+
+		// Act, a second sweep locking the same purchase meanwhile has to wait until it times out
+		transactionTemplate.executeWithoutResult(status -> {
+			transactionService.expireOverdue(NOW, 10);
+
+			assertThatThrownBy(() -> CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(other ->
+					purchaseRepository.findAllByPurchaseIdInAndStatus(Set.of(unpaid.getPurchaseId()), Purchase.PurchaseStatus.PENDING)))
+				.join())
+				.hasCauseInstanceOf(PessimisticLockingFailureException.class);
+			status.setRollbackOnly();
+		});
+
+		// Assert, the rolled back expiry leaves no trace, not even its rollup delta
+		assertThat(statusOf(overdue)).isEqualTo(Transaction.TransactionStatus.PENDING);
+		assertThat(statusOf(unpaid)).isEqualTo(Purchase.PurchaseStatus.PENDING);
+		assertThat(dateReservationRepository.findAllByPurchaseId(unpaid.getPurchaseId())).isNotEmpty();
+		assertThat(orderRollupDeltaRepository.findAll())
+			.noneMatch(delta -> delta.getPurchaseId().equals(unpaid.getPurchaseId())
+				&& delta.getToStatus() == Purchase.PurchaseStatus.CANCELLED);
+	}
+
+	/// A purchase of one item holding its dates, the offset keeps the tests off each other's dates
+	private Purchase givenPurchase(Purchase.PurchaseStatus status, int daysAhead) {
+		Purchase purchase = Purchase.builder()
+			.fullAddress("Jl. Kaliurang")
+			.deliveryOption(Purchase.DeliveryOption.DELIVERY)
+			.eventDate(LocalDate.now().plusDays(daysAhead))
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.status(status)
+			.purchaseItems(new ArrayList<>())
+			.transactions(new ArrayList<>())
+			.build();
+		purchase.getPurchaseItems().add(PurchaseItem.builder()
+			.quantity(1)
+			.boughtPrice(variant.getPrice())
+			.variant(variant)
+			.purchase(purchase)
+			.build());
+		purchase.changeDeliveryFee(BigDecimal.ZERO);
+		Purchase saved = purchaseRepository.save(purchase);
+		dateReservationService.claim(saved.getPurchaseId(), saved.getEventDate());
+		return saved;
+	}
+
+	private Transaction givenTransaction(Purchase purchase, Transaction.TransactionStatus status, LocalDateTime expiresAt) {
+		return transactionRepository.save(Transaction.builder()
+			.transactionId(snowFlakeIdGenerator.generateId())
+			.amount(purchase.getGrandTotal())
+			.status(status)
+			.paymentType(PaymentType.FULL_PAYMENT)
+			.expiresAt(expiresAt)
+			.account(account)
+			.purchase(purchase)
+			.build());
+	}
+
+	private Transaction.TransactionStatus statusOf(Transaction transaction) {
+		return transactionRepository.findById(transaction.getTransactionId()).orElseThrow().getStatus();
+	}
+
+	private Purchase.PurchaseStatus statusOf(Purchase purchase) {
+		return purchaseRepository.findById(purchase.getPurchaseId()).orElseThrow().getStatus();
+	}
+}
@@ -17,6 +17,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -26,6 +27,7 @@ import static org.mockito.Mockito.*;
 import java.math.BigDecimal;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -41,6 +43,9 @@ class VariantServiceImplTest {
 	@Mock
 	private VariantMapper variantMapper;
 
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
 	@InjectMocks
 	private VariantServiceImpl variantService;
 
@@ -114,6 +119,30 @@ class VariantServiceImplTest {
 		verify(variantMapper).fromEntity(variant1);
 	}
 
+	@Test
+	void getVariantsById_ShouldLoadEveryVariantInOneQuery() {
+		// Arrange
+		when(variantRepository.findAllById(Set.of(1L))).thenReturn(List.of(variant1));
+
+		// Act
+		Map<Long, Variant> result = variantService.getVariantsById(List.of(1L, 1L));
+
+		// Assert
+		assertThat(result.get(1L)).isEqualTo(variant1);
+		verify(variantRepository, times(1)).findAllById(Set.of(1L));
+	}
+
+	@Test
+	void getVariantsById_WithMissingVariant_ShouldThrowResourceNotFoundException() {
+		// Arrange
+		when(variantRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(variant1));
+
+		// Act & Assert
+		assertThatThrownBy(() -> variantService.getVariantsById(List.of(1L, 2L)))
+			.isInstanceOf(ResourceNotFoundException.class)
+			.hasMessage("Variant with ID '2' not found");
+	}
+
 	@Test
 	void createVariant_WithValidData_ShouldReturnVariantDto() {
 		// Arrange
@@ -0,0 +1,174 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.dtos.midtrans.MidtransNotification;
+import dev.kons.kuenyawz.entities.WebhookInbox;
+import dev.kons.kuenyawz.exceptions.InvalidRequestBodyValue;
+import dev.kons.kuenyawz.repositories.WebhookInboxRepository;
+import dev.kons.kuenyawz.services.logic.MidtransWebhookService;
+import dev.kons.kuenyawz.services.logic.WebhookInboxServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookInboxServiceImplTest {
+
+	@Mock
+	private WebhookInboxRepository webhookInboxRepository;
+
+	@Mock
+	private MidtransWebhookService midtransWebhookService;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private WebhookInboxServiceImpl webhookInboxService;
+
+	@BeforeEach
+	void setUp() {
+		webhookInboxService = new WebhookInboxServiceImpl(
+			webhookInboxRepository, midtransWebhookService, objectMapper, new ApplicationProperties());
+	}
+
+	@Test
+	void drain_ProcessesTheNotificationsOfAnOrderInTheOrderReceived() throws Exception {
+		// Arrange
+		WebhookInbox pending = inbox(1L, "100", "pending");
+		WebhookInbox settlement = inbox(2L, "100", "settlement");
+		WebhookInbox other = inbox(3L, "200", "settlement");
+		givenDue(pending, settlement, other);
+		List<String> processed = Collections.synchronizedList(new ArrayList<>());
+		doAnswer(invocation -> {
+			MidtransNotification notification = invocation.getArgument(0);
+			processed.add(notification.getOrderId() + ":" + notification.getTransactionStatus());
+			return null;
+		}).when(midtransWebhookService).processNotification(any());
+
+		// Act
+		int handled = webhookInboxService.drain();
+
+		// Assert
+		assertThat(handled).isEqualTo(3);
+		assertThat(processed).containsSubsequence("100:pending", "100:settlement");
+		assertThat(processed).contains("200:settlement");
+		assertThat(List.of(pending, settlement, other))
+			.allMatch(notification -> notification.getStatus() == WebhookInbox.Status.PROCESSED);
+	}
+
+	@Test
+	void drain_HoldsBackTheLaterNotificationsOfAnOrderUntilItsRetry() throws Exception {
+		// Arrange
+		WebhookInbox pending = inbox(1L, "100", "pending");
+		WebhookInbox settlement = inbox(2L, "100", "settlement");
+		givenDue(pending, settlement);
+		doThrow(new IllegalStateException("Database is down"))
+			.when(midtransWebhookService).processNotification(any());
+
+		// Act
+		int handled = webhookInboxService.drain();
+
+		// Assert
+		assertThat(handled).isZero();
+		assertThat(pending.getStatus()).isEqualTo(WebhookInbox.Status.PENDING);
+		assertThat(pending.getAttempts()).isOne();
+		assertThat(pending.getNextAttemptAt()).isAfter(LocalDateTime.now());
+		assertThat(settlement.getAttempts()).isZero();
+		verify(midtransWebhookService, times(1)).processNotification(any());
+		verify(webhookInboxRepository).release(eq(List.of(2L)), anyString());
+	}
+
+	@Test
+	void drain_DeadLettersARejectedNotificationAndMovesOn() throws Exception {
+		// Arrange
+		WebhookInbox downgrade = inbox(1L, "100", "pending");
+		WebhookInbox settlement = inbox(2L, "100", "settlement");
+		givenDue(downgrade, settlement);
+		doThrow(new InvalidRequestBodyValue("Transaction status can't be downgraded"))
+			.when(midtransWebhookService).processNotification(argThat(n -> "pending".equals(n.getTransactionStatus())));
+
+		// Act
+		int handled = webhookInboxService.drain();
+
+		// Assert
+		assertThat(handled).isEqualTo(2);
+		assertThat(downgrade.getStatus()).isEqualTo(WebhookInbox.Status.DEAD);
+		assertThat(settlement.getStatus()).isEqualTo(WebhookInbox.Status.PROCESSED);
+	}
+
+	@Test
+	void drain_GivesBackTheLaterNotificationsOfAnOrderClaimedElsewhere() throws Exception {
+		// Arrange
+		WebhookInbox pending = inbox(1L, "100", "pending");
+		WebhookInbox settlement = inbox(2L, "100", "settlement");
+		WebhookInbox other = inbox(3L, "200", "settlement");
+		when(webhookInboxRepository.findAllUnclaimedDue(eq(WebhookInbox.Status.PENDING), any(), any()))
+			.thenReturn(List.of(pending, settlement, other));
+		when(webhookInboxRepository.claim(anyCollection(), eq(WebhookInbox.Status.PENDING), anyString(), any(), any()))
+			.thenReturn(2);
+		// Another node claimed the first notification of order 100 at the same time
+		when(webhookInboxRepository.findIdsByClaimToken(anyString())).thenReturn(List.of(2L, 3L));
+
+		// Act
+		int handled = webhookInboxService.drain();
+
+		// Assert
+		assertThat(handled).isOne();
+		assertThat(other.getStatus()).isEqualTo(WebhookInbox.Status.PROCESSED);
+		assertThat(settlement.getAttempts()).isZero();
+		verify(webhookInboxRepository).release(eq(List.of(2L)), anyString());
+		verify(midtransWebhookService, times(1)).processNotification(any());
+	}
+
+	@Test
+	void drain_ProcessesNothingWhenAnotherNodeClaimedEverything() throws Exception {
+		// Arrange
+		when(webhookInboxRepository.findAllUnclaimedDue(eq(WebhookInbox.Status.PENDING), any(), any()))
+			.thenReturn(List.of(inbox(1L, "100", "settlement")));
+
+		// Act
+		int handled = webhookInboxService.drain();
+
+		// Assert
+		assertThat(handled).isZero();
+		verifyNoInteractions(midtransWebhookService);
+		verify(webhookInboxRepository, never()).save(any());
+	}
+
+	/// Every due notification is claimed by this drain
+	private void givenDue(WebhookInbox... notifications) {
+		when(webhookInboxRepository.findAllUnclaimedDue(eq(WebhookInbox.Status.PENDING), any(), any()))
+			.thenReturn(List.of(notifications));
+		when(webhookInboxRepository.claim(anyCollection(), eq(WebhookInbox.Status.PENDING), anyString(), any(), any()))
+			.thenReturn(notifications.length);
+	}
+
+	private WebhookInbox inbox(Long inboxId, String orderId, String transactionStatus) throws Exception {
+		MidtransNotification notification = MidtransNotification.builder()
+			.orderId(orderId)
+			.transactionStatus(transactionStatus)
+			.build();
+		return WebhookInbox.builder()
+			.inboxId(inboxId)
+			.orderId(orderId)
+			.payload(objectMapper.writeValueAsString(notification))
+			.status(WebhookInbox.Status.PENDING)
+			.attempts(0)
+			.nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+			.build();
+	}
+}
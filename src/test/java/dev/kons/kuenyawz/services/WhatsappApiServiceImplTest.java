@@ -0,0 +1,65 @@
+package dev.kons.kuenyawz.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kons.kuenyawz.configurations.ApplicationProperties;
+import dev.kons.kuenyawz.exceptions.WhatsappMessageException;
+import dev.kons.kuenyawz.services.logic.WhatsappApiServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WhatsappApiServiceImplTest {
+
+	private DisposableServer fonnte;
+
+	@AfterEach
+	void tearDown() {
+		if (fonnte != null) {
+			fonnte.disposeNow();
+		}
+	}
+
+	@Test
+	void sendAsync_ReturnsTheBodyOfAnAcceptedMessage() {
+		// Arrange
+		WhatsappApiServiceImpl whatsappApiService = givenFonnteReplies("{\"status\":true,\"detail\":\"success! message in queue\"}");
+
+		// Act
+		String response = whatsappApiService.sendAsync("81234567890", "Pesanan baru", "62").block();
+
+		// Assert
+		assertThat(response).contains("\"status\":true");
+	}
+
+	@Test
+	void sendAsync_FailsWhenFonnteRejectsTheMessageWithOk() {
+		// Arrange
+		WhatsappApiServiceImpl whatsappApiService = givenFonnteReplies("{\"status\":false,\"reason\":\"device disconnected\"}");
+
+		// Act & Assert
+		assertThatThrownBy(() -> whatsappApiService.sendAsync("81234567890", "Pesanan baru", "62").block())
+			.isInstanceOf(WhatsappMessageException.class)
+			.hasMessageContaining("device disconnected");
+	}
+
+	private WhatsappApiServiceImpl givenFonnteReplies(String body) {
+		fonnte = HttpServer.create()
+			.host("localhost")
+			.port(0)
+			.route(routes -> routes.post("/send", (request, response) -> request.receive().then(response
+				.status(200)
+				.header("Content-Type", "application/json")
+				.sendString(Mono.just(body))
+				.then())))
+			.bindNow();
+		ApplicationProperties properties = new ApplicationProperties();
+		properties.security().setFonnteBaseUrl("http://localhost:" + fonnte.port());
+		return new WhatsappApiServiceImpl(WebClient.builder(), properties, new ObjectMapper());
+	}
+}